@@ -0,0 +1,90 @@
+#!/usr/bin/env python3
+"""Compares a JMH JSON result with the stored baseline and reports the regressions.
+
+Usage:
+  ./mvnw -Pbenchmark -DskipTests verify
+  python3 src/jmh/compare_baseline.py [--threshold 10] [--result target/jmh-result.json]
+                                      [--baseline src/jmh/baseline.json] [--update]
+
+A benchmark regressed when it is more than --threshold percent worse than the baseline AND the difference is bigger
+than the error margins of both runs, so noise alone doesn't fail the comparison. The exit code is 1 if any benchmark
+regressed. --update replaces the baseline with the result (after a change that is expected to move the numbers).
+"""
+import argparse
+import json
+import shutil
+import sys
+
+
+def load(path):
+    """Reads a JMH JSON result as {benchmark key: primary metric}."""
+    with open(path, encoding="utf-8") as file:
+        runs = json.load(file)
+    results = {}
+    for run in runs:
+        params = run.get("params") or {}
+        key = run["benchmark"].rsplit(".", 2)[-2] + "." + run["benchmark"].rsplit(".", 1)[-1]
+        if params:
+            key += " [" + ", ".join(f"{name}={value}" for name, value in sorted(params.items())) + "]"
+        results[key] = run["primaryMetric"]
+    return results
+
+
+def lower_is_better(metric):
+    # Average/sample time is reported as time per op (e.g. us/op), throughput as ops per time (e.g. ops/s)
+    return metric["scoreUnit"].endswith("/op")
+
+
+def error(metric):
+    value = metric.get("scoreError")
+    return 0.0 if value in (None, "NaN") else float(value)
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--result", default="target/jmh-result.json")
+    parser.add_argument("--baseline", default="src/jmh/baseline.json")
+    parser.add_argument("--threshold", type=float, default=10.0, help="allowed slowdown in percent")
+    parser.add_argument("--update", action="store_true", help="store the result as the new baseline")
+    args = parser.parse_args()
+
+    if args.update:
+        shutil.copyfile(args.result, args.baseline)
+        print(f"Baseline updated from {args.result}")
+        return 0
+
+    baseline = load(args.baseline)
+    result = load(args.result)
+    regressions = 0
+    print(f"{'Benchmark':<60} {'Baseline':>12} {'Result':>12} {'Change':>8}  Unit")
+    for key in sorted(result):
+        new = result[key]
+        old = baseline.get(key)
+        if old is None:
+            print(f"{key:<60} {'-':>12} {new['score']:>12.3f} {'new':>8}  {new['scoreUnit']}")
+            continue
+        if old["scoreUnit"] != new["scoreUnit"]:
+            print(f"{key:<60} unit changed from {old['scoreUnit']} to {new['scoreUnit']}, skipped")
+            continue
+        change = (new["score"] - old["score"]) / old["score"] * 100
+        worse = change if lower_is_better(new) else -change
+        significant = abs(new["score"] - old["score"]) > error(old) + error(new)
+        status = ""
+        if worse > args.threshold and significant:
+            status = "  REGRESSION"
+            regressions += 1
+        elif worse < -args.threshold and significant:
+            status = "  improvement"
+        print(f"{key:<60} {old['score']:>12.3f} {new['score']:>12.3f} {change:>+7.1f}%  {new['scoreUnit']}{status}")
+    for key in sorted(set(baseline) - set(result)):
+        print(f"{key:<60} not in the result")
+
+    if regressions:
+        print(f"\n{regressions} benchmark(s) regressed more than {args.threshold}%")
+        return 1
+    print(f"\nNo regressions over {args.threshold}%")
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
@@ -0,0 +1,106 @@
+package com.jgmedellin.accounts.benchmark;
+
+import com.jgmedellin.accounts.AccountsApplication;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.service.IAccountsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * fetchAccount and createAccount against the embedded H2 DB at several dataset sizes. Each dataset size runs in its
+ * own fork with a fresh application context and DB.
+ * The cache is disabled, a cached fetch doesn't touch the DB and would only measure Caffeine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountsServiceBenchmark {
+
+  private static final long FIRST_ID = 50_000_000L; // Far from the ids handed out by the sequences
+
+  private static final long FIRST_NEW_MOBILE_NUMBER = 3_000_000_000L; // The new customers of createAccount
+
+  @Param({"1000", "100000"})
+  public int datasetSize;
+
+  private ConfigurableApplicationContext context;
+
+  private IAccountsService iAccountsService;
+
+  private long nextCustomer;
+
+  private long nextNewMobileNumber = FIRST_NEW_MOBILE_NUMBER;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    context = new SpringApplicationBuilder(AccountsApplication.class)
+            .web(WebApplicationType.NONE)
+            // Command line arguments, the default properties of the builder can't override application.yaml
+            .run("--spring.jpa.show-sql=false", "--spring.cache.type=none", "--logging.level.root=WARN",
+                    "--spring.devtools.restart.enabled=false");
+    iAccountsService = context.getBean(IAccountsService.class);
+    seed(context.getBean(JdbcTemplate.class));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public CustomerDto fetchAccount() {
+    // Walk the dataset with a big prime step, so consecutive fetches hit different customers
+    nextCustomer = (nextCustomer + 7919) % datasetSize;
+    return iAccountsService.fetchAccount(mobileNumber(nextCustomer));
+  }
+
+  @Benchmark
+  public void createAccount() {
+    iAccountsService.createAccount(BenchmarkData.customerDto(nextNewMobileNumber++));
+  }
+
+  /**
+   * Utility method to insert the dataset with plain JDBC batches
+   */
+  private void seed(JdbcTemplate jdbcTemplate) {
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    List<Object[]> customers = new ArrayList<>();
+    List<Object[]> accounts = new ArrayList<>();
+    for (int i = 0; i < datasetSize; i++) {
+      long customerId = FIRST_ID + i;
+      customers.add(new Object[]{customerId, "Customer " + i, "c" + i + "@email.com", mobileNumber(i), now, "bench"});
+      accounts.add(new Object[]{customerId, 9_000_000_000L + i, "Savings", "Benchmark branch", now, "bench"});
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO customer (customer_id, name, email, mobile_number, created_at, created_by) " +
+            "VALUES (?, ?, ?, ?, ?, ?)", customers);
+    jdbcTemplate.batchUpdate("INSERT INTO accounts (customer_id, account_number, account_type, branch_address, " +
+            "created_at, created_by) VALUES (?, ?, ?, ?, ?, ?)", accounts);
+  }
+
+  private static String mobileNumber(long i) {
+    return String.format("7%09d", i);
+  }
+}
@@ -0,0 +1,30 @@
+package com.jgmedellin.accounts.benchmark;
+
+import com.jgmedellin.accounts.dto.AccountsDto;
+import com.jgmedellin.accounts.dto.CustomerDto;
+
+/**
+ * Sample data shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * @param mobileNumber 10 digit mobile number of the customer
+   * @return a valid customer with its account
+   */
+  static CustomerDto customerDto(long mobileNumber) {
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("John Doe");
+    customerDto.setEmail("jdoe@email.com");
+    customerDto.setMobileNumber(String.valueOf(mobileNumber));
+    AccountsDto accountsDto = new AccountsDto();
+    accountsDto.setAccountNumber(1000000100L);
+    accountsDto.setAccountType("Savings");
+    accountsDto.setBranchAddress("123 Main Street, New York");
+    customerDto.setAccountsDto(accountsDto);
+    return customerDto;
+  }
+}
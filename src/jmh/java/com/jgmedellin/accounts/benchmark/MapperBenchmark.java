@@ -0,0 +1,62 @@
+package com.jgmedellin.accounts.benchmark;
+
+import com.jgmedellin.accounts.dto.AccountsDto;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.entity.Accounts;
+import com.jgmedellin.accounts.entity.Customer;
+import com.jgmedellin.accounts.mapper.AccountsMapper;
+import com.jgmedellin.accounts.mapper.CustomerMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mappings, done for every customer of every response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+  private Customer customer;
+
+  private Accounts accounts;
+
+  private CustomerDto customerDto;
+
+  @Setup
+  public void setup() {
+    customer = new Customer(1L, "John Doe", "jdoe@email.com", "1234567899");
+    accounts = new Accounts(1L, 1000000100L, "Savings", "123 Main Street, New York", false);
+    customerDto = BenchmarkData.customerDto(1234567899L);
+  }
+
+  @Benchmark
+  public CustomerDto customerWithAccountToDto() {
+    // Same mapping as fetchAccount
+    CustomerDto dto = CustomerMapper.mapToCustomerDto(customer, new CustomerDto());
+    dto.setAccountsDto(AccountsMapper.mapToAccountsDto(accounts, new AccountsDto()));
+    return dto;
+  }
+
+  @Benchmark
+  public Customer dtoToCustomer() {
+    return CustomerMapper.mapToCustomer(customerDto, new Customer());
+  }
+
+  @Benchmark
+  public Accounts dtoToAccounts() {
+    return AccountsMapper.mapToAccounts(customerDto.getAccountsDto(), new Accounts());
+  }
+}
@@ -0,0 +1,55 @@
+package com.jgmedellin.accounts.benchmark;
+
+import com.jgmedellin.accounts.ratelimit.RateLimitProperties;
+import com.jgmedellin.accounts.ratelimit.TokenBucketTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the rate limit check of each request, with 4 threads: all of them on the bucket of one client (the worst
+ * case for the CAS) or spread over many clients (with evictions when there are more clients than buckets).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RateLimitBenchmark {
+
+  @Param({"1", "10000", "1000000"})
+  public int clients;
+
+  private TokenBucketTable table;
+
+  private String[] clientIds;
+
+  @Setup
+  public void setup() {
+    // A rate no client reaches, every call takes a token
+    table = new TokenBucketTable(new RateLimitProperties.Limit(1e9, 1000), 65536);
+    clientIds = new String[clients];
+    for (int i = 0; i < clients; i++) {
+      clientIds[i] = "ip:10." + (i >> 16) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF);
+    }
+  }
+
+  @Benchmark
+  public long tryAcquire() {
+    String client = clientIds[ThreadLocalRandom.current().nextInt(clientIds.length)];
+    return table.tryAcquire(client, System.nanoTime());
+  }
+}
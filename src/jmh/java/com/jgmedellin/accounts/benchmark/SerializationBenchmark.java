@@ -0,0 +1,65 @@
+package com.jgmedellin.accounts.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of the request and response bodies, with the same ObjectMapper settings as Spring MVC.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+  private ObjectMapper objectMapper;
+
+  private CustomerDto customerDto;
+
+  private List<CustomerDto> batch;
+
+  private byte[] customerJson;
+
+  @Setup
+  public void setup() throws IOException {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    customerDto = BenchmarkData.customerDto(1234567899L);
+    batch = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      batch.add(BenchmarkData.customerDto(1234500000L + i));
+    }
+    customerJson = objectMapper.writeValueAsBytes(customerDto);
+  }
+
+  @Benchmark
+  public byte[] serializeCustomer() throws IOException {
+    return objectMapper.writeValueAsBytes(customerDto);
+  }
+
+  @Benchmark
+  public CustomerDto deserializeCustomer() throws IOException {
+    return objectMapper.readValue(customerJson, CustomerDto.class);
+  }
+
+  @Benchmark
+  public byte[] serializeBatchOf100() throws IOException {
+    return objectMapper.writeValueAsBytes(batch);
+  }
+}
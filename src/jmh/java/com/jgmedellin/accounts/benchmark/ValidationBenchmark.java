@@ -0,0 +1,76 @@
+package com.jgmedellin.accounts.benchmark;
+
+import com.jgmedellin.accounts.dto.AccountsPatchDto;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bean validation of the request bodies, done for every request (and every row of the batch endpoints).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+  private ValidatorFactory validatorFactory;
+
+  private Validator validator;
+
+  private CustomerDto validCustomer;
+
+  private CustomerDto invalidCustomer;
+
+  private AccountsPatchDto patch;
+
+  @Setup
+  public void setup() {
+    validatorFactory = Validation.buildDefaultValidatorFactory();
+    validator = validatorFactory.getValidator();
+    validCustomer = BenchmarkData.customerDto(1234567899L);
+    invalidCustomer = BenchmarkData.customerDto(1234567899L);
+    invalidCustomer.setEmail("not an email");
+    invalidCustomer.setMobileNumber("123");
+    patch = new AccountsPatchDto();
+    patch.setEmail("new@email.com");
+  }
+
+  @TearDown
+  public void tearDown() {
+    validatorFactory.close();
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<CustomerDto>> validCustomer() {
+    return validator.validate(validCustomer);
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<CustomerDto>> invalidCustomer() {
+    // Building the violation messages is the expensive part
+    return validator.validate(invalidCustomer);
+  }
+
+  @Benchmark
+  public Set<ConstraintViolation<AccountsPatchDto>> patch() {
+    return validator.validate(patch);
+  }
+}
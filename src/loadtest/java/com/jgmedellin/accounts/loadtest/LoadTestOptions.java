@@ -0,0 +1,76 @@
+package com.jgmedellin.accounts.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Options of a load test run, given as --name=value arguments.
+ * @param customers Number of customers (with their accounts) seeded before the test
+ * @param rates Request rates (requests per second) to test, one step per rate
+ * @param stepDuration Duration of each step
+ * @param warmup Duration of the warm-up before the first step, at the first rate, not recorded
+ * @param mix Weight of each operation (fetch, create, update, delete)
+ * @param maxInFlight Requests waiting for a response at most, the ones scheduled above this are dropped (timeouts)
+ * @param sloP99Millis p99 latency objective, the max sustainable rate is the highest step that meets it
+ * @param report Path of the JSON report
+ */
+public record LoadTestOptions(long customers, List<Integer> rates, Duration stepDuration, Duration warmup,
+                              Map<Operation, Integer> mix, int maxInFlight, double sloP99Millis, String report) {
+
+  /**
+   * Reads the options from the command line arguments, every option has a default.
+   * @param args Arguments like --rates=100,200,400 --duration=30s --mix=fetch=70,create=10,update=15,delete=5
+   * @return the options
+   * @throws IllegalArgumentException if an argument is unknown or malformed
+   */
+  public static LoadTestOptions parse(String[] args) {
+    Map<String, String> values = new HashMap<>(Map.of(
+            "customers", "100000",
+            "rates", "100,200,400",
+            "duration", "30s",
+            "warmup", "10s",
+            "mix", "fetch=70,create=10,update=15,delete=5",
+            "max-in-flight", "1000",
+            "slo-p99-ms", "50",
+            "report", "target/loadtest-report.json"));
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals < 0 || !values.containsKey(arg.substring(2, equals))) {
+        throw new IllegalArgumentException("Unknown argument " + arg + ", expected one of --" +
+                String.join("=, --", values.keySet()) + "=");
+      }
+      values.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+
+    List<Integer> rates = new ArrayList<>();
+    for (String rate : values.get("rates").split(",")) {
+      rates.add(Integer.parseInt(rate.trim()));
+    }
+    Map<Operation, Integer> mix = new LinkedHashMap<>();
+    for (String weight : values.get("mix").split(",")) {
+      String[] parts = weight.split("=");
+      mix.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(parts[1].trim()));
+    }
+    return new LoadTestOptions(Long.parseLong(values.get("customers")), rates, duration(values.get("duration")),
+            duration(values.get("warmup")), mix, Integer.parseInt(values.get("max-in-flight")),
+            Double.parseDouble(values.get("slo-p99-ms")), values.get("report"));
+  }
+
+  /**
+   * Utility method to read a duration like 30s, 2m or 500ms
+   */
+  private static Duration duration(String value) {
+    if (value.endsWith("ms")) {
+      return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+    }
+    if (value.endsWith("m")) {
+      return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+    }
+    return Duration.ofSeconds(Long.parseLong(value.endsWith("s") ? value.substring(0, value.length() - 1) : value));
+  }
+}
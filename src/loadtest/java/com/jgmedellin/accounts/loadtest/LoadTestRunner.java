@@ -0,0 +1,93 @@
+package com.jgmedellin.accounts.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jgmedellin.accounts.AccountsApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import javax.sql.DataSource;
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Load test of the create/fetch/update/delete endpoints: starts the application on a random port, seeds the H2 DB
+ * with synthetic customers, runs one open-model step per request rate and writes a JSON report with the latency
+ * percentiles of each step and the highest rate that met the p99 objective.
+ * Run it with: ./mvnw -Pload-test -DskipTests verify -Dloadtest.args="--customers=1000000 --rates=200,400,800"
+ * The client runs in the same JVM as the application, on a small machine it takes part of the CPU.
+ */
+public class LoadTestRunner {
+
+  public static void main(String[] args) throws Exception {
+    LoadTestOptions options = LoadTestOptions.parse(args);
+    // Devtools would restart this main method with the application arguments, it only reads the system property
+    System.setProperty("spring.devtools.restart.enabled", "false");
+    // SQL logging would dominate the latencies and the per-client rate limit would cap the single client of the
+    // driver, the rest of the configuration is the one of the application
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(AccountsApplication.class).run(
+            "--server.port=0", "--spring.jpa.show-sql=false", "--logging.level.root=WARN",
+            "--accounts.rate-limit.enabled=false");
+    ExecutorService httpExecutor = Executors.newFixedThreadPool(4);
+    try {
+      long seedStart = System.nanoTime();
+      new SyntheticDataGenerator(context.getBean(DataSource.class)).generate(options.customers());
+      double seedSeconds = (System.nanoTime() - seedStart) / 1e9;
+      System.out.printf(Locale.ROOT, "Seeded %d customers in %.1f s%n", options.customers(), seedSeconds);
+
+      int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+      HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(httpExecutor)
+              .build();
+      OpenModelDriver driver = new OpenModelDriver(httpClient, URI.create("http://localhost:" + port),
+              options.mix(), options.maxInFlight(), options.customers());
+
+      if (!options.warmup().isZero()) {
+        System.out.printf(Locale.ROOT, "Warming up for %d s%n", options.warmup().toSeconds());
+        driver.run(options.rates().get(0), options.warmup());
+      }
+      List<StepResult> steps = new ArrayList<>();
+      Integer maxSustainableRate = null;
+      for (int rate : options.rates()) {
+        StepResult step = driver.run(rate, options.stepDuration());
+        steps.add(step);
+        double p99 = StepResult.p99Millis(step.total());
+        boolean sustainable = p99 <= options.sloP99Millis() && step.errors() <= step.scheduled() / 100;
+        if (sustainable) {
+          maxSustainableRate = rate;
+        }
+        System.out.printf(Locale.ROOT, "%6d req/s: achieved %.1f req/s, p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, " +
+                        "max %.2f ms, errors %d%s%n", rate, step.achievedRate(),
+                step.total().getValueAtPercentile(50) / 1000.0, p99, step.total().getValueAtPercentile(99.9) / 1000.0,
+                step.total().getMaxValue() / 1000.0, step.errors(), sustainable ? "" : " (over the objective)");
+      }
+
+      Map<String, Object> report = new LinkedHashMap<>();
+      report.put("startedAt", Instant.now().toString());
+      report.put("customers", options.customers());
+      report.put("seedSeconds", Math.round(seedSeconds * 10) / 10.0);
+      Map<String, Integer> mix = new LinkedHashMap<>();
+      options.mix().forEach((operation, weight) -> mix.put(operation.name().toLowerCase(Locale.ROOT), weight));
+      report.put("mix", mix);
+      report.put("sloP99Millis", options.sloP99Millis());
+      report.put("maxSustainableRate", maxSustainableRate);
+      report.put("steps", steps.stream().map(StepResult::toReport).toList());
+      File reportFile = new File(options.report());
+      if (reportFile.getParentFile() != null) {
+        reportFile.getParentFile().mkdirs();
+      }
+      new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(reportFile, report);
+      System.out.println("Report written to " + reportFile.getAbsolutePath());
+    } finally {
+      httpExecutor.shutdownNow();
+      context.close();
+    }
+  }
+}
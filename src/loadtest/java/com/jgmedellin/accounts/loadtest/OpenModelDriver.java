@@ -0,0 +1,208 @@
+package com.jgmedellin.accounts.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a constant arrival rate (open model): request i is due at start + i / rate whether or not the
+ * previous ones have been answered, and its latency is measured from that due time. A closed loop (send, wait, send)
+ * slows down with the server and hides the queueing delay (coordinated omission), this driver doesn't. For the same
+ * reason the requests dropped over maxInFlight and the ones still unanswered when the step ends are not left out of
+ * the latencies: they are recorded as timeouts, with the time from their due time to the end of the step.
+ */
+public class OpenModelDriver {
+
+  private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+  private final HttpClient httpClient;
+
+  private final URI baseUri;
+
+  private final Operation[] operations;
+
+  private final int[] cumulativeWeights;
+
+  private final int maxInFlight;
+
+  /** Seeded customers [0, liveCustomers) not deleted yet, the deletes take them from the end. */
+  private final AtomicLong liveCustomers;
+
+  private final AtomicLong nextNewCustomer = new AtomicLong();
+
+  public OpenModelDriver(HttpClient httpClient, URI baseUri, Map<Operation, Integer> mix, int maxInFlight,
+                         long customers) {
+    this.httpClient = httpClient;
+    this.baseUri = baseUri;
+    this.operations = mix.keySet().toArray(new Operation[0]);
+    this.cumulativeWeights = new int[operations.length];
+    int total = 0;
+    for (int i = 0; i < operations.length; i++) {
+      total += mix.get(operations[i]);
+      cumulativeWeights[i] = total;
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("The request mix must have a positive weight");
+    }
+    this.maxInFlight = maxInFlight;
+    this.liveCustomers = new AtomicLong(customers);
+  }
+
+  /**
+   * Runs one step of the test.
+   * @param rate Requests per second
+   * @param duration Duration of the step
+   * @return the latencies and status codes of the step
+   */
+  public StepResult run(int rate, Duration duration) {
+    long intervalNanos = 1_000_000_000L / rate;
+    long requests = duration.toNanos() / intervalNanos;
+    Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    Map<Operation, Map<Integer, LongAdder>> statusCounts = new EnumMap<>(Operation.class);
+    for (Operation operation : operations) {
+      recorders.put(operation, new Recorder(3));
+      statusCounts.put(operation, new ConcurrentHashMap<>());
+    }
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicLong lastCompletion = new AtomicLong();
+    Map<Operation, List<Long>> droppedDueTimes = new EnumMap<>(Operation.class);
+    Map<Long, PendingRequest> pending = new ConcurrentHashMap<>(); // Sent requests without a response, by number
+    long dropped = 0;
+
+    long start = System.nanoTime();
+    for (long i = 0; i < requests; i++) {
+      long dueTime = start + i * intervalNanos;
+      for (long wait = dueTime - System.nanoTime(); wait > 0; wait = dueTime - System.nanoTime()) {
+        LockSupport.parkNanos(wait);
+      }
+      if (inFlight.get() >= maxInFlight) {
+        dropped++; // The server is too far behind, the client would only queue more requests
+        droppedDueTimes.computeIfAbsent(pickOperation(), op -> new ArrayList<>()).add(dueTime);
+        continue;
+      }
+      Operation operation = pickOperation();
+      HttpRequest request = buildRequest(operation);
+      if (request == null) { // No seeded customer left to delete
+        operation = Operation.FETCH;
+        request = buildRequest(operation);
+      }
+      Recorder recorder = recorders.get(operation);
+      Map<Integer, LongAdder> statuses = statusCounts.get(operation);
+      long requestNumber = i;
+      pending.put(requestNumber, new PendingRequest(operation, dueTime));
+      inFlight.incrementAndGet();
+      httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+        long now = System.nanoTime();
+        if (pending.remove(requestNumber) == null) {
+          return; // Answered after the step ended, already recorded as a timeout
+        }
+        recordLatency(recorder, dueTime, now);
+        statuses.computeIfAbsent(error != null ? -1 : response.statusCode(), status -> new LongAdder()).increment();
+        lastCompletion.accumulateAndGet(now, Math::max);
+        inFlight.decrementAndGet();
+      });
+    }
+
+    // Wait for the responses of the last requests
+    long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+    while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+      LockSupport.parkNanos(1_000_000);
+    }
+
+    // The dropped and unanswered requests waited at least until now
+    long end = System.nanoTime();
+    droppedDueTimes.forEach((operation, dueTimes) ->
+            dueTimes.forEach(dueTime -> recordLatency(recorders.get(operation), dueTime, end)));
+    long unanswered = 0;
+    for (Long requestNumber : pending.keySet()) {
+      PendingRequest request = pending.remove(requestNumber);
+      if (request != null) {
+        recordLatency(recorders.get(request.operation()), request.dueTime(), end);
+        unanswered++;
+      }
+    }
+
+    Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    Map<Operation, Map<Integer, Long>> statuses = new EnumMap<>(Operation.class);
+    for (Operation operation : operations) {
+      histograms.put(operation, recorders.get(operation).getIntervalHistogram());
+      Map<Integer, Long> counts = new TreeMap<>();
+      statusCounts.get(operation).forEach((status, count) -> counts.put(status, count.sum()));
+      statuses.put(operation, counts);
+    }
+    long elapsedNanos = (unanswered > 0 ? end : lastCompletion.get()) - start;
+    return new StepResult(rate, requests, dropped, unanswered, elapsedNanos, histograms, statuses);
+  }
+
+  private static void recordLatency(Recorder recorder, long dueTime, long now) {
+    recorder.recordValue(Math.max(1, (now - dueTime) / 1_000)); // Microseconds since the request was due
+  }
+
+  private Operation pickOperation() {
+    int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (value < cumulativeWeights[i]) {
+        return operations[i];
+      }
+    }
+    return operations[operations.length - 1];
+  }
+
+  /**
+   * Utility method to build the request of an operation for a random customer
+   * @return the request, null if the operation has no customer left to work on
+   */
+  private HttpRequest buildRequest(Operation operation) {
+    long live = liveCustomers.get();
+    long customer = live > 0 ? ThreadLocalRandom.current().nextLong(live) : 0;
+    return switch (operation) {
+      case FETCH -> HttpRequest.newBuilder(baseUri.resolve("/api/fetch?mobileNumber=" +
+              SyntheticDataGenerator.mobileNumber(customer))).GET().build();
+      case CREATE -> json(HttpRequest.newBuilder(baseUri.resolve("/api/create")), "POST", String.format(
+              "{\"name\":\"New Customer\",\"email\":\"new@email.com\",\"mobileNumber\":\"6%09d\"}",
+              nextNewCustomer.getAndIncrement()));
+      case UPDATE -> json(HttpRequest.newBuilder(baseUri.resolve("/api/update")), "PUT", String.format(
+              "{\"name\":\"Updated Customer\",\"email\":\"updated%d@email.com\",\"mobileNumber\":\"%s\"," +
+                      "\"accountsDto\":{\"accountNumber\":%d,\"accountType\":\"Savings\"," +
+                      "\"branchAddress\":\"Updated branch\"}}",
+              customer, SyntheticDataGenerator.mobileNumber(customer), SyntheticDataGenerator.accountNumber(customer)));
+      case DELETE -> {
+        long deleted = liveCustomers.decrementAndGet();
+        if (deleted < 0) {
+          liveCustomers.incrementAndGet();
+          yield null;
+        }
+        yield HttpRequest.newBuilder(baseUri.resolve("/api/delete?mobileNumber=" +
+                SyntheticDataGenerator.mobileNumber(deleted))).DELETE().build();
+      }
+    };
+  }
+
+  /**
+   * Request sent and not answered yet
+   * @param operation Operation of the request
+   * @param dueTime System.nanoTime() the request was due at
+   */
+  private record PendingRequest(Operation operation, long dueTime) {
+  }
+
+  private static HttpRequest json(HttpRequest.Builder builder, String method, String body) {
+    return builder.header("Content-Type", "application/json")
+            .method(method, HttpRequest.BodyPublishers.ofString(body)).build();
+  }
+}
@@ -0,0 +1,8 @@
+package com.jgmedellin.accounts.loadtest;
+
+/**
+ * Operations of the request mix, one per endpoint.
+ */
+public enum Operation {
+  FETCH, CREATE, UPDATE, DELETE
+}
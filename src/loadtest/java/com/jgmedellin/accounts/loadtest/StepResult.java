@@ -0,0 +1,97 @@
+package com.jgmedellin.accounts.loadtest;
+
+import org.HdrHistogram.Histogram;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Latencies (microseconds) and status codes of one step of the load test. The latencies include the dropped and
+ * unanswered requests as timeouts (see OpenModelDriver), so the percentiles don't get better when the server falls
+ * behind.
+ * @param targetRate Requests per second the step was scheduled at
+ * @param scheduled Requests scheduled in the step
+ * @param dropped Requests not sent because too many were waiting for a response
+ * @param unanswered Requests still without a response when the step ended
+ * @param elapsedNanos Time from the first request to the last response
+ * @param histograms Latencies of each operation, the dropped and unanswered requests included
+ * @param statusCounts Responses of each operation by HTTP status, -1 for connection errors
+ */
+public record StepResult(int targetRate, long scheduled, long dropped, long unanswered, long elapsedNanos,
+                         Map<Operation, Histogram> histograms, Map<Operation, Map<Integer, Long>> statusCounts) {
+
+  /**
+   * @return the latencies of all the operations together
+   */
+  public Histogram total() {
+    Histogram total = new Histogram(3);
+    histograms.values().forEach(total::add);
+    return total;
+  }
+
+  /**
+   * @return the requests answered without a 2xx status, plus the dropped and unanswered ones
+   */
+  public long errors() {
+    long errors = dropped + unanswered;
+    for (Map<Integer, Long> statuses : statusCounts.values()) {
+      for (Map.Entry<Integer, Long> entry : statuses.entrySet()) {
+        if (entry.getKey() < 200 || entry.getKey() >= 300) {
+          errors += entry.getValue();
+        }
+      }
+    }
+    return errors;
+  }
+
+  /**
+   * @return responses per second
+   */
+  public double achievedRate() {
+    return (total().getTotalCount() - dropped - unanswered) / (elapsedNanos / 1e9);
+  }
+
+  /**
+   * @return the step as a JSON friendly map
+   */
+  public Map<String, Object> toReport() {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("targetRate", targetRate);
+    report.put("achievedRate", Math.round(achievedRate() * 10) / 10.0);
+    report.put("durationSeconds", Math.round(elapsedNanos / 1e7) / 100.0);
+    report.put("scheduled", scheduled);
+    report.put("dropped", dropped);
+    report.put("unanswered", unanswered);
+    report.put("errors", errors());
+    report.put("latencyMillis", latencies(total()));
+    Map<String, Object> operations = new LinkedHashMap<>();
+    histograms.forEach((operation, histogram) -> {
+      Map<String, Object> operationReport = new LinkedHashMap<>();
+      operationReport.put("count", histogram.getTotalCount());
+      operationReport.put("statusCounts", statusCounts.get(operation));
+      operationReport.put("latencyMillis", latencies(histogram));
+      operations.put(operation.name().toLowerCase(Locale.ROOT), operationReport);
+    });
+    report.put("operations", operations);
+    return report;
+  }
+
+  /**
+   * @param histogram Latencies in microseconds
+   * @return the p99 latency in milliseconds
+   */
+  static double p99Millis(Histogram histogram) {
+    return histogram.getValueAtPercentile(99) / 1000.0;
+  }
+
+  private static Map<String, Double> latencies(Histogram histogram) {
+    Map<String, Double> latencies = new LinkedHashMap<>();
+    latencies.put("mean", Math.round(histogram.getMean()) / 1000.0);
+    latencies.put("p50", histogram.getValueAtPercentile(50) / 1000.0);
+    latencies.put("p90", histogram.getValueAtPercentile(90) / 1000.0);
+    latencies.put("p99", histogram.getValueAtPercentile(99) / 1000.0);
+    latencies.put("p99.9", histogram.getValueAtPercentile(99.9) / 1000.0);
+    latencies.put("max", histogram.getMaxValue() / 1000.0);
+    return latencies;
+  }
+}
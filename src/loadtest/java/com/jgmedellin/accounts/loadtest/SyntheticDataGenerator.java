@@ -0,0 +1,93 @@
+package com.jgmedellin.accounts.loadtest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Bulk inserts synthetic customers and accounts with plain JDBC batches, millions of rows in seconds instead of going
+ * through JPA. Customer i has the mobile number mobileNumber(i) and the account accountNumber(i), so the load test
+ * can address any customer without reading the DB.
+ */
+public class SyntheticDataGenerator {
+
+  /** Far from the ids handed out by customer_seq. */
+  static final long FIRST_CUSTOMER_ID = 1_000_000_000L;
+
+  private static final int BATCH_SIZE = 1_000;
+
+  private static final int COMMIT_EVERY = 50_000;
+
+  private final DataSource dataSource;
+
+  public SyntheticDataGenerator(DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  /**
+   * Inserts the customers [0, customers) with one account each.
+   * @param customers Number of customers
+   * @throws SQLException if the inserts fail
+   */
+  public void generate(long customers) throws SQLException {
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    try (Connection connection = dataSource.getConnection();
+         PreparedStatement insertCustomer = connection.prepareStatement("INSERT INTO customer (customer_id, name, " +
+                 "email, mobile_number, created_at, created_by) VALUES (?, ?, ?, ?, ?, ?)");
+         PreparedStatement insertAccount = connection.prepareStatement("INSERT INTO accounts (customer_id, " +
+                 "account_number, account_type, branch_address, created_at, created_by) VALUES (?, ?, ?, ?, ?, ?)")) {
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+        for (long i = 0; i < customers; i++) {
+          long customerId = FIRST_CUSTOMER_ID + i;
+          insertCustomer.setLong(1, customerId);
+          insertCustomer.setString(2, "Customer " + i);
+          insertCustomer.setString(3, "customer" + i + "@email.com");
+          insertCustomer.setString(4, mobileNumber(i));
+          insertCustomer.setTimestamp(5, now);
+          insertCustomer.setString(6, "loadtest");
+          insertCustomer.addBatch();
+          insertAccount.setLong(1, customerId);
+          insertAccount.setLong(2, accountNumber(i));
+          insertAccount.setString(3, i % 4 == 0 ? "Current" : "Savings");
+          insertAccount.setString(4, "Load test branch " + i % 100);
+          insertAccount.setTimestamp(5, now);
+          insertAccount.setString(6, "loadtest");
+          insertAccount.addBatch();
+          if ((i + 1) % BATCH_SIZE == 0) {
+            insertCustomer.executeBatch();
+            insertAccount.executeBatch();
+          }
+          if ((i + 1) % COMMIT_EVERY == 0) {
+            connection.commit();
+          }
+        }
+        insertCustomer.executeBatch();
+        insertAccount.executeBatch();
+        connection.commit();
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    }
+  }
+
+  /**
+   * @param customer Index of a seeded customer
+   * @return the mobile number of the customer
+   */
+  static String mobileNumber(long customer) {
+    return String.format("7%09d", customer);
+  }
+
+  /**
+   * @param customer Index of a seeded customer
+   * @return the account number of the customer
+   */
+  static long accountNumber(long customer) {
+    return 9_000_000_000L + customer;
+  }
+}
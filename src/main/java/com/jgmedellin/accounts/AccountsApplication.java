@@ -1,6 +1,14 @@
 package com.jgmedellin.accounts;
 
+import com.jgmedellin.accounts.audit.AuditProperties;
+import com.jgmedellin.accounts.changes.ChangeFeedProperties;
+import com.jgmedellin.accounts.idempotency.IdempotencyProperties;
+import com.jgmedellin.accounts.constants.AccountsConstants;
 import com.jgmedellin.accounts.dto.AccountsContactInfoDto;
+import com.jgmedellin.accounts.limiter.ConcurrencyLimitProperties;
+import com.jgmedellin.accounts.ratelimit.RateLimitProperties;
+import com.jgmedellin.accounts.replicas.ReplicaProperties;
+import com.jgmedellin.accounts.sharding.ShardingProperties;
 import io.swagger.v3.oas.annotations.ExternalDocumentation;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.info.Contact;
@@ -8,12 +16,17 @@ import io.swagger.v3.oas.annotations.info.Info;
 import io.swagger.v3.oas.annotations.info.License;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 
 @SpringBootApplication
 @EnableJpaAuditing(auditorAwareRef = "auditAwareImpl") // Enable JPA Auditing and set the AuditorAware bean name
-@EnableConfigurationProperties(value = {AccountsContactInfoDto.class}) // Enable Configuration Properties (Approach 3)
+@EnableCaching // Enable the Spring Cache abstraction (accounts cache), backed by Caffeine (see spring.cache in application.yaml)
+@EnableConfigurationProperties(value = {AccountsContactInfoDto.class, ConcurrencyLimitProperties.class,
+		RateLimitProperties.class, AuditProperties.class, ChangeFeedProperties.class,
+		IdempotencyProperties.class, ShardingProperties.class, ReplicaProperties.class}) // Enable Configuration Properties (Approach 3)
 @OpenAPIDefinition( // OpenAPI 3.0 definition annotation to create the OpenAPI documentation with Swagger
 				info = @Info(
 								title = "Accounts microservice REST API",
@@ -38,7 +51,10 @@ import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 public class AccountsApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(AccountsApplication.class, args);
+		SpringApplication application = new SpringApplication(AccountsApplication.class);
+		// Record the startup steps (context refresh, bean creation...), they are reported by StartupReport
+		application.setApplicationStartup(new BufferingApplicationStartup(AccountsConstants.STARTUP_STEPS_CAPACITY));
+		application.run(args);
 	}
 
 }
\ No newline at end of file
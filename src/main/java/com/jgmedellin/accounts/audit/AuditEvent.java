@@ -0,0 +1,38 @@
+package com.jgmedellin.accounts.audit;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A committed change of a Customer or an Accounts row, with the before/after value of each changed field.
+ * @param sequence Position of the event in the audit log, assigned when it is written (0 before that)
+ * @param timestamp When the change was committed
+ * @param entity Entity that changed (Customer or Accounts)
+ * @param entityId Id of the changed row (customer id or account number)
+ * @param operation CREATE, UPDATE or DELETE
+ * @param principal Who made the change
+ * @param changes Changed fields, the audit columns of BaseEntity are left out
+ */
+@Schema(name = "AuditEvent", description = "Schema to hold a committed change of a customer or an account")
+public record AuditEvent(long sequence, Instant timestamp, String entity, String entityId, Operation operation,
+                         String principal, List<FieldChange> changes) {
+
+  public enum Operation { CREATE, UPDATE, DELETE }
+
+  /**
+   * @param field Name of the entity field
+   * @param before Value before the change, null for a CREATE
+   * @param after Value after the change, null for a DELETE
+   */
+  public record FieldChange(String field, String before, String after) { }
+
+  /**
+   * @param sequence Position of the event in the audit log
+   * @return a copy of the event with the sequence set
+   */
+  public AuditEvent withSequence(long sequence) {
+    return new AuditEvent(sequence, timestamp, entity, entityId, operation, principal, changes);
+  }
+
+}
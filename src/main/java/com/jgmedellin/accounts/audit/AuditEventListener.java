@@ -0,0 +1,132 @@
+package com.jgmedellin.accounts.audit;
+
+import com.jgmedellin.accounts.entity.Accounts;
+import com.jgmedellin.accounts.entity.Customer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Hibernate listener of the committed inserts and updates of Customer and Accounts, turns each one into an audit
+ * event with the before/after value of the changed fields. It runs in the request thread right after the commit, so
+ * it only compares the entity states Hibernate already has and leaves the I/O to the AuditTrail writer.
+ * The deletes are set-based statements that don't go through the listeners, they are recorded by the service.
+ */
+@Component
+@ConditionalOnProperty(prefix = "accounts.audit", name = "enabled", havingValue = "true")
+public class AuditEventListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener {
+
+  private static final Set<Class<?>> AUDITED_ENTITIES = Set.of(Customer.class, Accounts.class);
+
+  // Audit columns of BaseEntity, the event has its own timestamp and principal
+  private static final Set<String> IGNORED_FIELDS = Set.of("createdAt", "createdBy", "updatedAt", "updatedBy",
+          "version");
+
+  private final AuditTrail auditTrail;
+
+  private final EntityManagerFactory entityManagerFactory;
+
+  public AuditEventListener(AuditTrail auditTrail, EntityManagerFactory entityManagerFactory) {
+    this.auditTrail = auditTrail;
+    this.entityManagerFactory = entityManagerFactory;
+  }
+
+  /**
+   * Registers the listener in the Hibernate session factory
+   */
+  @PostConstruct
+  void register() {
+    EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry().getService(EventListenerRegistry.class);
+    registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+    registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+  }
+
+  @Override
+  public void onPostInsert(PostInsertEvent event) {
+    String[] fields = event.getPersister().getPropertyNames();
+    Object[] state = event.getState();
+    List<AuditEvent.FieldChange> changes = new ArrayList<>();
+    for (int i = 0; i < fields.length; i++) {
+      if (!IGNORED_FIELDS.contains(fields[i]) && state[i] != null) {
+        changes.add(new AuditEvent.FieldChange(fields[i], null, String.valueOf(state[i])));
+      }
+    }
+    auditTrail.record(entityName(event.getPersister()), event.getId(), AuditEvent.Operation.CREATE, changes);
+  }
+
+  @Override
+  public void onPostUpdate(PostUpdateEvent event) {
+    String[] fields = event.getPersister().getPropertyNames();
+    Object[] oldState = event.getOldState(); // null if the entity was not loaded in the session (merge of a detached one)
+    Object[] state = event.getState();
+    List<AuditEvent.FieldChange> changes = new ArrayList<>();
+    for (int i : changedFields(event, fields.length)) {
+      Object before = oldState == null ? null : oldState[i];
+      if (IGNORED_FIELDS.contains(fields[i]) || (oldState != null && Objects.equals(before, state[i]))) {
+        continue;
+      }
+      changes.add(new AuditEvent.FieldChange(fields[i], before == null ? null : String.valueOf(before),
+              state[i] == null ? null : String.valueOf(state[i])));
+    }
+    if (!changes.isEmpty()) {
+      auditTrail.record(entityName(event.getPersister()), event.getId(), AuditEvent.Operation.UPDATE, changes);
+    }
+  }
+
+  @Override
+  public void onPostInsertCommitFailed(PostInsertEvent event) {
+    // Rolled back, nothing changed
+  }
+
+  @Override
+  public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    // Rolled back, nothing changed
+  }
+
+  @Override
+  public boolean requiresPostCommitHandling(EntityPersister persister) {
+    return AUDITED_ENTITIES.contains(persister.getMappedClass());
+  }
+
+  /**
+   * Utility method to get the fields to compare, the dirty ones when Hibernate knows them
+   * @param event Update event
+   * @param fieldCount Number of fields of the entity
+   * @return the indexes of the fields
+   */
+  private static int[] changedFields(PostUpdateEvent event, int fieldCount) {
+    int[] dirtyFields = event.getDirtyProperties();
+    if (dirtyFields != null) {
+      return dirtyFields;
+    }
+    int[] allFields = new int[fieldCount];
+    for (int i = 0; i < fieldCount; i++) {
+      allFields[i] = i;
+    }
+    return allFields;
+  }
+
+  /**
+   * Utility method to get the name of the entity in the audit events
+   * @param persister Persister of the entity
+   * @return the simple class name of the entity (Customer or Accounts)
+   */
+  private static String entityName(EntityPersister persister) {
+    return persister.getMappedClass().getSimpleName();
+  }
+
+}
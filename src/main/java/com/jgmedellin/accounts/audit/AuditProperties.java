@@ -0,0 +1,23 @@
+package com.jgmedellin.accounts.audit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the audit trail, mapped from accounts.audit.* (overridden in application_prod.yaml).
+ * @param enabled False to stop recording the changes
+ * @param directory Directory of the audit log segments, only one application instance can use it
+ * @param segmentSize Size of each segment file
+ * @param maxSegments Segments kept, the oldest ones are deleted
+ * @param queueCapacity Events waiting to be written, the events over it are dropped (the requests never wait)
+ * @param batchSize Max events written per flush of the log
+ * @param flushInterval How long the writer waits for new events when the queue is empty
+ * @param fsync True to force each batch to the disk, false to leave the write back to the OS
+ * @param shutdownTimeout How long the shutdown waits for the queued events to be written
+ */
+@ConfigurationProperties(prefix = "accounts.audit")
+public record AuditProperties(boolean enabled, Path directory, DataSize segmentSize, int maxSegments,
+                             int queueCapacity, int batchSize, Duration flushInterval, boolean fsync,
+                             Duration shutdownTimeout) { }
@@ -0,0 +1,350 @@
+package com.jgmedellin.accounts.audit;
+
+import lombok.extern.slf4j.Slf4j;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log on local disk, split in memory-mapped segment files of a fixed size.
+ * Each record is [length:int][crc32:int][sequence:long][payload], the CRC covers the sequence and the payload.
+ * A segment ends at the first record with length 0 (the rest of the file is still zeros), when a record doesn't fit
+ * a new segment is started, named after the sequence of its first record, and the oldest segments over maxSegments
+ * are deleted.
+ * Only one thread may append and flush, read() can be called from any thread and only sees the flushed records.
+ */
+@Slf4j
+public class AuditSegmentLog implements Closeable {
+
+  static final int HEADER_SIZE = 16; // length + crc + sequence
+
+  private static final String LOCK_FILE = "audit.lock";
+
+  private static final String SEGMENT_NAME_PATTERN = "\\d{20}\\.log";
+
+  private final Path directory;
+
+  private final int segmentSize;
+
+  private final int maxSegments;
+
+  private final boolean fsync;
+
+  private final FileChannel lockChannel; // Holds the lock of the directory until the log is closed
+
+  private final CRC32 crc = new CRC32();
+
+  private MappedByteBuffer segment; // Segment being written, its position is the end of the last appended record
+
+  private int flushedPosition;
+
+  private long nextSequence;
+
+  private volatile long flushedSequence; // Last record visible to read()
+
+  /**
+   * Consumer of the records returned by read()
+   */
+  @FunctionalInterface
+  public interface RecordConsumer {
+
+    /**
+     * @param sequence Sequence of the record
+     * @param payload Payload of the record, only valid during the call
+     * @return false to stop reading
+     */
+    boolean accept(long sequence, ByteBuffer payload);
+  }
+
+  /**
+   * Result of a segment scan
+   * @param end Position after the last valid record
+   * @param nextSequence Sequence of the next record
+   * @param stopped True if the consumer asked to stop reading
+   */
+  private record Scan(int end, long nextSequence, boolean stopped) { }
+
+  private AuditSegmentLog(Path directory, int segmentSize, int maxSegments, boolean fsync, FileChannel lockChannel) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.maxSegments = maxSegments;
+    this.fsync = fsync;
+    this.lockChannel = lockChannel;
+  }
+
+  /**
+   * Opens the log of a directory (created if needed) and recovers the end of the last segment after a crash:
+   * a record that was being written (bad length, sequence or checksum) ends that segment and a new one is started.
+   * @param directory Directory of the segment files
+   * @param segmentSize Size of each segment file in bytes
+   * @param maxSegments Segments kept, the oldest ones are deleted
+   * @param fsync True to force the records to the disk on each flush, false to leave it to the OS
+   * @return the opened log
+   * @throws IOException if the directory can't be read or written
+   */
+  public static AuditSegmentLog open(Path directory, int segmentSize, int maxSegments, boolean fsync)
+          throws IOException {
+    if (segmentSize <= HEADER_SIZE || maxSegments < 1) {
+      throw new IllegalArgumentException("Invalid audit log segment size or count");
+    }
+    Files.createDirectories(directory);
+    FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+    FileLock lock;
+    try {
+      lock = lockChannel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null; // Locked by another log of this JVM
+    }
+    if (lock == null) {
+      lockChannel.close();
+      throw new IllegalStateException("The audit log directory " + directory + " is used by another process");
+    }
+    AuditSegmentLog auditLog = new AuditSegmentLog(directory, segmentSize, maxSegments, fsync, lockChannel);
+    try {
+      auditLog.recover();
+    } catch (IOException | RuntimeException e) {
+      lockChannel.close();
+      throw e;
+    }
+    return auditLog;
+  }
+
+  /**
+   * Appends a record to the current segment (a new segment is started if it doesn't fit), it is visible to read()
+   * after the next flush()
+   * @param payload Content of the record
+   * @return the sequence of the record
+   */
+  public long append(byte[] payload) {
+    if (payload.length == 0 || payload.length > segmentSize - HEADER_SIZE) {
+      throw new IllegalArgumentException("Audit record of " + payload.length + " bytes doesn't fit in a segment");
+    }
+    if (segment.position() + HEADER_SIZE + payload.length > segmentSize) {
+      rotate();
+    }
+    long sequence = nextSequence++;
+    int position = segment.position();
+    segment.position(position + 8);
+    segment.putLong(sequence);
+    segment.put(payload);
+    crc.reset();
+    crc.update(segment.slice(position + 8, 8 + payload.length));
+    segment.putInt(position + 4, (int) crc.getValue());
+    segment.putInt(position, payload.length); // Written last, a record without length is not there yet
+    return sequence;
+  }
+
+  /**
+   * Makes the appended records visible to read(), one force of the written range for all of them if fsync is on
+   * (group commit)
+   */
+  public void flush() {
+    int position = segment.position();
+    if (fsync && position > flushedPosition) {
+      segment.force(flushedPosition, position - flushedPosition);
+    }
+    flushedPosition = position;
+    flushedSequence = nextSequence - 1;
+  }
+
+  /**
+   * Reads the flushed records from a sequence on, in order. A damaged record ends its segment, the reading goes on
+   * with the next segment.
+   * @param fromSequence First sequence to read
+   * @param consumer Called with each record, returns false to stop
+   * @throws IOException if a segment can't be read
+   */
+  public void read(long fromSequence, RecordConsumer consumer) throws IOException {
+    long lastSequence = flushedSequence;
+    List<Path> segments = listSegments();
+    for (int i = 0; i < segments.size(); i++) {
+      long firstSequence = firstSequence(segments.get(i));
+      if (firstSequence > lastSequence) {
+        return;
+      }
+      if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= fromSequence) {
+        continue; // All the records of this segment are before fromSequence
+      }
+      try (FileChannel channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        Scan scan = scan(buffer, firstSequence, lastSequence,
+                (sequence, payload) -> sequence < fromSequence || consumer.accept(sequence, payload));
+        if (scan.stopped()) {
+          return;
+        }
+      } catch (NoSuchFileException e) {
+        // Deleted by the retention while reading, its records are gone
+      }
+    }
+  }
+
+  /**
+   * @return the sequence of the next appended record
+   */
+  public long nextSequence() {
+    return nextSequence;
+  }
+
+  /**
+   * @return the sequence of the last record visible to read(), 0 if there is none
+   */
+  public long flushedSequence() {
+    return flushedSequence;
+  }
+
+  /**
+   * Flushes the appended records and releases the directory
+   * @throws IOException if the lock can't be released
+   */
+  @Override
+  public void close() throws IOException {
+    if (segment != null) {
+      flush();
+      segment = null;
+    }
+    lockChannel.close();
+  }
+
+  /**
+   * Utility method to find where to go on appending when the log is opened
+   * @throws IOException if the segments can't be read
+   */
+  private void recover() throws IOException {
+    List<Path> segments = listSegments();
+    if (segments.isEmpty()) {
+      nextSequence = 1;
+      openSegment();
+      return;
+    }
+    Path last = segments.get(segments.size() - 1);
+    long firstSequence = firstSequence(last);
+    try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      boolean sameSize = channel.size() == segmentSize;
+      MappedByteBuffer buffer = channel.map(sameSize ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+              0, channel.size());
+      Scan scan = scan(buffer, firstSequence, Long.MAX_VALUE, null);
+      nextSequence = scan.nextSequence();
+      flushedSequence = nextSequence - 1;
+      boolean torn = scan.end() + 4 <= buffer.limit() && buffer.getInt(scan.end()) != 0;
+      if (sameSize && !torn) {
+        segment = buffer;
+        segment.position(scan.end());
+        flushedPosition = scan.end();
+        return;
+      }
+      if (torn) {
+        log.warn("Damaged audit record {} in {}, the segment is closed", nextSequence, last.getFileName());
+      }
+    }
+    if (nextSequence == firstSequence) {
+      Files.delete(last); // Nothing valid in it and the new segment gets the same name
+    }
+    openSegment();
+  }
+
+  /**
+   * Utility method to flush the current segment and start a new one
+   */
+  private void rotate() {
+    flush();
+    try {
+      openSegment();
+      deleteOldSegments();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Utility method to create and map the segment of the next sequence
+   * @throws IOException if the file can't be created
+   */
+  private void openSegment() throws IOException {
+    Path path = directory.resolve(String.format("%020d.log", nextSequence));
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize); // The mapping outlives the channel
+    }
+    flushedPosition = 0;
+  }
+
+  /**
+   * Utility method to delete the oldest segments over maxSegments
+   * @throws IOException if the directory can't be listed
+   */
+  private void deleteOldSegments() throws IOException {
+    List<Path> segments = listSegments();
+    for (int i = 0; i < segments.size() - maxSegments; i++) {
+      Files.deleteIfExists(segments.get(i));
+    }
+  }
+
+  /**
+   * Utility method to list the segment files
+   * @return the segment files, oldest first
+   * @throws IOException if the directory can't be listed
+   */
+  private List<Path> listSegments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().matches(SEGMENT_NAME_PATTERN))
+              .sorted() // Zero padded names, the text order is the sequence order
+              .toList();
+    }
+  }
+
+  /**
+   * Utility method to get the sequence of the first record of a segment from its name
+   * @param segment Segment file
+   * @return the sequence of its first record
+   */
+  private static long firstSequence(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(name.substring(0, name.indexOf('.')));
+  }
+
+  /**
+   * Utility method to go through the valid records of a segment, up to the first empty or damaged one
+   * @param buffer Content of the segment
+   * @param firstSequence Sequence of the first record of the segment
+   * @param maxSequence Last sequence to read
+   * @param consumer Called with each record, null to only find the end
+   * @return where the scan ended
+   */
+  private static Scan scan(ByteBuffer buffer, long firstSequence, long maxSequence, RecordConsumer consumer) {
+    CRC32 checksum = new CRC32();
+    int position = 0;
+    long sequence = firstSequence;
+    while (sequence <= maxSequence && position + HEADER_SIZE <= buffer.limit()) {
+      int length = buffer.getInt(position);
+      if (length <= 0 || length > buffer.limit() - position - HEADER_SIZE
+              || buffer.getLong(position + 8) != sequence) {
+        break;
+      }
+      checksum.reset();
+      checksum.update(buffer.slice(position + 8, 8 + length));
+      if ((int) checksum.getValue() != buffer.getInt(position + 4)) {
+        break;
+      }
+      if (consumer != null && !consumer.accept(sequence, buffer.slice(position + HEADER_SIZE, length))) {
+        return new Scan(position, sequence, true);
+      }
+      position += HEADER_SIZE + length;
+      sequence++;
+    }
+    return new Scan(position, sequence, false);
+  }
+
+}
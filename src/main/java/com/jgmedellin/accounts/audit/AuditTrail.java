@@ -0,0 +1,238 @@
+package com.jgmedellin.accounts.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.jgmedellin.accounts.concurrency.BoundedMpscQueue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+/**
+ * Records the committed changes of customers and accounts without slowing down the requests: record() only puts the
+ * event in a bounded lock-free queue (or drops it if the queue is full) and a background writer drains the queue in
+ * batches into the AuditSegmentLog, with one flush per batch (group commit).
+ * The writer is stopped after the web server, so the events of the last requests are written before the shutdown.
+ * Published meters: accounts.audit.events (counter, outcome written, dropped or failed), accounts.audit.queue.size
+ * (gauge) and accounts.audit.batch.size (distribution summary).
+ */
+@Component
+@Slf4j
+public class AuditTrail implements SmartLifecycle {
+
+  private final AuditProperties properties;
+
+  private final ObjectMapper objectMapper;
+
+  private final AuditorAware<String> auditorAware;
+
+  private final BoundedMpscQueue<AuditEvent> queue;
+
+  private final Counter written;
+
+  private final Counter dropped;
+
+  private final Counter failed;
+
+  private final DistributionSummary batchSizes;
+
+  private volatile AuditSegmentLog auditLog;
+
+  private volatile boolean running;
+
+  private volatile boolean closed; // No writer anymore, the new events are dropped
+
+  private Thread writer;
+
+  public AuditTrail(AuditProperties properties, ObjectMapper objectMapper, AuditorAware<String> auditorAware,
+                    MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.objectMapper = objectMapper;
+    this.auditorAware = auditorAware;
+    this.queue = new BoundedMpscQueue<>(properties.queueCapacity());
+    this.written = outcomeCounter("written", meterRegistry);
+    this.dropped = outcomeCounter("dropped", meterRegistry);
+    this.failed = outcomeCounter("failed", meterRegistry);
+    this.batchSizes = DistributionSummary.builder("accounts.audit.batch.size")
+            .description("Audit events written per flush of the audit log")
+            .register(meterRegistry);
+    Gauge.builder("accounts.audit.queue.size", queue, BoundedMpscQueue::size)
+            .description("Audit events waiting to be written")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Queues a change of the current auditor to be written, never blocks
+   * @param entity Entity that changed
+   * @param entityId Id of the changed row
+   * @param operation Kind of change
+   * @param changes Changed fields
+   * @return true if the event was queued, false if the audit is disabled or the event was dropped
+   */
+  public boolean record(String entity, Object entityId, AuditEvent.Operation operation,
+                        List<AuditEvent.FieldChange> changes) {
+    if (!properties.enabled()) {
+      return false;
+    }
+    AuditEvent event = new AuditEvent(0, Instant.now(), entity, String.valueOf(entityId), operation,
+            auditorAware.getCurrentAuditor().orElse(null), changes);
+    if (closed || !queue.offer(event)) {
+      dropped.increment();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Replays the written events from a sequence on, in order
+   * @param fromSequence First sequence to read
+   * @param consumer Called with each event, returns false to stop
+   */
+  public void replay(long fromSequence, Predicate<AuditEvent> consumer) {
+    AuditSegmentLog current = auditLog;
+    if (current == null) {
+      return;
+    }
+    try {
+      current.read(fromSequence, (sequence, payload) -> {
+        try {
+          return consumer.test(objectMapper.readValue(new ByteBufferBackedInputStream(payload), AuditEvent.class));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * @return the sequence of the last written event, 0 if there is none
+   */
+  public long lastSequence() {
+    AuditSegmentLog current = auditLog;
+    return current == null ? 0 : current.flushedSequence();
+  }
+
+  @Override
+  public void start() {
+    if (!properties.enabled()) {
+      return;
+    }
+    try {
+      auditLog = AuditSegmentLog.open(properties.directory(), (int) properties.segmentSize().toBytes(),
+              properties.maxSegments(), properties.fsync());
+    } catch (IOException e) {
+      throw new UncheckedIOException("The audit log can't be opened in " + properties.directory(), e);
+    }
+    running = true;
+    writer = new Thread(this::writeLoop, "audit-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    LockSupport.unpark(writer);
+    try {
+      writer.join(properties.shutdownTimeout().toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (writer.isAlive()) {
+      log.warn("The audit writer didn't finish in {}, {} events may be lost", properties.shutdownTimeout(),
+              queue.size());
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return SmartLifecycle.DEFAULT_PHASE - 4096; // Stopped after the web server (DEFAULT_PHASE - 1024 and - 2048)
+  }
+
+  /**
+   * Utility method run by the writer thread: drains the queue in batches until the audit trail is stopped and the
+   * queue is empty, then closes the log
+   */
+  private void writeLoop() {
+    List<AuditEvent> batch = new ArrayList<>(properties.batchSize());
+    long waitNanos = properties.flushInterval().toNanos();
+    try {
+      while (true) {
+        boolean stopping = !running; // Read before draining, so the events queued before stop() are written
+        if (queue.drain(batch::add, properties.batchSize()) > 0) {
+          write(batch);
+          batch.clear();
+          continue;
+        }
+        if (stopping) {
+          break;
+        }
+        LockSupport.parkNanos(this, waitNanos);
+      }
+    } finally {
+      closed = true;
+      try {
+        auditLog.close();
+      } catch (IOException e) {
+        log.error("The audit log was not closed properly", e);
+      }
+    }
+  }
+
+  /**
+   * Utility method to append a batch of events to the log and flush them together
+   * @param batch Events to write
+   */
+  private void write(List<AuditEvent> batch) {
+    int appended = 0;
+    for (AuditEvent event : batch) {
+      try {
+        auditLog.append(objectMapper.writeValueAsBytes(event.withSequence(auditLog.nextSequence())));
+        appended++;
+      } catch (IOException | RuntimeException e) {
+        failed.increment();
+        log.error("Audit event of {} {} not written", event.entity(), event.entityId(), e);
+      }
+    }
+    try {
+      auditLog.flush();
+      written.increment(appended);
+      batchSizes.record(appended);
+    } catch (RuntimeException e) {
+      failed.increment(appended);
+      log.error("Audit log flush failed", e);
+    }
+  }
+
+  /**
+   * Utility method to register the counter of an outcome of the events
+   * @param outcome written, dropped or failed
+   * @param meterRegistry Registry of the counter
+   * @return the counter
+   */
+  private static Counter outcomeCounter(String outcome, MeterRegistry meterRegistry) {
+    return Counter.builder("accounts.audit.events")
+            .description("Audit events by outcome")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+  }
+
+}
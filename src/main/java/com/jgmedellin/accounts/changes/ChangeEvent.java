@@ -0,0 +1,31 @@
+package com.jgmedellin.accounts.changes;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.time.Instant;
+
+/**
+ * A committed change of a customer and its account, published in the change stream.
+ * @param id Sequence of the event in the feed of this instance, the end of its SSE id "epoch-sequence" (send the SSE
+ *           id back as Last-Event-ID to resume)
+ * @param type CREATED, UPDATED or DELETED
+ * @param customerId Id of the customer
+ * @param mobileNumber Mobile number of the customer after the change
+ * @param previousMobileNumber Mobile number before the change when an update changed it, null otherwise
+ * @param timestamp When the change was committed
+ */
+@Schema(name = "ChangeEvent", description = "Schema to hold a committed change of a customer and its account")
+public record ChangeEvent(long id, Type type, Long customerId, String mobileNumber, String previousMobileNumber,
+                          Instant timestamp) {
+
+  public enum Type {
+    CREATED, UPDATED, DELETED;
+
+    /**
+     * @return the SSE event name of the type (created, updated or deleted)
+     */
+    public String eventName() {
+      return name().toLowerCase();
+    }
+  }
+
+}
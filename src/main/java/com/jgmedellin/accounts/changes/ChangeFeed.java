@@ -0,0 +1,296 @@
+package com.jgmedellin.accounts.changes;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Change stream of the customers and accounts: the service publishes each committed change in a ChangeRingBuffer and
+ * a dispatcher thread hands the subscribers with pending events to a small pool of sender threads, which write them
+ * to the SSE connections in batches. Publishing never waits for the subscribers: a slow subscriber lags behind with
+ * its own cursor and is dropped (with a "lagged" event) when its next event is overwritten.
+ * The stream only carries the changes committed by this instance. The SSE ids are "epoch-sequence", with a random
+ * epoch per feed: a Last-Event-ID of another instance (or of a previous run of this one) can't say which changes
+ * were missed, so it gets a "lagged" event instead of silently skipping them.
+ * Published meters: accounts.changes.published and accounts.changes.dropped (counters), accounts.changes.subscribers
+ * (gauge).
+ */
+@Component
+@Slf4j
+public class ChangeFeed implements SmartLifecycle {
+
+  private final ChangeFeedProperties properties;
+
+  private final ObjectMapper objectMapper;
+
+  private final ChangeRingBuffer ring;
+
+  private final String epoch; // Prefix of the SSE ids of this feed
+
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+  private final ExecutorService senders;
+
+  private final long heartbeatNanos;
+
+  private final Counter published;
+
+  private final Counter dropped;
+
+  private volatile boolean running;
+
+  private volatile Thread dispatcher;
+
+  public ChangeFeed(ChangeFeedProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.objectMapper = objectMapper;
+    this.ring = new ChangeRingBuffer(properties.bufferSize(), 1);
+    this.epoch = HexFormat.of().toHexDigits(new SecureRandom().nextLong());
+    AtomicInteger threadCount = new AtomicInteger();
+    this.senders = Executors.newFixedThreadPool(properties.senderThreads(), runnable -> {
+      Thread thread = new Thread(runnable, "change-feed-sender-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.heartbeatNanos = properties.heartbeatInterval().toNanos();
+    this.published = Counter.builder("accounts.changes.published")
+            .description("Changes published in the change stream")
+            .register(meterRegistry);
+    this.dropped = Counter.builder("accounts.changes.dropped")
+            .description("Change stream subscribers dropped because they fell too far behind")
+            .register(meterRegistry);
+    Gauge.builder("accounts.changes.subscribers", subscribers, Set::size)
+            .description("Open change streams")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Publishes a committed change to the subscribers, never blocks
+   * @param type Kind of change
+   * @param customerId Id of the customer
+   * @param mobileNumber Mobile number of the customer after the change
+   * @param previousMobileNumber Mobile number before the change if it changed, null otherwise
+   */
+  public void publish(ChangeEvent.Type type, Long customerId, String mobileNumber, String previousMobileNumber) {
+    Instant timestamp = Instant.now();
+    ring.publish(id -> {
+      ChangeEvent event = new ChangeEvent(id, type, customerId, mobileNumber, previousMobileNumber, timestamp);
+      try {
+        return new ChangeRingBuffer.Entry(event, objectMapper.writeValueAsString(event));
+      } catch (JsonProcessingException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    published.increment();
+    LockSupport.unpark(dispatcher);
+  }
+
+  /**
+   * Opens a change stream
+   * @param lastEventId SSE id of the last event received before a reconnection, null to get only the new changes
+   * @return the stream, or null if there are too many subscribers
+   */
+  public SseEmitter subscribe(String lastEventId) {
+    if (!running || subscribers.size() >= properties.maxSubscribers()) {
+      return null;
+    }
+    SseEmitter emitter = new SseEmitter(properties.streamTimeout().toMillis());
+    long nextId = ring.lastId() + 1;
+    if (lastEventId != null) {
+      long lastId = sequenceOf(lastEventId);
+      // Resume after the last event of this feed, an id of another feed is older than the ring (lagged)
+      nextId = lastId < 0 ? 0 : Math.min(lastId + 1, nextId);
+    }
+    Subscriber subscriber = new Subscriber(emitter, nextId);
+    emitter.onCompletion(() -> subscribers.remove(subscriber));
+    emitter.onTimeout(() -> subscribers.remove(subscriber));
+    emitter.onError(error -> subscribers.remove(subscriber));
+    subscribers.add(subscriber);
+    subscriber.schedule(); // Sends the missed events right away on a resume
+    return emitter;
+  }
+
+  /**
+   * Utility method to read the sequence of an SSE id of this feed
+   * @param sseId SSE id sent by the client
+   * @return the sequence, -1 if the id belongs to another feed or is not valid
+   */
+  private long sequenceOf(String sseId) {
+    int separator = sseId.indexOf('-');
+    if (separator < 0 || !sseId.substring(0, separator).equals(epoch)) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(sseId.substring(separator + 1));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public void start() {
+    running = true;
+    dispatcher = new Thread(this::dispatchLoop, "change-feed-dispatcher");
+    dispatcher.setDaemon(true);
+    dispatcher.start();
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    LockSupport.unpark(dispatcher);
+    for (Subscriber subscriber : subscribers) {
+      subscriber.emitter.complete(); // The clients reconnect, another instance answers their Last-Event-ID with lagged
+    }
+    subscribers.clear();
+    senders.shutdown();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Utility method run by the dispatcher thread: schedules the subscribers that have events to send or need a
+   * heartbeat, then sleeps until the next publish
+   */
+  private void dispatchLoop() {
+    long maxWaitNanos = Math.min(heartbeatNanos, 1_000_000_000L);
+    while (running) {
+      long lastId = ring.lastId();
+      long now = System.nanoTime();
+      for (Subscriber subscriber : subscribers) {
+        if (subscriber.nextId <= lastId || now - subscriber.lastSentNanos >= heartbeatNanos) {
+          subscriber.schedule();
+        }
+      }
+      LockSupport.parkNanos(this, maxWaitNanos); // publish() unparks the dispatcher
+    }
+  }
+
+  /**
+   * An open stream with its own cursor in the ring, written by at most one sender thread at a time
+   */
+  private final class Subscriber {
+
+    private final SseEmitter emitter;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile long nextId; // Next event to send
+
+    private volatile long lastSentNanos = System.nanoTime();
+
+    private Subscriber(SseEmitter emitter, long nextId) {
+      this.emitter = emitter;
+      this.nextId = nextId;
+    }
+
+    /**
+     * Hands the subscriber to a sender thread, unless it is already scheduled
+     */
+    private void schedule() {
+      if (!scheduled.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        senders.execute(this::send);
+      } catch (RejectedExecutionException e) {
+        scheduled.set(false); // Shutting down
+      }
+    }
+
+    /**
+     * Writes the pending events in batches (or a heartbeat if there are none and the stream is idle)
+     */
+    private void send() {
+      boolean progress = false;
+      try {
+        progress = sendPending();
+      } catch (IOException | IllegalStateException e) {
+        subscribers.remove(this); // The client is gone
+      } finally {
+        scheduled.set(false);
+      }
+      // Events published while this thread was writing, the dispatcher skipped the subscriber as it was scheduled
+      if (progress && nextId <= ring.lastId() && subscribers.contains(this)) {
+        schedule();
+      }
+    }
+
+    /**
+     * @return true if events were sent
+     * @throws IOException if the client is gone
+     */
+    private boolean sendPending() throws IOException {
+      boolean progress = false;
+      while (true) {
+        Set<ResponseBodyEmitter.DataWithMediaType> batch = new LinkedHashSet<>();
+        long id = nextId;
+        while (id - nextId < properties.maxBatch()) {
+          ChangeRingBuffer.Entry entry = ring.slot(id);
+          if (id < ring.oldestId() || (entry != null && entry.id() > id)) {
+            lagged();
+            return progress;
+          }
+          if (entry == null || entry.id() < id) {
+            break; // Not published yet
+          }
+          batch.addAll(SseEmitter.event()
+                  .id(epoch + "-" + id)
+                  .name(entry.event().type().eventName())
+                  .data(entry.data(), MediaType.APPLICATION_JSON) // The JSON rendered once by publish()
+                  .build());
+          id++;
+        }
+        if (batch.isEmpty()) {
+          if (System.nanoTime() - lastSentNanos >= heartbeatNanos) {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+            lastSentNanos = System.nanoTime();
+          }
+          return progress;
+        }
+        emitter.send(batch); // One write and flush for the whole batch
+        nextId = id;
+        lastSentNanos = System.nanoTime();
+        progress = true;
+      }
+    }
+
+    /**
+     * Drops the subscriber, its next event was overwritten
+     * @throws IOException if the client is gone
+     */
+    private void lagged() throws IOException {
+      dropped.increment();
+      subscribers.remove(this);
+      emitter.send(SseEmitter.event().name("lagged").data(AccountsConstants.MESSAGE_CHANGES_LAGGED));
+      emitter.complete();
+    }
+  }
+
+}
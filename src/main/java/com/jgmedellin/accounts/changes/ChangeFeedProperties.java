@@ -0,0 +1,17 @@
+package com.jgmedellin.accounts.changes;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.time.Duration;
+
+/**
+ * Settings of the change stream (GET /api/changes/stream), mapped from accounts.changes.*.
+ * @param bufferSize Events kept for the subscribers that lag behind or resume with Last-Event-ID
+ * @param maxSubscribers Open streams allowed, the new subscribers get a 503 above this number
+ * @param senderThreads Threads writing the events to the subscribers, a slow client holds one of them while it writes
+ * @param maxBatch Max events written to a subscriber in a single flush
+ * @param heartbeatInterval Idle time after which a comment is sent to keep the connection open
+ * @param streamTimeout Time after which a stream is closed, the client reconnects with Last-Event-ID
+ */
+@ConfigurationProperties(prefix = "accounts.changes")
+public record ChangeFeedProperties(int bufferSize, int maxSubscribers, int senderThreads, int maxBatch,
+                                   Duration heartbeatInterval, Duration streamTimeout) { }
@@ -0,0 +1,89 @@
+package com.jgmedellin.accounts.changes;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Preallocated ring of the last published changes, shared by every subscriber of the change stream: each subscriber
+ * only keeps the id of the next event it has to send, so an event (and its JSON) is stored once whatever the number
+ * of subscribers. The publishers claim the ids with an atomic increment and never wait for the subscribers, a
+ * subscriber that falls more than the capacity behind finds its next event overwritten.
+ */
+public class ChangeRingBuffer {
+
+  /**
+   * @param event Published event
+   * @param data JSON of the event, rendered once for all the subscribers
+   */
+  public record Entry(ChangeEvent event, String data) {
+
+    public long id() {
+      return event.id();
+    }
+  }
+
+  private final AtomicReferenceArray<Entry> entries;
+
+  private final int mask;
+
+  private final long firstId;
+
+  private final AtomicLong nextId;
+
+  /**
+   * @param capacity Number of events kept, rounded up to a power of two
+   * @param firstId Id of the first published event
+   */
+  public ChangeRingBuffer(int capacity, long firstId) {
+    if (capacity < 1 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+    this.entries = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+    this.firstId = firstId;
+    this.nextId = new AtomicLong(firstId);
+  }
+
+  /**
+   * Publishes an event in the slot of the next id, overwriting the oldest event
+   * @param factory Creates the entry of the claimed id
+   * @return the published entry
+   */
+  public Entry publish(LongFunction<Entry> factory) {
+    long id = nextId.getAndIncrement();
+    Entry entry = factory.apply(id);
+    entries.set((int) (id & mask), entry);
+    return entry;
+  }
+
+  /**
+   * Reads the slot of an id, the caller compares the id of the entry with the one it asked for: a lower id (or null)
+   * means the event is not published yet and a higher one that it was overwritten
+   * @param id Id of the event
+   * @return the entry in the slot of the id, null if the slot was never used
+   */
+  public Entry slot(long id) {
+    return entries.get((int) (id & mask));
+  }
+
+  /**
+   * @return the id of the last claimed event, firstId - 1 if there is none
+   */
+  public long lastId() {
+    return nextId.get() - 1;
+  }
+
+  /**
+   * @return the id of the oldest event that can still be read
+   */
+  public long oldestId() {
+    return Math.max(firstId, nextId.get() - entries.length());
+  }
+
+  public int capacity() {
+    return entries.length();
+  }
+
+}
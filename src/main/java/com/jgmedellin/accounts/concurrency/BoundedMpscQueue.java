@@ -0,0 +1,121 @@
+package com.jgmedellin.accounts.concurrency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue with many producers and a single consumer (array ring with a sequence number per slot).
+ * The producers claim a slot with a CAS on the tail and never wait: offer() returns false right away when the queue
+ * is full. Only one thread at a time may call poll() or drain().
+ * @param <E> type of the elements
+ */
+public class BoundedMpscQueue<E> {
+
+  private final int capacity;
+
+  private final int mask;
+
+  private final AtomicReferenceArray<E> elements;
+
+  // Sequence of each slot: equal to the tail position when the slot is free, to position + 1 when it holds an element
+  private final AtomicLongArray sequences;
+
+  private final AtomicLong tail = new AtomicLong(); // Next position to claim by the producers
+
+  private volatile long head; // Next position to read, only written by the consumer
+
+  /**
+   * @param capacity Max number of elements in the queue, rounded up to a power of two
+   */
+  public BoundedMpscQueue(int capacity) {
+    if (capacity < 1 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+    }
+    this.capacity = roundUp(capacity);
+    this.mask = this.capacity - 1;
+    this.elements = new AtomicReferenceArray<>(this.capacity);
+    this.sequences = new AtomicLongArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds an element at the tail of the queue without blocking
+   * @param element Element to add
+   * @return true if it was added, false if the queue is full
+   */
+  public boolean offer(E element) {
+    while (true) {
+      long position = tail.get();
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference < 0) {
+        return false; // The slot still holds the element of the previous lap, the queue is full
+      }
+      if (difference == 0 && tail.compareAndSet(position, position + 1)) {
+        elements.set(index, element);
+        sequences.set(index, position + 1); // Publishes the element to the consumer
+        return true;
+      }
+      // Another producer claimed the position first, try with the new tail
+    }
+  }
+
+  /**
+   * Removes the element at the head of the queue (single consumer)
+   * @return the element, or null if the queue is empty or the next element is not published yet
+   */
+  public E poll() {
+    long position = head;
+    int index = (int) (position & mask);
+    if (sequences.get(index) != position + 1) {
+      return null;
+    }
+    E element = elements.get(index);
+    elements.set(index, null);
+    sequences.set(index, position + capacity); // Frees the slot for the next lap of the producers
+    head = position + 1;
+    return element;
+  }
+
+  /**
+   * Removes up to maxElements from the head of the queue (single consumer)
+   * @param consumer Called with each element, in queue order
+   * @param maxElements Max number of elements to remove
+   * @return the number of elements removed
+   */
+  public int drain(Consumer<E> consumer, int maxElements) {
+    int drained = 0;
+    E element;
+    while (drained < maxElements && (element = poll()) != null) {
+      consumer.accept(element);
+      drained++;
+    }
+    return drained;
+  }
+
+  /**
+   * @return the number of elements in the queue (approximate while the producers are adding elements)
+   */
+  public int size() {
+    return (int) Math.max(0, Math.min(capacity, tail.get() - head));
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Utility method to round the capacity up to a power of two, so the slot of a position is a mask away
+   * @param capacity Requested capacity
+   * @return the smallest power of two greater than or equal to the capacity
+   */
+  private static int roundUp(int capacity) {
+    int highestOneBit = Integer.highestOneBit(capacity);
+    return highestOneBit == capacity ? capacity : highestOneBit << 1;
+  }
+
+}
@@ -0,0 +1,72 @@
+package com.jgmedellin.accounts.concurrency;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader and the callers that arrive while it
+ * is still running wait for it and get the same result (or exception) instead of running their own load.
+ * The in-flight loads are kept in a lock-free map and removed as soon as they complete, so nothing is cached.
+ * @param <K> type of the key
+ * @param <V> type of the loaded value
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Runs the loader for the key, or joins the load already running for the same key.
+   * @param key Key of the load
+   * @param loader Function that loads the value, only called by the first caller
+   * @return the loaded value
+   */
+  public V execute(K key, Supplier<V> loader) {
+    CompletableFuture<V> flight = new CompletableFuture<>();
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+    if (running != null) {
+      return await(running);
+    }
+    try {
+      V value = loader.get();
+      flight.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * Detaches the load running for the key, if any: the callers already waiting still get its result, the next callers
+   * start a new load. Used when the value changed, the running load may have read it before the change.
+   * @param key Key of the load
+   */
+  public void forget(K key) {
+    inFlight.remove(key);
+  }
+
+  /**
+   * Utility method to wait for a load of another caller and rethrow its original exception
+   * @param flight the running load
+   * @return the loaded value
+   */
+  private V await(CompletableFuture<V> flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (e.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw e;
+    }
+  }
+
+}
@@ -12,10 +12,38 @@ public final class AccountsConstants {
   public static final String MESSAGE_201 = "Account created successfully";
   public static final String STATUS_200 = "200";
   public static final String MESSAGE_200 = "Request processed successfully";
+  public static final String STATUS_400 = "400";
+  public static final String MESSAGE_400_DUPLICATE = "Customer already registered with the mobile number";
+  public static final String MESSAGE_400_NULL = "Customer details can not be null";
+  public static final String MESSAGE_400_MOBILE_NUMBER_SHARD =
+          "The mobile number belongs to another shard. Delete the customer and create it with the new mobile number";
+  public static final String MESSAGE_400_IDEMPOTENCY_KEY = "The Idempotency-Key must have between 1 and 255 characters";
+  public static final String MESSAGE_412 = "The account was changed since it was fetched. Please fetch it and try again";
+  public static final String MESSAGE_409 = "The account was changed by another request. Please fetch it and try again";
+  public static final String MESSAGE_413 = "The request body is too large";
+  public static final String MESSAGE_422_IDEMPOTENCY =
+          "The Idempotency-Key was already used for a different request. Use a new key for each request";
   public static final String STATUS_417 = "417";
   public static final String MESSAGE_417_UPDATE= "Update operation failed. Please try again or contact Dev team";
   public static final String MESSAGE_417_DELETE= "Delete operation failed. Please try again or contact Dev team";
   //public static final String STATUS_500 = "500";
   public static final String  MESSAGE_500 = "An error occurred. Please try again or contact the Dev team";
+  public static final String MESSAGE_503 = "The service is overloaded. Please try again later";
+  public static final String MESSAGE_CHANGES_LAGGED =
+          "The change stream can't resume from Last-Event-ID (too far behind, or the id of another instance). " +
+          "Fetch the accounts again and reconnect without Last-Event-ID";
+
+  public static final int LIST_PAGE_DEFAULT_SIZE = 50;
+  public static final int LIST_PAGE_MAX_SIZE = 1000;
+  public static final String CSV_VALUE = "text/csv";
+  public static final String NDJSON_VALUE = "application/x-ndjson"; // Newline delimited JSON media type
+  public static final String ACCOUNTS_CACHE = "accounts"; // Cache of CustomerDto by mobile number (see spring.cache)
+
+  public static final int BATCH_MAX_SIZE = 5000; // Max number of items accepted by the batch endpoints
+  public static final int FETCH_BATCH_MAX_SIZE = 1000; // Max number of mobile numbers accepted by the batch fetch
+  public static final int EXPORT_PAGE_SIZE = 500; // Rows read (and kept in memory) at a time by the export
+  public static final int IN_CLAUSE_MAX_SIZE = 1000; // Max number of values sent in a single SQL IN (...) clause
+  public static final int CREATE_BATCH_ATTEMPTS = 3; // Tries of a batch create chunk that hits a concurrent duplicate
+  public static final int STARTUP_STEPS_CAPACITY = 10000; // Startup steps recorded by main(), see StartupReport
 
 }
\ No newline at end of file
@@ -2,10 +2,21 @@ package com.jgmedellin.accounts.controller;
 
 import com.jgmedellin.accounts.constants.AccountsConstants;
 import com.jgmedellin.accounts.dto.AccountsContactInfoDto;
+import com.jgmedellin.accounts.dto.AccountsPageDto;
+import com.jgmedellin.accounts.dto.AccountsPatchDto;
+import com.jgmedellin.accounts.dto.CreateAccountResultDto;
 import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.dto.DeleteAccountsResultDto;
 import com.jgmedellin.accounts.dto.ErrorResponseDto;
+import com.jgmedellin.accounts.dto.FetchAccountsResultDto;
+import com.jgmedellin.accounts.dto.ImportResultDto;
 import com.jgmedellin.accounts.dto.ResponseDto;
+import com.jgmedellin.accounts.etag.AccountETag;
+import com.jgmedellin.accounts.importer.ImportFormat;
+import com.jgmedellin.accounts.service.IAccountsImportService;
 import com.jgmedellin.accounts.service.IAccountsService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -13,15 +24,27 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
 
 @Tag(
         name = "Accounts API",
@@ -34,9 +57,12 @@ public class AccountsController {
 
   private final IAccountsService iAccountsService;
 
+  private final IAccountsImportService iAccountsImportService;
+
   @Autowired
-  public AccountsController(IAccountsService iAccountsService) {
+  public AccountsController(IAccountsService iAccountsService, IAccountsImportService iAccountsImportService) {
     this.iAccountsService = iAccountsService;
+    this.iAccountsImportService = iAccountsImportService;
   }
 
   @Value("${build.version}")   // Injecting an env variable from application.properties (Approach 1)
@@ -48,6 +74,9 @@ public class AccountsController {
   @Autowired
   private AccountsContactInfoDto accountsContactInfoDto; // Injecting the AccountsContactInfoDto bean (Approach 3)
 
+  @Autowired
+  private ObjectMapper objectMapper; // Same JSON configuration as the rest of the responses
+
   @Operation(summary = "Create a new account", description = "Endpoint to create a new account / customer in EazyBank")
   @ApiResponses({
           @ApiResponse(responseCode = "201", description = "Account created successfully"),
@@ -65,9 +94,64 @@ public class AccountsController {
             .body(new ResponseDto(AccountsConstants.STATUS_201, AccountsConstants.MESSAGE_201));
   }
 
-  @Operation(summary = "Fetch account", description = "Endpoint to fetch account and customer details by mobile number")
+  @Operation(
+          summary = "Create accounts in batch",
+          description = "Endpoint to create up to " + AccountsConstants.BATCH_MAX_SIZE + " accounts / customers at once. " +
+                  "Every item gets its own result, invalid or duplicated customers don't fail the whole batch."
+  )
+  @ApiResponses({
+          @ApiResponse(responseCode = "200", description = "Batch processed, see the result of each item"),
+          @ApiResponse(
+                  responseCode = "500",
+                  description = AccountsConstants.MESSAGE_500,
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          )
+  })
+  @PostMapping("/create/batch")
+  public ResponseEntity<List<CreateAccountResultDto>> createAccounts(
+          @RequestBody @NotEmpty(message = "Customers list can not be null or empty")
+          @Size(max = AccountsConstants.BATCH_MAX_SIZE, message = "Too many customers in a single batch")
+          List<CustomerDto> customerDtos) {
+    List<CreateAccountResultDto> results = iAccountsService.createAccounts(customerDtos);
+    return ResponseEntity.status(HttpStatus.OK).body(results);
+  }
+
+  @Operation(
+          summary = "Import accounts from a file",
+          description = "Endpoint to create an account for every customer of a CSV (text/csv, with a name,email," +
+                  "mobileNumber header) or NDJSON (application/x-ndjson) file. The file is streamed and committed in " +
+                  "chunks, rows that fail are reported without failing the import, and a stopped import can be " +
+                  "resumed sending the lastCommittedRow of its result as resumeAfterRow."
+  )
+  @ApiResponses({
+          @ApiResponse(responseCode = "200", description = "File imported, see the rows that failed"),
+          @ApiResponse(
+                  responseCode = "400",
+                  description = "HTTP Status Bad Request",
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          ),
+          @ApiResponse(responseCode = "500", description = "The import stopped, resume it after the lastCommittedRow")
+  })
+  @PostMapping(value = "/import", consumes = {AccountsConstants.CSV_VALUE, AccountsConstants.NDJSON_VALUE})
+  public ResponseEntity<ImportResultDto> importAccounts(
+          @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+          @RequestParam(defaultValue = "0") @Min(value = 0, message = "Resume row can not be negative")
+          long resumeAfterRow,
+          InputStream body) { // The raw request body, it is never loaded in memory as a whole
+    ImportResultDto result = iAccountsImportService.importCustomers(body, ImportFormat.fromContentType(contentType),
+            resumeAfterRow);
+    HttpStatus status = result.isCompleted() ? HttpStatus.OK : HttpStatus.INTERNAL_SERVER_ERROR;
+    return ResponseEntity.status(status).body(result);
+  }
+
+  @Operation(
+          summary = "Fetch account",
+          description = "Endpoint to fetch account and customer details by mobile number. The response has an ETag, " +
+                  "send it back in If-None-Match to get a 304 without body while the account doesn't change."
+  )
   @ApiResponses({
           @ApiResponse(responseCode = "200", description = "HTTP Status OK"),
+          @ApiResponse(responseCode = "304", description = "HTTP Status Not Modified"),
           @ApiResponse(
                   responseCode = "500",
                   description = AccountsConstants.MESSAGE_500,
@@ -76,14 +160,126 @@ public class AccountsController {
   })
   @GetMapping("/fetch")
   public ResponseEntity<CustomerDto> fetchAccountDetails(@RequestParam @Pattern(
-          regexp = "^[0-9]{10}$", message = "Mobile Number should be 10 digits") String mobileNumber) {
+          regexp = "^[0-9]{10}$", message = "Mobile Number should be 10 digits") String mobileNumber,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    if (ifNoneMatch != null) {
+      // The client has a copy: compare it with the current versions before loading and serializing the account
+      AccountETag currentETag = iAccountsService.fetchAccountETag(mobileNumber);
+      if (currentETag.matchesAny(ifNoneMatch)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(currentETag.value()).build();
+      }
+    }
     CustomerDto customerDto = iAccountsService.fetchAccount(mobileNumber);
-    return ResponseEntity.status(HttpStatus.OK).body(customerDto);
+    // The ETag comes from the versions of this DTO (it may be cached), so it always describes the body
+    return ResponseEntity.status(HttpStatus.OK).eTag(AccountETag.of(customerDto).value()).body(customerDto);
   }
 
-  @Operation(summary = "Update account details", description = "Endpoint to update account and customer details.")
+  @Operation(
+          summary = "Fetch accounts in batch",
+          description = "Endpoint to fetch the account and customer details of up to " +
+                  AccountsConstants.FETCH_BATCH_MAX_SIZE + " mobile numbers at once. The customers are returned in " +
+                  "the order of the request, the mobile numbers without a customer are reported in notFound."
+  )
+  @ApiResponses({
+          @ApiResponse(responseCode = "200", description = "HTTP Status OK"),
+          @ApiResponse(
+                  responseCode = "400",
+                  description = "HTTP Status Bad Request",
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          ),
+          @ApiResponse(
+                  responseCode = "500",
+                  description = AccountsConstants.MESSAGE_500,
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          )
+  })
+  @PostMapping("/fetch/batch")
+  public ResponseEntity<FetchAccountsResultDto> fetchAccountsDetails(
+          @RequestBody @NotEmpty(message = "Mobile numbers list can not be null or empty")
+          @Size(max = AccountsConstants.FETCH_BATCH_MAX_SIZE, message = "Too many mobile numbers in a single batch")
+          List<@Pattern(regexp = "^[0-9]{10}$", message = "Mobile Number should be 10 digits") String> mobileNumbers) {
+    FetchAccountsResultDto result = iAccountsService.fetchAccounts(mobileNumbers);
+    return ResponseEntity.status(HttpStatus.OK).body(result);
+  }
+
+  @Operation(
+          summary = "List accounts",
+          description = "Endpoint to list the accounts with their customers, ordered by customer id and account number. " +
+                  "Send the nextPageToken of a page as pageToken to get the next one, with the same filters."
+  )
+  @ApiResponses({
+          @ApiResponse(responseCode = "200", description = "HTTP Status OK"),
+          @ApiResponse(
+                  responseCode = "400",
+                  description = "HTTP Status Bad Request",
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          ),
+          @ApiResponse(
+                  responseCode = "500",
+                  description = AccountsConstants.MESSAGE_500,
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          )
+  })
+  @GetMapping("/accounts")
+  public ResponseEntity<AccountsPageDto> listAccounts(
+          @RequestParam(required = false) String accountType,
+          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate createdFrom,
+          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate createdTo,
+          @RequestParam(required = false) String pageToken,
+          @RequestParam(defaultValue = "" + AccountsConstants.LIST_PAGE_DEFAULT_SIZE)
+          @Min(value = 1, message = "Page size must be greater than 0")
+          @Max(value = AccountsConstants.LIST_PAGE_MAX_SIZE, message = "Page size is too big") int size) {
+    AccountsPageDto page = iAccountsService.listAccounts(accountType, createdFrom, createdTo, pageToken, size);
+    return ResponseEntity.status(HttpStatus.OK).body(page);
+  }
+
+  @Operation(
+          summary = "Export all accounts",
+          description = "Endpoint to stream every customer with its account as NDJSON (one Customer JSON per line). " +
+                  "The rows are read and written in pages, so the memory use doesn't depend on the number of customers."
+  )
+  @ApiResponses({
+          @ApiResponse(responseCode = "200", description = "HTTP Status OK"),
+          @ApiResponse(
+                  responseCode = "500",
+                  description = AccountsConstants.MESSAGE_500,
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          )
+  })
+  @GetMapping(value = "/export", produces = AccountsConstants.NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportAccounts() {
+    // The body is written by an async thread, so the request thread is released while the export runs
+    StreamingResponseBody body = outputStream -> {
+      try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+        generator.setRootValueSeparator(null); // One JSON per line, the new lines are written below
+        iAccountsService.exportAccounts(page -> {
+          try {
+            for (CustomerDto customerDto : page) {
+              objectMapper.writeValue(generator, customerDto);
+              generator.writeRaw('\n');
+            }
+            generator.flush(); // Send every page to the client as soon as it is written
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }
+    };
+    return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.parseMediaType(AccountsConstants.NDJSON_VALUE)).body(body);
+  }
+
+  @Operation(
+          summary = "Update account details",
+          description = "Endpoint to update account and customer details. Send the ETag of the fetch in If-Match to " +
+                  "update only if nobody changed the account since then."
+  )
   @ApiResponses({
           @ApiResponse(responseCode = "200", description = AccountsConstants.MESSAGE_200),
+          @ApiResponse(
+                  responseCode = "412",
+                  description = AccountsConstants.MESSAGE_412,
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          ),
           @ApiResponse(responseCode = "417", description = AccountsConstants.MESSAGE_417_UPDATE),
           @ApiResponse(
                   responseCode = "500",
@@ -92,8 +288,9 @@ public class AccountsController {
           )
   })
   @PutMapping("/update")
-  public ResponseEntity<ResponseDto> updateAccountDetails(@Valid @RequestBody CustomerDto customerDto) {
-    boolean isUpdated = iAccountsService.updateAccount(customerDto);
+  public ResponseEntity<ResponseDto> updateAccountDetails(@Valid @RequestBody CustomerDto customerDto,
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+    boolean isUpdated = iAccountsService.updateAccount(customerDto, AccountETag.parseIfMatch(ifMatch));
     if (isUpdated) {
       return ResponseEntity
               .status(HttpStatus.OK)
@@ -105,6 +302,41 @@ public class AccountsController {
     }
   }
 
+  @Operation(
+          summary = "Patch account details",
+          description = "Endpoint to change only the given account and customer fields. Fails with 409 if the " +
+                  "account or customer is changed by another request at the same time, and with 412 if it was " +
+                  "changed since the fetch that returned the ETag sent in If-Match."
+  )
+  @ApiResponses({
+          @ApiResponse(responseCode = "200", description = AccountsConstants.MESSAGE_200),
+          @ApiResponse(
+                  responseCode = "412",
+                  description = AccountsConstants.MESSAGE_412,
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          ),
+          @ApiResponse(
+                  responseCode = "409",
+                  description = AccountsConstants.MESSAGE_409,
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          ),
+          @ApiResponse(
+                  responseCode = "500",
+                  description = AccountsConstants.MESSAGE_500,
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          )
+  })
+  @PatchMapping("/accounts/{accountNumber}")
+  public ResponseEntity<ResponseDto> patchAccountDetails(@PathVariable Long accountNumber,
+                                                         @Valid @RequestBody AccountsPatchDto accountsPatchDto,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                         String ifMatch) {
+    iAccountsService.patchAccount(accountNumber, accountsPatchDto, AccountETag.parseIfMatch(ifMatch));
+    return ResponseEntity
+            .status(HttpStatus.OK)
+            .body(new ResponseDto(AccountsConstants.STATUS_200, AccountsConstants.MESSAGE_200));
+  }
+
   @Operation(summary = "Delete an account", description = "Endpoint to delete an account and customer by mobile number.")
   @ApiResponses({
           @ApiResponse(responseCode = "200", description = AccountsConstants.MESSAGE_200),
@@ -130,6 +362,28 @@ public class AccountsController {
     }
   }
 
+  @Operation(
+          summary = "Delete accounts in batch",
+          description = "Endpoint to delete the accounts and customers of up to " + AccountsConstants.BATCH_MAX_SIZE +
+                  " mobile numbers at once, reporting the mobile numbers that were not found."
+  )
+  @ApiResponses({
+          @ApiResponse(responseCode = "200", description = "HTTP Status OK"),
+          @ApiResponse(
+                  responseCode = "500",
+                  description = AccountsConstants.MESSAGE_500,
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          )
+  })
+  @DeleteMapping("/delete/batch")
+  public ResponseEntity<DeleteAccountsResultDto> deleteAccounts(
+          @RequestBody @NotEmpty(message = "Mobile numbers list can not be null or empty")
+          @Size(max = AccountsConstants.BATCH_MAX_SIZE, message = "Too many mobile numbers in a single batch")
+          List<@Pattern(regexp = "^[0-9]{10}$", message = "Mobile Number should be 10 digits") String> mobileNumbers) {
+    DeleteAccountsResultDto result = iAccountsService.deleteAccounts(mobileNumbers);
+    return ResponseEntity.status(HttpStatus.OK).body(result);
+  }
+
   @Operation(summary = "Get build information account", description = "Endpoint to check the current API version")
   @ApiResponses({
           @ApiResponse(responseCode = "200", description = "HTTP Status OK"),
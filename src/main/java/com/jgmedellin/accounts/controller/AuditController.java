@@ -0,0 +1,69 @@
+package com.jgmedellin.accounts.controller;
+
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.AuditPageDto;
+import com.jgmedellin.accounts.dto.ErrorResponseDto;
+import com.jgmedellin.accounts.service.IAuditService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@Tag(
+        name = "Audit API",
+        description = "This API allows to read the history of changes of the accounts and customers in EazyBank"
+)
+@RestController
+@RequestMapping(path="/api", produces = {MediaType.APPLICATION_JSON_VALUE})
+@Validated // Perform validation on the request parameters
+public class AuditController {
+
+  private final IAuditService iAuditService;
+
+  public AuditController(IAuditService iAuditService) {
+    this.iAuditService = iAuditService;
+  }
+
+  @Operation(
+          summary = "Read the audit trail",
+          description = "Endpoint to read the committed changes of the customers and accounts with their before/after " +
+                  "values, in commit order. Send the nextSequence of a page as fromSequence to get the next events."
+  )
+  @ApiResponses({
+          @ApiResponse(responseCode = "200", description = "HTTP Status OK"),
+          @ApiResponse(
+                  responseCode = "400",
+                  description = "HTTP Status Bad Request",
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          ),
+          @ApiResponse(
+                  responseCode = "500",
+                  description = AccountsConstants.MESSAGE_500,
+                  content = @Content(schema = @Schema(implementation = ErrorResponseDto.class))
+          )
+  })
+  @GetMapping("/audit")
+  public ResponseEntity<AuditPageDto> findAuditEvents(
+          @RequestParam(defaultValue = "1") @Min(value = 1, message = "Sequence must be greater than 0") long fromSequence,
+          @RequestParam(required = false) String entity,
+          @RequestParam(required = false) String entityId,
+          @RequestParam(defaultValue = "" + AccountsConstants.LIST_PAGE_DEFAULT_SIZE)
+          @Min(value = 1, message = "Limit must be greater than 0")
+          @Max(value = AccountsConstants.LIST_PAGE_MAX_SIZE, message = "Limit is too big") int limit) {
+    AuditPageDto page = iAuditService.findEvents(fromSequence, entity, entityId, limit);
+    return ResponseEntity.status(HttpStatus.OK).body(page);
+  }
+
+}
@@ -0,0 +1,62 @@
+package com.jgmedellin.accounts.controller;
+
+import com.jgmedellin.accounts.changes.ChangeEvent;
+import com.jgmedellin.accounts.changes.ChangeFeed;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Tag(
+        name = "Changes API",
+        description = "This API allows other services to follow the changes of the customers in EazyBank"
+)
+@RestController
+@RequestMapping(path="/api")
+public class ChangesController {
+
+  private final ChangeFeed changeFeed;
+
+  public ChangesController(ChangeFeed changeFeed) {
+    this.changeFeed = changeFeed;
+  }
+
+  @Operation(
+          summary = "Stream the customer changes",
+          description = "Server-Sent Events stream of the committed changes of the customers and their accounts, one " +
+                  "'created', 'updated' or 'deleted' event per change, instead of polling the fetch endpoint. " +
+                  "Only the changes made through this instance are streamed. Reconnect with the Last-Event-ID " +
+                  "header to get the changes missed in between. A 'lagged' event closes the stream when the client " +
+                  "falls too far behind or resumes from another instance, it must fetch the accounts again."
+  )
+  @ApiResponses({
+          @ApiResponse(
+                  responseCode = "200",
+                  description = "HTTP Status OK",
+                  content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                          schema = @Schema(implementation = ChangeEvent.class))
+          ),
+          @ApiResponse(responseCode = "503", description = "Too many open streams, try again later")
+  })
+  @GetMapping(path = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamChanges(
+          @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+    SseEmitter emitter = changeFeed.subscribe(lastEventId);
+    if (emitter == null) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+    }
+    return ResponseEntity.status(HttpStatus.OK).body(emitter);
+  }
+
+}
@@ -1,5 +1,6 @@
 package com.jgmedellin.accounts.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Pattern;
@@ -22,4 +23,7 @@ public class AccountsDto {
   @NotEmpty(message = "Branch address can not be null or empty")
   private String branchAddress;
 
+  @JsonIgnore // Not part of the API, it is the source of the ETag of the fetch endpoint
+  private Long version;
+
 }
\ No newline at end of file
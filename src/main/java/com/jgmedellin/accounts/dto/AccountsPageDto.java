@@ -0,0 +1,17 @@
+package com.jgmedellin.accounts.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Schema(name = "AccountsPage", description = "Schema to hold a page of the accounts listing")
+@Data @AllArgsConstructor
+public class AccountsPageDto {
+
+  @Schema(description = "Customers with their accounts, ordered by customer id and account number")
+  private List<CustomerDto> accounts;
+
+  @Schema(description = "Token to get the next page, null if this is the last page")
+  private String nextPageToken;
+}
@@ -0,0 +1,33 @@
+package com.jgmedellin.accounts.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+@Schema(name = "AccountsPatch", description = "Schema to hold the account and customer fields to change, null fields are left as they are")
+public class AccountsPatchDto {
+
+  @Schema(description = "New name of the customer", example = "John Doe")
+  @Size(min = 3, max = 30, message = "Name must be between 3 and 30 characters")
+  private String name;
+
+  @Schema(description = "New email of the customer", example = "jdoe@email.com")
+  @Email(message = "Email should be valid")
+  private String email;
+
+  @Schema(description = "New mobile number of the customer", example = "1234567899")
+  @Pattern(regexp = "^[0-9]{10}$", message = "Mobile Number should be 10 digits")
+  private String mobileNumber;
+
+  @Schema(description = "New account type", example = "Savings")
+  @Size(min = 1, max = 100, message = "Account type must be between 1 and 100 characters")
+  private String accountType;
+
+  @Schema(description = "New branch address", example = "123 Calle Viva, Mexico")
+  @Size(min = 1, max = 200, message = "Branch address must be between 1 and 200 characters")
+  private String branchAddress;
+
+}
@@ -0,0 +1,18 @@
+package com.jgmedellin.accounts.dto;
+
+import com.jgmedellin.accounts.audit.AuditEvent;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Schema(name = "AuditPage", description = "Schema to hold a page of the audit trail")
+@Data @AllArgsConstructor
+public class AuditPageDto {
+
+  @Schema(description = "Changes of the customers and accounts, in the order they were committed")
+  private List<AuditEvent> events;
+
+  @Schema(description = "Sequence to send as fromSequence to get the next events")
+  private long nextSequence;
+}
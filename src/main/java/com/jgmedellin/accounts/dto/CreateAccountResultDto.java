@@ -0,0 +1,25 @@
+package com.jgmedellin.accounts.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Schema(name = "CreateAccountResult", description = "Schema to hold the result of one item of a batch account creation")
+@Data @AllArgsConstructor
+public class CreateAccountResultDto {
+
+  @Schema(description = "Position of the item in the request", example = "0")
+  private int index;
+
+  @Schema(description = "Mobile number of the customer", example = "1234567899")
+  private String mobileNumber;
+
+  @Schema(description = "Status code of the item", example = "201")
+  private String statusCode;
+
+  @Schema(description = "Status message of the item")
+  private String statusMsg;
+
+  @Schema(description = "Account number of the new account, null if the item failed", example = "1000000100")
+  private Long accountNumber;
+}
@@ -1,5 +1,6 @@
 package com.jgmedellin.accounts.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotEmpty;
@@ -28,4 +29,7 @@ public class CustomerDto {
 
   @Schema(description = "Account details of the customer")
   private AccountsDto accountsDto;
+
+  @JsonIgnore // Not part of the API, it is the source of the ETag of the fetch endpoint
+  private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.jgmedellin.accounts.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Schema(name = "DeleteAccountsResult", description = "Schema to hold the result of a batch account delete")
+@Data @AllArgsConstructor
+public class DeleteAccountsResultDto {
+
+  @Schema(description = "Number of deleted customers (with their accounts)", example = "998")
+  private int deletedCount;
+
+  @Schema(description = "Number of mobile numbers without a customer", example = "2")
+  private int notFoundCount;
+
+  @Schema(description = "Mobile numbers without a customer")
+  private List<String> notFound;
+}
@@ -0,0 +1,18 @@
+package com.jgmedellin.accounts.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+import java.util.Map;
+
+@Schema(name = "FetchAccountsResult", description = "Schema to hold the result of a batch account fetch")
+@Data @AllArgsConstructor
+public class FetchAccountsResultDto {
+
+  @Schema(description = "Customer and account details by mobile number")
+  private Map<String, CustomerDto> customers;
+
+  @Schema(description = "Mobile numbers without a customer or account")
+  private List<String> notFound;
+}
@@ -0,0 +1,36 @@
+package com.jgmedellin.accounts.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Schema(name = "ImportResult", description = "Schema to hold the result of a bulk import")
+@Data @AllArgsConstructor
+public class ImportResultDto {
+
+  @Schema(description = "Number of rows read in this import, without the rows skipped to resume", example = "100000")
+  private long rowsRead;
+
+  @Schema(description = "Number of customers created (with their accounts)", example = "99990")
+  private long createdCount;
+
+  @Schema(description = "Number of rows that could not be created", example = "10")
+  private long failedCount;
+
+  @Schema(description = "Last row of the last committed chunk, send it as resumeAfterRow to continue a failed import",
+          example = "100000")
+  private long lastCommittedRow;
+
+  @Schema(description = "False if the import stopped before the end of the file")
+  private boolean completed;
+
+  @Schema(description = "Why the import stopped before the end of the file, null if it completed")
+  private String abortReason;
+
+  @Schema(description = "Rows that could not be created, up to the configured maximum")
+  private List<ImportRowErrorDto> errors;
+
+  @Schema(description = "True if there were more failed rows than the ones in errors")
+  private boolean errorsTruncated;
+}
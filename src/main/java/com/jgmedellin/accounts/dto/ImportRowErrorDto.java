@@ -0,0 +1,19 @@
+package com.jgmedellin.accounts.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Schema(name = "ImportRowError", description = "Schema to hold a row of an import file that could not be created")
+@Data @AllArgsConstructor
+public class ImportRowErrorDto {
+
+  @Schema(description = "Row number in the file, the CSV header is not counted", example = "42")
+  private long row;
+
+  @Schema(description = "Mobile number of the row (if it could be parsed)", example = "1234567899")
+  private String mobileNumber;
+
+  @Schema(description = "Reason why the row failed")
+  private String message;
+}
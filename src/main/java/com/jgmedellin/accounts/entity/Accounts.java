@@ -2,10 +2,16 @@ package com.jgmedellin.accounts.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
+import org.springframework.data.domain.Persistable;
 
 @Entity
+@Table(name = "accounts", indexes = { // Keep in sync with schema.sql
+        @Index(name = "idx_accounts_customer_id_account_number", columnList = "customer_id, account_number")
+})
+@DynamicUpdate // The UPDATE statements only set the columns that changed
 @Getter @Setter @ToString @AllArgsConstructor @NoArgsConstructor
-public class Accounts extends BaseEntity {
+public class Accounts extends BaseEntity implements Persistable<Long> {
 
   @Column(name = "customer_id")
   private Long customerId;
@@ -20,4 +26,28 @@ public class Accounts extends BaseEntity {
   @Column(name = "branch_address")
   private String branchAddress;
 
-}
\ No newline at end of file
+  @Transient // Not a column, the account number is assigned by us so Spring Data can't tell if the entity is new
+  @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE) @ToString.Exclude
+  private boolean newAccount = true;
+
+  @Override
+  public Long getId() {
+    return accountNumber;
+  }
+
+  /**
+   * Tells Spring Data to persist (plain INSERT) instead of merge (SELECT + INSERT) new accounts
+   * @return true if the account has not been saved or loaded from the DB yet
+   */
+  @Override
+  public boolean isNew() {
+    return newAccount;
+  }
+
+  @PostLoad // Called by JPA after the entity is loaded from the DB
+  @PostPersist // Called by JPA after the entity is inserted in the DB
+  void markNotNew() {
+    this.newAccount = false;
+  }
+
+}
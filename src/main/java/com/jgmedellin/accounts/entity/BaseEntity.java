@@ -3,6 +3,7 @@ package com.jgmedellin.accounts.entity;
 import jakarta.persistence.Column;
 import jakarta.persistence.EntityListeners;
 import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -34,4 +35,7 @@ public class BaseEntity {
   @Column(insertable = false)
   private String updatedBy;
 
+  @Version // Optimistic locking, an UPDATE based on an outdated version fails instead of overwriting the other change
+  private Long version;
+
 }
\ No newline at end of file
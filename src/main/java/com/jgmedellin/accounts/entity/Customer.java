@@ -2,13 +2,21 @@ package com.jgmedellin.accounts.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
+@Table(name = "customer", indexes = { // Keep in sync with schema.sql
+        @Index(name = "idx_customer_mobile_number", columnList = "mobile_number", unique = true)
+})
+@DynamicUpdate // The UPDATE statements only set the columns that changed
 @Getter @Setter @ToString @AllArgsConstructor @NoArgsConstructor
 public class Customer extends BaseEntity {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  // Sequence (not IDENTITY) so Hibernate knows the id before the INSERT and can send the inserts in JDBC batches,
+  // allocationSize must match the INCREMENT BY of customer_seq (one sequence call every 50 customers)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+  @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
   @Column(name = "customer_id")
   private Long customerId;
 
@@ -0,0 +1,83 @@
+package com.jgmedellin.accounts.etag;
+
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.entity.Accounts;
+import com.jgmedellin.accounts.entity.Customer;
+import com.jgmedellin.accounts.exception.PreconditionFailedException;
+
+/**
+ * Strong ETag of an account with its customer, made of the account number and the @Version of both entities.
+ * Every change of the customer or the account increments one of the versions, and a deleted and registered again
+ * customer gets a new account number, so two different representations never share an ETag.
+ * The value is "accountNumber.customerVersion.accountVersion" (quotes included).
+ * @param accountNumber Account number
+ * @param customerVersion Version of the customer
+ * @param accountVersion Version of the account
+ */
+public record AccountETag(long accountNumber, long customerVersion, long accountVersion) {
+
+  /**
+   * @return the ETag of the account details
+   */
+  public static AccountETag of(CustomerDto customerDto) {
+    return new AccountETag(customerDto.getAccountsDto().getAccountNumber(), customerDto.getVersion(),
+            customerDto.getAccountsDto().getVersion());
+  }
+
+  /**
+   * @return the ETag of the current state of the entities
+   */
+  public static AccountETag of(Customer customer, Accounts account) {
+    return new AccountETag(account.getAccountNumber(), customer.getVersion(), account.getVersion());
+  }
+
+  /**
+   * @return the quoted ETag, as sent in the ETag header
+   */
+  public String value() {
+    return "\"" + accountNumber + "." + customerVersion + "." + accountVersion + "\"";
+  }
+
+  /**
+   * Evaluates an If-None-Match header (weak comparison, a W/ ETag matches the same strong ETag).
+   * @param ifNoneMatch Value of the header, a list of ETags or *
+   * @return true if one of the ETags of the header is this one
+   */
+  public boolean matchesAny(String ifNoneMatch) {
+    String value = value();
+    for (String eTag : ifNoneMatch.split(",")) {
+      eTag = eTag.trim();
+      if (eTag.startsWith("W/")) {
+        eTag = eTag.substring(2);
+      }
+      if (eTag.equals("*") || eTag.equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads an If-Match header.
+   * @param ifMatch Value of the header, null if the request doesn't have it
+   * @return the ETag the client expects, or null if any version is accepted (no header or *)
+   * @throws PreconditionFailedException if the header can't match an account ETag (weak, malformed or a list)
+   */
+  public static AccountETag parseIfMatch(String ifMatch) {
+    if (ifMatch == null || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    String eTag = ifMatch.trim();
+    String[] parts = eTag.length() > 2 && eTag.startsWith("\"") && eTag.endsWith("\"")
+            ? eTag.substring(1, eTag.length() - 1).split("\\.")
+            : new String[0];
+    try {
+      if (parts.length == 3) {
+        return new AccountETag(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+      }
+    } catch (NumberFormatException e) {
+      // Not an ETag of this service, it can't match
+    }
+    throw new PreconditionFailedException(ifMatch);
+  }
+}
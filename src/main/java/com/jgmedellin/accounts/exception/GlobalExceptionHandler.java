@@ -1,10 +1,13 @@
 package com.jgmedellin.accounts.exception;
 
+import com.jgmedellin.accounts.constants.AccountsConstants;
 import com.jgmedellin.accounts.dto.ErrorResponseDto;
+import jakarta.validation.ConstraintViolationException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.validation.FieldError;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -46,6 +49,19 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
     return new ResponseEntity<>(errorResponseDTO, HttpStatus.INTERNAL_SERVER_ERROR);
   }
 
+  // The constraints of the request params and bodies that aren't a DTO (e.g. the size of the batches) are checked by
+  // the method validation of the controller, a violation is a bad request too
+  @ExceptionHandler(ConstraintViolationException.class)
+  public ResponseEntity<ErrorResponseDto> handleConstraintViolationException(ConstraintViolationException exception, WebRequest webRequest){
+    ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
+            webRequest.getDescription(false),
+            HttpStatus.BAD_REQUEST,
+            exception.getMessage(),
+            LocalDateTime.now()
+    );
+    return new ResponseEntity<>(errorResponseDTO, HttpStatus.BAD_REQUEST);
+  }
+
   @ExceptionHandler(ResourceNotFoundException.class)
   public ResponseEntity<ErrorResponseDto> handleResourceNotFoundException(ResourceNotFoundException exception, WebRequest webRequest){
     ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
@@ -68,4 +84,72 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
     return new ResponseEntity<>(errorResponseDTO, HttpStatus.BAD_REQUEST);
   }
 
+  @ExceptionHandler(InvalidImportFileException.class)
+  public ResponseEntity<ErrorResponseDto> handleInvalidImportFileException(InvalidImportFileException exception, WebRequest webRequest){
+    ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
+            webRequest.getDescription(false),
+            HttpStatus.BAD_REQUEST,
+            exception.getMessage(),
+            LocalDateTime.now()
+    );
+    return new ResponseEntity<>(errorResponseDTO, HttpStatus.BAD_REQUEST);
+  }
+
+  @ExceptionHandler(InvalidPageTokenException.class)
+  public ResponseEntity<ErrorResponseDto> handleInvalidPageTokenException(InvalidPageTokenException exception, WebRequest webRequest){
+    ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
+            webRequest.getDescription(false),
+            HttpStatus.BAD_REQUEST,
+            exception.getMessage(),
+            LocalDateTime.now()
+    );
+    return new ResponseEntity<>(errorResponseDTO, HttpStatus.BAD_REQUEST);
+  }
+
+  @ExceptionHandler(MobileNumberChangeException.class)
+  public ResponseEntity<ErrorResponseDto> handleMobileNumberChangeException(MobileNumberChangeException exception, WebRequest webRequest){
+    ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
+            webRequest.getDescription(false),
+            HttpStatus.BAD_REQUEST,
+            exception.getMessage(),
+            LocalDateTime.now()
+    );
+    return new ResponseEntity<>(errorResponseDTO, HttpStatus.BAD_REQUEST);
+  }
+
+  @ExceptionHandler(PreconditionFailedException.class)
+  public ResponseEntity<ErrorResponseDto> handlePreconditionFailedException(PreconditionFailedException exception, WebRequest webRequest){
+    ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
+            webRequest.getDescription(false),
+            HttpStatus.PRECONDITION_FAILED,
+            exception.getMessage(),
+            LocalDateTime.now()
+    );
+    return new ResponseEntity<>(errorResponseDTO, HttpStatus.PRECONDITION_FAILED);
+  }
+
+  @ExceptionHandler(RateLimitExceededException.class)
+  public ResponseEntity<ErrorResponseDto> handleRateLimitExceededException(RateLimitExceededException exception, WebRequest webRequest){
+    ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
+            webRequest.getDescription(false),
+            HttpStatus.TOO_MANY_REQUESTS,
+            exception.getMessage(),
+            LocalDateTime.now()
+    );
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+            .body(errorResponseDTO);
+  }
+
+  @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+  public ResponseEntity<ErrorResponseDto> handleOptimisticLockingFailureException(ObjectOptimisticLockingFailureException exception, WebRequest webRequest){
+    ErrorResponseDto errorResponseDTO = new ErrorResponseDto(
+            webRequest.getDescription(false),
+            HttpStatus.CONFLICT,
+            AccountsConstants.MESSAGE_409,
+            LocalDateTime.now()
+    );
+    return new ResponseEntity<>(errorResponseDTO, HttpStatus.CONFLICT);
+  }
+
 }
\ No newline at end of file
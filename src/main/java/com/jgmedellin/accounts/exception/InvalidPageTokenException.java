@@ -0,0 +1,11 @@
+package com.jgmedellin.accounts.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.BAD_REQUEST)
+public class InvalidPageTokenException extends RuntimeException {
+  public InvalidPageTokenException(String pageToken) {
+    super(String.format("Invalid page token: '%s'", pageToken));
+  }
+}
@@ -0,0 +1,12 @@
+package com.jgmedellin.accounts.exception;
+
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.BAD_REQUEST)
+public class MobileNumberChangeException extends RuntimeException {
+  public MobileNumberChangeException(String mobileNumber) {
+    super(AccountsConstants.MESSAGE_400_MOBILE_NUMBER_SHARD + ": " + mobileNumber);
+  }
+}
@@ -0,0 +1,11 @@
+package com.jgmedellin.accounts.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.PRECONDITION_FAILED)
+public class PreconditionFailedException extends RuntimeException {
+  public PreconditionFailedException(String ifMatch) {
+    super(String.format("The account doesn't match the If-Match ETag %s, fetch it again to get the current one", ifMatch));
+  }
+}
@@ -0,0 +1,17 @@
+package com.jgmedellin.accounts.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value= HttpStatus.TOO_MANY_REQUESTS)
+@Getter
+public class RateLimitExceededException extends RuntimeException {
+
+  private final long retryAfterSeconds;
+
+  public RateLimitExceededException(String route, long retryAfterSeconds) {
+    super(String.format("Rate limit of %s exceeded, retry in %d seconds", route, retryAfterSeconds));
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+}
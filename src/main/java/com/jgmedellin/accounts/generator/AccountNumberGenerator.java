@@ -0,0 +1,15 @@
+package com.jgmedellin.accounts.generator;
+
+/**
+ * Strategy used by the service layer to hand out account numbers.
+ * Implementations must be thread safe and never return the same number twice.
+ */
+public interface AccountNumberGenerator {
+
+  /**
+   * Returns the next unique account number.
+   * @return a 10 digit account number that has not been handed out before
+   */
+  long nextAccountNumber();
+
+}
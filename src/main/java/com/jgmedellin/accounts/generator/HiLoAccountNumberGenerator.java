@@ -0,0 +1,134 @@
+package com.jgmedellin.accounts.generator;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hi/lo account number generator.
+ * The "hi" value comes from the account_number_seq DB sequence and is the first number of a whole block, the "lo" value
+ * is handed out in memory from that block. The block size (accounts.account-number.block-size) must be the INCREMENT
+ * of the sequence, otherwise two nodes could reserve overlapping blocks: it is checked against schema.sql at startup.
+ * Only one sequence call is needed per block, numbers are unique across threads and nodes, and the service can insert
+ * the account with a plain INSERT because the number is known to be new.
+ * With accounts.sharding.enabled each shard has its own generator, see ShardedAccountNumberGenerator.
+ */
+@Component
+@ConditionalOnProperty(prefix = "accounts.sharding", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class HiLoAccountNumberGenerator implements AccountNumberGenerator, InitializingBean {
+
+  /** First 10 digit number, every generated account number is >= this value. */
+  public static final long FIRST_ACCOUNT_NUMBER = 1000000000L;
+
+  /** Last 10 digit number, every generated account number is <= this value. */
+  public static final long LAST_ACCOUNT_NUMBER = 9999999999L;
+
+  private static final String NEXT_HI_SQL = "SELECT NEXT VALUE FOR account_number_seq";
+
+  private static final Pattern SCHEMA_INCREMENT = Pattern.compile(
+          "CREATE SEQUENCE[^;]*\\baccount_number_seq\\b[^;]*\\bINCREMENT BY\\s+(\\d+)", Pattern.CASE_INSENSITIVE);
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final long blockSize;
+
+  private volatile Block block;
+
+  public HiLoAccountNumberGenerator(JdbcTemplate jdbcTemplate,
+                                    @Value("${accounts.account-number.block-size:100}") long blockSize) {
+    if (blockSize < 1) {
+      throw new IllegalArgumentException("accounts.account-number.block-size must be positive: " + blockSize);
+    }
+    this.jdbcTemplate = jdbcTemplate;
+    this.blockSize = blockSize;
+    this.block = new Block(0, 0); // Empty block, the first call reserves a real one
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    checkSchemaIncrement(blockSize);
+  }
+
+  /**
+   * Checks that the block size is the INCREMENT of account_number_seq in schema.sql, read from the file instead of the
+   * DB metadata (every DB has its own catalog)
+   * @param blockSize Block size of the generators
+   * @throws IllegalStateException if schema.sql has another INCREMENT, or no account_number_seq
+   */
+  public static void checkSchemaIncrement(long blockSize) {
+    String schema;
+    try {
+      schema = new ClassPathResource("schema.sql").getContentAsString(StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    Matcher matcher = SCHEMA_INCREMENT.matcher(schema);
+    if (!matcher.find()) {
+      throw new IllegalStateException("schema.sql has no account_number_seq with an INCREMENT BY");
+    }
+    long increment = Long.parseLong(matcher.group(1));
+    if (increment != blockSize) {
+      throw new IllegalStateException("accounts.account-number.block-size (" + blockSize + ") must be the INCREMENT " +
+              "of account_number_seq in schema.sql (" + increment + ")");
+    }
+  }
+
+  @Override
+  public long nextAccountNumber() {
+    while (true) {
+      // Fast path: take the next number of the current block without locking
+      Block current = block;
+      long number = current.next.getAndIncrement();
+      if (number < current.end) {
+        return number;
+      }
+      // The block is exhausted, reserve a new one and try again
+      reserveBlock(current);
+    }
+  }
+
+  /**
+   * Utility method to reserve a new block of numbers from the DB sequence
+   * @param exhausted the block that was exhausted by the caller
+   */
+  private synchronized void reserveBlock(Block exhausted) {
+    // Another thread may have already replaced the exhausted block while we were waiting for the lock
+    if (block != exhausted) {
+      return;
+    }
+    Long start = jdbcTemplate.queryForObject(NEXT_HI_SQL, Long.class);
+    if (start == null || start < FIRST_ACCOUNT_NUMBER) {
+      throw new IllegalStateException("account_number_seq must start at " + FIRST_ACCOUNT_NUMBER + ", see schema.sql");
+    }
+    if (start + blockSize - 1 > LAST_ACCOUNT_NUMBER) {
+      throw new IllegalStateException("No more 10 digit account numbers available");
+    }
+    block = new Block(start, start + blockSize);
+  }
+
+  /**
+   * Range of reserved account numbers [next, end) shared by all the threads
+   */
+  private static final class Block {
+
+    private final AtomicLong next;
+
+    private final long end;
+
+    private Block(long start, long end) {
+      this.next = new AtomicLong(start);
+      this.end = end;
+    }
+
+  }
+
+}
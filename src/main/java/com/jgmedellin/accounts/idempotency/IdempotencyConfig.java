@@ -0,0 +1,43 @@
+package com.jgmedellin.accounts.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Registers the Idempotency-Key support in front of the controllers and its store, see accounts.idempotency.* in
+ * application.yaml.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "accounts.idempotency", name = "enabled", havingValue = "true")
+public class IdempotencyConfig {
+
+  @Bean
+  @ConditionalOnProperty(prefix = "accounts.idempotency", name = "store", havingValue = "memory", matchIfMissing = true)
+  public IdempotencyStore memoryIdempotencyStore(IdempotencyProperties properties) {
+    return new MemoryIdempotencyStore(properties);
+  }
+
+  @Bean
+  @ConditionalOnProperty(prefix = "accounts.idempotency", name = "store", havingValue = "jdbc")
+  public IdempotencyStore jdbcIdempotencyStore(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                               IdempotencyProperties properties) {
+    return new JdbcIdempotencyStore(jdbcTemplate, objectMapper, properties);
+  }
+
+  @Bean
+  public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(IdempotencyProperties properties,
+          IdempotencyStore store, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+    FilterRegistrationBean<IdempotencyFilter> registration =
+            new FilterRegistrationBean<>(new IdempotencyFilter(properties, store, objectMapper, meterRegistry));
+    registration.addUrlPatterns("/api/*");
+    // Right after the concurrency limits: a replay must not pay for the observations or the metrics of the queries
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+    return registration;
+  }
+}
@@ -0,0 +1,321 @@
+package com.jgmedellin.accounts.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.concurrency.SingleFlight;
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.ErrorResponseDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Makes the retries of the mutating endpoints free: the first request with an Idempotency-Key runs and its response is
+ * saved in the IdempotencyStore, the retries with the same key get that response back (with Idempotent-Replayed: true)
+ * without reaching the controllers. The requests that arrive while the first one is still running wait for it instead
+ * of racing (SingleFlight), and a retry with the same key but another request gets a 422.
+ * The 5xx, 409 and 429 responses are not saved, the client is expected to retry them for real. A response that can't
+ * be saved (store down) is still returned: the change is committed, failing the request would make the client retry
+ * it without the protection of the key.
+ * Published meters: accounts.idempotency.requests (counter, outcome executed, replayed, coalesced or mismatch) and
+ * accounts.idempotency.store.failures (counter).
+ */
+@Slf4j
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+  private static final int MAX_KEY_LENGTH = 255;
+
+  private static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+  private final IdempotencyProperties properties;
+
+  private final IdempotencyStore store;
+
+  private final ObjectMapper objectMapper;
+
+  private final SingleFlight<String, StoredResponse> inFlight = new SingleFlight<>();
+
+  private final Counter executed;
+
+  private final Counter replayed;
+
+  private final Counter coalesced;
+
+  private final Counter mismatched;
+
+  private final Counter storeFailures;
+
+  public IdempotencyFilter(IdempotencyProperties properties, IdempotencyStore store, ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.store = store;
+    this.objectMapper = objectMapper;
+    this.executed = outcomeCounter("executed", meterRegistry);
+    this.replayed = outcomeCounter("replayed", meterRegistry);
+    this.coalesced = outcomeCounter("coalesced", meterRegistry);
+    this.mismatched = outcomeCounter("mismatch", meterRegistry);
+    this.storeFailures = Counter.builder("accounts.idempotency.store.failures")
+            .description("Completed responses that could not be saved in the idempotency store")
+            .register(meterRegistry);
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    String method = request.getMethod();
+    return request.getHeader(properties.header()) == null
+            || "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method)
+            || !path.startsWith("/api/")
+            || path.startsWith("/api/import") // Streamed, the file is not read in memory
+            || path.startsWith("/api/fetch"); // Only reads
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws ServletException, IOException {
+    String idempotencyKey = request.getHeader(properties.header());
+    if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+      reject(request, response, HttpStatus.BAD_REQUEST, AccountsConstants.MESSAGE_400_IDEMPOTENCY_KEY);
+      return;
+    }
+    long maxBodySize = properties.maxBodySize().toBytes();
+    byte[] body = request.getContentLengthLong() > maxBodySize ? null
+            : request.getInputStream().readNBytes((int) Math.min(maxBodySize + 1, Integer.MAX_VALUE));
+    if (body == null || body.length > maxBodySize) {
+      reject(request, response, HttpStatus.PAYLOAD_TOO_LARGE, AccountsConstants.MESSAGE_413);
+      return;
+    }
+    String key = storeKey(request, idempotencyKey);
+    String fingerprint = fingerprint(request, body);
+
+    StoredResponse completed = store.find(key);
+    if (completed != null) {
+      replay(request, response, completed, fingerprint, replayed);
+      return;
+    }
+    boolean[] leader = {false};
+    ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+    StoredResponse result;
+    try {
+      result = inFlight.execute(key, () -> {
+        StoredResponse savedMeanwhile = store.find(key); // The first request completed since the lookup
+        if (savedMeanwhile != null) {
+          return savedMeanwhile;
+        }
+        leader[0] = true;
+        return execute(new BodyReplayingRequest(request, body), responseWrapper, filterChain, key, fingerprint);
+      });
+    } catch (WrappedException e) {
+      if (e.getCause() instanceof ServletException servletException) {
+        throw servletException;
+      }
+      throw (IOException) e.getCause();
+    }
+    if (leader[0]) {
+      executed.increment();
+      responseWrapper.copyBodyToResponse();
+    } else {
+      replay(request, response, result, fingerprint, coalesced);
+    }
+  }
+
+  /**
+   * Utility method to run the request and save its response
+   * @param request Request, with its body already read
+   * @param response Response wrapper that keeps the body
+   * @param filterChain Rest of the filters and the controller
+   * @param key Key of the request in the store
+   * @param fingerprint Hash of the request
+   * @return the completed response
+   */
+  private StoredResponse execute(HttpServletRequest request, ContentCachingResponseWrapper response,
+                                 FilterChain filterChain, String key, String fingerprint) {
+    Set<String> previousHeaders = new HashSet<>(response.getHeaderNames()); // Set by the previous filters
+    try {
+      filterChain.doFilter(request, response);
+    } catch (ServletException | IOException e) {
+      throw new WrappedException(e);
+    }
+    Map<String, List<String>> headers = new LinkedHashMap<>();
+    for (String name : response.getHeaderNames()) {
+      if (!previousHeaders.contains(name) && !HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)
+              && !HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+        headers.put(name, new ArrayList<>(response.getHeaders(name)));
+      }
+    }
+    int status = response.getStatus();
+    StoredResponse completed = new StoredResponse(fingerprint, status, response.getContentType(), headers,
+            response.getContentAsByteArray());
+    if (status < 500 && status != HttpStatus.CONFLICT.value() && status != HttpStatus.TOO_MANY_REQUESTS.value()) {
+      try {
+        store.save(key, completed);
+      } catch (RuntimeException e) {
+        // The request already ran, its real response goes back anyway (a retry will run it again)
+        storeFailures.increment();
+        log.warn("Response of the Idempotency-Key {} not saved", key, e);
+      }
+    }
+    return completed;
+  }
+
+  /**
+   * Utility method to write a response saved for another request with the same key
+   * @param request Current request
+   * @param response Current response
+   * @param completed Saved response
+   * @param fingerprint Hash of the current request
+   * @param outcome Counter of the outcome if the requests match
+   */
+  private void replay(HttpServletRequest request, HttpServletResponse response, StoredResponse completed,
+                      String fingerprint, Counter outcome) throws IOException {
+    if (!completed.fingerprint().equals(fingerprint)) {
+      mismatched.increment();
+      reject(request, response, HttpStatus.UNPROCESSABLE_ENTITY, AccountsConstants.MESSAGE_422_IDEMPOTENCY);
+      return;
+    }
+    outcome.increment();
+    response.setStatus(completed.status());
+    completed.headers().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+    response.setHeader(REPLAYED_HEADER, "true");
+    if (completed.contentType() != null) {
+      response.setContentType(completed.contentType());
+    }
+    response.setContentLength(completed.body().length);
+    response.getOutputStream().write(completed.body());
+  }
+
+  /**
+   * Utility method to scope the key by client, two clients can choose the same key
+   */
+  private String storeKey(HttpServletRequest request, String idempotencyKey) {
+    String apiKey = request.getHeader(properties.clientHeader());
+    return apiKey == null ? idempotencyKey : sha256(apiKey.getBytes(StandardCharsets.UTF_8)).substring(0, 16)
+            + ":" + idempotencyKey; // The API key itself is not stored
+  }
+
+  /**
+   * Utility method to hash what makes two requests the same: method, path, query, If-Match and body
+   */
+  private static String fingerprint(HttpServletRequest request, byte[] body) {
+    String target = request.getMethod() + " " + request.getRequestURI() + "?" + request.getQueryString()
+            + " " + request.getHeader(HttpHeaders.IF_MATCH) + "\n";
+    byte[] targetBytes = target.getBytes(StandardCharsets.UTF_8);
+    byte[] content = new byte[targetBytes.length + body.length];
+    System.arraycopy(targetBytes, 0, content, 0, targetBytes.length);
+    System.arraycopy(body, 0, content, targetBytes.length, body.length);
+    return sha256(content);
+  }
+
+  private static String sha256(byte[] content) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // Every JVM has SHA-256
+    }
+  }
+
+  private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String message)
+          throws IOException {
+    ErrorResponseDto errorResponseDto = new ErrorResponseDto("uri=" + request.getRequestURI(), status, message,
+            LocalDateTime.now());
+    response.setStatus(status.value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    objectMapper.writeValue(response.getOutputStream(), errorResponseDto);
+  }
+
+  private static Counter outcomeCounter(String outcome, MeterRegistry meterRegistry) {
+    return Counter.builder("accounts.idempotency.requests")
+            .description("Requests with an Idempotency-Key by outcome")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+  }
+
+  /**
+   * Checked exception of the filter chain, carried through the SingleFlight loader
+   */
+  private static final class WrappedException extends RuntimeException {
+
+    private WrappedException(Exception cause) {
+      super(cause);
+    }
+  }
+
+  /**
+   * The request with the body read by the filter, the controllers read it again from memory
+   */
+  private static final class BodyReplayingRequest extends HttpServletRequestWrapper {
+
+    private final byte[] body;
+
+    private BodyReplayingRequest(HttpServletRequest request, byte[] body) {
+      super(request);
+      this.body = body;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      ByteArrayInputStream content = new ByteArrayInputStream(body);
+      return new ServletInputStream() {
+        @Override
+        public boolean isFinished() {
+          return content.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+          throw new IllegalStateException("Not an async request"); // The filter only sees blocking requests
+        }
+
+        @Override
+        public int read() {
+          return content.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+          return content.read(buffer, offset, length);
+        }
+      };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+      String encoding = getCharacterEncoding();
+      Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+      return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+  }
+
+}
@@ -0,0 +1,23 @@
+package com.jgmedellin.accounts.idempotency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+import java.time.Duration;
+
+/**
+ * Settings of the Idempotency-Key support of the mutating endpoints, mapped from accounts.idempotency.*.
+ * @param enabled False to ignore the Idempotency-Key header
+ * @param header Header with the key chosen by the client for a request and its retries
+ * @param clientHeader Header with the API key of the client, the keys of different clients don't collide
+ * @param ttl How long a completed response is replayed
+ * @param maxEntries Completed responses kept in memory, the least used ones are evicted above this number
+ * @param store memory (this instance only) or jdbc (the idempotency_key table, shared by every instance)
+ * @param maxBodySize Largest request body accepted with an Idempotency-Key, it is read in memory to be compared
+ */
+@ConfigurationProperties(prefix = "accounts.idempotency")
+public record IdempotencyProperties(boolean enabled, String header, String clientHeader, Duration ttl, int maxEntries,
+                                    Store store, DataSize maxBodySize) {
+
+  public enum Store { MEMORY, JDBC }
+
+}
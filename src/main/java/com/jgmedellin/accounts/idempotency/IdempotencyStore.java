@@ -0,0 +1,22 @@
+package com.jgmedellin.accounts.idempotency;
+
+/**
+ * Completed responses by idempotency key, kept for accounts.idempotency.ttl.
+ */
+public interface IdempotencyStore {
+
+  /**
+   * Finds the completed response of a key
+   * @param key Idempotency key, scoped by client
+   * @return the response, or null if the key is unknown or expired
+   */
+  StoredResponse find(String key);
+
+  /**
+   * Saves the completed response of a key, the first response saved for a key wins
+   * @param key Idempotency key, scoped by client
+   * @param response Completed response
+   */
+  void save(String key, StoredResponse response);
+
+}
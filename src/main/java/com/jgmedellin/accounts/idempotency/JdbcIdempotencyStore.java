@@ -0,0 +1,105 @@
+package com.jgmedellin.accounts.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Store shared by every instance of the application, in the idempotency_key table (see schema.sql). The responses
+ * saved by this instance are also kept in memory, so the retries that come back to it don't query the DB. The expired
+ * rows are deleted by the first save after each ttl.
+ */
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+  private static final String FIND_SQL = "select fingerprint, status, content_type, headers, body " +
+          "from idempotency_key where idempotency_key = ? and expires_at > ?";
+
+  private static final String INSERT_SQL = "insert into idempotency_key " +
+          "(idempotency_key, fingerprint, status, content_type, headers, body, expires_at) values (?, ?, ?, ?, ?, ?, ?)";
+
+  private static final String PURGE_SQL = "delete from idempotency_key where expires_at <= ?";
+
+  private static final TypeReference<Map<String, List<String>>> HEADERS_TYPE = new TypeReference<>() { };
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final ObjectMapper objectMapper;
+
+  private final MemoryIdempotencyStore localResponses;
+
+  private final Duration ttl;
+
+  private final AtomicLong nextPurgeMillis = new AtomicLong();
+
+  public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, IdempotencyProperties properties) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.objectMapper = objectMapper;
+    this.localResponses = new MemoryIdempotencyStore(properties);
+    this.ttl = properties.ttl();
+  }
+
+  @Override
+  public StoredResponse find(String key) {
+    StoredResponse response = localResponses.find(key);
+    if (response != null) {
+      return response;
+    }
+    List<StoredResponse> responses = jdbcTemplate.query(FIND_SQL, (resultSet, rowNumber) -> new StoredResponse(
+            resultSet.getString("fingerprint"),
+            resultSet.getInt("status"),
+            resultSet.getString("content_type"),
+            readHeaders(resultSet.getString("headers")),
+            resultSet.getBytes("body")
+    ), key, Timestamp.from(Instant.now()));
+    return responses.isEmpty() ? null : responses.get(0);
+  }
+
+  @Override
+  public void save(String key, StoredResponse response) {
+    Instant now = Instant.now();
+    try {
+      jdbcTemplate.update(INSERT_SQL, key, response.fingerprint(), response.status(), response.contentType(),
+              objectMapper.writeValueAsString(response.headers()), response.body(), Timestamp.from(now.plus(ttl)));
+      localResponses.save(key, response);
+    } catch (DuplicateKeyException e) {
+      // Another instance completed the same key first, its response is the one replayed
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+    purgeExpired(now);
+  }
+
+  /**
+   * Utility method to delete the expired rows, at most once per ttl
+   * @param now Current time
+   */
+  private void purgeExpired(Instant now) {
+    long purgeMillis = nextPurgeMillis.get();
+    if (now.toEpochMilli() >= purgeMillis && nextPurgeMillis.compareAndSet(purgeMillis, now.plus(ttl).toEpochMilli())) {
+      jdbcTemplate.update(PURGE_SQL, Timestamp.from(now));
+    }
+  }
+
+  /**
+   * Utility method to read the headers column
+   * @param headers JSON of the headers
+   * @return the headers by name
+   */
+  private Map<String, List<String>> readHeaders(String headers) {
+    try {
+      return objectMapper.readValue(headers, HEADERS_TYPE);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+}
@@ -0,0 +1,30 @@
+package com.jgmedellin.accounts.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Bounded in-memory store (Caffeine), the responses expire ttl after they were saved.
+ */
+public class MemoryIdempotencyStore implements IdempotencyStore {
+
+  private final Cache<String, StoredResponse> responses;
+
+  public MemoryIdempotencyStore(IdempotencyProperties properties) {
+    this.responses = Caffeine.newBuilder()
+            .maximumSize(properties.maxEntries())
+            .expireAfterWrite(properties.ttl())
+            .build();
+  }
+
+  @Override
+  public StoredResponse find(String key) {
+    return responses.getIfPresent(key);
+  }
+
+  @Override
+  public void save(String key, StoredResponse response) {
+    responses.asMap().putIfAbsent(key, response);
+  }
+
+}
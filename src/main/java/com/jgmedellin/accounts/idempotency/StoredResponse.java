@@ -0,0 +1,15 @@
+package com.jgmedellin.accounts.idempotency;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A completed response, replayed to the retries of its request.
+ * @param fingerprint Hash of the request (method, path, If-Match and body), a retry must have the same one
+ * @param status HTTP status
+ * @param contentType Content type of the body, null if there is no body
+ * @param headers Other headers of the response (ETag, Location...)
+ * @param body Body of the response
+ */
+public record StoredResponse(String fingerprint, int status, String contentType, Map<String, List<String>> headers,
+                             byte[] body) { }
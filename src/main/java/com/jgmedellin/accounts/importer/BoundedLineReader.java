@@ -0,0 +1,85 @@
+package com.jgmedellin.accounts.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads lines from a Reader keeping at most maxLineLength characters of each line in memory.
+ * BufferedReader.readLine() buffers a whole line no matter how long it is, so a file without new lines (or a
+ * malicious one) could exhaust the heap. Longer lines are skipped up to the next new line and reported as too long.
+ */
+public class BoundedLineReader {
+
+  private final Reader reader;
+
+  private final int maxLineLength;
+
+  private final char[] buffer = new char[8192];
+
+  private final StringBuilder line;
+
+  private int position;
+
+  private int limit;
+
+  private boolean lastLineTooLong;
+
+  public BoundedLineReader(Reader reader, int maxLineLength) {
+    if (maxLineLength < 1) {
+      throw new IllegalArgumentException("Maximum line length must be greater than 0");
+    }
+    this.reader = reader;
+    this.maxLineLength = maxLineLength;
+    this.line = new StringBuilder(Math.min(maxLineLength, 256));
+  }
+
+  /**
+   * Reads the next line, without the line terminator (\n or \r\n).
+   * @return the line, an empty string if it was longer than maxLineLength, or null at the end of the stream
+   * @throws IOException if the stream can't be read
+   */
+  public String readLine() throws IOException {
+    line.setLength(0);
+    lastLineTooLong = false;
+    boolean readAnything = false;
+    while (true) {
+      if (position == limit) {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return readAnything ? finishLine() : null;
+        }
+      }
+      readAnything = true;
+      char c = buffer[position++];
+      if (c == '\n') {
+        return finishLine();
+      }
+      if (lastLineTooLong) {
+        continue; // Discard the rest of a line that is already too long
+      }
+      line.append(c);
+      // One extra character is allowed for the \r of a \r\n terminator
+      if (line.length() > maxLineLength && (line.length() > maxLineLength + 1 || c != '\r')) {
+        lastLineTooLong = true;
+        line.setLength(0);
+      }
+    }
+  }
+
+  /**
+   * @return true if the last line returned by readLine() was longer than maxLineLength
+   */
+  public boolean isLastLineTooLong() {
+    return lastLineTooLong;
+  }
+
+  private String finishLine() {
+    int length = line.length();
+    if (length > 0 && line.charAt(length - 1) == '\r') {
+      line.setLength(length - 1);
+    }
+    return line.toString();
+  }
+}
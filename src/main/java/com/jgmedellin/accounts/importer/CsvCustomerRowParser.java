@@ -0,0 +1,88 @@
+package com.jgmedellin.accounts.importer;
+
+import com.jgmedellin.accounts.dto.CustomerDto;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses CSV lines (RFC 4180 quoting, one record per line) into customers.
+ * The columns are located by name from the header line, so their order doesn't matter and extra columns are ignored.
+ */
+public class CsvCustomerRowParser implements CustomerRowParser {
+
+  private final int nameColumn;
+
+  private final int emailColumn;
+
+  private final int mobileNumberColumn;
+
+  /**
+   * @param headerLine First line of the file with the column names
+   * @throws IllegalArgumentException if a required column is missing
+   */
+  public CsvCustomerRowParser(String headerLine) {
+    List<String> header = split(headerLine).stream().map(column -> column.trim().toLowerCase(Locale.ROOT)).toList();
+    this.nameColumn = requiredColumn(header, "name");
+    this.emailColumn = requiredColumn(header, "email");
+    this.mobileNumberColumn = requiredColumn(header, "mobilenumber");
+  }
+
+  @Override
+  public CustomerDto parse(String line) {
+    List<String> fields = split(line);
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName(field(fields, nameColumn));
+    customerDto.setEmail(field(fields, emailColumn));
+    customerDto.setMobileNumber(field(fields, mobileNumberColumn));
+    return customerDto;
+  }
+
+  private static int requiredColumn(List<String> header, String column) {
+    int index = header.indexOf(column);
+    if (index < 0) {
+      throw new IllegalArgumentException("The CSV header doesn't have a " + column + " column");
+    }
+    return index;
+  }
+
+  private static String field(List<String> fields, int column) {
+    return column < fields.size() ? fields.get(column) : null;
+  }
+
+  /**
+   * Utility method to split a CSV line in its fields, removing the quotes of quoted fields
+   * @param line CSV line
+   * @return the fields of the line
+   */
+  static List<String> split(String line) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"'); // Escaped quote
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    if (quoted) {
+      throw new IllegalArgumentException("Unterminated quoted field");
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+}
@@ -0,0 +1,18 @@
+package com.jgmedellin.accounts.importer;
+
+import com.jgmedellin.accounts.dto.CustomerDto;
+
+/**
+ * Parses one line of an import file into a customer.
+ */
+@FunctionalInterface
+public interface CustomerRowParser {
+
+  /**
+   * Parses a line of the import file.
+   * @param line Line to parse, without the line terminator
+   * @return the customer of the line, not validated yet
+   * @throws IllegalArgumentException if the line is malformed
+   */
+  CustomerDto parse(String line);
+}
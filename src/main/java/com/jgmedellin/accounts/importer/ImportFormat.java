@@ -0,0 +1,37 @@
+package com.jgmedellin.accounts.importer;
+
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import org.springframework.http.MediaType;
+
+/**
+ * Formats accepted by the bulk import, one customer per line.
+ */
+public enum ImportFormat {
+
+  /** Comma separated values with a header line naming the columns (name, email, mobileNumber). */
+  CSV(AccountsConstants.CSV_VALUE),
+
+  /** Newline delimited JSON, one Customer JSON per line. */
+  NDJSON(AccountsConstants.NDJSON_VALUE);
+
+  private final MediaType mediaType;
+
+  ImportFormat(String mediaType) {
+    this.mediaType = MediaType.parseMediaType(mediaType);
+  }
+
+  /**
+   * Finds the format of a request body given its content type.
+   * @param contentType Content type of the request
+   * @return the format of the body
+   * @throws IllegalArgumentException if the content type is not supported
+   */
+  public static ImportFormat fromContentType(MediaType contentType) {
+    for (ImportFormat format : values()) {
+      if (format.mediaType.isCompatibleWith(contentType)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported import content type: " + contentType);
+  }
+}
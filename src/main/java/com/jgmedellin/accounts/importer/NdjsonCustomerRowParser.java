@@ -0,0 +1,30 @@
+package com.jgmedellin.accounts.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.dto.CustomerDto;
+
+/**
+ * Parses NDJSON lines, each one a Customer JSON like the body of POST /api/create.
+ */
+public class NdjsonCustomerRowParser implements CustomerRowParser {
+
+  private final ObjectMapper objectMapper;
+
+  public NdjsonCustomerRowParser(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public CustomerDto parse(String line) {
+    try {
+      CustomerDto customerDto = objectMapper.readValue(line, CustomerDto.class);
+      if (customerDto == null) {
+        throw new IllegalArgumentException("The line is not a Customer JSON");
+      }
+      return customerDto;
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package com.jgmedellin.accounts.index;
+
+import com.jgmedellin.accounts.replicas.ReadReplicas;
+import com.jgmedellin.accounts.repository.CustomerRepository;
+import com.jgmedellin.accounts.repository.projection.CustomerKey;
+import com.jgmedellin.accounts.sharding.Shards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import java.util.List;
+
+/**
+ * Optional in-memory index of mobile number to customer id, stored off-heap (see OffHeapLongLongMap).
+ * Mobile numbers are exactly 10 digits so they are used as long keys. The index is built from the DB at startup,
+ * before the web server accepts requests, and the service keeps it in sync after each committed create, update and
+ * delete. It only covers the changes made by this instance, so it is meant for single node deployments.
+ * Enable it with accounts.mobile-index.enabled=true.
+ */
+@Slf4j
+@Component
+public class MobileNumberIndex implements SmartInitializingSingleton {
+
+  /** Returned by lookup when the index can't answer (disabled, not built or not a 10 digit number), ask the DB */
+  public static final long UNKNOWN = -2L;
+
+  /** Returned by lookup when the mobile number is not registered */
+  public static final long NOT_FOUND = -1L;
+
+  private static final int BUILD_PAGE_SIZE = 10_000;
+
+  private final CustomerRepository customerRepository;
+
+  private final Shards shards;
+
+  private final ReadReplicas readReplicas;
+
+  private final boolean enabled;
+
+  private final int expectedSize;
+
+  private final OffHeapLongLongMap customerIds;
+
+  private volatile boolean ready;
+
+  public MobileNumberIndex(CustomerRepository customerRepository, Shards shards, ReadReplicas readReplicas,
+                           @Value("${accounts.mobile-index.enabled:false}") boolean enabled,
+                           @Value("${accounts.mobile-index.expected-size:1000000}") int expectedSize) {
+    this.customerRepository = customerRepository;
+    this.shards = shards;
+    this.readReplicas = readReplicas;
+    this.enabled = enabled;
+    this.expectedSize = expectedSize;
+    this.customerIds = enabled ? new OffHeapLongLongMap(expectedSize) : null;
+  }
+
+  /**
+   * Builds the index once all the beans are created, before the web server starts.
+   */
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (enabled) {
+      rebuild();
+    }
+  }
+
+  /**
+   * Loads every customer id and mobile number from the DB (every shard), using keyset pages so the heap use stays small.
+   */
+  public void rebuild() {
+    ready = false;
+    customerIds.clear(expectedSize);
+    for (int shard = 0; shard < shards.count(); shard++) {
+      long lastCustomerId = 0;
+      List<CustomerKey> page;
+      do {
+        long afterCustomerId = lastCustomerId;
+        // From the primary, a replica may not have the last customers yet
+        page = shards.inShard(shard, () -> readReplicas.onPrimary(
+                () -> customerRepository.findKeysAfter(afterCustomerId, Limit.of(BUILD_PAGE_SIZE))));
+        for (CustomerKey customerKey : page) {
+          put(customerKey.mobileNumber(), customerKey.customerId());
+          lastCustomerId = customerKey.customerId();
+        }
+      } while (page.size() == BUILD_PAGE_SIZE);
+    }
+    ready = true;
+    log.info("Mobile number index built with {} customers, using {} bytes off-heap",
+            customerIds.size(), customerIds.offHeapBytes());
+  }
+
+  /**
+   * Tells if the index is enabled and built, i.e. lookup can answer.
+   * @return true if lookups can be answered from memory
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  /**
+   * Finds the customer id of a mobile number.
+   * @param mobileNumber Mobile number of the customer
+   * @return the customer id, NOT_FOUND if the mobile number is not registered or UNKNOWN if the index can't answer
+   */
+  public long lookup(String mobileNumber) {
+    long key = toKey(mobileNumber);
+    if (!ready || key < 0) {
+      return UNKNOWN;
+    }
+    long customerId = customerIds.get(key);
+    return customerId == OffHeapLongLongMap.NO_VALUE ? NOT_FOUND : customerId;
+  }
+
+  /**
+   * Adds or replaces a customer in the index.
+   * @param mobileNumber Mobile number of the customer
+   * @param customerId Customer id number
+   */
+  public void put(String mobileNumber, long customerId) {
+    long key = toKey(mobileNumber);
+    if (enabled && key >= 0) {
+      customerIds.put(key, customerId);
+    }
+  }
+
+  /**
+   * Removes a customer from the index.
+   * @param mobileNumber Mobile number of the customer
+   */
+  public void remove(String mobileNumber) {
+    long key = toKey(mobileNumber);
+    if (enabled && key >= 0) {
+      customerIds.remove(key);
+    }
+  }
+
+  /**
+   * Utility method to convert a 10 digit mobile number to its long key
+   * @param mobileNumber Mobile number
+   * @return the key or -1 if it is not a 10 digit number
+   */
+  static long toKey(String mobileNumber) {
+    if (mobileNumber == null || mobileNumber.length() != 10) {
+      return -1;
+    }
+    long key = 0;
+    for (int i = 0; i < mobileNumber.length(); i++) {
+      char digit = mobileNumber.charAt(i);
+      if (digit < '0' || digit > '9') {
+        return -1;
+      }
+      key = key * 10 + (digit - '0');
+    }
+    return key;
+  }
+
+}
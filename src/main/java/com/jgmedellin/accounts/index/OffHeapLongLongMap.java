@@ -0,0 +1,260 @@
+package com.jgmedellin.accounts.index;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open addressing (linear probing) map of long keys to long values stored in a direct (off-heap) buffer.
+ * Every entry takes 16 bytes outside the Java heap, so millions of entries add no GC pressure, and there are no
+ * boxed keys or values. Keys must be >= 0 (negative values are used as slot markers).
+ * Reads are lock-free (optimistic) and writes are serialized with a StampedLock.
+ */
+public class OffHeapLongLongMap {
+
+  /** Value returned by get when the key is not in the map */
+  public static final long NO_VALUE = -1L;
+
+  private static final long EMPTY = -1L;
+
+  private static final long DELETED = -2L;
+
+  private static final int SLOT_BYTES = 16;
+
+  private static final int MIN_CAPACITY = 16;
+
+  private final StampedLock lock = new StampedLock();
+
+  private ByteBuffer slots;
+
+  private int mask;
+
+  private int size;
+
+  private int deleted;
+
+  public OffHeapLongLongMap(int expectedSize) {
+    allocate(capacityFor(Math.max(expectedSize, 1)));
+  }
+
+  /**
+   * Returns the value of the key.
+   * @param key Key to find (>= 0)
+   * @return the value or NO_VALUE if the key is not in the map
+   */
+  public long get(long key) {
+    checkKey(key);
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        long value = find(slots, mask, key);
+        if (lock.validate(stamp)) {
+          return value;
+        }
+      } catch (IndexOutOfBoundsException e) {
+        // The table was replaced in the middle of the read (the stamp is no longer valid), fall back to the read lock
+      }
+    }
+    // A writer changed the table while we were reading it, read again under the read lock
+    stamp = lock.readLock();
+    try {
+      return find(slots, mask, key);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Adds or replaces the value of the key.
+   * @param key Key (>= 0)
+   * @param value Value of the key
+   */
+  public void put(long key, long value) {
+    checkKey(key);
+    long stamp = lock.writeLock();
+    try {
+      int slot = slotOf(key);
+      int firstDeleted = -1;
+      while (true) {
+        long current = slots.getLong(slot * SLOT_BYTES);
+        if (current == key) {
+          slots.putLong(slot * SLOT_BYTES + 8, value);
+          return;
+        }
+        if (current == DELETED && firstDeleted < 0) {
+          firstDeleted = slot;
+        }
+        if (current == EMPTY) {
+          break;
+        }
+        slot = (slot + 1) & mask;
+      }
+      // Reuse the first deleted slot of the probe sequence if any, otherwise take the empty slot
+      if (firstDeleted >= 0) {
+        slot = firstDeleted;
+        deleted--;
+      }
+      slots.putLong(slot * SLOT_BYTES + 8, value);
+      slots.putLong(slot * SLOT_BYTES, key);
+      size++;
+      if ((size + deleted) * 2 > capacity()) {
+        rehash(capacityFor(size));
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Removes the key from the map.
+   * @param key Key to remove (>= 0)
+   * @return the previous value or NO_VALUE if the key was not in the map
+   */
+  public long remove(long key) {
+    checkKey(key);
+    long stamp = lock.writeLock();
+    try {
+      int slot = slotOf(key);
+      for (int probes = 0; probes <= mask; probes++) {
+        long current = slots.getLong(slot * SLOT_BYTES);
+        if (current == EMPTY) {
+          return NO_VALUE;
+        }
+        if (current == key) {
+          long value = slots.getLong(slot * SLOT_BYTES + 8);
+          slots.putLong(slot * SLOT_BYTES, DELETED);
+          size--;
+          deleted++;
+          return value;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return NO_VALUE;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Removes all the entries and shrinks the table back to the given expected size.
+   * @param expectedSize Expected number of entries
+   */
+  public void clear(int expectedSize) {
+    long stamp = lock.writeLock();
+    try {
+      allocate(capacityFor(Math.max(expectedSize, 1)));
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Returns the off-heap memory used by the table.
+   * @return the size of the direct buffer in bytes
+   */
+  public long offHeapBytes() {
+    long stamp = lock.readLock();
+    try {
+      return (long) capacity() * SLOT_BYTES;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Utility method to probe the table for a key, safe to call without the lock (the result is then validated)
+   */
+  private static long find(ByteBuffer slots, int mask, long key) {
+    int slot = (int) (mix(key) & mask);
+    for (int probes = 0; probes <= mask; probes++) {
+      long current = slots.getLong(slot * SLOT_BYTES);
+      if (current == key) {
+        return slots.getLong(slot * SLOT_BYTES + 8);
+      }
+      if (current == EMPTY) {
+        return NO_VALUE;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return NO_VALUE;
+  }
+
+  /**
+   * Utility method to move every entry to a new table of the given capacity (also drops the deleted markers)
+   */
+  private void rehash(int newCapacity) {
+    ByteBuffer oldSlots = slots;
+    int oldCapacity = capacity();
+    allocate(newCapacity);
+    for (int i = 0; i < oldCapacity; i++) {
+      long key = oldSlots.getLong(i * SLOT_BYTES);
+      if (key >= 0) {
+        int slot = slotOf(key);
+        while (slots.getLong(slot * SLOT_BYTES) != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        slots.putLong(slot * SLOT_BYTES, key);
+        slots.putLong(slot * SLOT_BYTES + 8, oldSlots.getLong(i * SLOT_BYTES + 8));
+        size++;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(capacity * SLOT_BYTES).order(ByteOrder.nativeOrder());
+    for (int i = 0; i < capacity; i++) {
+      buffer.putLong(i * SLOT_BYTES, EMPTY);
+    }
+    slots = buffer;
+    mask = capacity - 1;
+    size = 0;
+    deleted = 0;
+  }
+
+  private int capacity() {
+    return mask + 1;
+  }
+
+  private int slotOf(long key) {
+    return (int) (mix(key) & mask);
+  }
+
+  /**
+   * Utility method to get the table capacity (power of 2) that keeps the load factor under 50%
+   */
+  private static int capacityFor(int expectedSize) {
+    long capacity = Long.highestOneBit(Math.max((long) expectedSize * 2, MIN_CAPACITY) - 1) << 1;
+    if (capacity > (1 << 26)) { // 64M slots, 1GB of direct memory
+      throw new IllegalStateException("Off-heap map too large: " + expectedSize + " entries");
+    }
+    return (int) capacity;
+  }
+
+  /**
+   * Utility method to spread the bits of the key (murmur3 finalizer), mobile numbers are far from random
+   */
+  private static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+
+  private static void checkKey(long key) {
+    if (key < 0) {
+      throw new IllegalArgumentException("Keys must be >= 0: " + key);
+    }
+  }
+
+}
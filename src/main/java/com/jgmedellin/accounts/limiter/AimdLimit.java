@@ -0,0 +1,88 @@
+package com.jgmedellin.accounts.limiter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that adapts to the measured latency with AIMD (additive increase, multiplicative decrease), the
+ * same feedback TCP uses for its congestion window:
+ * - a request faster than the latency threshold, while the limit was being used, raises the limit by 1/limit (about
+ *   +1 per limit requests, so a limit of 100 grows as fast as a limit of 1 in relative terms)
+ * - a slower or failed request multiplies the limit by the backoff ratio
+ * When the DB slows down the latency grows with the queue, the limit shrinks until the accepted requests are fast
+ * again and the rest are rejected right away instead of waiting in Tomcat threads.
+ */
+public class AimdLimit {
+
+  private final ConcurrencyLimitProperties.Limit settings;
+
+  private final long latencyThresholdNanos;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private volatile double limit;
+
+  public AimdLimit(ConcurrencyLimitProperties.Limit settings) {
+    if (settings.minLimit() < 1 || settings.maxLimit() < settings.minLimit()
+            || settings.backoffRatio() <= 0 || settings.backoffRatio() >= 1) {
+      throw new IllegalArgumentException("Invalid concurrency limit settings: " + settings);
+    }
+    this.settings = settings;
+    this.latencyThresholdNanos = settings.latencyThreshold().toNanos();
+    this.limit = Math.max(settings.minLimit(), Math.min(settings.maxLimit(), settings.initialLimit()));
+  }
+
+  /**
+   * Takes a slot if the number of requests in flight is under the limit.
+   * @return the number of requests in flight including this one, or 0 if the request must be rejected
+   */
+  public int tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= (int) limit) {
+        return 0;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        return current + 1;
+      }
+    }
+  }
+
+  /**
+   * Frees the slot of a request and updates the limit with its outcome.
+   * @param inFlightAtStart Value returned by tryAcquire() for the request
+   * @param latencyNanos Time the request took
+   * @param failed True if the request failed (server error), it counts as a slow request
+   */
+  public void release(int inFlightAtStart, long latencyNanos, boolean failed) {
+    inFlight.decrementAndGet();
+    if (failed || latencyNanos > latencyThresholdNanos) {
+      decrease();
+    } else if (inFlightAtStart * 2 >= limit) {
+      // Only grow when the limit is actually used, an idle service would otherwise reach maxLimit
+      increase();
+    }
+  }
+
+  /**
+   * Frees the slot of a request without updating the limit (e.g. a long-running bulk request).
+   */
+  public void releaseIgnored() {
+    inFlight.decrementAndGet();
+  }
+
+  public int getLimit() {
+    return (int) limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  private synchronized void increase() {
+    limit = Math.min(settings.maxLimit(), limit + 1 / limit);
+  }
+
+  private synchronized void decrease() {
+    limit = Math.max(settings.minLimit(), limit * settings.backoffRatio());
+  }
+}
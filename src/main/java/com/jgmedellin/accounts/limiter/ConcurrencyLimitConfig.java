@@ -0,0 +1,30 @@
+package com.jgmedellin.accounts.limiter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Registers the adaptive concurrency limits in front of the controllers, see accounts.concurrency-limit.* in
+ * application.yaml.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "accounts.concurrency-limit", name = "enabled", havingValue = "true")
+public class ConcurrencyLimitConfig {
+
+  @Bean
+  public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+          ConcurrencyLimitProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+    FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+            new FilterRegistrationBean<>(new ConcurrencyLimitFilter(properties, objectMapper, meterRegistry));
+    registration.addUrlPatterns("/api/*");
+    // First of all, a rejection must not pay for the observations or the metrics of the other filters (it is counted in
+    // accounts.concurrency.requests)
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+    return registration;
+  }
+}
@@ -0,0 +1,200 @@
+package com.jgmedellin.accounts.limiter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.ErrorResponseDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies the adaptive concurrency limits to /api/**, with one limit for the reads and another for the writes so a
+ * burst of slow writes doesn't starve the fetches (and the other way around). The requests over the limit get a 503
+ * with Retry-After right away.
+ * A request keeps its slot until its response is complete: for an async request (the streamed export) that is when the
+ * async processing ends, not when the filter chain returns.
+ * The change stream is not limited here: its subscribers stay connected for up to the stream timeout, they would hold
+ * read slots and cut the read limit when they leave. ChangeFeed caps them with accounts.changes.max-subscribers.
+ * Published meters: accounts.concurrency.limit and accounts.concurrency.inflight (gauges), and
+ * accounts.concurrency.requests (counter, outcome accepted or rejected), all tagged with limiter=read|write.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+  private static final String CHANGE_STREAM_PATH = "/api/changes/stream";
+
+  private final Limiter read;
+
+  private final Limiter write;
+
+  private final String retryAfterSeconds;
+
+  private final ObjectMapper objectMapper;
+
+  public ConcurrencyLimitFilter(ConcurrencyLimitProperties properties, ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) {
+    this.read = new Limiter("read", new AimdLimit(properties.read()), meterRegistry);
+    this.write = new Limiter("write", new AimdLimit(properties.write()), meterRegistry);
+    this.retryAfterSeconds = String.valueOf(Math.max(1, properties.retryAfter().toSeconds()));
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    return !path.startsWith("/api/") || path.startsWith(CHANGE_STREAM_PATH);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws ServletException, IOException {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    Limiter limiter = isRead(request.getMethod(), path) ? read : write;
+    int inFlight = limiter.limit.tryAcquire();
+    if (inFlight == 0) {
+      limiter.rejected.increment();
+      reject(request, response);
+      return;
+    }
+    limiter.accepted.increment();
+
+    long start = System.nanoTime();
+    boolean failed = true;
+    boolean async = false;
+    try {
+      filterChain.doFilter(request, response);
+      failed = response.getStatus() >= 500;
+      async = request.isAsyncStarted();
+    } finally {
+      if (async) {
+        // The body is still being written by another thread, the async dispatches are not filtered again
+        request.getAsyncContext().addListener(new ReleaseOnComplete(limiter, path, inFlight, start));
+      } else {
+        release(limiter, path, inFlight, start, failed);
+      }
+    }
+  }
+
+  /**
+   * Utility method to give back the slot of a finished request
+   * @param limiter Limiter of the request
+   * @param path Path of the request
+   * @param inFlight Requests in flight when the request got its slot
+   * @param start System.nanoTime() when the request got its slot
+   * @param failed true if the request failed
+   */
+  private static void release(Limiter limiter, String path, int inFlight, long start, boolean failed) {
+    if (isBulk(path)) {
+      // Imports and exports are long by design, their latency says nothing about saturation
+      limiter.limit.releaseIgnored();
+    } else {
+      limiter.limit.release(inFlight, System.nanoTime() - start, failed);
+    }
+  }
+
+  /**
+   * Utility method to tell the read endpoints apart, the batch fetch is a POST but only reads
+   */
+  private static boolean isRead(String method, String path) {
+    return "GET".equals(method) || "HEAD".equals(method) || path.startsWith("/api/fetch");
+  }
+
+  private static boolean isBulk(String path) {
+    return path.startsWith("/api/import") || path.startsWith("/api/export");
+  }
+
+  private void reject(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    ErrorResponseDto errorResponseDto = new ErrorResponseDto("uri=" + request.getRequestURI(),
+            HttpStatus.SERVICE_UNAVAILABLE, AccountsConstants.MESSAGE_503, LocalDateTime.now());
+    response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+    response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    objectMapper.writeValue(response.getOutputStream(), errorResponseDto);
+  }
+
+  /**
+   * Releases the slot of an async request once, when it completes, fails or times out.
+   */
+  private static final class ReleaseOnComplete implements AsyncListener {
+
+    private final Limiter limiter;
+
+    private final String path;
+
+    private final int inFlight;
+
+    private final long start;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private ReleaseOnComplete(Limiter limiter, String path, int inFlight, long start) {
+      this.limiter = limiter;
+      this.path = path;
+      this.inFlight = inFlight;
+      this.start = start;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
+      releaseOnce(response == null || response.getStatus() >= 500);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      releaseOnce(true);
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      releaseOnce(true);
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      event.getAsyncContext().addListener(this); // Async processing started again, wait for the new one
+    }
+
+    private void releaseOnce(boolean failed) {
+      if (released.compareAndSet(false, true)) {
+        release(limiter, path, inFlight, start, failed);
+      }
+    }
+  }
+
+  /**
+   * A limit with its meters.
+   */
+  private static final class Limiter {
+
+    private final AimdLimit limit;
+
+    private final Counter accepted;
+
+    private final Counter rejected;
+
+    private Limiter(String name, AimdLimit limit, MeterRegistry meterRegistry) {
+      this.limit = limit;
+      Gauge.builder("accounts.concurrency.limit", limit, AimdLimit::getLimit)
+              .description("Current concurrency limit").tag("limiter", name).register(meterRegistry);
+      Gauge.builder("accounts.concurrency.inflight", limit, AimdLimit::getInFlight)
+              .description("Requests being processed").tag("limiter", name).register(meterRegistry);
+      this.accepted = Counter.builder("accounts.concurrency.requests").tag("limiter", name)
+              .tag("outcome", "accepted").register(meterRegistry);
+      this.rejected = Counter.builder("accounts.concurrency.requests").tag("limiter", name)
+              .tag("outcome", "rejected").register(meterRegistry);
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.jgmedellin.accounts.limiter;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.time.Duration;
+
+/**
+ * Settings of the adaptive concurrency limits of the API, mapped from accounts.concurrency-limit.*
+ * @param enabled False to let every request through
+ * @param retryAfter Value of the Retry-After header of the rejected requests
+ * @param read Limit of the read endpoints (GET and the batch fetch)
+ * @param write Limit of the write endpoints (create, update, patch, delete, import)
+ */
+@ConfigurationProperties(prefix = "accounts.concurrency-limit")
+public record ConcurrencyLimitProperties(boolean enabled, Duration retryAfter, Limit read, Limit write) {
+
+  /**
+   * @param initialLimit Concurrent requests allowed at startup
+   * @param minLimit The limit never goes below this value
+   * @param maxLimit The limit never goes above this value
+   * @param latencyThreshold A request slower than this means the service is saturated and the limit goes down
+   * @param backoffRatio The limit is multiplied by this value (0..1) when the service is saturated
+   */
+  public record Limit(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold, double backoffRatio) { }
+}
@@ -9,6 +9,16 @@ public class AccountsMapper {
     accountsDto.setAccountNumber(accounts.getAccountNumber());
     accountsDto.setAccountType(accounts.getAccountType());
     accountsDto.setBranchAddress(accounts.getBranchAddress());
+    accountsDto.setVersion(accounts.getVersion());
+    return accountsDto;
+  }
+
+  public static AccountsDto copyAccountsDto(AccountsDto source) {
+    AccountsDto accountsDto = new AccountsDto();
+    accountsDto.setAccountNumber(source.getAccountNumber());
+    accountsDto.setAccountType(source.getAccountType());
+    accountsDto.setBranchAddress(source.getBranchAddress());
+    accountsDto.setVersion(source.getVersion());
     return accountsDto;
   }
 
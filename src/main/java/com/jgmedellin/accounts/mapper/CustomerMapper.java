@@ -9,6 +9,19 @@ public class CustomerMapper {
     customerDto.setName(customer.getName());
     customerDto.setEmail(customer.getEmail());
     customerDto.setMobileNumber(customer.getMobileNumber());
+    customerDto.setVersion(customer.getVersion());
+    return customerDto;
+  }
+
+  public static CustomerDto copyCustomerDto(CustomerDto source) {
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName(source.getName());
+    customerDto.setEmail(source.getEmail());
+    customerDto.setMobileNumber(source.getMobileNumber());
+    customerDto.setVersion(source.getVersion());
+    if (source.getAccountsDto() != null) {
+      customerDto.setAccountsDto(AccountsMapper.copyAccountsDto(source.getAccountsDto()));
+    }
     return customerDto;
   }
 
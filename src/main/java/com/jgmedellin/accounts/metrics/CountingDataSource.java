@@ -0,0 +1,115 @@
+package com.jgmedellin.accounts.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * DataSource that counts, per thread, the statements executed and the rows read or written through its connections
+ * (see StatementCounter). The connections, statements and result sets are thin JDK proxies over the pooled ones.
+ */
+public class CountingDataSource extends DelegatingDataSource {
+
+  public CountingDataSource(DataSource targetDataSource) {
+    super(targetDataSource);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return proxy(Connection.class, new ConnectionHandler(super.getConnection()));
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return proxy(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(CountingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private record ConnectionHandler(Connection target) implements InvocationHandler {
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      // Identity of the proxy, not of the pooled connection (the transaction code compares connections)
+      if (method.getName().equals("equals")) {
+        return proxy == args[0];
+      }
+      if (method.getName().equals("hashCode")) {
+        return System.identityHashCode(proxy);
+      }
+      Object result = CountingDataSource.invoke(target, method, args);
+      return switch (method.getName()) {
+        case "prepareCall" -> proxy(CallableStatement.class, new StatementHandler(result, (String) args[0]));
+        case "prepareStatement" -> proxy(PreparedStatement.class, new StatementHandler(result, (String) args[0]));
+        case "createStatement" -> proxy(Statement.class, new StatementHandler(result, null));
+        default -> result;
+      };
+    }
+  }
+
+  private record StatementHandler(Object target, String preparedSql) implements InvocationHandler {
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if (!name.startsWith("execute") && !name.equals("getResultSet")) {
+        return CountingDataSource.invoke(target, method, args);
+      }
+      Object result = CountingDataSource.invoke(target, method, args);
+      if (name.startsWith("execute")) {
+        // Statement.execute*(sql) has its own SQL, PreparedStatement.execute*() the one it was prepared with
+        StatementCounter.statementExecuted(args != null && args.length > 0 && args[0] instanceof String sql ? sql
+                : preparedSql);
+      }
+      if (result instanceof ResultSet resultSet) {
+        return proxy(ResultSet.class, new ResultSetHandler(resultSet));
+      }
+      if (result instanceof Integer rows) {
+        StatementCounter.rowsWritten(rows);
+      } else if (result instanceof Long rows) {
+        StatementCounter.rowsWritten(rows);
+      } else if (result instanceof int[] batch) {
+        for (int rows : batch) {
+          StatementCounter.rowsWritten(rows);
+        }
+      } else if (result instanceof long[] batch) {
+        for (long rows : batch) {
+          StatementCounter.rowsWritten(rows);
+        }
+      }
+      return result;
+    }
+  }
+
+  private record ResultSetHandler(ResultSet target) implements InvocationHandler {
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = CountingDataSource.invoke(target, method, args);
+      if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+        StatementCounter.rowRead();
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.jgmedellin.accounts.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import javax.sql.DataSource;
+
+/**
+ * Hot-path metrics that Spring Boot doesn't record on its own: the SQL statements and rows of each request.
+ * The timers of the service methods (@Timed), the repositories, the HTTP requests and the Hibernate statistics are
+ * auto-configured, see management.* in application.yaml.
+ */
+@Configuration
+public class MetricsConfig {
+
+  /**
+   * Wraps the DataSource so every statement is counted. Static, so it doesn't initialize this configuration (and its
+   * dependencies) before the other post processors.
+   */
+  @Bean
+  public static BeanPostProcessor countingDataSourcePostProcessor() {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof CountingDataSource)) {
+          return new CountingDataSource(dataSource);
+        }
+        return bean;
+      }
+    };
+  }
+
+  @Bean
+  public FilterRegistrationBean<StatementMetricsFilter> statementMetricsFilter(ObjectProvider<MeterRegistry> registry) {
+    FilterRegistrationBean<StatementMetricsFilter> registration =
+            new FilterRegistrationBean<>(new StatementMetricsFilter(registry));
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1); // Around everything else that may use the DB
+    return registration;
+  }
+}
@@ -0,0 +1,82 @@
+package com.jgmedellin.accounts.metrics;
+
+/**
+ * Per-thread counters of the statements executed through CountingDataSource. The counters only grow, take a
+ * snapshot() before and after some work and subtract them to know what the work executed. Plain fields of a
+ * thread-local object, counting costs a few nanoseconds per statement.
+ */
+public final class StatementCounter {
+
+  private static final ThreadLocal<StatementCounter> CURRENT = ThreadLocal.withInitial(StatementCounter::new);
+
+  private long selects;
+
+  private long inserts;
+
+  private long updates;
+
+  private long deletes;
+
+  private long others;
+
+  private long rowsRead;
+
+  private long rowsWritten;
+
+  private StatementCounter() {
+  }
+
+  /**
+   * @return the counts of the current thread so far
+   */
+  public static StatementCounts snapshot() {
+    StatementCounter counter = CURRENT.get();
+    return new StatementCounts(counter.selects, counter.inserts, counter.updates, counter.deletes, counter.others,
+            counter.rowsRead, counter.rowsWritten);
+  }
+
+  /**
+   * Counts a statement executed by the current thread.
+   * @param sql SQL of the statement, classified by its first keyword
+   */
+  static void statementExecuted(String sql) {
+    StatementCounter counter = CURRENT.get();
+    int start = keywordStart(sql);
+    if (startsWith(sql, start, "select next value for")) {
+      // Sequence calls are amortized by the customer_seq/account_number_seq blocks, they are not per request work
+      counter.others++;
+    } else if (startsWith(sql, start, "select") || startsWith(sql, start, "with")) {
+      counter.selects++;
+    } else if (startsWith(sql, start, "insert")) {
+      counter.inserts++;
+    } else if (startsWith(sql, start, "update")) {
+      counter.updates++;
+    } else if (startsWith(sql, start, "delete")) {
+      counter.deletes++;
+    } else {
+      counter.others++;
+    }
+  }
+
+  static void rowRead() {
+    CURRENT.get().rowsRead++;
+  }
+
+  static void rowsWritten(long rows) {
+    if (rows > 0) {
+      CURRENT.get().rowsWritten += rows;
+    }
+  }
+
+  private static int keywordStart(String sql) {
+    int start = 0;
+    while (sql != null && start < sql.length() && (Character.isWhitespace(sql.charAt(start)) || sql.charAt(start) == '(')) {
+      start++;
+    }
+    return start;
+  }
+
+  private static boolean startsWith(String sql, int start, String keyword) {
+    return sql != null && sql.regionMatches(true, start, keyword, 0, keyword.length());
+  }
+}
@@ -0,0 +1,34 @@
+package com.jgmedellin.accounts.metrics;
+
+/**
+ * Number of SQL statements executed (round trips, a JDBC batch counts once) and rows read or written.
+ * @param selects SELECT statements
+ * @param inserts INSERT statements
+ * @param updates UPDATE statements
+ * @param deletes DELETE statements
+ * @param others Any other statement (sequence calls, DDL...)
+ * @param rowsRead Rows read from result sets
+ * @param rowsWritten Rows inserted, updated or deleted
+ */
+public record StatementCounts(long selects, long inserts, long updates, long deletes, long others, long rowsRead,
+                              long rowsWritten) {
+
+  public static final StatementCounts NONE = new StatementCounts(0, 0, 0, 0, 0, 0, 0);
+
+  /**
+   * @return the statements of all the types
+   */
+  public long statements() {
+    return selects + inserts + updates + deletes + others;
+  }
+
+  /**
+   * @param earlier Counts taken before these ones on the same thread
+   * @return what was executed between both counts
+   */
+  public StatementCounts minus(StatementCounts earlier) {
+    return new StatementCounts(selects - earlier.selects, inserts - earlier.inserts, updates - earlier.updates,
+            deletes - earlier.deletes, others - earlier.others, rowsRead - earlier.rowsRead,
+            rowsWritten - earlier.rowsWritten);
+  }
+}
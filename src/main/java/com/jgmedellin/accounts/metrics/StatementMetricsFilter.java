@@ -0,0 +1,55 @@
+package com.jgmedellin.accounts.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import java.io.IOException;
+
+/**
+ * Records how many SQL statements and rows each request used, tagged like http.server.requests (method and URI
+ * pattern), as accounts.db.statements and accounts.db.rows.
+ * Work done by other threads (e.g. the body of the streaming export) is not counted.
+ */
+public class StatementMetricsFilter extends OncePerRequestFilter {
+
+  private final ObjectProvider<MeterRegistry> registry;
+
+  public StatementMetricsFilter(ObjectProvider<MeterRegistry> registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws ServletException, IOException {
+    StatementCounts before = StatementCounter.snapshot();
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      StatementCounts used = StatementCounter.snapshot().minus(before);
+      MeterRegistry meterRegistry = registry.getIfAvailable();
+      if (meterRegistry != null) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("method", request.getMethod(), "uri", pattern != null ? pattern.toString() : "UNKNOWN");
+        DistributionSummary.builder("accounts.db.statements")
+                .description("SQL statements executed per request")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(used.statements());
+        DistributionSummary.builder("accounts.db.rows")
+                .description("Rows read or written per request")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(used.rowsRead() + used.rowsWritten());
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.jgmedellin.accounts.pagination;
+
+import com.jgmedellin.accounts.exception.InvalidPageTokenException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Continuation token of the accounts listing: the position (customer id, account number) of the last row of a page.
+ * The next page starts right after that row (keyset pagination), so it costs the same at any depth and rows inserted
+ * or deleted meanwhile don't shift the pages. Clients get it as an opaque Base64 string.
+ * @param customerId Customer id of the last row of the page
+ * @param accountNumber Account number of the last row of the page
+ */
+public record AccountsPageToken(long customerId, long accountNumber) {
+
+  /** Position before the first row, used when the client doesn't send a token. */
+  public static final AccountsPageToken FIRST_PAGE = new AccountsPageToken(0, 0);
+
+  private static final String VERSION = "v1";
+
+  /**
+   * @return the opaque token sent to the client
+   */
+  public String encode() {
+    String plain = VERSION + ":" + customerId + ":" + accountNumber;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads a token sent by the client.
+   * @param token Token of a previous page, null or empty for the first page
+   * @return the position where the page starts
+   * @throws InvalidPageTokenException if the token was not created by encode()
+   */
+  public static AccountsPageToken decode(String token) {
+    if (token == null || token.isEmpty()) {
+      return FIRST_PAGE;
+    }
+    try {
+      String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":");
+      if (parts.length != 3 || !VERSION.equals(parts[0])) {
+        throw new InvalidPageTokenException(token);
+      }
+      return new AccountsPageToken(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+    } catch (IllegalArgumentException e) { // Also NumberFormatException
+      throw new InvalidPageTokenException(token);
+    }
+  }
+}
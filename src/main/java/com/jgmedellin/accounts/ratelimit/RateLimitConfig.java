@@ -0,0 +1,30 @@
+package com.jgmedellin.accounts.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers the per-client rate limits of the AccountsController routes, see accounts.rate-limit.* in
+ * application.yaml and the profile files.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "accounts.rate-limit", name = "enabled", havingValue = "true")
+public class RateLimitConfig implements WebMvcConfigurer {
+
+  private final RateLimitProperties properties;
+
+  private final MeterRegistry meterRegistry;
+
+  public RateLimitConfig(RateLimitProperties properties, MeterRegistry meterRegistry) {
+    this.properties = properties;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(new RateLimitInterceptor(properties, meterRegistry)).addPathPatterns("/api/**");
+  }
+}
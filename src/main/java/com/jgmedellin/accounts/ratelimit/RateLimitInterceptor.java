@@ -0,0 +1,85 @@
+package com.jgmedellin.accounts.ratelimit;
+
+import com.jgmedellin.accounts.exception.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the per-client token buckets of the route of each request. It runs after the handler mapping, so the route
+ * is the path pattern of the controller method (the same for every account number of /api/accounts/{accountNumber}).
+ * A request over the limit throws RateLimitExceededException, answered by GlobalExceptionHandler with a 429. A request
+ * takes one token, the async dispatches of the async requests are not charged again.
+ * The client is the API key header if present, the IP otherwise. Behind a gateway the IP is the one the gateway got
+ * the request from (X-Forwarded-For, see server.forward-headers-strategy), not the gateway's own. The key is not
+ * validated here (the gateway does it), so a client sending a new key on each request would get new buckets: keep the
+ * default limit low enough for that.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+  private final String clientHeader;
+
+  private final Map<String, RouteLimit> routes = new HashMap<>();
+
+  private final RouteLimit defaultRoute;
+
+  public RateLimitInterceptor(RateLimitProperties properties, MeterRegistry meterRegistry) {
+    this.clientHeader = properties.clientHeader();
+    properties.routes().forEach((name, route) -> routes.put(route.method() + " " + route.path(),
+            new RouteLimit(name, new TokenBucketTable(route.limit(), properties.maxClients()), meterRegistry)));
+    this.defaultRoute = new RouteLimit("default",
+            new TokenBucketTable(properties.defaultLimit(), properties.maxClients()), meterRegistry);
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (request.getDispatcherType() == DispatcherType.ASYNC) {
+      return true; // An async request (export, change stream) comes back to write its result, it already paid its token
+    }
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    RouteLimit route = routes.getOrDefault(request.getMethod() + " " + pattern, defaultRoute);
+    long waitNanos = route.buckets.tryAcquire(clientOf(request), System.nanoTime());
+    if (waitNanos > 0) {
+      route.rejected.increment();
+      // Rounded up, a client retrying after Retry-After always finds a token
+      long retryAfterSeconds = (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+      throw new RateLimitExceededException(route.name, retryAfterSeconds);
+    }
+    return true;
+  }
+
+  /**
+   * Utility method to identify the client of a request, prefixed so an API key can't take the bucket of an IP.
+   * getRemoteAddr() is already the forwarded client IP when the request came through a trusted proxy.
+   */
+  private String clientOf(HttpServletRequest request) {
+    String apiKey = request.getHeader(clientHeader);
+    return apiKey != null && !apiKey.isBlank() ? "key:" + apiKey : "ip:" + request.getRemoteAddr();
+  }
+
+  /**
+   * The buckets of a route with its rejection counter.
+   */
+  private static final class RouteLimit {
+
+    private final String name;
+
+    private final TokenBucketTable buckets;
+
+    private final Counter rejected;
+
+    private RouteLimit(String name, TokenBucketTable buckets, MeterRegistry meterRegistry) {
+      this.name = name;
+      this.buckets = buckets;
+      this.rejected = Counter.builder("accounts.ratelimit.rejected").description("Requests rejected by the rate limit")
+              .tag("route", name).register(meterRegistry);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.jgmedellin.accounts.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.util.Map;
+
+/**
+ * Settings of the per-client rate limits, mapped from accounts.rate-limit.* (overridden per profile in
+ * application_qa.yaml and application_prod.yaml).
+ * @param enabled False to let every request through
+ * @param clientHeader Header with the API key of the client, the client IP is used when it is missing
+ * @param maxClients Buckets kept per route, the most idle clients are evicted above this number
+ * @param defaultLimit Limit of the /api routes that are not in routes
+ * @param routes Limits by route name, e.g. fetch: {method: GET, path: /api/fetch, ...}
+ */
+@ConfigurationProperties(prefix = "accounts.rate-limit")
+public record RateLimitProperties(boolean enabled, String clientHeader, int maxClients, Limit defaultLimit,
+                                  Map<String, Route> routes) {
+
+  /**
+   * @param requestsPerSecond Sustained rate allowed to each client
+   * @param burst Requests a client can send at once after being idle
+   */
+  public record Limit(double requestsPerSecond, int burst) { }
+
+  /**
+   * @param method HTTP method of the route
+   * @param path Path pattern of the route, as declared in the controller (e.g. /api/accounts/{accountNumber})
+   * @param requestsPerSecond Sustained rate allowed to each client
+   * @param burst Requests a client can send at once after being idle
+   */
+  public record Route(String method, String path, double requestsPerSecond, int burst) {
+
+    public Limit limit() {
+      return new Limit(requestsPerSecond, burst);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package com.jgmedellin.accounts.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Token buckets of the clients of a route, in a bounded lock-free table.
+ * Each bucket is a single AtomicLong with its theoretical arrival time (GCRA, the "virtual scheduling" form of a
+ * token bucket): a request is allowed if the bucket isn't more than burst - 1 intervals in the future, and moves it
+ * one interval forward. No refill thread, no lock, a CAS per request.
+ * The table is set-associative: the hash of the client picks a stripe of 8 slots and the client lives in one of them.
+ * When the 8 slots are taken, the bucket with the most tokens (the most idle client) is replaced. A bucket that is
+ * back to full holds no state, so replacing it is exact; only a table with more than maxClients active clients
+ * forgets part of their debt. The memory never grows above the table.
+ */
+public class TokenBucketTable {
+
+  private static final int WAYS = 8; // Slots per stripe
+
+  private final AtomicReferenceArray<Bucket> slots;
+
+  private final int stripeMask;
+
+  private final long intervalNanos;
+
+  private final long toleranceNanos;
+
+  /**
+   * @param limit Rate and burst of each client
+   * @param maxClients Minimum number of buckets kept, rounded up to a power of two
+   */
+  public TokenBucketTable(RateLimitProperties.Limit limit, int maxClients) {
+    if (limit.requestsPerSecond() <= 0 || limit.burst() < 1 || maxClients < 1) {
+      throw new IllegalArgumentException("Invalid rate limit: " + limit + ", max clients: " + maxClients);
+    }
+    int stripes = 1;
+    while (stripes * WAYS < maxClients) {
+      stripes <<= 1;
+    }
+    this.slots = new AtomicReferenceArray<>(stripes * WAYS);
+    this.stripeMask = stripes - 1;
+    this.intervalNanos = (long) (1_000_000_000L / limit.requestsPerSecond());
+    this.toleranceNanos = intervalNanos * (limit.burst() - 1);
+  }
+
+  /**
+   * Takes a token from the bucket of the client.
+   * @param client Client identifier
+   * @param nowNanos Current time (System.nanoTime())
+   * @return 0 if the request is allowed, or the nanos to wait until the next token otherwise
+   */
+  public long tryAcquire(String client, long nowNanos) {
+    Bucket bucket = bucketOf(client, nowNanos);
+    while (true) {
+      long arrival = bucket.get();
+      long wait = arrival - toleranceNanos - nowNanos;
+      if (wait > 0) {
+        return wait;
+      }
+      if (bucket.compareAndSet(arrival, Math.max(arrival, nowNanos) + intervalNanos)) {
+        return 0;
+      }
+    }
+  }
+
+  /**
+   * @return the number of buckets the table can hold
+   */
+  public int capacity() {
+    return slots.length();
+  }
+
+  /**
+   * Utility method to find the bucket of the client, or create it in its stripe
+   */
+  private Bucket bucketOf(String client, long nowNanos) {
+    int hash = client.hashCode() * 0x9E3779B9; // Fibonacci hashing, the high bits get the entropy of all the bits
+    int start = ((hash ^ (hash >>> 16)) & stripeMask) * WAYS;
+    while (true) {
+      int victim = -1;
+      Bucket victimBucket = null;
+      for (int slot = start; slot < start + WAYS; slot++) {
+        Bucket bucket = slots.get(slot);
+        if (bucket == null) {
+          Bucket created = new Bucket(client, nowNanos);
+          if (slots.compareAndSet(slot, null, created)) {
+            return created;
+          }
+          bucket = slots.get(slot); // Another request took the slot, maybe for the same client
+        }
+        if (bucket.client.equals(client)) {
+          return bucket;
+        }
+        if (victimBucket == null || bucket.get() < victimBucket.get()) {
+          victim = slot;
+          victimBucket = bucket;
+        }
+      }
+      // The stripe is full: the client replaces the most idle one, unless another request replaced it first
+      Bucket created = new Bucket(client, nowNanos);
+      if (slots.compareAndSet(victim, victimBucket, created)) {
+        return created;
+      }
+    }
+  }
+
+  /**
+   * Bucket of a client, the value is its theoretical arrival time in nanos.
+   */
+  private static final class Bucket extends AtomicLong {
+
+    private final String client;
+
+    private Bucket(String client, long nowNanos) {
+      super(nowNanos);
+      this.client = client;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.jgmedellin.accounts.replicas;
+
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Read/write split of the DB traffic: the read-only transactions (@Transactional(readOnly = true) and the read-only
+ * TransactionTemplates of the service) use the connections of the replicas, everything else uses the primary (see
+ * ReadWriteRoutingDataSource). A thread pinned to the primary reads from the primary too, ReadYourWritesFilter pins
+ * the requests of the clients that made a change in the last accounts.replicas.read-your-writes-window.
+ * Without accounts.replicas.enabled there are no replicas and the pinning does nothing.
+ */
+@Component
+public class ReadReplicas {
+
+  private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+  private final boolean enabled;
+
+  private final Executor afterReadYourWritesWindow; // null without replicas
+
+  public ReadReplicas(ReplicaProperties properties) {
+    this.enabled = properties.enabled();
+    Duration window = properties.readYourWritesWindow();
+    if (enabled && (properties.urls() == null || properties.urls().isEmpty() || window == null)) {
+      throw new IllegalStateException("accounts.replicas needs at least one url and a read-your-writes-window");
+    }
+    this.afterReadYourWritesWindow = enabled
+            ? CompletableFuture.delayedExecutor(window.toMillis(), TimeUnit.MILLISECONDS) : null;
+  }
+
+  /**
+   * @return true if the reads of the current thread go to the primary instead of the replicas
+   */
+  public boolean isPinnedToPrimary() {
+    return enabled && pinnedToPrimary();
+  }
+
+  /**
+   * Runs an action with the connections of the primary, also for its read-only transactions
+   * @param action Action to run
+   * @return the result of the action
+   */
+  public <T> T onPrimary(Supplier<T> action) {
+    if (!enabled || !pinToPrimary()) {
+      return action.get();
+    }
+    try {
+      return action.get();
+    } finally {
+      unpin();
+    }
+  }
+
+  /**
+   * Runs an action again once the replicas have caught up with the changes committed until now (after the
+   * read-your-writes window), e.g. to evict a cache entry reloaded from a replica that was behind
+   * @param action Action to run in another thread, nothing is done without replicas
+   */
+  public void afterReplication(Runnable action) {
+    if (enabled) {
+      afterReadYourWritesWindow.execute(action);
+    }
+  }
+
+  /**
+   * Pins the current thread to the primary
+   * @return false if it was already pinned (the caller must not unpin it then)
+   */
+  static boolean pinToPrimary() {
+    if (pinnedToPrimary()) {
+      return false;
+    }
+    PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    return true;
+  }
+
+  static void unpin() {
+    PINNED_TO_PRIMARY.remove();
+  }
+
+  static boolean pinnedToPrimary() {
+    return PINNED_TO_PRIMARY.get() != null;
+  }
+
+}
@@ -0,0 +1,47 @@
+package com.jgmedellin.accounts.replicas;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource that hands out the connections of a replica inside a read-only transaction (round robin over the
+ * replicas) and the connections of the primary otherwise: writes, statements outside of a transaction (sequences,
+ * the idempotency store...) and the threads pinned to the primary (see ReadReplicas).
+ * It is wrapped in a LazyConnectionDataSourceProxy, so the connection is taken at the first statement, once the
+ * transaction manager has marked the transaction as read-only.
+ */
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+  private static final String PRIMARY = "primary";
+
+  private final int replicaCount;
+
+  private final AtomicInteger nextReplica = new AtomicInteger();
+
+  ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+    Map<Object, Object> targets = new HashMap<>();
+    targets.put(PRIMARY, primary);
+    for (int replica = 0; replica < replicas.size(); replica++) {
+      targets.put(replica, replicas.get(replica));
+    }
+    this.replicaCount = replicas.size();
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(primary);
+    setLenientFallback(false); // An unknown replica is a bug, not the primary
+    afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || ReadReplicas.pinnedToPrimary()) {
+      return PRIMARY;
+    }
+    return Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+  }
+
+}
@@ -0,0 +1,80 @@
+package com.jgmedellin.accounts.replicas;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import java.io.IOException;
+
+/**
+ * Read-your-writes consistency on top of the replicas: a client (API key, or IP address without it) that sent a
+ * mutating request reads from the primary during the next accounts.replicas.read-your-writes-window, so it sees its
+ * own changes even if the replicas are behind. The other clients keep reading from the replicas.
+ * The recent writers are remembered by this instance only, a client balanced to another instance right after a write
+ * may read from a replica. The export and the change stream run in other threads and always read from the replicas.
+ * Published meters: accounts.replicas.pinned (counter of the requests sent to the primary by the window).
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+  private final String clientHeader;
+
+  private final Cache<String, Boolean> recentWriters;
+
+  private final Counter pinned;
+
+  public ReadYourWritesFilter(ReplicaProperties properties, MeterRegistry meterRegistry) {
+    this.clientHeader = properties.clientHeader();
+    this.recentWriters = Caffeine.newBuilder()
+            .maximumSize(properties.maxClients())
+            .expireAfterWrite(properties.readYourWritesWindow())
+            .build();
+    this.pinned = Counter.builder("accounts.replicas.pinned")
+            .description("Requests sent to the primary because their client changed something recently")
+            .register(meterRegistry);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws ServletException, IOException {
+    String client = clientKey(request);
+    boolean mutating = isMutating(request.getMethod());
+    if (mutating) {
+      recentWriters.put(client, Boolean.TRUE); // A read running concurrently with the write already uses the primary
+    }
+    boolean pinnedHere = recentWriters.getIfPresent(client) != null && ReadReplicas.pinToPrimary();
+    if (pinnedHere && !mutating) {
+      pinned.increment();
+    }
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      if (pinnedHere) {
+        ReadReplicas.unpin();
+      }
+      if (mutating) {
+        recentWriters.put(client, Boolean.TRUE); // The window starts once the changes are committed
+      }
+    }
+  }
+
+  /**
+   * Utility method to identify the client of a request
+   * @param request Request of the client
+   * @return its API key, or its IP address if it has none (the forwarded one behind a trusted proxy, see
+   * server.forward-headers-strategy)
+   */
+  private String clientKey(HttpServletRequest request) {
+    String apiKey = request.getHeader(clientHeader);
+    return apiKey != null && !apiKey.isBlank() ? "key:" + apiKey : "ip:" + request.getRemoteAddr();
+  }
+
+  private static boolean isMutating(String method) {
+    return !"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method);
+  }
+
+}
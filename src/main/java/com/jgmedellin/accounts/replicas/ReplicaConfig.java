@@ -0,0 +1,87 @@
+package com.jgmedellin.accounts.replicas;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas, see accounts.replicas.* in application.yaml: one connection pool for the primary (spring.datasource)
+ * and one per replica (published as hikaricp.* meters with pool=accounts-primary and accounts-replica-N) behind a
+ * single routing DataSource, so JPA, the repositories and the transactions stay as they are.
+ * The replicas are kept up to date by the DB replication, not by this application. The request bound persistence
+ * context (open-in-view) must be disabled: it keeps the connection of the first transaction of a request, a replica
+ * one for the writes that follow a read. It can't be combined with the sharded mode yet.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "accounts.replicas", name = "enabled", havingValue = "true")
+public class ReplicaConfig {
+
+  @Bean
+  ReplicaDataSources replicaDataSources(ReplicaProperties properties, DataSourceProperties dataSourceProperties,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${spring.jpa.open-in-view:true}") boolean openInView,
+                                        @Value("${accounts.sharding.enabled:false}") boolean sharding) {
+    if (openInView) {
+      throw new IllegalStateException("accounts.replicas.enabled needs spring.jpa.open-in-view=false");
+    }
+    if (sharding) {
+      throw new IllegalStateException("accounts.replicas.enabled can't be combined with accounts.sharding.enabled");
+    }
+    HikariDataSource primary = pool(dataSourceProperties, dataSourceProperties.determineUrl(), "accounts-primary",
+            meterRegistry);
+    List<HikariDataSource> replicas = new ArrayList<>();
+    for (int replica = 0; replica < properties.urls().size(); replica++) {
+      replicas.add(pool(dataSourceProperties, properties.urls().get(replica), "accounts-replica-" + replica,
+              meterRegistry));
+    }
+    return new ReplicaDataSources(primary, List.copyOf(replicas));
+  }
+
+  @Bean
+  public DataSource dataSource(ReplicaDataSources replicaDataSources) {
+    // The connection is taken at the first statement, once the transaction is known to be read-only or not
+    return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(replicaDataSources.primary(),
+            List.copyOf(replicaDataSources.replicas())));
+  }
+
+  @Bean
+  public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReplicaProperties properties,
+                                                                           MeterRegistry meterRegistry) {
+    FilterRegistrationBean<ReadYourWritesFilter> registration =
+            new FilterRegistrationBean<>(new ReadYourWritesFilter(properties, meterRegistry));
+    registration.addUrlPatterns("/api/*");
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2); // After the replays of the idempotency filter
+    return registration;
+  }
+
+  /**
+   * Utility method to create the connection pool of a database
+   * @param dataSourceProperties Settings of spring.datasource (driver, username, password...)
+   * @param url JDBC URL of the database
+   * @param poolName Name of the pool, the pool tag of its meters
+   * @param meterRegistry Registry of the meters of the pool
+   * @return the pool
+   */
+  private static HikariDataSource pool(DataSourceProperties dataSourceProperties, String url, String poolName,
+                                       MeterRegistry meterRegistry) {
+    HikariDataSource pool = dataSourceProperties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .url(url)
+            .build();
+    pool.setPoolName(poolName);
+    pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+    return pool;
+  }
+
+}
@@ -0,0 +1,21 @@
+package com.jgmedellin.accounts.replicas;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Connection pools of the primary and of the replicas. They are not DataSource beans themselves: JPA and the
+ * repositories only see the routing DataSource. Closed with the application context.
+ * @param primary Pool of the primary
+ * @param replicas Pool of each replica
+ */
+record ReplicaDataSources(HikariDataSource primary, List<HikariDataSource> replicas) implements Closeable {
+
+  @Override
+  public void close() {
+    replicas.forEach(HikariDataSource::close);
+    primary.close();
+  }
+
+}
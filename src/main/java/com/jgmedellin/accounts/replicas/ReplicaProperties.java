@@ -0,0 +1,18 @@
+package com.jgmedellin.accounts.replicas;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Settings of the read replicas, mapped from accounts.replicas.*.
+ * @param enabled True to send the read-only transactions to the replicas, the writes stay on spring.datasource.url
+ * @param urls JDBC URL of each replica, the username, password and pool settings come from spring.datasource
+ * @param readYourWritesWindow How long a client reads from the primary after a mutating request, it must cover the
+ *                             replication lag
+ * @param clientHeader Header with the API key of the client (the IP address is used without it)
+ * @param maxClients Recent writers remembered, the oldest ones are forgotten above this number
+ */
+@ConfigurationProperties(prefix = "accounts.replicas")
+public record ReplicaProperties(boolean enabled, List<String> urls, Duration readYourWritesWindow,
+                                String clientHeader, int maxClients) { }
@@ -1,10 +1,17 @@
 package com.jgmedellin.accounts.repository;
 
 import com.jgmedellin.accounts.entity.Accounts;
+import com.jgmedellin.accounts.repository.projection.CustomerWithAccount;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -17,12 +24,87 @@ public interface AccountsRepository extends JpaRepository<Accounts, Long> {
    */
   Optional<Accounts> findByCustomerId(Long customerId);
 
+  /**
+   * Fetches the account and its customer given the account number, in a single joined query.
+   * Inside a transaction both entities are managed, so their changes are saved by dirty checking.
+   * @param accountNumber Account number
+   * @return Optional object of the account with its customer (the customer is null if it doesn't exist)
+   */
+  @Query("select new com.jgmedellin.accounts.repository.projection.CustomerWithAccount(c, a) " +
+          "from Accounts a left join Customer c on c.customerId = a.customerId where a.accountNumber = :accountNumber")
+  Optional<CustomerWithAccount> findWithCustomerByAccountNumber(@Param("accountNumber") Long accountNumber);
+
+  /**
+   * Fetches the next page of accounts with their customers, ordered by customer id and account number (keyset
+   * pagination). The page starts with a range scan on idx_accounts_customer_id_account_number right after the last
+   * row of the previous page, so it costs the same at page 1 and at page 100,000 (an OFFSET reads every skipped row).
+   * The createdAt bounds are not in the index: the scan discards the rows out of the range, so a page of a narrow
+   * date range reads (and costs) as many rows as it has to skip to fill the page.
+   * @param customerId Customer id of the last row of the previous page (0 for the first page)
+   * @param accountNumber Account number of the last row of the previous page (0 for the first page)
+   * @param createdFrom Only accounts created at or after this time, null for no lower bound
+   * @param createdBefore Only accounts created before this time, null for no upper bound
+   * @param limit Max number of rows of the page
+   * @return the page of accounts with their customers
+   */
+  // customerId >= :customerId is the index range, the OR only discards the rows of that customer already returned
+  @Query("select new com.jgmedellin.accounts.repository.projection.CustomerWithAccount(c, a) " +
+          "from Accounts a join Customer c on c.customerId = a.customerId " +
+          "where a.customerId >= :customerId and (a.customerId > :customerId or a.accountNumber > :accountNumber) " +
+          "and (cast(:createdFrom as LocalDateTime) is null or a.createdAt >= :createdFrom) " +
+          "and (cast(:createdBefore as LocalDateTime) is null or a.createdAt < :createdBefore) " +
+          "order by a.customerId, a.accountNumber")
+  List<CustomerWithAccount> findPageAfter(@Param("customerId") Long customerId,
+                                          @Param("accountNumber") Long accountNumber,
+                                          @Param("createdFrom") LocalDateTime createdFrom,
+                                          @Param("createdBefore") LocalDateTime createdBefore,
+                                          Limit limit);
+
+  /**
+   * Same page as findPageAfter, only with the accounts of one type. The range scan is on
+   * idx_accounts_account_type_customer_id_account_number, so the other types are not read at all and the page costs
+   * the same however rare the type is (the same createdAt limitation applies).
+   * @param accountType Account type of the accounts
+   * @param customerId Customer id of the last row of the previous page (0 for the first page)
+   * @param accountNumber Account number of the last row of the previous page (0 for the first page)
+   * @param createdFrom Only accounts created at or after this time, null for no lower bound
+   * @param createdBefore Only accounts created before this time, null for no upper bound
+   * @param limit Max number of rows of the page
+   * @return the page of accounts with their customers
+   */
+  // The type is constant, ordering by it too is the same order and lets the DB read the index in order without a sort
+  @Query("select new com.jgmedellin.accounts.repository.projection.CustomerWithAccount(c, a) " +
+          "from Accounts a join Customer c on c.customerId = a.customerId " +
+          "where a.accountType = :accountType " +
+          "and a.customerId >= :customerId and (a.customerId > :customerId or a.accountNumber > :accountNumber) " +
+          "and (cast(:createdFrom as LocalDateTime) is null or a.createdAt >= :createdFrom) " +
+          "and (cast(:createdBefore as LocalDateTime) is null or a.createdAt < :createdBefore) " +
+          "order by a.accountType, a.customerId, a.accountNumber")
+  List<CustomerWithAccount> findPageOfTypeAfter(@Param("accountType") String accountType,
+                                                @Param("customerId") Long customerId,
+                                                @Param("accountNumber") Long accountNumber,
+                                                @Param("createdFrom") LocalDateTime createdFrom,
+                                                @Param("createdBefore") LocalDateTime createdBefore,
+                                                Limit limit);
+
   /**
    * Deletes the account from the DB given the customer id.
+   * A single DELETE statement, a derived delete would load each entity before removing it.
    * @param customerId Customer id number
    */
   @Transactional // To perform a transaction in the DB, we need to use @Transactional annotation
   @Modifying // To perform a modification in the DB, we need to use @Modifying annotation
-  void deleteByCustomerId(Long customerId);
+  @Query("delete from Accounts a where a.customerId = :customerId")
+  void deleteByCustomerId(@Param("customerId") Long customerId);
+
+  /**
+   * Deletes the accounts of many customers with a single DELETE statement.
+   * @param customerIds Customer id numbers (keep it under AccountsConstants.IN_CLAUSE_MAX_SIZE values)
+   * @return the number of deleted accounts
+   */
+  @Transactional
+  @Modifying
+  @Query("delete from Accounts a where a.customerId in :customerIds")
+  int deleteByCustomerIdIn(@Param("customerIds") Collection<Long> customerIds);
 
 }
\ No newline at end of file
@@ -1,8 +1,18 @@
 package com.jgmedellin.accounts.repository;
 
 import com.jgmedellin.accounts.entity.Customer;
+import com.jgmedellin.accounts.etag.AccountETag;
+import com.jgmedellin.accounts.repository.projection.CustomerKey;
+import com.jgmedellin.accounts.repository.projection.CustomerWithAccount;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -10,4 +20,90 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
 
   Optional<Customer> findByMobileNumber(String mobileNumber);
 
-}
\ No newline at end of file
+  /**
+   * Fetches which of the given mobile numbers are already registered, in a single query.
+   * @param mobileNumbers Mobile numbers to check (keep it under AccountsConstants.IN_CLAUSE_MAX_SIZE values)
+   * @return the mobile numbers that already exist in the DB
+   */
+  @Query("select c.mobileNumber from Customer c where c.mobileNumber in :mobileNumbers")
+  List<String> findExistingMobileNumbers(@Param("mobileNumbers") Collection<String> mobileNumbers);
+
+  /**
+   * Fetches the customer ids of the given mobile numbers, in a single query.
+   * @param mobileNumbers Mobile numbers to find (keep it under AccountsConstants.IN_CLAUSE_MAX_SIZE values)
+   * @return the customer id and mobile number of the customers found
+   */
+  @Query("select new com.jgmedellin.accounts.repository.projection.CustomerKey(c.customerId, c.mobileNumber) " +
+          "from Customer c where c.mobileNumber in :mobileNumbers")
+  List<CustomerKey> findKeysByMobileNumberIn(@Param("mobileNumbers") Collection<String> mobileNumbers);
+
+  /**
+   * Deletes many customers with a single DELETE statement.
+   * @param customerIds Customer id numbers (keep it under AccountsConstants.IN_CLAUSE_MAX_SIZE values)
+   * @return the number of deleted customers
+   */
+  @Transactional
+  @Modifying
+  @Query("delete from Customer c where c.customerId in :customerIds")
+  int deleteByCustomerIdIn(@Param("customerIds") Collection<Long> customerIds);
+
+  /**
+   * Fetches the customer and its account given the mobile number, in a single joined query.
+   * @param mobileNumber Mobile number of the customer
+   * @return Optional object of the customer with its account (the account is null if the customer has none)
+   */
+  @Query("select new com.jgmedellin.accounts.repository.projection.CustomerWithAccount(c, a) " +
+          "from Customer c left join Accounts a on a.customerId = c.customerId where c.mobileNumber = :mobileNumber")
+  Optional<CustomerWithAccount> findWithAccountByMobileNumber(@Param("mobileNumber") String mobileNumber);
+
+  /**
+   * Fetches only the versions of the customer and its account given the mobile number, to tell if a client already
+   * has the current data without loading the entities.
+   * @param mobileNumber Mobile number of the customer
+   * @return Optional object of the ETag of the account (empty if the customer or the account doesn't exist)
+   */
+  @Query("select new com.jgmedellin.accounts.etag.AccountETag(a.accountNumber, c.version, a.version) " +
+          "from Customer c join Accounts a on a.customerId = c.customerId where c.mobileNumber = :mobileNumber")
+  Optional<AccountETag> findETagByMobileNumber(@Param("mobileNumber") String mobileNumber);
+
+  /**
+   * Fetches the customer and its account given the customer id, in a single joined query.
+   * @param customerId Customer id number
+   * @return Optional object of the customer with its account (the account is null if the customer has none)
+   */
+  @Query("select new com.jgmedellin.accounts.repository.projection.CustomerWithAccount(c, a) " +
+          "from Customer c left join Accounts a on a.customerId = c.customerId where c.customerId = :customerId")
+  Optional<CustomerWithAccount> findWithAccountByCustomerId(@Param("customerId") Long customerId);
+
+  /**
+   * Fetches the next page of customers with their accounts, ordered by customer id (keyset pagination).
+   * Every page is an index range scan on the primary key, no matter how deep it is.
+   * @param afterCustomerId Last customer id of the previous page (0 for the first page)
+   * @param limit Max number of rows of the page
+   * @return the page of customers with their accounts, customers without an account are skipped
+   */
+  @Query("select new com.jgmedellin.accounts.repository.projection.CustomerWithAccount(c, a) " +
+          "from Customer c join Accounts a on a.customerId = c.customerId " +
+          "where c.customerId > :afterCustomerId order by c.customerId")
+  List<CustomerWithAccount> findWithAccountAfter(@Param("afterCustomerId") Long afterCustomerId, Limit limit);
+
+  /**
+   * Fetches the next page of customer ids and mobile numbers, ordered by customer id (keyset pagination).
+   * @param afterCustomerId Last customer id of the previous page (0 for the first page)
+   * @param limit Max number of rows of the page
+   * @return the page of customer ids and mobile numbers
+   */
+  @Query("select new com.jgmedellin.accounts.repository.projection.CustomerKey(c.customerId, c.mobileNumber) " +
+          "from Customer c where c.customerId > :afterCustomerId order by c.customerId")
+  List<CustomerKey> findKeysAfter(@Param("afterCustomerId") Long afterCustomerId, Limit limit);
+
+  /**
+   * Fetches the customers and their accounts given their mobile numbers, in a single joined query.
+   * @param mobileNumbers Mobile numbers to fetch (keep it under AccountsConstants.IN_CLAUSE_MAX_SIZE values)
+   * @return the customers found with their account, customers without an account are not returned
+   */
+  @Query("select new com.jgmedellin.accounts.repository.projection.CustomerWithAccount(c, a) " +
+          "from Customer c join Accounts a on a.customerId = c.customerId where c.mobileNumber in :mobileNumbers")
+  List<CustomerWithAccount> findWithAccountByMobileNumberIn(@Param("mobileNumbers") Collection<String> mobileNumbers);
+
+}
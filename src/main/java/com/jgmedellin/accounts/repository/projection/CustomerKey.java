@@ -0,0 +1,8 @@
+package com.jgmedellin.accounts.repository.projection;
+
+/**
+ * Projection with the two identifiers of a customer, used to build in-memory lookups without loading the entities.
+ * @param customerId Customer id number
+ * @param mobileNumber Mobile number of the customer
+ */
+public record CustomerKey(Long customerId, String mobileNumber) { }
@@ -0,0 +1,11 @@
+package com.jgmedellin.accounts.repository.projection;
+
+import com.jgmedellin.accounts.entity.Accounts;
+import com.jgmedellin.accounts.entity.Customer;
+
+/**
+ * Projection used to read a customer together with its account in a single joined query.
+ * @param customer Customer entity
+ * @param account Account entity of the customer
+ */
+public record CustomerWithAccount(Customer customer, Accounts account) { }
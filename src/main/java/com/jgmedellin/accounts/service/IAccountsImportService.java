@@ -0,0 +1,20 @@
+package com.jgmedellin.accounts.service;
+
+import com.jgmedellin.accounts.dto.ImportResultDto;
+import com.jgmedellin.accounts.importer.ImportFormat;
+import java.io.InputStream;
+
+public interface IAccountsImportService {
+
+  /**
+   * Creates an account for each customer of an import file, reading the file incrementally and committing the
+   * customers in chunks. Invalid or already registered customers are reported in the result instead of failing the
+   * import.
+   * @param inputStream Content of the file (UTF-8), one customer per line
+   * @param format Format of the file
+   * @param resumeAfterRow Rows up to this one (included) are skipped, 0 to import the whole file
+   * @return the result of the import, with the rows that failed and the last committed row
+   */
+  ImportResultDto importCustomers(InputStream inputStream, ImportFormat format, long resumeAfterRow);
+
+}
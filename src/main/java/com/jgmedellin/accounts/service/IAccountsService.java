@@ -1,6 +1,15 @@
 package com.jgmedellin.accounts.service;
 
+import com.jgmedellin.accounts.dto.AccountsPageDto;
+import com.jgmedellin.accounts.dto.AccountsPatchDto;
+import com.jgmedellin.accounts.dto.CreateAccountResultDto;
 import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.dto.DeleteAccountsResultDto;
+import com.jgmedellin.accounts.dto.FetchAccountsResultDto;
+import com.jgmedellin.accounts.etag.AccountETag;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface IAccountsService {
 
@@ -10,6 +19,14 @@ public interface IAccountsService {
    */
   void createAccount(CustomerDto customerDto);
 
+  /**
+   * Creates a new account for each of the given customers using batched inserts.
+   * Invalid or already registered customers are reported in the result instead of failing the whole batch.
+   * @param customerDtos Customer details (name, email, mobile number) of every new account
+   * @return the result of each item, in the same order as the request
+   */
+  List<CreateAccountResultDto> createAccounts(List<CustomerDto> customerDtos);
+
   /**
    * Fetches the account details given the mobile number.
    * @param mobileNumber Mobile number of the customer
@@ -17,12 +34,54 @@ public interface IAccountsService {
    */
   CustomerDto fetchAccount(String mobileNumber);
 
+  /**
+   * Fetches only the current ETag of the account details given the mobile number, much cheaper than fetchAccount().
+   * @param mobileNumber Mobile number of the customer
+   * @return the ETag of the account details
+   */
+  AccountETag fetchAccountETag(String mobileNumber);
+
+  /**
+   * Fetches the account details of many customers at once given their mobile numbers.
+   * @param mobileNumbers Mobile numbers of the customers
+   * @return the customers found by mobile number, plus the mobile numbers that were not found
+   */
+  FetchAccountsResultDto fetchAccounts(List<String> mobileNumbers);
+
+  /**
+   * Lists the accounts with their customers one page at a time, ordered by customer id and account number.
+   * @param accountType Only accounts of this type, null for any type
+   * @param createdFrom Only accounts created on or after this date, null for no lower bound
+   * @param createdTo Only accounts created on or before this date, null for no upper bound
+   * @param pageToken Token of the previous page, null for the first page
+   * @param size Max number of accounts of the page
+   * @return the page of accounts, with the token of the next page (if any)
+   */
+  AccountsPageDto listAccounts(String accountType, LocalDate createdFrom, LocalDate createdTo, String pageToken,
+                               int size);
+
+  /**
+   * Reads every customer with its account, one page at a time, so the memory use doesn't depend on the table size.
+   * No transaction is open while the consumer runs, it can be slow (e.g. writing to the network).
+   * @param pageConsumer Receives each page of customers, in customer id order
+   */
+  void exportAccounts(Consumer<List<CustomerDto>> pageConsumer);
+
   /**
    * Updates certain account details given the customer details.
    * @param customerDto Customer details (name, email, mobile number, account details)
+   * @param expectedETag ETag the account must have (If-Match), null to update any version
    * @return boolean value indicating the success of the update operation
    */
-  boolean updateAccount(CustomerDto customerDto);
+  boolean updateAccount(CustomerDto customerDto, AccountETag expectedETag);
+
+  /**
+   * Changes only the given account and customer fields, in a single transaction.
+   * @param accountNumber Account number of the account to change
+   * @param accountsPatchDto Fields to change (null fields are left as they are)
+   * @param expectedETag ETag the account must have (If-Match), null to change any version
+   */
+  void patchAccount(Long accountNumber, AccountsPatchDto accountsPatchDto, AccountETag expectedETag);
 
   /**
    * Deletes the account given the mobile number.
@@ -31,4 +90,12 @@ public interface IAccountsService {
    */
   boolean deleteAccount(String mobileNumber);
 
+  /**
+   * Deletes the accounts of many customers given their mobile numbers, using set-based deletes in chunks.
+   * Each chunk is deleted in its own transaction.
+   * @param mobileNumbers Mobile numbers of the customers
+   * @return how many customers were deleted and which mobile numbers were not found
+   */
+  DeleteAccountsResultDto deleteAccounts(List<String> mobileNumbers);
+
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.jgmedellin.accounts.service;
+
+import com.jgmedellin.accounts.dto.AuditPageDto;
+
+public interface IAuditService {
+
+  /**
+   * Finds the changes of the customers and accounts in the audit trail, in the order they were committed.
+   * The audit log is only indexed by sequence, the filters are applied while reading it from fromSequence on.
+   * @param fromSequence First sequence to read
+   * @param entity Only the changes of this entity (Customer or Accounts), null for all of them
+   * @param entityId Only the changes of this customer id or account number, null for all of them
+   * @param limit Max number of events to return
+   * @return the events found, with the sequence to continue from
+   */
+  AuditPageDto findEvents(long fromSequence, String entity, String entityId, int limit);
+
+}
@@ -0,0 +1,207 @@
+package com.jgmedellin.accounts.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.CreateAccountResultDto;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.dto.ImportResultDto;
+import com.jgmedellin.accounts.dto.ImportRowErrorDto;
+import com.jgmedellin.accounts.exception.InvalidImportFileException;
+import com.jgmedellin.accounts.importer.BoundedLineReader;
+import com.jgmedellin.accounts.importer.CsvCustomerRowParser;
+import com.jgmedellin.accounts.importer.CustomerRowParser;
+import com.jgmedellin.accounts.importer.ImportFormat;
+import com.jgmedellin.accounts.importer.NdjsonCustomerRowParser;
+import com.jgmedellin.accounts.service.IAccountsImportService;
+import com.jgmedellin.accounts.service.IAccountsService;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk import of customers. The file is read line by line and only one chunk of rows is kept in memory: each chunk is
+ * created with IAccountsService.createAccounts() in its own transaction (validation, set-based duplicate checks and
+ * batched inserts), so a failure only loses the chunk being written and the import can be resumed after the last
+ * committed row.
+ */
+@Service
+@Slf4j
+public class AccountsImportServiceImpl implements IAccountsImportService {
+
+  private final IAccountsService iAccountsService;
+
+  private final ObjectMapper objectMapper;
+
+  private final EntityManager entityManager;
+
+  private final int chunkSize;
+
+  private final int maxErrors;
+
+  private final int maxLineLength;
+
+  private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+  public AccountsImportServiceImpl(IAccountsService iAccountsService, ObjectMapper objectMapper,
+                                   EntityManager entityManager,
+                                   @Value("${accounts.import.chunk-size:1000}") int chunkSize,
+                                   @Value("${accounts.import.max-errors:1000}") int maxErrors,
+                                   @Value("${accounts.import.max-line-length:4096}") int maxLineLength) {
+    if (chunkSize < 1 || chunkSize > AccountsConstants.BATCH_MAX_SIZE) {
+      throw new IllegalArgumentException("Import chunk size must be between 1 and " + AccountsConstants.BATCH_MAX_SIZE);
+    }
+    // Worst case a chunk holds chunkSize lines of maxLineLength chars, keep it well below the heap size
+    long maxChunkBytes = 2L * chunkSize * maxLineLength;
+    long maxHeap = Runtime.getRuntime().maxMemory();
+    if (maxChunkBytes > maxHeap / 10) {
+      throw new IllegalArgumentException("An import chunk could take " + maxChunkBytes / (1024 * 1024) + "MB, more " +
+              "than 10% of the heap, reduce accounts.import.chunk-size or accounts.import.max-line-length");
+    }
+    this.iAccountsService = iAccountsService;
+    this.objectMapper = objectMapper;
+    this.entityManager = entityManager;
+    this.chunkSize = chunkSize;
+    this.maxErrors = maxErrors;
+    this.maxLineLength = maxLineLength;
+  }
+
+  @Override
+  public ImportResultDto importCustomers(InputStream inputStream, ImportFormat format, long resumeAfterRow) {
+    ImportProgress progress = new ImportProgress();
+    BoundedLineReader reader = new BoundedLineReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8),
+            maxLineLength);
+    List<CustomerDto> chunk = new ArrayList<>(chunkSize);
+    List<Long> chunkRows = new ArrayList<>(chunkSize);
+    long row = 0;
+    CustomerRowParser parser = createParser(format, reader);
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        row++;
+        if (row <= resumeAfterRow) {
+          progress.lastCommittedRow = row; // Already imported by a previous run
+          continue;
+        }
+        if (reader.isLastLineTooLong()) {
+          progress.rowsRead++;
+          progress.fail(row, null, "Row is longer than " + maxLineLength + " characters");
+          continue;
+        }
+        if (line.isBlank()) {
+          continue;
+        }
+        progress.rowsRead++;
+        try {
+          chunk.add(parser.parse(line));
+          chunkRows.add(row);
+        } catch (IllegalArgumentException e) {
+          progress.fail(row, null, e.getMessage());
+        }
+        if (chunk.size() == chunkSize) {
+          writeChunk(chunk, chunkRows, progress);
+          progress.lastCommittedRow = row;
+        }
+      }
+      if (!chunk.isEmpty()) {
+        writeChunk(chunk, chunkRows, progress);
+      }
+      progress.lastCommittedRow = Math.max(progress.lastCommittedRow, row);
+    } catch (IOException | RuntimeException e) {
+      // The rows after lastCommittedRow were not imported, the client can resume from there
+      log.error("Import stopped after row {}", progress.lastCommittedRow, e);
+      progress.abortReason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+    log.info("Import finished: {} rows read, {} created, {} failed, last committed row {}, peak heap {}MB",
+            progress.rowsRead, progress.createdCount, progress.failedCount, progress.lastCommittedRow,
+            progress.peakHeapBytes / (1024 * 1024));
+    return progress.toResult();
+  }
+
+  /**
+   * Utility method to create the parser of the file, reading the header line of CSV files
+   * @param format Format of the file
+   * @param reader Reader of the file
+   * @return the parser of the rows
+   * @throws InvalidImportFileException if the CSV header is missing or doesn't have the required columns
+   */
+  private CustomerRowParser createParser(ImportFormat format, BoundedLineReader reader) {
+    if (format == ImportFormat.NDJSON) {
+      return new NdjsonCustomerRowParser(objectMapper);
+    }
+    try {
+      String header = reader.readLine();
+      if (header == null || reader.isLastLineTooLong()) {
+        throw new InvalidImportFileException("The CSV file doesn't have a valid header line");
+      }
+      return new CsvCustomerRowParser(header);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidImportFileException(e.getMessage());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Utility method to create the customers of a chunk in one transaction and record the failed rows
+   * @param chunk Customers of the chunk, emptied when the chunk is committed
+   * @param chunkRows Row number of each customer of the chunk, emptied when the chunk is committed
+   * @param progress Progress of the import
+   */
+  private void writeChunk(List<CustomerDto> chunk, List<Long> chunkRows, ImportProgress progress) {
+    List<CreateAccountResultDto> results = iAccountsService.createAccounts(chunk);
+    for (CreateAccountResultDto result : results) {
+      if (result.getAccountNumber() != null) {
+        progress.createdCount++;
+      } else {
+        progress.fail(chunkRows.get(result.getIndex()), result.getMobileNumber(), result.getStatusMsg());
+      }
+    }
+    chunk.clear();
+    chunkRows.clear();
+    // A request bound persistence context (open-in-view) would keep every imported entity otherwise
+    entityManager.clear();
+    progress.peakHeapBytes = Math.max(progress.peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+  }
+
+  /**
+   * Counters of an import in progress. The error report is capped, only the first maxErrors rows are kept.
+   */
+  private class ImportProgress {
+
+    private long rowsRead;
+
+    private long createdCount;
+
+    private long failedCount;
+
+    private long lastCommittedRow;
+
+    private long peakHeapBytes;
+
+    private String abortReason;
+
+    private final List<ImportRowErrorDto> errors = new ArrayList<>();
+
+    private void fail(long row, String mobileNumber, String message) {
+      failedCount++;
+      if (errors.size() < maxErrors) {
+        errors.add(new ImportRowErrorDto(row, mobileNumber, message));
+      }
+    }
+
+    private ImportResultDto toResult() {
+      return new ImportResultDto(rowsRead, createdCount, failedCount, lastCommittedRow, abortReason == null,
+              abortReason, errors, failedCount > errors.size());
+    }
+  }
+}
@@ -1,23 +1,71 @@
 package com.jgmedellin.accounts.service.impl;
 
+import com.jgmedellin.accounts.audit.AuditEvent;
+import com.jgmedellin.accounts.audit.AuditTrail;
+import com.jgmedellin.accounts.changes.ChangeEvent;
+import com.jgmedellin.accounts.changes.ChangeFeed;
+import com.jgmedellin.accounts.concurrency.SingleFlight;
 import com.jgmedellin.accounts.constants.AccountsConstants;
 import com.jgmedellin.accounts.dto.AccountsDto;
+import com.jgmedellin.accounts.dto.AccountsPageDto;
+import com.jgmedellin.accounts.dto.AccountsPatchDto;
+import com.jgmedellin.accounts.dto.CreateAccountResultDto;
 import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.dto.DeleteAccountsResultDto;
+import com.jgmedellin.accounts.dto.FetchAccountsResultDto;
 import com.jgmedellin.accounts.entity.Accounts;
 import com.jgmedellin.accounts.entity.Customer;
+import com.jgmedellin.accounts.etag.AccountETag;
 import com.jgmedellin.accounts.exception.CustomerAlreadyExistsException;
+import com.jgmedellin.accounts.exception.MobileNumberChangeException;
+import com.jgmedellin.accounts.exception.PreconditionFailedException;
 import com.jgmedellin.accounts.exception.ResourceNotFoundException;
+import com.jgmedellin.accounts.generator.AccountNumberGenerator;
+import com.jgmedellin.accounts.index.MobileNumberIndex;
 import com.jgmedellin.accounts.mapper.AccountsMapper;
 import com.jgmedellin.accounts.mapper.CustomerMapper;
+import com.jgmedellin.accounts.pagination.AccountsPageToken;
+import com.jgmedellin.accounts.replicas.ReadReplicas;
 import com.jgmedellin.accounts.repository.AccountsRepository;
 import com.jgmedellin.accounts.repository.CustomerRepository;
+import com.jgmedellin.accounts.repository.projection.CustomerKey;
+import com.jgmedellin.accounts.repository.projection.CustomerWithAccount;
 import com.jgmedellin.accounts.service.IAccountsService;
+import com.jgmedellin.accounts.sharding.Shards;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.AllArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
 
 @Service
+@Timed(value = "accounts.service", description = "Calls of the IAccountsService methods", histogram = true)
 @AllArgsConstructor
 public class AccountsServiceImpl implements IAccountsService {
 
@@ -25,15 +73,50 @@ public class AccountsServiceImpl implements IAccountsService {
 
   private CustomerRepository customerRepository;
 
+  private AccountNumberGenerator accountNumberGenerator;
+
+  private Validator validator;
+
+  private CacheManager cacheManager;
+
+  private MobileNumberIndex mobileNumberIndex;
+
+  private TransactionTemplate transactionTemplate;
+
+  private EntityManager entityManager;
+
+  private AuditTrail auditTrail;
+
+  private ChangeFeed changeFeed;
+
+  private Shards shards;
+
+  private ReadReplicas readReplicas;
+
+  // Order of the listing (and of its page tokens): customer id, then account number
+  private static final Comparator<CustomerWithAccount> LISTING_ORDER = Comparator
+          .comparing((CustomerWithAccount row) -> row.account().getCustomerId())
+          .thenComparing(row -> row.account().getAccountNumber());
+
+  private final SingleFlight<String, CustomerDto> fetchFlights = new SingleFlight<>(); // Concurrent fetches in progress
+
+  // Evictions from the accounts cache, by stripe of mobile numbers (see cacheLoadedAccount)
+  private static final int EVICTION_STRIPES = 1024;
+
+  private final AtomicLongArray cacheEvictions = new AtomicLongArray(EVICTION_STRIPES);
+
   @Override
+  @Transactional // Customer and account are saved together or not at all
   public void createAccount(CustomerDto customerDto) {
+    // The customer and its account live in the shard of the mobile number
+    shards.pin(shards.shardOf(customerDto.getMobileNumber()));
+
     // Map the customer details to the new Customer object
     Customer customer = CustomerMapper.mapToCustomer(customerDto, new Customer());
 
     // Validate if the customer already exists
-    Optional<Customer> optionalCustomer = customerRepository.findByMobileNumber(customerDto.getMobileNumber());
-    if (optionalCustomer.isPresent()) {
-      throw new CustomerAlreadyExistsException("Customer already registered with the mobile number: " + customerDto.getMobileNumber());
+    if (isRegistered(customerDto.getMobileNumber())) {
+      throw new CustomerAlreadyExistsException(AccountsConstants.MESSAGE_400_DUPLICATE + ": " + customerDto.getMobileNumber());
     }
 
     // Save the customer details
@@ -41,6 +124,165 @@ public class AccountsServiceImpl implements IAccountsService {
 
     // Create a new account for the customer
     accountsRepository.save(createNewAccount(savedCustomer));
+    afterCommit(() -> {
+      mobileNumberIndex.put(savedCustomer.getMobileNumber(), savedCustomer.getCustomerId());
+      changeFeed.publish(ChangeEvent.Type.CREATED, savedCustomer.getCustomerId(), savedCustomer.getMobileNumber(), null);
+    });
+  }
+
+  /**
+   * Utility method to check if a mobile number is already registered, in memory when the mobile number index can answer
+   * @param mobileNumber Mobile number to check
+   * @return true if a customer already has the mobile number
+   */
+  private boolean isRegistered(String mobileNumber) {
+    long indexedCustomerId = mobileNumberIndex.lookup(mobileNumber);
+    if (indexedCustomerId == MobileNumberIndex.UNKNOWN) {
+      return customerRepository.findByMobileNumber(mobileNumber).isPresent();
+    }
+    return indexedCustomerId != MobileNumberIndex.NOT_FOUND;
+  }
+
+  @Override
+  public List<CreateAccountResultDto> createAccounts(List<CustomerDto> customerDtos) {
+    CreateAccountResultDto[] results = new CreateAccountResultDto[customerDtos.size()];
+
+    // Validate each item on its own, so one bad item doesn't reject the whole batch
+    Map<Integer, List<Integer>> positionsByShard = new TreeMap<>();
+    for (int i = 0; i < customerDtos.size(); i++) {
+      CustomerDto customerDto = customerDtos.get(i);
+      if (customerDto == null) {
+        results[i] = failedResult(i, null, AccountsConstants.MESSAGE_400_NULL);
+        continue;
+      }
+      Set<ConstraintViolation<CustomerDto>> violations = validator.validate(customerDto);
+      if (!violations.isEmpty()) {
+        results[i] = failedResult(i, customerDto.getMobileNumber(), violations.iterator().next().getMessage());
+        continue;
+      }
+      positionsByShard.computeIfAbsent(shards.shardOf(customerDto.getMobileNumber()), shard -> new ArrayList<>()).add(i);
+    }
+
+    // One transaction per shard (a single one without sharding): all the inserts are flushed together at commit, so
+    // Hibernate can send them in JDBC batches
+    positionsByShard.forEach((shard, positions) -> shards.inShard(shard, () -> {
+      createInShard(customerDtos, positions, results);
+      return null;
+    }));
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Utility method to create the valid items of a batch that belong to the current shard, in one transaction.
+   * Another request can create one of the mobile numbers between the duplicate check and the commit: the unique index
+   * rejects the whole transaction, so the chunk is retried with the duplicate check done in the DB, where the other
+   * customer is now visible and only that item fails.
+   * @param customerDtos Items of the batch
+   * @param candidates Positions of the valid items of the shard
+   * @param results Results of the batch, filled for the candidates
+   */
+  private void createInShard(List<CustomerDto> customerDtos, List<Integer> candidates,
+                             CreateAccountResultDto[] results) {
+    for (int attempt = 1; ; attempt++) {
+      boolean checkInDb = attempt > 1; // The mobile number index of this node may not know the other customer yet
+      try {
+        transactionTemplate.execute(status -> {
+          insertInShard(customerDtos, candidates, results, checkInDb);
+          return null;
+        });
+        return;
+      } catch (DataIntegrityViolationException e) {
+        if (attempt == AccountsConstants.CREATE_BATCH_ATTEMPTS) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /**
+   * Utility method to insert the new customers of a batch in the current transaction
+   * @param customerDtos Items of the batch
+   * @param candidates Positions of the valid items of the shard
+   * @param results Results of the batch, filled for the candidates
+   * @param checkInDb true to check the duplicates in the DB even if the mobile number index is ready
+   */
+  private void insertInShard(List<CustomerDto> customerDtos, List<Integer> candidates,
+                             CreateAccountResultDto[] results, boolean checkInDb) {
+    // Validate which customers already exist with a few set-based queries instead of one query per customer
+    Set<String> mobileNumbers = new HashSet<>();
+    candidates.forEach(i -> mobileNumbers.add(customerDtos.get(i).getMobileNumber()));
+    Set<String> registeredMobileNumbers = findRegisteredMobileNumbers(mobileNumbers, checkInDb);
+
+    // Map the new customers, the ones repeated in the DB or earlier in the same batch are reported as duplicates
+    List<Customer> customers = new ArrayList<>();
+    List<Integer> positions = new ArrayList<>();
+    for (int i : candidates) {
+      CustomerDto customerDto = customerDtos.get(i);
+      if (!registeredMobileNumbers.add(customerDto.getMobileNumber())) {
+        results[i] = failedResult(i, customerDto.getMobileNumber(), AccountsConstants.MESSAGE_400_DUPLICATE);
+        continue;
+      }
+      customers.add(CustomerMapper.mapToCustomer(customerDto, new Customer()));
+      positions.add(i);
+    }
+
+    // Save the customers and their new accounts, the INSERTs are batched when the transaction commits
+    customerRepository.saveAll(customers);
+    List<Accounts> accounts = customers.stream().map(this::createNewAccount).toList();
+    accountsRepository.saveAll(accounts);
+
+    afterCommit(() -> customers.forEach(saved -> {
+      mobileNumberIndex.put(saved.getMobileNumber(), saved.getCustomerId());
+      changeFeed.publish(ChangeEvent.Type.CREATED, saved.getCustomerId(), saved.getMobileNumber(), null);
+    }));
+
+    for (int j = 0; j < accounts.size(); j++) {
+      int i = positions.get(j);
+      results[i] = new CreateAccountResultDto(i, customers.get(j).getMobileNumber(), AccountsConstants.STATUS_201,
+              AccountsConstants.MESSAGE_201, accounts.get(j).getAccountNumber());
+    }
+  }
+
+  /**
+   * Utility method to find which mobile numbers are already registered, splitting big sets in several IN queries
+   * @param mobileNumbers Mobile numbers to check
+   * @param checkInDb true to query the DB even if the mobile number index is ready
+   * @return a mutable set with the mobile numbers that already exist in the DB
+   */
+  private Set<String> findRegisteredMobileNumbers(Collection<String> mobileNumbers, boolean checkInDb) {
+    Set<String> registered = new HashSet<>();
+    if (!checkInDb && mobileNumberIndex.isReady()) {
+      // No DB queries at all when the mobile number index is available
+      for (String mobileNumber : mobileNumbers) {
+        if (mobileNumberIndex.lookup(mobileNumber) >= 0) {
+          registered.add(mobileNumber);
+        }
+      }
+      return registered;
+    }
+    List<String> chunk = new ArrayList<>(AccountsConstants.IN_CLAUSE_MAX_SIZE);
+    for (String mobileNumber : mobileNumbers) {
+      chunk.add(mobileNumber);
+      if (chunk.size() == AccountsConstants.IN_CLAUSE_MAX_SIZE) {
+        registered.addAll(customerRepository.findExistingMobileNumbers(chunk));
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      registered.addAll(customerRepository.findExistingMobileNumbers(chunk));
+    }
+    return registered;
+  }
+
+  /**
+   * Utility method to build the result of a batch item that could not be created
+   * @param index Position of the item in the batch
+   * @param mobileNumber Mobile number of the item (if any)
+   * @param message Reason why the item failed
+   * @return the failed result
+   */
+  private CreateAccountResultDto failedResult(int index, String mobileNumber, String message) {
+    return new CreateAccountResultDto(index, mobileNumber, AccountsConstants.STATUS_400, message, null);
   }
 
   /**
@@ -55,11 +297,11 @@ public class AccountsServiceImpl implements IAccountsService {
     // Set the customer id in the account by getting the customer id from the saved customer object
     newAccount.setCustomerId(customer.getCustomerId());
 
-    // Generate a random account number
-    long randomAccNumber = 1000000000L + new Random().nextInt(900000000);
+    // Take the next unique account number (no collisions, so the account can be inserted without a merge SELECT)
+    long accountNumber = accountNumberGenerator.nextAccountNumber();
 
     // Set the account details
-    newAccount.setAccountNumber(randomAccNumber);
+    newAccount.setAccountNumber(accountNumber);
     newAccount.setAccountType(AccountsConstants.SAVINGS);
     newAccount.setBranchAddress(AccountsConstants.ADDRESS);
     return newAccount;
@@ -67,24 +309,242 @@ public class AccountsServiceImpl implements IAccountsService {
 
   @Override
   public CustomerDto fetchAccount(String mobileNumber) {
-    // Fetch the customer details by mobile number or throw an exception if not found
-    Customer customer = customerRepository.findByMobileNumber(mobileNumber).orElseThrow(
-            () -> new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber)
+    Cache cache = cacheManager.getCache(AccountsConstants.ACCOUNTS_CACHE);
+    if (readReplicas.isPinnedToPrimary()) {
+      // A client that just made a change skips the cache (it may hold a replica copy) and the concurrent fetches.
+      // ReplicaConfig refuses to start with the sharding, the shard is still selected like on the other reads
+      return shards.inShard(shards.shardOf(mobileNumber),
+              () -> readOnlyTransaction().execute(status -> loadAccount(mobileNumber)));
+    }
+    // Only hits the DB on a cache miss. The DTOs are mutable: each caller gets its own copy, the cached one and the
+    // one shared by the concurrent fetches are never handed out
+    CustomerDto cached = cache == null ? null : cache.get(mobileNumber, CustomerDto.class);
+    if (cached != null) {
+      return CustomerMapper.copyCustomerDto(cached);
+    }
+    // Concurrent fetches of the same customer share a single DB load (and its result or exception).
+    // No @Transactional here: the waiting callers must not hold a DB connection, the query runs in its own read-only
+    // transaction (on a replica if there are replicas)
+    return CustomerMapper.copyCustomerDto(fetchFlights.execute(mobileNumber, () -> {
+      long evictions = cacheEvictions.get(evictionStripe(mobileNumber));
+      CustomerDto customerDto = shards.inShard(shards.shardOf(mobileNumber),
+              () -> readOnlyTransaction().execute(status -> loadAccount(mobileNumber)));
+      cacheLoadedAccount(cache, mobileNumber, customerDto, evictions);
+      return customerDto;
+    }));
+  }
+
+  /**
+   * Utility method to cache a loaded customer, unless it was evicted since the load started: the load may have read
+   * the row before a change committed. The evictions are checked again after the put, an eviction between the first
+   * check and the put would be lost otherwise (and the old data cached until the TTL).
+   * @param cache Accounts cache, null if there is none
+   * @param mobileNumber Mobile number of the customer
+   * @param customerDto Loaded customer
+   * @param evictionsBefore Evictions of the stripe of the mobile number when the load started
+   */
+  private void cacheLoadedAccount(Cache cache, String mobileNumber, CustomerDto customerDto, long evictionsBefore) {
+    int stripe = evictionStripe(mobileNumber);
+    if (cache == null || cacheEvictions.get(stripe) != evictionsBefore) {
+      return;
+    }
+    cache.put(mobileNumber, customerDto);
+    if (cacheEvictions.get(stripe) != evictionsBefore) {
+      cache.evict(mobileNumber);
+    }
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public AccountETag fetchAccountETag(String mobileNumber) {
+    shards.pin(shards.shardOf(mobileNumber));
+    // Three numbers from the indexes, no entity is loaded
+    return customerRepository.findETagByMobileNumber(mobileNumber).orElseThrow(
+            () -> new ResourceNotFoundException("Account", "mobileNumber", mobileNumber)
     );
+  }
+
+  /**
+   * Utility method to load the account details of a customer from the DB
+   * @param mobileNumber Mobile number of the customer
+   * @return CustomerDto object with the account details
+   */
+  private CustomerDto loadAccount(String mobileNumber) {
+    // Unknown mobile numbers are rejected without a DB query when the mobile number index is available
+    long customerId = mobileNumberIndex.lookup(mobileNumber);
+    if (customerId == MobileNumberIndex.NOT_FOUND) {
+      throw new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber);
+    }
 
-    // Fetch the account details by customer id or throw an exception if not found
-    Accounts account = accountsRepository.findByCustomerId(customer.getCustomerId()).orElseThrow(
-            () -> new ResourceNotFoundException("Account", "customerId", customer.getCustomerId().toString())
+    // Fetch the customer and account details in one indexed join (by primary key if the index knows the customer id)
+    Optional<CustomerWithAccount> optionalCustomerWithAccount = customerId == MobileNumberIndex.UNKNOWN
+            ? customerRepository.findWithAccountByMobileNumber(mobileNumber)
+            : customerRepository.findWithAccountByCustomerId(customerId);
+    CustomerWithAccount customerWithAccount = optionalCustomerWithAccount.orElseThrow(
+            () -> new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber)
     );
+    Customer customer = customerWithAccount.customer();
+    Accounts account = customerWithAccount.account();
+    if (account == null) {
+      throw new ResourceNotFoundException("Account", "customerId", customer.getCustomerId().toString());
+    }
 
     // Map the customer and account details to the CustomerDto object and return
+    return mapToCustomerDto(customer, account);
+  }
+
+  @Override
+  public FetchAccountsResultDto fetchAccounts(List<String> mobileNumbers) {
+    // Remove the repeated mobile numbers but keep the order of the request
+    List<String> distinctMobileNumbers = new ArrayList<>(new LinkedHashSet<>(mobileNumbers));
+
+    // Fetch the customers with their accounts using one joined IN query per chunk instead of 2 queries per customer,
+    // in one read-only transaction per shard
+    Map<String, CustomerDto> found = new HashMap<>();
+    groupByShard(distinctMobileNumbers).forEach((shard, shardMobileNumbers) -> shards.inShard(shard,
+            () -> readOnlyTransaction().execute(status -> fetchInChunks(shardMobileNumbers, found))));
+
+    // The customers are returned in the order of the request (the queries return them in index order), and the mobile
+    // numbers without a customer (or account) are reported instead of throwing an exception
+    Map<String, CustomerDto> customers = new LinkedHashMap<>();
+    List<String> notFound = new ArrayList<>();
+    for (String mobileNumber : distinctMobileNumbers) {
+      CustomerDto customerDto = found.get(mobileNumber);
+      if (customerDto == null) {
+        notFound.add(mobileNumber);
+      } else {
+        customers.put(mobileNumber, customerDto);
+      }
+    }
+    return new FetchAccountsResultDto(customers, notFound);
+  }
+
+  /**
+   * Utility method to fetch the customers of some mobile numbers of the same shard, splitting them in several IN queries
+   * @param mobileNumbers Mobile numbers to fetch
+   * @param customers Found customers by mobile number, the customers of the mobile numbers are added to it
+   * @return the found customers
+   */
+  private Map<String, CustomerDto> fetchInChunks(List<String> mobileNumbers, Map<String, CustomerDto> customers) {
+    for (int from = 0; from < mobileNumbers.size(); from += AccountsConstants.IN_CLAUSE_MAX_SIZE) {
+      List<String> chunk = mobileNumbers.subList(from,
+              Math.min(from + AccountsConstants.IN_CLAUSE_MAX_SIZE, mobileNumbers.size()));
+      for (CustomerWithAccount row : customerRepository.findWithAccountByMobileNumberIn(chunk)) {
+        customers.put(row.customer().getMobileNumber(), mapToCustomerDto(row.customer(), row.account()));
+      }
+    }
+    return customers;
+  }
+
+  @Override
+  public AccountsPageDto listAccounts(String accountType, LocalDate createdFrom, LocalDate createdTo,
+                                      String pageToken, int size) {
+    AccountsPageToken after = AccountsPageToken.decode(pageToken);
+    LocalDateTime createdFromTime = createdFrom != null ? createdFrom.atStartOfDay() : null;
+    LocalDateTime createdBefore = createdTo != null ? createdTo.plusDays(1).atStartOfDay() : null; // createdTo included
+
+    // Read one extra row to know if there is a next page without an extra COUNT query. With several shards each one
+    // reads its own next page and the rows are merged in the listing order
+    List<CustomerWithAccount> rows = new ArrayList<>();
+    for (int shard = 0; shard < shards.count(); shard++) {
+      rows.addAll(shards.inShard(shard, () -> readOnlyTransaction().execute(status -> accountType == null
+              ? accountsRepository.findPageAfter(after.customerId(), after.accountNumber(), createdFromTime,
+                      createdBefore, Limit.of(size + 1))
+              : accountsRepository.findPageOfTypeAfter(accountType, after.customerId(), after.accountNumber(),
+                      createdFromTime, createdBefore, Limit.of(size + 1)))));
+    }
+    if (shards.count() > 1) {
+      rows.sort(LISTING_ORDER);
+    }
+    boolean hasNextPage = rows.size() > size;
+    if (hasNextPage) {
+      rows = rows.subList(0, size);
+    }
+
+    List<CustomerDto> accounts = rows.stream().map(row -> mapToCustomerDto(row.customer(), row.account())).toList();
+    String nextPageToken = null;
+    if (hasNextPage) {
+      Accounts last = rows.get(rows.size() - 1).account();
+      nextPageToken = new AccountsPageToken(last.getCustomerId(), last.getAccountNumber()).encode();
+    }
+    return new AccountsPageDto(accounts, nextPageToken);
+  }
+
+  @Override
+  public void exportAccounts(Consumer<List<CustomerDto>> pageConsumer) {
+    TransactionTemplate readOnlyTransaction = readOnlyTransaction();
+    // The shards one after the other, so the customers come in customer id order within each shard
+    for (int shard = 0; shard < shards.count(); shard++) {
+      exportShard(shard, readOnlyTransaction, pageConsumer);
+    }
+  }
+
+  /**
+   * Utility method to export the customers of a shard, in pages ordered by customer id
+   * @param shard Shard number
+   * @param readOnlyTransaction Template of the read-only transaction of each page
+   * @param pageConsumer Called with each page
+   */
+  private void exportShard(int shard, TransactionTemplate readOnlyTransaction,
+                           Consumer<List<CustomerDto>> pageConsumer) {
+    long lastCustomerId = 0;
+    List<CustomerDto> page;
+    do {
+      // Read the next keyset page in a short read-only transaction and map it while the entities are at hand
+      long afterCustomerId = lastCustomerId;
+      List<CustomerWithAccount> rows = shards.inShard(shard, () -> readOnlyTransaction.execute(status ->
+              customerRepository.findWithAccountAfter(afterCustomerId, Limit.of(AccountsConstants.EXPORT_PAGE_SIZE))));
+      page = rows.stream().map(row -> mapToCustomerDto(row.customer(), row.account())).toList();
+      if (!rows.isEmpty()) {
+        lastCustomerId = rows.get(rows.size() - 1).customer().getCustomerId();
+      }
+
+      // Detach the page, otherwise a persistence context bound to the request (open-in-view) keeps every entity
+      entityManager.clear();
+      if (!page.isEmpty()) {
+        pageConsumer.accept(page);
+      }
+    } while (page.size() == AccountsConstants.EXPORT_PAGE_SIZE);
+  }
+
+  /**
+   * Utility method to create a template of read-only transactions
+   * @return the template
+   */
+  private TransactionTemplate readOnlyTransaction() {
+    TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+    readOnlyTransaction.setReadOnly(true);
+    return readOnlyTransaction;
+  }
+
+  /**
+   * Utility method to group mobile numbers by shard, in shard order
+   * @param mobileNumbers Mobile numbers to group
+   * @return the mobile numbers of each shard, in the order they were given
+   */
+  private Map<Integer, List<String>> groupByShard(Collection<String> mobileNumbers) {
+    Map<Integer, List<String>> mobileNumbersByShard = new TreeMap<>();
+    for (String mobileNumber : mobileNumbers) {
+      mobileNumbersByShard.computeIfAbsent(shards.shardOf(mobileNumber), shard -> new ArrayList<>()).add(mobileNumber);
+    }
+    return mobileNumbersByShard;
+  }
+
+  /**
+   * Utility method to map a customer and its account to a CustomerDto object
+   * @param customer Customer entity
+   * @param account Account entity of the customer
+   * @return the CustomerDto object with the account details
+   */
+  private CustomerDto mapToCustomerDto(Customer customer, Accounts account) {
     CustomerDto customerDto = CustomerMapper.mapToCustomerDto(customer, new CustomerDto());
     customerDto.setAccountsDto(AccountsMapper.mapToAccountsDto(account, new AccountsDto()));
     return customerDto;
   }
 
   @Override
-  public boolean updateAccount(CustomerDto customerDto) {
+  @Transactional // Single transaction, the changed columns are written by Hibernate dirty checking at commit
+  public boolean updateAccount(CustomerDto customerDto, AccountETag expectedETag) {
     // Flag to indicate if the account details were updated
     boolean isUpdated = false;
 
@@ -93,25 +553,26 @@ public class AccountsServiceImpl implements IAccountsService {
 
     // Validate if the account details exist
     if(accountsDto != null) {
-      // Fetch the account details from the DB by account number or throw an exception if not found
-      Accounts account = accountsRepository.findById(accountsDto.getAccountNumber()).orElseThrow(
-              () -> new ResourceNotFoundException("Account", "accountNumber", accountsDto.getAccountNumber().toString())
-      );
-      // Map the account details to the Account object
-      AccountsMapper.mapToAccounts(accountsDto, account);
-      // Update the account details
-      account = accountsRepository.save(account);
+      // Fetch the account and customer details from the DB by account number or throw an exception if not found
+      CustomerWithAccount customerWithAccount = findWithCustomer(accountsDto.getAccountNumber());
+      Accounts account = customerWithAccount.account();
+      Customer customer = customerWithAccount.customer();
+      checkETag(expectedETag, customer, account);
 
-      // Fetch the customer details by customer id or throw an exception if not found
-      Long customerId = account.getCustomerId();
-      Customer customer = customerRepository.findById(customerId).orElseThrow(
-              () -> new ResourceNotFoundException("Customer", "customerId", customerId.toString())
-      );
+      // Keep the current mobile number, the update may change it
+      String previousMobileNumber = customer.getMobileNumber();
+      // A new mobile number must not belong to another customer (same check as patchAccount)
+      String mobileNumber = customerDto.getMobileNumber();
+      checkSameShard(previousMobileNumber, mobileNumber);
+      if (!previousMobileNumber.equals(mobileNumber) && isRegistered(mobileNumber)) {
+        throw new CustomerAlreadyExistsException(AccountsConstants.MESSAGE_400_DUPLICATE + ": " + mobileNumber);
+      }
 
+      // Map the account details to the Account object
+      AccountsMapper.mapToAccounts(accountsDto, account);
       // Map the customer details to the Customer object
       CustomerMapper.mapToCustomer(customerDto, customer);
-      // Update the customer details
-      customerRepository.save(customer);
+      customerChanged(previousMobileNumber, customer);
       // Set the flag to true
       isUpdated = true;
     }
@@ -120,16 +581,261 @@ public class AccountsServiceImpl implements IAccountsService {
   }
 
   @Override
-  public boolean deleteAccount(String mobileNumber) {
-    // Fetch the customer details by mobile number or throw an exception if not found
-    Customer customer = customerRepository.findByMobileNumber(mobileNumber).orElseThrow(
-            () -> new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber)
+  @Transactional // Single transaction, only the columns of the patched fields are written at commit (@DynamicUpdate)
+  public void patchAccount(Long accountNumber, AccountsPatchDto accountsPatchDto, AccountETag expectedETag) {
+    // Fetch the account and customer details from the DB by account number or throw an exception if not found
+    CustomerWithAccount customerWithAccount = findWithCustomer(accountNumber);
+    Accounts account = customerWithAccount.account();
+    Customer customer = customerWithAccount.customer();
+    checkETag(expectedETag, customer, account);
+    String previousMobileNumber = customer.getMobileNumber();
+
+    // A new mobile number must not belong to another customer
+    String mobileNumber = accountsPatchDto.getMobileNumber();
+    if (mobileNumber != null) {
+      checkSameShard(previousMobileNumber, mobileNumber);
+    }
+    if (mobileNumber != null && !mobileNumber.equals(previousMobileNumber) && isRegistered(mobileNumber)) {
+      throw new CustomerAlreadyExistsException(AccountsConstants.MESSAGE_400_DUPLICATE + ": " + mobileNumber);
+    }
+
+    // Change only the fields that were sent, the entities are managed so there is no need to call save()
+    if (accountsPatchDto.getAccountType() != null) {
+      account.setAccountType(accountsPatchDto.getAccountType());
+    }
+    if (accountsPatchDto.getBranchAddress() != null) {
+      account.setBranchAddress(accountsPatchDto.getBranchAddress());
+    }
+    if (accountsPatchDto.getName() != null) {
+      customer.setName(accountsPatchDto.getName());
+    }
+    if (accountsPatchDto.getEmail() != null) {
+      customer.setEmail(accountsPatchDto.getEmail());
+    }
+    if (mobileNumber != null) {
+      customer.setMobileNumber(mobileNumber);
+    }
+    customerChanged(previousMobileNumber, customer);
+  }
+
+  /**
+   * Utility method to fetch an account and its customer in a single query
+   * @param accountNumber Account number
+   * @return the managed account and customer entities
+   */
+  private CustomerWithAccount findWithCustomer(Long accountNumber) {
+    // The account number tells the shard of the account, no need to ask every shard
+    int shard = shards.shardOfAccount(accountNumber);
+    if (shard < 0) {
+      throw new ResourceNotFoundException("Account", "accountNumber", accountNumber.toString());
+    }
+    shards.pin(shard);
+    CustomerWithAccount customerWithAccount = accountsRepository.findWithCustomerByAccountNumber(accountNumber).orElseThrow(
+            () -> new ResourceNotFoundException("Account", "accountNumber", accountNumber.toString())
     );
+    if (customerWithAccount.customer() == null) {
+      Long customerId = customerWithAccount.account().getCustomerId();
+      throw new ResourceNotFoundException("Customer", "customerId", customerId.toString());
+    }
+    return customerWithAccount;
+  }
+
+  /**
+   * Utility method to reject a new mobile number that belongs to another shard, the customer would have to move
+   * @param previousMobileNumber Current mobile number of the customer
+   * @param mobileNumber New mobile number
+   */
+  private void checkSameShard(String previousMobileNumber, String mobileNumber) {
+    if (shards.shardOf(previousMobileNumber) != shards.shardOf(mobileNumber)) {
+      throw new MobileNumberChangeException(mobileNumber);
+    }
+  }
 
-    // Delete the customer and account in the DB by customer id and return true
-    accountsRepository.deleteByCustomerId(customer.getCustomerId());
-    customerRepository.deleteById(customer.getCustomerId());
+  /**
+   * Utility method to reject a change based on an outdated fetch (If-Match). The entities were just loaded in the
+   * transaction and the UPDATE of each changed entity checks its version, so a concurrent change fails with 409.
+   * @param expectedETag ETag the client expects, null to accept any version
+   * @param customer Customer to change
+   * @param account Account to change
+   */
+  private void checkETag(AccountETag expectedETag, Customer customer, Accounts account) {
+    if (expectedETag != null && !expectedETag.equals(AccountETag.of(customer, account))) {
+      throw new PreconditionFailedException(expectedETag.value());
+    }
+  }
+
+  /**
+   * Utility method to refresh the in-memory structures after a customer (or its account) changes and publish the
+   * change once it is committed
+   * @param previousMobileNumber Mobile number of the customer before the change
+   * @param customer Changed customer
+   */
+  private void customerChanged(String previousMobileNumber, Customer customer) {
+    // Both the previous and the new mobile number must leave the cache
+    evictCachedAccounts(previousMobileNumber, customer.getMobileNumber());
+    Long customerId = customer.getCustomerId();
+    String mobileNumber = customer.getMobileNumber();
+    if (!previousMobileNumber.equals(mobileNumber)) {
+      afterCommit(() -> {
+        mobileNumberIndex.remove(previousMobileNumber);
+        mobileNumberIndex.put(mobileNumber, customerId);
+        changeFeed.publish(ChangeEvent.Type.UPDATED, customerId, mobileNumber, previousMobileNumber);
+      });
+    } else {
+      afterCommit(() -> changeFeed.publish(ChangeEvent.Type.UPDATED, customerId, mobileNumber, null));
+    }
+  }
+
+  @Override
+  @Transactional // Customer and account are deleted together or not at all
+  public boolean deleteAccount(String mobileNumber) {
+    shards.pin(shards.shardOf(mobileNumber));
+
+    // Resolve the customer id from the mobile number index, or fetch the customer by mobile number if it can't answer
+    long customerId = mobileNumberIndex.lookup(mobileNumber);
+    if (customerId == MobileNumberIndex.UNKNOWN) {
+      customerId = customerRepository.findByMobileNumber(mobileNumber)
+              .map(Customer::getCustomerId)
+              .orElse(MobileNumberIndex.NOT_FOUND);
+    }
+    // Throw an exception if the customer was not found
+    if (customerId == MobileNumberIndex.NOT_FOUND) {
+      throw new ResourceNotFoundException("Customer", "mobileNumber", mobileNumber);
+    }
+
+    // Delete the customer and account in the DB by customer id (one DELETE statement each) and return true
+    accountsRepository.deleteByCustomerId(customerId);
+    customerRepository.deleteByCustomerIdIn(List.of(customerId));
+    evictCachedAccounts(mobileNumber);
+    long deletedCustomerId = customerId;
+    afterCommit(() -> {
+      mobileNumberIndex.remove(mobileNumber);
+      auditCustomerDeleted(deletedCustomerId, mobileNumber);
+      changeFeed.publish(ChangeEvent.Type.DELETED, deletedCustomerId, mobileNumber, null);
+    });
     return true;
   }
 
+  @Override
+  public DeleteAccountsResultDto deleteAccounts(List<String> mobileNumbers) {
+    // Remove the repeated mobile numbers but keep the order of the request
+    List<String> distinctMobileNumbers = new ArrayList<>(new LinkedHashSet<>(mobileNumbers));
+
+    int deletedCount = 0;
+    List<String> notFound = new ArrayList<>();
+    for (Map.Entry<Integer, List<String>> shardMobileNumbers : groupByShard(distinctMobileNumbers).entrySet()) {
+      int shard = shardMobileNumbers.getKey();
+      List<String> numbers = shardMobileNumbers.getValue();
+      for (int from = 0; from < numbers.size(); from += AccountsConstants.IN_CLAUSE_MAX_SIZE) {
+        List<String> chunk = numbers.subList(from, Math.min(from + AccountsConstants.IN_CLAUSE_MAX_SIZE, numbers.size()));
+
+        // Each chunk is deleted in its own short transaction, so a big closure run doesn't hold the locks for long
+        List<CustomerKey> deleted = shards.inShard(shard,
+                () -> transactionTemplate.execute(status -> deleteChunk(chunk)));
+
+        Set<String> deletedMobileNumbers = new HashSet<>();
+        deleted.forEach(customerKey -> deletedMobileNumbers.add(customerKey.mobileNumber()));
+        deletedCount += deleted.size();
+        chunk.stream().filter(number -> !deletedMobileNumbers.contains(number)).forEach(notFound::add);
+      }
+    }
+    return new DeleteAccountsResultDto(deletedCount, notFound.size(), notFound);
+  }
+
+  /**
+   * Utility method to delete the customers of a chunk of mobile numbers (and their accounts) with set-based statements
+   * @param mobileNumbers Mobile numbers of the chunk
+   * @return the customers that were found and deleted
+   */
+  private List<CustomerKey> deleteChunk(List<String> mobileNumbers) {
+    // One SELECT to resolve the customer ids, then one DELETE for all the accounts and one for all the customers
+    List<CustomerKey> customers = customerRepository.findKeysByMobileNumberIn(mobileNumbers);
+    if (customers.isEmpty()) {
+      return customers;
+    }
+    List<Long> customerIds = customers.stream().map(CustomerKey::customerId).toList();
+    accountsRepository.deleteByCustomerIdIn(customerIds);
+    customerRepository.deleteByCustomerIdIn(customerIds);
+
+    String[] deletedMobileNumbers = customers.stream().map(CustomerKey::mobileNumber).toArray(String[]::new);
+    evictCachedAccounts(deletedMobileNumbers);
+    afterCommit(() -> {
+      for (String mobileNumber : deletedMobileNumbers) {
+        mobileNumberIndex.remove(mobileNumber);
+      }
+      customers.forEach(customer -> {
+        auditCustomerDeleted(customer.customerId(), customer.mobileNumber());
+        changeFeed.publish(ChangeEvent.Type.DELETED, customer.customerId(), customer.mobileNumber(), null);
+      });
+    });
+    return customers;
+  }
+
+  /**
+   * Utility method to record the deletion of a customer in the audit trail, the set-based deletes don't load the
+   * entities so the Hibernate listeners don't see them. The accounts of the customer are deleted with it.
+   * @param customerId Id of the deleted customer
+   * @param mobileNumber Mobile number of the deleted customer
+   */
+  private void auditCustomerDeleted(Long customerId, String mobileNumber) {
+    auditTrail.record(Customer.class.getSimpleName(), customerId, AuditEvent.Operation.DELETE,
+            List.of(new AuditEvent.FieldChange("mobileNumber", mobileNumber, null)));
+  }
+
+  /**
+   * Utility method to remove the customers from the accounts cache after they change.
+   * If there is a transaction the entries are evicted again after commit, and the fetches that loaded them in the
+   * meantime don't cache what they read (see cacheLoadedAccount). With replicas they are evicted once more after the
+   * read-your-writes window, a fetch may have cached the old data of a replica that was behind.
+   * The fetches arriving after an eviction don't join a load that is already running either, it may have read the
+   * customer before the change (even without a cache).
+   * @param mobileNumbers Mobile numbers of the changed customers
+   */
+  private void evictCachedAccounts(String... mobileNumbers) {
+    Cache cache = cacheManager.getCache(AccountsConstants.ACCOUNTS_CACHE);
+    evict(cache, mobileNumbers);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      afterCommit(() -> evict(cache, mobileNumbers));
+    }
+    afterCommit(() -> readReplicas.afterReplication(() -> evict(cache, mobileNumbers)));
+  }
+
+  /**
+   * Utility method to evict customers from the accounts cache, counting the eviction first so the fetches running
+   * concurrently don't put them back, and to detach their running loads
+   * @param cache Accounts cache, null if there is none
+   * @param mobileNumbers Mobile numbers of the customers
+   */
+  private void evict(Cache cache, String... mobileNumbers) {
+    for (String mobileNumber : mobileNumbers) {
+      cacheEvictions.incrementAndGet(evictionStripe(mobileNumber));
+      fetchFlights.forget(mobileNumber);
+      if (cache != null) {
+        cache.evict(mobileNumber);
+      }
+    }
+  }
+
+  private static int evictionStripe(String mobileNumber) {
+    return mobileNumber.hashCode() & (EVICTION_STRIPES - 1);
+  }
+
+  /**
+   * Utility method to run an action once the current transaction commits (or right away if there is no transaction),
+   * used to update the in-memory structures only with changes that are really in the DB
+   * @param action Action to run
+   */
+  private void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+
 }
\ No newline at end of file
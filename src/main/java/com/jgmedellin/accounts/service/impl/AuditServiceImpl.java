@@ -0,0 +1,37 @@
+package com.jgmedellin.accounts.service.impl;
+
+import com.jgmedellin.accounts.audit.AuditEvent;
+import com.jgmedellin.accounts.audit.AuditTrail;
+import com.jgmedellin.accounts.dto.AuditPageDto;
+import com.jgmedellin.accounts.service.IAuditService;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@AllArgsConstructor
+public class AuditServiceImpl implements IAuditService {
+
+  private AuditTrail auditTrail;
+
+  @Override
+  public AuditPageDto findEvents(long fromSequence, String entity, String entityId, int limit) {
+    long lastSequence = auditTrail.lastSequence(); // Read first, the events written meanwhile are in the next page
+    List<AuditEvent> events = new ArrayList<>();
+    auditTrail.replay(fromSequence, event -> {
+      if (event.sequence() > lastSequence) {
+        return false;
+      }
+      if ((entity == null || entity.equals(event.entity())) && (entityId == null || entityId.equals(event.entityId()))) {
+        events.add(event);
+      }
+      return events.size() < limit;
+    });
+    // A full page continues after its last event, otherwise everything up to lastSequence was read
+    long nextSequence = events.size() == limit ? events.get(limit - 1).sequence() + 1
+            : Math.max(fromSequence, lastSequence + 1);
+    return new AuditPageDto(events, nextSequence);
+  }
+
+}
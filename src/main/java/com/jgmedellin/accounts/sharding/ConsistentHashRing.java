@@ -0,0 +1,71 @@
+package com.jgmedellin.accounts.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Consistent hash ring of the shards: each shard owns virtualNodes points of a 64-bit ring and a key belongs to the
+ * shard of the first point at or after its hash. Adding a shard only moves the keys of the points it takes over
+ * (about 1/N of them), a plain hash modulo N would move almost every key.
+ * The points are kept in two sorted arrays, a lookup is a hash and a binary search without any allocation.
+ */
+public class ConsistentHashRing {
+
+  private final long[] points;
+
+  private final int[] shards; // Shard of each point
+
+  public ConsistentHashRing(int shardCount, int virtualNodes) {
+    if (shardCount < 1 || virtualNodes < 1) {
+      throw new IllegalArgumentException("The ring needs at least one shard and one virtual node per shard");
+    }
+    long[][] ring = new long[shardCount * virtualNodes][];
+    for (int shard = 0; shard < shardCount; shard++) {
+      for (int node = 0; node < virtualNodes; node++) {
+        // The points of a shard only depend on its number, so they don't move when shards are added
+        ring[shard * virtualNodes + node] = new long[]{hash("shard-" + shard + "#" + node), shard};
+      }
+    }
+    Arrays.sort(ring, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+    this.points = new long[ring.length];
+    this.shards = new int[ring.length];
+    for (int i = 0; i < ring.length; i++) {
+      points[i] = ring[i][0];
+      shards[i] = (int) ring[i][1];
+    }
+  }
+
+  /**
+   * Finds the shard of a key
+   * @param key Shard key (the mobile number)
+   * @return the shard number
+   */
+  public int shardOf(String key) {
+    int index = Arrays.binarySearch(points, hash(key));
+    if (index < 0) {
+      index = -index - 1; // First point after the hash
+    }
+    return shards[index == points.length ? 0 : index]; // Past the last point wraps around to the first one
+  }
+
+  /**
+   * Utility method to hash a key: FNV-1a over the UTF-8 bytes, then the MurmurHash3 finalizer so keys that only
+   * differ in the last digit land far apart on the ring
+   * @param key Key to hash
+   * @return the position of the key on the ring
+   */
+  static long hash(String key) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+}
@@ -0,0 +1,19 @@
+package com.jgmedellin.accounts.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Connection pools of the shards, in shard order. They are not DataSource beans themselves: JPA and the repositories
+ * only see the routing DataSource. Closed with the application context.
+ * @param pools Pool of each shard
+ */
+record ShardDataSources(List<HikariDataSource> pools) implements Closeable {
+
+  @Override
+  public void close() {
+    pools.forEach(HikariDataSource::close);
+  }
+
+}
@@ -0,0 +1,33 @@
+package com.jgmedellin.accounts.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataSource that hands out the connections of the shard selected by the current thread (see Shards), or of shard 0
+ * when none is selected (startup, sequences of other components, the idempotency store...).
+ * It is wrapped in a LazyConnectionDataSourceProxy, so a transaction only takes its connection at its first statement,
+ * after the service selected the shard of the customer.
+ */
+class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+  ShardRoutingDataSource(List<DataSource> shards) {
+    Map<Object, Object> targets = new HashMap<>();
+    for (int shard = 0; shard < shards.size(); shard++) {
+      targets.put(shard, shards.get(shard));
+    }
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(shards.get(0));
+    setLenientFallback(false); // An unknown shard is a bug, not shard 0
+    afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return Shards.currentShard();
+  }
+
+}
@@ -0,0 +1,54 @@
+package com.jgmedellin.accounts.sharding;
+
+import com.jgmedellin.accounts.generator.AccountNumberGenerator;
+import com.jgmedellin.accounts.generator.HiLoAccountNumberGenerator;
+import java.util.List;
+
+/**
+ * Account numbers that encode the shard of the account: each shard has its own hi/lo generator (its own
+ * account_number_seq) and the number handed out is FIRST + (hi/lo number - FIRST) * MAX_SHARDS + shard, so
+ * (accountNumber - FIRST) % MAX_SHARDS finds the shard of an account without asking every shard.
+ * The numbers are generated for the shard selected by the current thread (the shard of the customer being created).
+ */
+public class ShardedAccountNumberGenerator implements AccountNumberGenerator {
+
+  private final List<HiLoAccountNumberGenerator> generators;
+
+  public ShardedAccountNumberGenerator(List<HiLoAccountNumberGenerator> generators) {
+    this.generators = generators;
+  }
+
+  @Override
+  public long nextAccountNumber() {
+    Integer shard = Shards.currentShard();
+    if (shard == null) {
+      throw new IllegalStateException("Account numbers can only be generated for a shard");
+    }
+    return encode(generators.get(shard).nextAccountNumber(), shard);
+  }
+
+  /**
+   * Utility method to add the shard to an account number of the hi/lo generator of the shard
+   * @param number Account number unique in the shard
+   * @param shard Shard number
+   * @return the account number unique in every shard
+   */
+  static long encode(long number, int shard) {
+    long sequence = number - HiLoAccountNumberGenerator.FIRST_ACCOUNT_NUMBER;
+    long accountNumber = HiLoAccountNumberGenerator.FIRST_ACCOUNT_NUMBER + sequence * Shards.MAX_SHARDS + shard;
+    if (accountNumber > HiLoAccountNumberGenerator.LAST_ACCOUNT_NUMBER) {
+      throw new IllegalStateException("No more 10 digit account numbers available in shard " + shard);
+    }
+    return accountNumber;
+  }
+
+  /**
+   * Finds the shard encoded in an account number
+   * @param accountNumber Account number
+   * @return the shard number (between 0 and MAX_SHARDS - 1)
+   */
+  static int shardOf(long accountNumber) {
+    return (int) Math.floorMod(accountNumber - HiLoAccountNumberGenerator.FIRST_ACCOUNT_NUMBER, Shards.MAX_SHARDS);
+  }
+
+}
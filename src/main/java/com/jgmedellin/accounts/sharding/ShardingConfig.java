@@ -0,0 +1,91 @@
+package com.jgmedellin.accounts.sharding;
+
+import com.jgmedellin.accounts.generator.AccountNumberGenerator;
+import com.jgmedellin.accounts.generator.HiLoAccountNumberGenerator;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sharded persistence mode, see accounts.sharding.* in application.yaml: one connection pool per shard (published as
+ * hikaricp.* meters with pool=accounts-shard-N) behind a single routing DataSource, so JPA, the repositories and the
+ * transactions stay as they are. Every shard gets the tables of schema.sql and its own range of customer ids.
+ * The request bound persistence context (open-in-view) must be disabled: it keeps the connection of the first shard
+ * used by a request for the following transactions.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "accounts.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+  @Bean
+  ShardDataSources shardDataSources(ShardingProperties properties, DataSourceProperties dataSourceProperties,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+    if (openInView) {
+      throw new IllegalStateException("accounts.sharding.enabled needs spring.jpa.open-in-view=false");
+    }
+    List<HikariDataSource> pools = new ArrayList<>();
+    for (int shard = 0; shard < properties.urls().size(); shard++) {
+      HikariDataSource pool = dataSourceProperties.initializeDataSourceBuilder()
+              .type(HikariDataSource.class)
+              .url(properties.urls().get(shard))
+              .build();
+      pool.setPoolName("accounts-shard-" + shard);
+      pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+      initializeShard(pool, shard);
+      pools.add(pool);
+    }
+    return new ShardDataSources(List.copyOf(pools));
+  }
+
+  @Bean
+  public DataSource dataSource(ShardDataSources shardDataSources) {
+    // The connection is taken at the first statement of the transaction, once the service selected the shard
+    return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(List.copyOf(shardDataSources.pools())));
+  }
+
+  @Bean
+  public AccountNumberGenerator accountNumberGenerator(ShardDataSources shardDataSources,
+                                                       @Value("${accounts.account-number.block-size:100}") long blockSize) {
+    HiLoAccountNumberGenerator.checkSchemaIncrement(blockSize); // Every shard is created from schema.sql
+    List<HiLoAccountNumberGenerator> generators = new ArrayList<>();
+    for (HikariDataSource pool : shardDataSources.pools()) {
+      // Each generator reserves its blocks from the account_number_seq of its own shard
+      generators.add(new HiLoAccountNumberGenerator(new JdbcTemplate(pool), blockSize));
+    }
+    return new ShardedAccountNumberGenerator(generators);
+  }
+
+  /**
+   * Utility method to create the tables of a shard and move its customer_seq to the range of the shard
+   * @param shardDataSource Pool of the shard
+   * @param shard Shard number
+   */
+  private static void initializeShard(DataSource shardDataSource, int shard) {
+    new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(shardDataSource);
+    if (shard == 0) {
+      return;
+    }
+    // customer_seq goes up by 50 and Hibernate uses the 50 ids up to each value, so the first value is + 50
+    // (see Shards.CUSTOMER_ID_RANGE)
+    long firstValue = shard * Shards.CUSTOMER_ID_RANGE + 50;
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(shardDataSource);
+    Long nextValue = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR customer_seq", Long.class);
+    if (nextValue != null && nextValue < firstValue) {
+      jdbcTemplate.execute("ALTER SEQUENCE customer_seq RESTART WITH " + firstValue);
+    }
+  }
+
+}
@@ -0,0 +1,14 @@
+package com.jgmedellin.accounts.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.util.List;
+
+/**
+ * Settings of the sharded persistence mode, mapped from accounts.sharding.*.
+ * @param enabled True to spread the customers over the shard databases instead of spring.datasource.url
+ * @param urls JDBC URL of each shard, in shard order (the position is the shard number, don't reorder them). The
+ *             username, password and pool settings come from spring.datasource
+ * @param virtualNodes Points of each shard in the hash ring, more points spread the customers more evenly
+ */
+@ConfigurationProperties(prefix = "accounts.sharding")
+public record ShardingProperties(boolean enabled, List<String> urls, int virtualNodes) { }
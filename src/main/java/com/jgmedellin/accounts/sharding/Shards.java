@@ -0,0 +1,131 @@
+package com.jgmedellin.accounts.sharding;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.function.Supplier;
+
+/**
+ * Routing of the customers to the shards: a customer (and its account) lives in the shard of the consistent hash of
+ * its mobile number and its account number encodes the shard, so a customer found by either key is read from a
+ * single shard. The other queries (listing, export) ask every shard.
+ * The service selects the shard of the current thread before the first statement of a transaction (inShard or pin),
+ * ShardRoutingDataSource then hands out the connections of that shard. A transaction can't span several shards, the
+ * fan-out operations run one transaction per shard.
+ * Without accounts.sharding.enabled there is a single shard and the selection does nothing.
+ */
+@Component
+public class Shards {
+
+  /** Most shards the account numbers can encode */
+  public static final int MAX_SHARDS = 16;
+
+  /**
+   * Values of the customer_seq of each shard, the one of shard N starts at N * CUSTOMER_ID_RANGE. Hibernate keeps a
+   * single pool of customer ids for all the shards, refilled from the sequence of the shard in use, so the ids are
+   * unique because the sequences never hand out the same value (but an id doesn't tell the shard of its customer).
+   */
+  public static final long CUSTOMER_ID_RANGE = 1L << 48;
+
+  private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+  private final int count;
+
+  private final ConsistentHashRing ring; // null without sharding
+
+  public Shards(ShardingProperties properties) {
+    this.count = properties.enabled() ? properties.urls().size() : 1;
+    if (count < 1 || count > MAX_SHARDS) {
+      throw new IllegalStateException("accounts.sharding.urls must have between 1 and " + MAX_SHARDS + " shards");
+    }
+    this.ring = properties.enabled() ? new ConsistentHashRing(count, properties.virtualNodes()) : null;
+  }
+
+  /**
+   * @return the number of shards, 1 when sharding is disabled
+   */
+  public int count() {
+    return count;
+  }
+
+  /**
+   * Finds the shard of a customer by its mobile number
+   * @param mobileNumber Mobile number of the customer
+   * @return the shard number
+   */
+  public int shardOf(String mobileNumber) {
+    return ring == null ? 0 : ring.shardOf(mobileNumber);
+  }
+
+  /**
+   * Finds the shard of an account by its account number
+   * @param accountNumber Account number
+   * @return the shard number, -1 if the number can't belong to any shard
+   */
+  public int shardOfAccount(long accountNumber) {
+    if (ring == null) {
+      return 0;
+    }
+    int shard = ShardedAccountNumberGenerator.shardOf(accountNumber);
+    return shard < count ? shard : -1;
+  }
+
+  /**
+   * Runs an action with the connections of a shard, the transactions it starts use that shard
+   * @param shard Shard number
+   * @param action Action to run
+   * @return the result of the action
+   */
+  public <T> T inShard(int shard, Supplier<T> action) {
+    if (ring == null) {
+      return action.get();
+    }
+    Integer previous = CURRENT_SHARD.get();
+    CURRENT_SHARD.set(shard);
+    try {
+      return action.get();
+    } finally {
+      if (previous == null) {
+        CURRENT_SHARD.remove();
+      } else {
+        CURRENT_SHARD.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Selects the shard of the current transaction until it completes, called at the start of a @Transactional method
+   * (its connection is only taken at the first statement)
+   * @param shard Shard number
+   */
+  public void pin(int shard) {
+    if (ring == null) {
+      return;
+    }
+    Integer current = CURRENT_SHARD.get();
+    if (current != null) {
+      if (current != shard) {
+        throw new IllegalStateException("The transaction already uses shard " + current + ", not " + shard);
+      }
+      return;
+    }
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      throw new IllegalStateException("A shard can only be pinned inside a transaction");
+    }
+    CURRENT_SHARD.set(shard);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(int status) {
+        CURRENT_SHARD.remove();
+      }
+    });
+  }
+
+  /**
+   * @return the shard selected by the current thread, null for the default shard
+   */
+  static Integer currentShard() {
+    return CURRENT_SHARD.get();
+  }
+
+}
@@ -0,0 +1,53 @@
+package com.jgmedellin.accounts.startup;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.type.MethodMetadata;
+import java.util.List;
+
+/**
+ * Makes the beans of the given packages lazy, so they are created on their first use instead of delaying the
+ * startup. Meant for the beans no request needs right away, like the OpenAPI documentation (springdoc).
+ * Beans that other eager beans depend on are still created at startup, by those beans.
+ */
+public class LazyBeansPostProcessor implements BeanFactoryPostProcessor {
+
+  private final List<String> packages;
+
+  /**
+   * @param packages Packages of the lazy beans (the package of the bean class or of the configuration class
+   *                 that declares the @Bean method)
+   */
+  public LazyBeansPostProcessor(List<String> packages) {
+    this.packages = packages.stream().map(name -> name.endsWith(".") ? name : name + ".").toList();
+  }
+
+  @Override
+  public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+    if (packages.isEmpty()) {
+      return;
+    }
+    for (String beanName : beanFactory.getBeanDefinitionNames()) {
+      BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+      if (beanDefinition.getRole() != BeanDefinition.ROLE_INFRASTRUCTURE && isInPackages(beanDefinition)) {
+        beanDefinition.setLazyInit(true);
+      }
+    }
+  }
+
+  /**
+   * Utility method to tell if a bean is declared in one of the lazy packages
+   */
+  private boolean isInPackages(BeanDefinition beanDefinition) {
+    String className = beanDefinition.getBeanClassName();
+    if (beanDefinition instanceof AnnotatedBeanDefinition annotatedBeanDefinition) {
+      MethodMetadata factoryMethod = annotatedBeanDefinition.getFactoryMethodMetadata();
+      if (factoryMethod != null) {
+        className = factoryMethod.getDeclaringClassName(); // @Bean method, the bean class name is not known yet
+      }
+    }
+    return className != null && packages.stream().anyMatch(className::startsWith);
+  }
+}
@@ -0,0 +1,27 @@
+package com.jgmedellin.accounts.startup;
+
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import java.util.List;
+
+/**
+ * Startup time settings, see accounts.startup.* in application.yaml and application_prod.yaml.
+ */
+@Configuration
+public class StartupConfig {
+
+  /**
+   * Static, a BeanFactoryPostProcessor runs before the rest of the beans exist (so the properties are read with the
+   * Binder instead of a @ConfigurationProperties bean).
+   */
+  @Bean
+  public static LazyBeansPostProcessor lazyBeansPostProcessor(Environment environment) {
+    List<String> packages = Binder.get(environment)
+            .bind("accounts.startup.lazy-bean-packages", Bindable.listOf(String.class))
+            .orElse(List.of());
+    return new LazyBeansPostProcessor(packages);
+  }
+}
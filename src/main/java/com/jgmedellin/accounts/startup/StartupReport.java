@@ -0,0 +1,87 @@
+package com.jgmedellin.accounts.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Logs the slowest startup steps once the application is ready, from the steps recorded by the
+ * BufferingApplicationStartup set in AccountsApplication.main() (the full timeline is in /actuator/startup).
+ * The steps are nested (a bean creation includes the creation of its dependencies), so they are ranked by self time:
+ * the duration of the step minus the duration of its child steps.
+ */
+@Component
+@Slf4j
+public class StartupReport {
+
+  private final int slowestSteps;
+
+  public StartupReport(@Value("${accounts.startup.slowest-steps:10}") int slowestSteps) {
+    this.slowestSteps = slowestSteps;
+  }
+
+  @EventListener
+  public void onApplicationReady(ApplicationReadyEvent event) {
+    ApplicationStartup applicationStartup = event.getApplicationContext().getApplicationStartup();
+    if (slowestSteps <= 0 || !(applicationStartup instanceof BufferingApplicationStartup bufferingStartup)) {
+      return; // Not started from main() (e.g. the tests), there are no steps to report
+    }
+    List<StepTime> steps = selfTimes(bufferingStartup.getBufferedTimeline().getEvents());
+    log.info("Ready {} ms after the JVM start, slowest startup steps (self time):",
+            ManagementFactory.getRuntimeMXBean().getUptime());
+    steps.stream().sorted(Comparator.comparing(StepTime::self).reversed()).limit(slowestSteps).forEach(step ->
+            log.info("  {} ms self, {} ms total  {} {}", step.self().toMillis(), step.total().toMillis(), step.name(),
+                    step.tags()));
+  }
+
+  /**
+   * Utility method to compute the self time of every recorded step
+   * @param events Recorded steps (the steps still running, like the whole startup, are not in the timeline)
+   * @return the total and self time of each step
+   */
+  static List<StepTime> selfTimes(List<StartupTimeline.TimelineEvent> events) {
+    Map<Long, Duration> childrenTime = new HashMap<>();
+    for (StartupTimeline.TimelineEvent event : events) {
+      Long parentId = event.getStartupStep().getParentId();
+      if (parentId != null) {
+        childrenTime.merge(parentId, event.getDuration(), Duration::plus);
+      }
+    }
+    List<StepTime> steps = new ArrayList<>(events.size());
+    for (StartupTimeline.TimelineEvent event : events) {
+      StartupStep step = event.getStartupStep();
+      Duration self = event.getDuration().minus(childrenTime.getOrDefault(step.getId(), Duration.ZERO));
+      String tags = step.getTags() == null ? "" : toString(step.getTags());
+      steps.add(new StepTime(step.getName(), tags, event.getDuration(), self));
+    }
+    return steps;
+  }
+
+  private static String toString(StartupStep.Tags tags) {
+    List<String> values = new ArrayList<>();
+    tags.forEach(tag -> values.add(tag.getKey() + "=" + tag.getValue()));
+    return values.stream().collect(Collectors.joining(", ", "[", "]"));
+  }
+
+  /**
+   * @param name Name of the step (e.g. spring.beans.instantiate)
+   * @param tags Tags of the step (e.g. the bean name)
+   * @param total Duration of the step
+   * @param self Duration of the step without its child steps
+   */
+  record StepTime(String name, String tags, Duration total, Duration self) { }
+}
@@ -1,21 +1,52 @@
 CREATE TABLE IF NOT EXISTS `customer` (
-  `customer_id` INT AUTO_INCREMENT PRIMARY KEY,
+  `customer_id` BIGINT PRIMARY KEY,
   `name` VARCHAR(100) NOT NULL,
   `email` VARCHAR(100) NOT NULL,
   `mobile_number` VARCHAR(20) NOT NULL,
-  `created_at` DATE NOT NULL,
+  `created_at` TIMESTAMP NOT NULL,
   `created_by` VARCHAR(20) NOT NULL,
-  `updated_at` DATE DEFAULT NULL,
-  `updated_by` VARCHAR(20) DEFAULT NULL
+  `updated_at` TIMESTAMP DEFAULT NULL,
+  `updated_by` VARCHAR(20) DEFAULT NULL,
+  `version` BIGINT DEFAULT 0 NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS `accounts` (
-  `customer_id` INT NOT NULL,
-  `account_number` INT AUTO_INCREMENT PRIMARY KEY,
+  `customer_id` BIGINT NOT NULL,
+  `account_number` BIGINT PRIMARY KEY,
   `account_type` VARCHAR(100) NOT NULL,
   `branch_address` VARCHAR(200) NOT NULL,
-  `created_at` DATE NOT NULL,
+  `created_at` TIMESTAMP NOT NULL,
   `created_by` VARCHAR(20) NOT NULL,
-  `updated_at` DATE DEFAULT NULL,
-  `updated_by` VARCHAR(20) DEFAULT NULL
-);
\ No newline at end of file
+  `updated_at` TIMESTAMP DEFAULT NULL,
+  `updated_by` VARCHAR(20) DEFAULT NULL,
+  `version` BIGINT DEFAULT 0 NOT NULL
+);
+
+-- Every endpoint looks the customer up by mobile number, and the account by customer id
+-- The account index also has the account number, it is the (customer_id, account_number) order of the listing
+CREATE UNIQUE INDEX IF NOT EXISTS `idx_customer_mobile_number` ON `customer` (`mobile_number`);
+CREATE INDEX IF NOT EXISTS `idx_accounts_customer_id_account_number` ON `accounts` (`customer_id`, `account_number`);
+-- Listing of one account type: same keyset range scan, only over the accounts of that type
+CREATE INDEX IF NOT EXISTS `idx_accounts_account_type_customer_id_account_number` ON `accounts` (`account_type`, `customer_id`, `account_number`);
+
+-- Customer ids, Hibernate takes blocks of 50 ids per call (see allocationSize in Customer)
+CREATE SEQUENCE IF NOT EXISTS `customer_seq` START WITH 1 INCREMENT BY 50;
+
+-- Account number blocks: each value is the first number of a block of INCREMENT numbers, accounts.account-number.block-size
+-- must be the same (checked against this file at startup) so the nodes can't overlap. To change the block size, restart
+-- the sequence past the blocks already taken: ALTER SEQUENCE account_number_seq RESTART WITH <next value + old increment>
+-- INCREMENT BY <new size>, then deploy the new block size. A bigger size can be rolled out node by node (the old nodes
+-- use part of each block), a smaller one needs every node stopped before the ALTER
+CREATE SEQUENCE IF NOT EXISTS `account_number_seq` START WITH 1000000000 INCREMENT BY 100;
+
+-- Completed responses of the requests sent with an Idempotency-Key, when accounts.idempotency.store is jdbc
+CREATE TABLE IF NOT EXISTS `idempotency_key` (
+  `idempotency_key` VARCHAR(300) PRIMARY KEY,
+  `fingerprint` VARCHAR(64) NOT NULL,
+  `status` INT NOT NULL,
+  `content_type` VARCHAR(100) DEFAULT NULL,
+  `headers` VARCHAR(4000) NOT NULL,
+  `body` BLOB,
+  `expires_at` TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS `idx_idempotency_key_expires_at` ON `idempotency_key` (`expires_at`);
@@ -0,0 +1,126 @@
+#!/usr/bin/env python3
+"""Measures the time to first request of the application in each startup mode.
+
+Usage:
+  ./mvnw -Pfast-startup -DskipTests package
+  python3 src/startup/startup_benchmark.py [--runs 5] [--modes baseline,prod,fast]
+                                           [--report target/startup-benchmark.json]
+
+Modes:
+  baseline  java -jar on the packaged jar with the default configuration, how the application starts today
+  prod      the same jar with the prod profile (no schema update, lazy springdoc), to tell the configuration gains
+            apart from the AOT and CDS ones
+  fast      the extracted jar of target/fast-startup with the AOT bean definitions and the AppCDS archive
+
+Each run starts a new JVM on a free port and polls GET /api/build-info until it answers 200. The time to first
+request is measured from the process start, so it includes the JVM startup and the class loading that "Started
+AccountsApplication in ..." leaves out. The modes take turns in every round, so a machine getting slower or faster
+during the benchmark affects all of them alike.
+"""
+import argparse
+import json
+import os
+import re
+import socket
+import statistics
+import subprocess
+import sys
+import time
+import urllib.request
+
+JAR = "accounts-0.0.1-SNAPSHOT.jar"
+STARTED = re.compile(r"Started AccountsApplication in ([0-9.]+) seconds")
+
+
+def command(mode, port):
+    """Returns the command line and working directory of a startup mode."""
+    arguments = [f"--server.port={port}", "--logging.level.root=INFO"]
+    if mode == "baseline":
+        return ["java", "-jar", os.path.join("target", JAR)] + arguments, "."
+    if mode == "prod":
+        return ["java", "-jar", os.path.join("target", JAR), "--spring.profiles.active=prod"] + arguments, "."
+    if mode == "fast":
+        # Same directory and jar path as the training run, the archive is only used with the same classpath
+        return ["java", "-XX:SharedArchiveFile=application.jsa", "-Dspring.aot.enabled=true", "-jar", JAR,
+                "--spring.profiles.active=prod"] + arguments, os.path.join("target", "fast-startup")
+    raise ValueError(f"Unknown mode {mode}")
+
+
+def free_port():
+    with socket.socket() as server:
+        server.bind(("localhost", 0))
+        return server.getsockname()[1]
+
+
+def run(mode, timeout):
+    """Starts the application and returns the time to first request and the reported startup time, in ms."""
+    port = free_port()
+    args, directory = command(mode, port)
+    url = f"http://localhost:{port}/api/build-info"
+    start = time.monotonic()
+    process = subprocess.Popen(args, cwd=directory, stdout=subprocess.PIPE, stderr=subprocess.STDOUT, text=True)
+    try:
+        while True:
+            elapsed = time.monotonic() - start
+            if process.poll() is not None:
+                raise RuntimeError(f"{mode}: the application exited with code {process.returncode}")
+            if elapsed > timeout:
+                raise RuntimeError(f"{mode}: no response after {timeout} s")
+            try:
+                with urllib.request.urlopen(url, timeout=1) as response:
+                    if response.status == 200:
+                        first_request = (time.monotonic() - start) * 1000
+                        break
+            except OSError:
+                time.sleep(0.05)
+    finally:
+        process.terminate()
+        output, _ = process.communicate(timeout=30)
+    started = STARTED.search(output)
+    return first_request, float(started.group(1)) * 1000 if started else None
+
+
+def summary(values):
+    return {"median": statistics.median(values), "min": min(values), "max": max(values), "runs": values}
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--runs", type=int, default=5)
+    parser.add_argument("--modes", default="baseline,prod,fast")
+    parser.add_argument("--timeout", type=float, default=180.0, help="seconds to wait for each startup")
+    parser.add_argument("--report", default="target/startup-benchmark.json")
+    args = parser.parse_args()
+    modes = args.modes.split(",")
+
+    first_requests = {mode: [] for mode in modes}
+    started = {mode: [] for mode in modes}
+    for round_number in range(args.runs):
+        for index in range(len(modes)):
+            mode = modes[(round_number + index) % len(modes)]
+            first_request, started_in = run(mode, args.timeout)
+            first_requests[mode].append(round(first_request))
+            if started_in is not None:
+                started[mode].append(round(started_in))
+            print(f"round {round_number + 1}/{args.runs} {mode:<9} first request {first_request:8.0f} ms", flush=True)
+
+    report = {mode: {"firstRequestMs": summary(first_requests[mode]),
+                     "startedInMs": summary(started[mode]) if started[mode] else None} for mode in modes}
+    print(f"\n{'Mode':<10} {'First request (median)':>24} {'min':>8} {'max':>8} {'Started in (median)':>21} "
+          f"{'Speedup':>8}")
+    reference = report[modes[0]]["firstRequestMs"]["median"]
+    for mode in modes:
+        first_request = report[mode]["firstRequestMs"]
+        started_in = report[mode]["startedInMs"]
+        print(f"{mode:<10} {first_request['median']:>21.0f} ms {first_request['min']:>5.0f} ms "
+              f"{first_request['max']:>5.0f} ms {started_in['median'] if started_in else float('nan'):>18.0f} ms "
+              f"{reference / first_request['median']:>7.2f}x")
+    os.makedirs(os.path.dirname(args.report) or ".", exist_ok=True)
+    with open(args.report, "w", encoding="utf-8") as file:
+        json.dump(report, file, indent=2)
+    print(f"\nReport written to {args.report}")
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())
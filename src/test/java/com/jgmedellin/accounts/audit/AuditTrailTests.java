@@ -0,0 +1,293 @@
+package com.jgmedellin.accounts.audit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.jgmedellin.accounts.concurrency.BoundedMpscQueue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.unit.DataSize;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "accounts.rate-limit.enabled=false"})
+@AutoConfigureMockMvc
+class AuditTrailTests {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @TempDir
+  private Path directory;
+
+  @Test
+  void everyCommittedWriteIsInTheAuditTrail() throws Exception {
+    mockMvc.perform(post("/api/create").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"name\": \"Audited Customer\", \"email\": \"audited@email.com\", " +
+                            "\"mobileNumber\": \"5558000001\"}"))
+            .andExpect(status().isCreated());
+    JsonNode customer = objectMapper.readTree(mockMvc.perform(get("/api/fetch").param("mobileNumber", "5558000001"))
+            .andReturn().getResponse().getContentAsString());
+    long accountNumber = customer.path("accountsDto").path("accountNumber").asLong();
+    mockMvc.perform(patch("/api/accounts/{accountNumber}", accountNumber).contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"branchAddress\": \"742 Evergreen Terrace\"}"))
+            .andExpect(status().isOk());
+    mockMvc.perform(delete("/api/delete").param("mobileNumber", "5558000001"))
+            .andExpect(status().isOk());
+
+    // The events are written in the background, wait for the writer
+    JsonNode accountEvents = awaitEvents("Accounts", String.valueOf(accountNumber), 2);
+    JsonNode create = accountEvents.get(0);
+    assertEquals("CREATE", create.path("operation").asText());
+    assertEquals("Accounts_MS", create.path("principal").asText());
+    JsonNode update = accountEvents.get(1);
+    assertEquals("UPDATE", update.path("operation").asText());
+    assertEquals(1, update.path("changes").size(), update.toString()); // Only the patched field, no audit columns
+    JsonNode change = update.path("changes").get(0);
+    assertEquals("branchAddress", change.path("field").asText());
+    assertEquals("123 Main Street, New York", change.path("before").asText());
+    assertEquals("742 Evergreen Terrace", change.path("after").asText());
+    assertTrue(create.path("sequence").asLong() < update.path("sequence").asLong());
+
+    JsonNode customerEvents = awaitEvents("Customer", customerIdOf(create), 2);
+    assertEquals("CREATE", customerEvents.get(0).path("operation").asText());
+    assertEquals("DELETE", customerEvents.get(1).path("operation").asText());
+    assertEquals("5558000001", customerEvents.get(1).path("changes").get(0).path("before").asText());
+  }
+
+  @Test
+  void queuedEventsAreWrittenOnShutdown() throws Exception {
+    // The writer sleeps for a long time between batches, so the events are still queued when stop() is called
+    AuditTrail auditTrail = auditTrail(directory, 1 << 20, 8, Duration.ofSeconds(5));
+    auditTrail.start();
+    int producers = 4;
+    int eventsPerProducer = 5_000;
+    CountDownLatch done = new CountDownLatch(producers);
+    AtomicInteger recorded = new AtomicInteger();
+    for (int p = 0; p < producers; p++) {
+      int producer = p;
+      new Thread(() -> {
+        for (int i = 0; i < eventsPerProducer; i++) {
+          if (auditTrail.record("Customer", producer * eventsPerProducer + i, AuditEvent.Operation.UPDATE,
+                  List.of(new AuditEvent.FieldChange("name", "before " + i, "after " + i)))) {
+            recorded.incrementAndGet();
+          }
+        }
+        done.countDown();
+      }).start();
+    }
+    done.await();
+    assertEquals(producers * eventsPerProducer, recorded.get());
+    auditTrail.stop();
+
+    // Every event is in the log after the shutdown, once and with consecutive sequences
+    try (AuditSegmentLog auditLog = AuditSegmentLog.open(directory, 1 << 20, 8, false)) {
+      assertEquals(recorded.get(), auditLog.flushedSequence());
+    }
+    AuditTrail reopened = auditTrail(directory, 1 << 20, 8, Duration.ofMillis(10));
+    reopened.start();
+    List<AuditEvent> events = new ArrayList<>();
+    reopened.replay(1, events::add);
+    reopened.stop();
+    assertEquals(recorded.get(), events.size());
+    assertEquals(recorded.get(), events.stream().map(AuditEvent::entityId).distinct().count());
+    for (int i = 0; i < events.size(); i++) {
+      assertEquals(i + 1, events.get(i).sequence());
+    }
+  }
+
+  @Test
+  void segmentsRotateAndTheOldestAreDeleted() throws Exception {
+    int segmentSize = 4096;
+    try (AuditSegmentLog auditLog = AuditSegmentLog.open(directory, segmentSize, 3, true)) {
+      for (int i = 1; i <= 1000; i++) {
+        auditLog.append(payload(i));
+        if (i % 10 == 0) {
+          auditLog.flush();
+        }
+      }
+      assertEquals(3, segmentFiles().size());
+
+      // The records of the deleted segments are gone, the others are read in order with their payload
+      List<Long> sequences = new ArrayList<>();
+      auditLog.read(1, (sequence, payload) -> {
+        assertEquals(new String(payload(sequence), StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8.decode(payload).toString());
+        return sequences.add(sequence);
+      });
+      assertFalse(sequences.isEmpty());
+      assertEquals(1000, sequences.get(sequences.size() - 1));
+      for (int i = 1; i < sequences.size(); i++) {
+        assertEquals(sequences.get(i - 1) + 1, sequences.get(i));
+      }
+
+      // Reading from a sequence skips the segments before it and stops when the consumer asks
+      List<Long> page = new ArrayList<>();
+      auditLog.read(990, (sequence, payload) -> page.add(sequence) && page.size() < 5);
+      assertEquals(List.of(990L, 991L, 992L, 993L, 994L), page);
+    }
+  }
+
+  @Test
+  void damagedRecordEndsItsSegment() throws Exception {
+    try (AuditSegmentLog auditLog = AuditSegmentLog.open(directory, 1 << 16, 4, false)) {
+      for (int i = 1; i <= 10; i++) {
+        auditLog.append(payload(i));
+      }
+      auditLog.flush();
+    }
+    // Flip a byte in the payload of the 8th record, as a crash in the middle of a write would leave it
+    Path segment = segmentFiles().get(0);
+    int offset = 0;
+    for (int i = 1; i < 8; i++) {
+      offset += AuditSegmentLog.HEADER_SIZE + payload(i).length;
+    }
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {'#'}), offset + AuditSegmentLog.HEADER_SIZE + 2);
+    }
+
+    try (AuditSegmentLog auditLog = AuditSegmentLog.open(directory, 1 << 16, 4, false)) {
+      assertEquals(8, auditLog.nextSequence()); // Appending goes on after the last valid record, in a new segment
+      auditLog.append(payload(8));
+      auditLog.flush();
+      List<Long> sequences = new ArrayList<>();
+      auditLog.read(1, (sequence, payload) -> sequences.add(sequence));
+      assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), sequences);
+      assertEquals(2, segmentFiles().size());
+    }
+  }
+
+  @Test
+  void queueNeverBlocksAndLosesNothing() throws Exception {
+    BoundedMpscQueue<Integer> queue = new BoundedMpscQueue<>(1000);
+    assertEquals(1024, queue.capacity());
+    for (int i = 0; i < queue.capacity(); i++) {
+      assertTrue(queue.offer(i));
+    }
+    assertFalse(queue.offer(-1)); // Full, the producer is not blocked
+    assertEquals(queue.capacity(), queue.drain(element -> { }, Integer.MAX_VALUE));
+
+    // Concurrent producers and one consumer: each accepted element is received exactly once
+    int producers = 4;
+    int elementsPerProducer = 100_000;
+    AtomicInteger accepted = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(producers);
+    for (int p = 0; p < producers; p++) {
+      int producer = p;
+      new Thread(() -> {
+        for (int i = 0; i < elementsPerProducer; i++) {
+          if (queue.offer(producer * elementsPerProducer + i)) {
+            accepted.incrementAndGet();
+          }
+        }
+        done.countDown();
+      }).start();
+    }
+    boolean[] received = new boolean[producers * elementsPerProducer];
+    int[] lastOfProducer = new int[producers];
+    Arrays.fill(lastOfProducer, -1);
+    int receivedCount = 0;
+    while (done.getCount() > 0 || queue.size() > 0) {
+      Integer element = queue.poll();
+      if (element == null) {
+        Thread.onSpinWait();
+        continue;
+      }
+      assertFalse(received[element], "Received twice: " + element);
+      received[element] = true;
+      int producer = element / elementsPerProducer;
+      assertTrue(element > lastOfProducer[producer], "Out of order: " + element); // FIFO per producer
+      lastOfProducer[producer] = element;
+      receivedCount++;
+    }
+    assertEquals(accepted.get(), receivedCount);
+  }
+
+  /**
+   * Utility method to wait until the audit API returns the expected number of events of an entity
+   * @param entity Customer or Accounts
+   * @param entityId Id of the entity
+   * @param expected Number of events expected
+   * @return the events
+   */
+  private JsonNode awaitEvents(String entity, String entityId, int expected) throws Exception {
+    long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+    while (true) {
+      JsonNode events = objectMapper.readTree(mockMvc.perform(get("/api/audit")
+                      .param("entity", entity).param("entityId", entityId).param("limit", "100"))
+              .andExpect(status().isOk())
+              .andReturn().getResponse().getContentAsString()).path("events");
+      if (events.size() >= expected || System.nanoTime() > deadline) {
+        assertEquals(expected, events.size(), events.toString());
+        return events;
+      }
+      Thread.sleep(20);
+    }
+  }
+
+  /**
+   * Utility method to get the customer id from the CREATE event of an account
+   * @param accountCreate CREATE event of the account
+   * @return the customer id
+   */
+  private static String customerIdOf(JsonNode accountCreate) {
+    for (JsonNode change : accountCreate.path("changes")) {
+      if (change.path("field").asText().equals("customerId")) {
+        return change.path("after").asText();
+      }
+    }
+    throw new AssertionError("No customerId in " + accountCreate);
+  }
+
+  /**
+   * Utility method to create an audit trail outside Spring, writing to a directory
+   */
+  private static AuditTrail auditTrail(Path directory, int segmentSize, int maxSegments, Duration flushInterval) {
+    AuditProperties properties = new AuditProperties(true, directory, DataSize.ofBytes(segmentSize), maxSegments,
+            65536, 1024, flushInterval, false, Duration.ofSeconds(30));
+    return new AuditTrail(properties, JsonMapper.builder().findAndAddModules().build(), () -> Optional.of("test"),
+            new SimpleMeterRegistry());
+  }
+
+  private static byte[] payload(long sequence) {
+    return ("{\"record\": " + sequence + ", \"padding\": \"" + "x".repeat((int) (sequence % 50)) + "\"}")
+            .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private List<Path> segmentFiles() throws Exception {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.toString().endsWith(".log")).sorted().toList();
+    }
+  }
+
+}
@@ -0,0 +1,233 @@
+package com.jgmedellin.accounts.changes;
+
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.service.IAccountsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "accounts.rate-limit.enabled=false" // The subscribers connect all at once
+})
+class ChangeFeedTests {
+
+  private static final int SUBSCRIBERS = 300;
+
+  @LocalServerPort
+  private int port;
+
+  @Autowired
+  private ChangeFeed changeFeed;
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private final HttpClient httpClient = HttpClient.newHttpClient();
+
+  @Test
+  void everySubscriberGetsEveryChangeInOrder() throws Exception {
+    List<StreamRecorder> streams = new ArrayList<>();
+    for (int i = 0; i < SUBSCRIBERS; i++) {
+      streams.add(subscribe(null));
+    }
+    await(() -> subscriberCount() == SUBSCRIBERS, "subscribers connected");
+
+    // Changes committed by the service: 50 creations in one batch, an update and a deletion
+    List<CustomerDto> customers = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      CustomerDto customerDto = new CustomerDto();
+      customerDto.setName("Streamed " + i);
+      customerDto.setEmail("streamed" + i + "@email.com");
+      customerDto.setMobileNumber("55590000" + (10 + i));
+      customers.add(customerDto);
+    }
+    iAccountsService.createAccounts(customers);
+    CustomerDto updated = iAccountsService.fetchAccount("5559000010");
+    updated.setMobileNumber("5559000099");
+    iAccountsService.updateAccount(updated, null);
+    iAccountsService.deleteAccount("5559000011");
+
+    // Then a burst of concurrent publishers, the fan-out must not slow them down
+    int publishers = 4;
+    int changesPerPublisher = 500;
+    long[] publishNanos = new long[publishers * changesPerPublisher];
+    CountDownLatch published = new CountDownLatch(publishers);
+    for (int p = 0; p < publishers; p++) {
+      int publisher = p;
+      new Thread(() -> {
+        for (int i = 0; i < changesPerPublisher; i++) {
+          long start = System.nanoTime();
+          changeFeed.publish(ChangeEvent.Type.UPDATED, (long) i, "5559100000", null);
+          publishNanos[publisher * changesPerPublisher + i] = System.nanoTime() - start;
+        }
+        published.countDown();
+      }).start();
+    }
+    assertTrue(published.await(30, TimeUnit.SECONDS));
+    Arrays.sort(publishNanos);
+    int expected = 50 + 2 + publishers * changesPerPublisher;
+
+    await(() -> streams.stream().allMatch(stream -> stream.ids().size() >= expected), "every change delivered");
+    List<Long> reference = streams.get(0).ids();
+    assertEquals(expected, reference.size());
+    for (int i = 1; i < reference.size(); i++) {
+      assertEquals(reference.get(i - 1) + 1, reference.get(i), "Ids must be consecutive");
+    }
+    for (StreamRecorder stream : streams) {
+      assertEquals(reference, stream.ids()); // Same events, same order, nobody dropped
+    }
+    List<String> first = streams.get(0).events().subList(0, 52);
+    assertEquals("created", first.get(0));
+    assertEquals("updated", first.get(50));
+    assertEquals("deleted", first.get(51));
+    assertTrue(streams.get(0).lines().stream()
+            .anyMatch(line -> line.contains("\"previousMobileNumber\":\"5559000010\"")));
+    long medianPublishNanos = publishNanos[publishNanos.length / 2];
+    // Writing to 300 streams takes milliseconds, a publish only fills a slot (the max is the scheduler on 1 CPU)
+    assertTrue(medianPublishNanos < TimeUnit.MILLISECONDS.toNanos(1), String.format(Locale.ROOT,
+            "The publishers waited for the %d subscribers: publish median %.1f us, p99 %.1f us, max %.1f us",
+            SUBSCRIBERS, medianPublishNanos / 1e3, publishNanos[publishNanos.length * 99 / 100] / 1e3,
+            publishNanos[publishNanos.length - 1] / 1e3));
+
+    // Resume after a disconnection: only the events after Last-Event-ID
+    String lastSeen = streams.get(0).eventIds().get(expected - 10);
+    StreamRecorder resumed = subscribe(lastSeen);
+    await(() -> resumed.ids().size() >= 9, "missed changes replayed");
+    assertEquals(reference.subList(expected - 9, expected), resumed.ids());
+
+    streams.forEach(StreamRecorder::cancel);
+    resumed.cancel();
+  }
+
+  @Test
+  void subscriberResumingFromAnotherInstanceIsDropped() throws Exception {
+    // The id of another feed (or of a previous run) can't tell which changes of this one were missed
+    changeFeed.publish(ChangeEvent.Type.UPDATED, 1L, "5559100001", null);
+    StreamRecorder stream = subscribe("0123456789abcdef-1");
+    await(stream::isComplete, "stream closed");
+    assertEquals(List.of("lagged"), stream.events());
+    assertTrue(stream.ids().isEmpty());
+  }
+
+  /**
+   * Utility method to open a stream and record its events
+   * @param lastEventId Last-Event-ID header, null for none
+   * @return the recorder of the stream
+   */
+  private StreamRecorder subscribe(String lastEventId) {
+    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/changes/stream"))
+            .header("Accept", "text/event-stream");
+    if (lastEventId != null) {
+      request.header("Last-Event-ID", lastEventId);
+    }
+    StreamRecorder recorder = new StreamRecorder();
+    httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.fromLineSubscriber(recorder));
+    return recorder;
+  }
+
+  private double subscriberCount() {
+    return meterRegistry.get("accounts.changes.subscribers").gauge().value();
+  }
+
+  private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.nanoTime() < deadline, "Timed out waiting for: " + description);
+      Thread.sleep(20);
+    }
+  }
+
+  /**
+   * Records the ids and names of the events of a stream, read line by line as they arrive
+   */
+  private static final class StreamRecorder implements Flow.Subscriber<String> {
+
+    private final List<String> eventIds = new ArrayList<>();
+
+    private final List<Long> ids = new ArrayList<>(); // Sequences of the event ids
+
+    private final List<String> events = new ArrayList<>();
+
+    private final List<String> lines = new ArrayList<>();
+
+    private volatile Flow.Subscription subscription;
+
+    private volatile boolean complete;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void onNext(String line) {
+      lines.add(line);
+      if (line.startsWith("id:")) {
+        String eventId = line.substring(3).trim();
+        eventIds.add(eventId);
+        ids.add(Long.parseLong(eventId.substring(eventId.indexOf('-') + 1)));
+      } else if (line.startsWith("event:")) {
+        events.add(line.substring(6).trim());
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      complete = true;
+    }
+
+    @Override
+    public void onComplete() {
+      complete = true;
+    }
+
+    synchronized List<Long> ids() {
+      return List.copyOf(ids);
+    }
+
+    synchronized List<String> eventIds() {
+      return List.copyOf(eventIds);
+    }
+
+    synchronized List<String> events() {
+      return List.copyOf(events);
+    }
+
+    synchronized List<String> lines() {
+      return List.copyOf(lines);
+    }
+
+    boolean isComplete() {
+      return complete;
+    }
+
+    void cancel() {
+      if (subscription != null) {
+        subscription.cancel();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,135 @@
+package com.jgmedellin.accounts.controller;
+
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.service.IAccountsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * ETag of the fetch, If-None-Match (304) and If-Match on update and patch (412), with the accounts cache enabled.
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureMockMvc
+class ConditionalRequestTests {
+
+  private static final AtomicInteger NEXT_CUSTOMER = new AtomicInteger();
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  private String mobileNumber;
+
+  private Long accountNumber;
+
+  @BeforeEach
+  void createCustomer() {
+    mobileNumber = String.format("557%07d", NEXT_CUSTOMER.incrementAndGet());
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("Conditional Customer");
+    customerDto.setEmail("conditional@email.com");
+    customerDto.setMobileNumber(mobileNumber);
+    iAccountsService.createAccount(customerDto);
+    accountNumber = iAccountsService.fetchAccount(mobileNumber).getAccountsDto().getAccountNumber();
+  }
+
+  @Test
+  void fetchIsNotModifiedUntilTheAccountChanges() throws Exception {
+    String eTag = fetchETag();
+    assertEquals("\"" + accountNumber + ".0.0\"", eTag);
+
+    mockMvc.perform(get("/api/fetch").param("mobileNumber", mobileNumber).header("If-None-Match", eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", eTag))
+            .andExpect(content().string(""));
+    // Weak and listed ETags match too
+    mockMvc.perform(get("/api/fetch").param("mobileNumber", mobileNumber)
+                    .header("If-None-Match", "\"1.2.3\", W/" + eTag))
+            .andExpect(status().isNotModified());
+
+    patchBranch("Changed branch", null).andExpect(status().isOk());
+
+    String newETag = mockMvc.perform(get("/api/fetch").param("mobileNumber", mobileNumber)
+                    .header("If-None-Match", eTag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.accountsDto.branchAddress").value("Changed branch"))
+            .andExpect(jsonPath("$.version").doesNotExist())
+            .andReturn().getResponse().getHeader("ETag");
+    assertEquals("\"" + accountNumber + ".0.1\"", newETag);
+  }
+
+  @Test
+  void fetchOfUnknownCustomerIsNotFound() throws Exception {
+    mockMvc.perform(get("/api/fetch").param("mobileNumber", "5579999999").header("If-None-Match", "\"1.0.0\""))
+            .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void patchWithOutdatedETagIsRejected() throws Exception {
+    String eTag = fetchETag();
+    patchBranch("First change", eTag).andExpect(status().isOk());
+
+    patchBranch("Blind overwrite", eTag)
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.errorCode").value("PRECONDITION_FAILED"));
+    patchBranch("Not an ETag", "W/" + eTag).andExpect(status().isPreconditionFailed());
+    assertEquals("First change", iAccountsService.fetchAccount(mobileNumber).getAccountsDto().getBranchAddress());
+
+    patchBranch("Any version", "*").andExpect(status().isOk());
+    String currentETag = fetchETag();
+    assertNotEquals(eTag, currentETag);
+    patchBranch("Current version", currentETag).andExpect(status().isOk());
+  }
+
+  @Test
+  void updateWithOutdatedETagIsRejected() throws Exception {
+    String eTag = fetchETag();
+    String body = "{\"name\": \"Conditional Updated\", \"email\": \"updated@email.com\", \"mobileNumber\": \"" +
+            mobileNumber + "\", \"accountsDto\": {\"accountNumber\": " + accountNumber +
+            ", \"accountType\": \"Current\", \"branchAddress\": \"Updated branch\"}}";
+
+    mockMvc.perform(put("/api/update").contentType(MediaType.APPLICATION_JSON).content(body).header("If-Match", eTag))
+            .andExpect(status().isOk());
+    mockMvc.perform(put("/api/update").contentType(MediaType.APPLICATION_JSON).content(body).header("If-Match", eTag))
+            .andExpect(status().isPreconditionFailed());
+    // The ETag of another account never matches
+    mockMvc.perform(put("/api/update").contentType(MediaType.APPLICATION_JSON).content(body)
+                    .header("If-Match", "\"1.1.1\""))
+            .andExpect(status().isPreconditionFailed());
+  }
+
+  private String fetchETag() throws Exception {
+    return mockMvc.perform(get("/api/fetch").param("mobileNumber", mobileNumber))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+  }
+
+  private ResultActions patchBranch(String branchAddress, String ifMatch) throws Exception {
+    MockHttpServletRequestBuilder request = patch("/api/accounts/{accountNumber}", accountNumber).contentType(MediaType.APPLICATION_JSON)
+            .content("{\"branchAddress\": \"" + branchAddress + "\"}");
+    if (ifMatch != null) {
+      request.header("If-Match", ifMatch);
+    }
+    return mockMvc.perform(request);
+  }
+}
@@ -0,0 +1,86 @@
+package com.jgmedellin.accounts.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.dto.FetchAccountsResultDto;
+import com.jgmedellin.accounts.service.IAccountsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The batch fetch endpoint: the found customers are the ones of the single fetch, in the order of the request, and the
+ * missing ones are reported instead of failing the whole batch.
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureMockMvc
+class FetchAccountsBatchTests {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @Test
+  void batchReturnsTheSingleFetchesInRequestOrderAndTheMissingNumbers() throws Exception {
+    List<String> created = List.of("5581000001", "5581000002", "5581000003", "5581000004");
+    created.forEach(mobileNumber -> iAccountsService.createAccount(customer(mobileNumber)));
+    // Not in the order of the customer ids, with missing and repeated numbers in between
+    List<String> requested = List.of("5581000003", "5581000099", "5581000001", "5581000004", "5581000003",
+            "5581000098", "5581000002");
+
+    String body = mockMvc.perform(post("/api/fetch/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(requested)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+    FetchAccountsResultDto result = objectMapper.readValue(body, FetchAccountsResultDto.class);
+
+    assertEquals(List.of("5581000003", "5581000001", "5581000004", "5581000002"),
+            new ArrayList<>(result.getCustomers().keySet()), body);
+    assertEquals(List.of("5581000099", "5581000098"), result.getNotFound());
+    for (String mobileNumber : created) {
+      String single = mockMvc.perform(get("/api/fetch").param("mobileNumber", mobileNumber))
+              .andExpect(status().isOk())
+              .andReturn().getResponse().getContentAsString();
+      assertEquals(objectMapper.readValue(single, CustomerDto.class), result.getCustomers().get(mobileNumber));
+    }
+  }
+
+  @Test
+  void oversizedBatchIsRejected() throws Exception {
+    List<String> mobileNumbers = Collections.nCopies(AccountsConstants.FETCH_BATCH_MAX_SIZE + 1, "5581000001");
+    mockMvc.perform(post("/api/fetch/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(mobileNumbers)))
+            .andExpect(status().isBadRequest());
+    mockMvc.perform(post("/api/fetch/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[]"))
+            .andExpect(status().isBadRequest());
+  }
+
+  private static CustomerDto customer(String mobileNumber) {
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("Batch Fetch Customer");
+    customerDto.setEmail("batch.fetch@email.com");
+    customerDto.setMobileNumber(mobileNumber);
+    return customerDto;
+  }
+}
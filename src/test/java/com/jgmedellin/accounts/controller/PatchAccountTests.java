@@ -0,0 +1,149 @@
+package com.jgmedellin.accounts.controller;
+
+import com.jgmedellin.accounts.dto.AccountsPatchDto;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.entity.Accounts;
+import com.jgmedellin.accounts.repository.AccountsRepository;
+import com.jgmedellin.accounts.service.IAccountsService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+                "com.jgmedellin.accounts.controller.PatchAccountTests$SqlRecorder"
+})
+@AutoConfigureMockMvc
+class PatchAccountTests {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @Autowired
+  private AccountsRepository accountsRepository;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Test
+  void patchWritesOnlyTheChangedColumnsInOneTransaction() throws Exception {
+    Long accountNumber = createAccount("5551000001");
+
+    SqlRecorder.STATEMENTS.clear();
+    mockMvc.perform(patch("/api/accounts/{accountNumber}", accountNumber)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"branchAddress\": \"742 Evergreen Terrace\"}"))
+            .andExpect(status().isOk());
+    List<String> patchStatements = List.copyOf(SqlRecorder.STATEMENTS);
+
+    SqlRecorder.STATEMENTS.clear();
+    mockMvc.perform(put("/api/update")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"name\": \"Full Update\", \"email\": \"full@email.com\", \"mobileNumber\": \"5551000001\"," +
+                            "\"accountsDto\": {\"accountNumber\": " + accountNumber + ", \"accountType\": \"Savings\"," +
+                            "\"branchAddress\": \"1 Infinite Loop\"}}"))
+            .andExpect(status().isOk());
+    List<String> updateStatements = List.copyOf(SqlRecorder.STATEMENTS);
+
+    // One joined SELECT of account and customer, one UPDATE of the only changed column (plus audit and version)
+    assertEquals(2, patchStatements.size(), "PATCH statements: " + patchStatements);
+    assertTrue(patchStatements.get(0).startsWith("select"), "PATCH statements: " + patchStatements);
+    String update = patchStatements.get(1);
+    assertTrue(update.startsWith("update accounts set branch_address=?"), update);
+    assertFalse(update.contains("account_type"), update);
+    assertTrue(update.contains("version=?") && update.endsWith("and version=?"), update);
+
+    // Same single SELECT for the full update, one UPDATE per changed row
+    assertEquals(3, updateStatements.size(), "PUT statements: " + updateStatements);
+  }
+
+  @Test
+  void concurrentChangeFailsInsteadOfOverwriting() {
+    Long accountNumber = createAccount("5551000002");
+
+    assertThrows(ObjectOptimisticLockingFailureException.class, () -> transactionTemplate.executeWithoutResult(tx -> {
+      // This clerk loaded the account...
+      Accounts stale = accountsRepository.findById(accountNumber).orElseThrow();
+      // ...while another clerk changed it and committed first
+      AccountsPatchDto patch = new AccountsPatchDto();
+      patch.setBranchAddress("Other clerk address");
+      runInOtherThread(() -> iAccountsService.patchAccount(accountNumber, patch, null));
+      stale.setBranchAddress("Stale clerk address");
+    }));
+
+    assertEquals("Other clerk address", accountsRepository.findById(accountNumber).orElseThrow().getBranchAddress());
+  }
+
+  @Test
+  void updateToAMobileNumberOfAnotherCustomerIsRejected() throws Exception {
+    createAccount("5551000003");
+    Long accountNumber = createAccount("5551000004");
+    String update = "{\"name\": \"Taken Number\", \"email\": \"taken@email.com\", \"mobileNumber\": \"%s\"," +
+            "\"accountsDto\": {\"accountNumber\": " + accountNumber + ", \"accountType\": \"Savings\"," +
+            "\"branchAddress\": \"1 Infinite Loop\"}}";
+
+    // Same 400 as PATCH instead of a unique constraint violation at commit
+    mockMvc.perform(put("/api/update").contentType(MediaType.APPLICATION_JSON).content(update.formatted("5551000003")))
+            .andExpect(status().isBadRequest());
+    mockMvc.perform(patch("/api/accounts/{accountNumber}", accountNumber).contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"mobileNumber\": \"5551000003\"}"))
+            .andExpect(status().isBadRequest());
+    assertEquals("Patch Customer", iAccountsService.fetchAccount("5551000004").getName());
+  }
+
+  private Long createAccount(String mobileNumber) {
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("Patch Customer");
+    customerDto.setEmail("patch@email.com");
+    customerDto.setMobileNumber(mobileNumber);
+    iAccountsService.createAccount(customerDto);
+    return iAccountsService.fetchAccount(mobileNumber).getAccountsDto().getAccountNumber();
+  }
+
+  private static void runInOtherThread(Runnable runnable) {
+    Thread thread = new Thread(runnable);
+    thread.start();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Records the SQL statements prepared by Hibernate
+   */
+  public static class SqlRecorder implements StatementInspector {
+
+    static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+      STATEMENTS.add(sql);
+      return sql;
+    }
+
+  }
+
+}
@@ -0,0 +1,148 @@
+package com.jgmedellin.accounts.controller;
+
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.etag.AccountETag;
+import com.jgmedellin.accounts.service.IAccountsService;
+import com.jgmedellin.accounts.support.QueryBudget;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pins the SQL statements of every AccountsController endpoint, any extra round trip fails the build.
+ * The cache is disabled so the fetches always reach the DB. The export writes its body in another thread and
+ * /api/import is covered by the batch create (it runs the same code per chunk).
+ */
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "spring.cache.type=none"})
+@AutoConfigureMockMvc
+class QueryBudgetTests {
+
+  private static final AtomicInteger NEXT_CUSTOMER = new AtomicInteger();
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  private String mobileNumber;
+
+  private Long accountNumber;
+
+  private String eTag;
+
+  @BeforeEach
+  void createCustomer() {
+    mobileNumber = newMobileNumber();
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("Budget Customer");
+    customerDto.setEmail("budget@email.com");
+    customerDto.setMobileNumber(mobileNumber);
+    iAccountsService.createAccount(customerDto);
+    CustomerDto created = iAccountsService.fetchAccount(mobileNumber);
+    accountNumber = created.getAccountsDto().getAccountNumber();
+    eTag = AccountETag.of(created).value();
+  }
+
+  @Test
+  @QueryBudget(selects = 1, inserts = 2) // Duplicate check, then the customer and the account
+  void createAccount() throws Exception {
+    mockMvc.perform(post("/api/create").contentType(MediaType.APPLICATION_JSON).content(customerJson(newMobileNumber())))
+            .andExpect(status().isCreated());
+  }
+
+  @Test
+  @QueryBudget(selects = 1, inserts = 2) // One duplicate check and one batched INSERT per table for the whole batch
+  void createAccountsBatch() throws Exception {
+    String batch = "[" + customerJson(newMobileNumber()) + "," + customerJson(newMobileNumber()) + "," +
+            customerJson(newMobileNumber()) + "]";
+    mockMvc.perform(post("/api/create/batch").contentType(MediaType.APPLICATION_JSON).content(batch))
+            .andExpect(status().isOk());
+  }
+
+  @Test
+  @QueryBudget(selects = 1) // Customer joined with the account
+  void fetchAccount() throws Exception {
+    mockMvc.perform(get("/api/fetch").param("mobileNumber", mobileNumber)).andExpect(status().isOk());
+  }
+
+  @Test
+  @QueryBudget(selects = 1) // Only the versions, the entities are not loaded
+  void fetchAccountNotModified() throws Exception {
+    mockMvc.perform(get("/api/fetch").param("mobileNumber", mobileNumber).header("If-None-Match", eTag))
+            .andExpect(status().isNotModified());
+  }
+
+  @Test
+  @QueryBudget(selects = 1) // One joined IN query for all the mobile numbers
+  void fetchAccountsBatch() throws Exception {
+    mockMvc.perform(post("/api/fetch/batch").contentType(MediaType.APPLICATION_JSON)
+                    .content("[\"" + mobileNumber + "\", \"5559999999\"]"))
+            .andExpect(status().isOk());
+  }
+
+  @Test
+  @QueryBudget(selects = 1) // One keyset page, no COUNT query
+  void listAccounts() throws Exception {
+    mockMvc.perform(get("/api/accounts").param("size", "20")).andExpect(status().isOk());
+  }
+
+  @Test
+  @QueryBudget(selects = 1, updates = 2) // Account joined with the customer, then one UPDATE per changed row
+  void updateAccount() throws Exception {
+    mockMvc.perform(put("/api/update").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"name\": \"Budget Updated\", \"email\": \"updated@email.com\", \"mobileNumber\": \"" +
+                            mobileNumber + "\", \"accountsDto\": {\"accountNumber\": " + accountNumber +
+                            ", \"accountType\": \"Current\", \"branchAddress\": \"New branch\"}}"))
+            .andExpect(status().isOk());
+  }
+
+  @Test
+  @QueryBudget(selects = 1, updates = 1) // Only the patched row is written
+  void patchAccount() throws Exception {
+    mockMvc.perform(patch("/api/accounts/{accountNumber}", accountNumber).contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"branchAddress\": \"Patched branch\"}"))
+            .andExpect(status().isOk());
+  }
+
+  @Test
+  @QueryBudget(selects = 1, deletes = 2) // Customer id by mobile number, then one DELETE per table
+  void deleteAccount() throws Exception {
+    mockMvc.perform(delete("/api/delete").param("mobileNumber", mobileNumber)).andExpect(status().isOk());
+  }
+
+  @Test
+  @QueryBudget(selects = 1, deletes = 2) // Same statements for a whole chunk of mobile numbers
+  void deleteAccountsBatch() throws Exception {
+    mockMvc.perform(delete("/api/delete/batch").contentType(MediaType.APPLICATION_JSON)
+                    .content("[\"" + mobileNumber + "\", \"5559999999\"]"))
+            .andExpect(status().isOk());
+  }
+
+  @Test
+  @QueryBudget // No DB access at all
+  void buildInfo() throws Exception {
+    mockMvc.perform(get("/api/build-info")).andExpect(status().isOk());
+  }
+
+  private static String newMobileNumber() {
+    return String.format("553%07d", NEXT_CUSTOMER.incrementAndGet());
+  }
+
+  private static String customerJson(String mobileNumber) {
+    return "{\"name\": \"Budget Customer\", \"email\": \"budget@email.com\", \"mobileNumber\": \"" + mobileNumber +
+            "\"}";
+  }
+}
@@ -0,0 +1,107 @@
+package com.jgmedellin.accounts.generator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two generators ("nodes") on their own H2 sequence with a small block size, so the threads also race on reserving
+ * new blocks from the sequence.
+ */
+class HiLoAccountNumberGeneratorTests {
+
+  private static final int THREADS = 16;
+
+  private static final int NUMBERS_PER_THREAD = 5_000;
+
+  private static final long BLOCK_SIZE = 7;
+
+  private final JdbcTemplate jdbcTemplate =
+          new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:hilo-test;DB_CLOSE_DELAY=-1", "sa", ""));
+
+  @BeforeEach
+  void createSequence() {
+    jdbcTemplate.execute("DROP SEQUENCE IF EXISTS account_number_seq");
+    jdbcTemplate.execute("CREATE SEQUENCE account_number_seq START WITH 1000000000 INCREMENT BY " + BLOCK_SIZE);
+  }
+
+  @Test
+  void concurrentCallersOnTwoNodesNeverGetTheSameNumber() throws Exception {
+    List<AccountNumberGenerator> nodes =
+            List.of(new HiLoAccountNumberGenerator(jdbcTemplate, BLOCK_SIZE),
+                    new HiLoAccountNumberGenerator(jdbcTemplate, BLOCK_SIZE));
+    Set<Long> numbers = ConcurrentHashMap.newKeySet();
+    AtomicInteger duplicates = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        AccountNumberGenerator accountNumberGenerator = nodes.get(i % nodes.size());
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (int j = 0; j < NUMBERS_PER_THREAD; j++) {
+            long number = accountNumberGenerator.nextAccountNumber();
+            assertTrue(number >= HiLoAccountNumberGenerator.FIRST_ACCOUNT_NUMBER);
+            assertTrue(number <= HiLoAccountNumberGenerator.LAST_ACCOUNT_NUMBER);
+            if (!numbers.add(number)) {
+              duplicates.incrementAndGet();
+            }
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(0, duplicates.get());
+    assertEquals(THREADS * NUMBERS_PER_THREAD, numbers.size());
+  }
+
+  @Test
+  void changingTheBlockSizeDoesNotReuseNumbers() {
+    AccountNumberGenerator oldNode = new HiLoAccountNumberGenerator(jdbcTemplate, BLOCK_SIZE);
+    Set<Long> numbers = new HashSet<>();
+    for (int i = 0; i < 10; i++) {
+      numbers.add(oldNode.nextAccountNumber());
+    }
+
+    // As schema.sql says: restart past the blocks already taken (2 blocks of 7 here), then deploy the new block size
+    jdbcTemplate.execute("ALTER SEQUENCE account_number_seq RESTART WITH 1000000014 INCREMENT BY 100");
+    AccountNumberGenerator newNode = new HiLoAccountNumberGenerator(jdbcTemplate, 100);
+    for (int i = 0; i < 250; i++) {
+      assertTrue(numbers.add(newNode.nextAccountNumber()), "Number handed out twice");
+    }
+    assertEquals(1000000014L, numbers.stream().filter(n -> n > 1000000009L).min(Long::compare).orElseThrow());
+  }
+
+  @Test
+  void blockSizeMustBeTheIncrementOfSchemaSql() {
+    HiLoAccountNumberGenerator.checkSchemaIncrement(100);
+    IllegalStateException exception = assertThrows(IllegalStateException.class,
+            () -> HiLoAccountNumberGenerator.checkSchemaIncrement(50));
+    assertEquals("accounts.account-number.block-size (50) must be the INCREMENT of account_number_seq in schema.sql " +
+            "(100)", exception.getMessage());
+  }
+
+}
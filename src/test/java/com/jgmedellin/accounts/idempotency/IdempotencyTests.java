@@ -0,0 +1,216 @@
+package com.jgmedellin.accounts.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.service.IAccountsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.util.unit.DataSize;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Idempotency-Key on create and update: replays, mismatches, concurrent retries and the JDBC store.
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureMockMvc
+class IdempotencyTests {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @MockitoSpyBean
+  private IAccountsService iAccountsService;
+
+  @Test
+  void retriedCreateIsReplayedWithoutCallingTheService() throws Exception {
+    String body = customerJson("5561000001");
+    MockHttpServletResponse first = mockMvc.perform(create(body, "create-1"))
+            .andExpect(status().isCreated())
+            .andExpect(header().doesNotExist("Idempotent-Replayed"))
+            .andReturn().getResponse();
+
+    MockHttpServletResponse retry = mockMvc.perform(create(body, "create-1"))
+            .andExpect(status().isCreated())
+            .andExpect(header().string("Idempotent-Replayed", "true"))
+            .andReturn().getResponse();
+    assertEquals(first.getContentAsString(), retry.getContentAsString());
+    assertEquals(first.getContentType(), retry.getContentType());
+    verify(iAccountsService, times(1)).createAccount(argThat(customer -> "5561000001".equals(customer.getMobileNumber())));
+
+    // Without a key the duplicate reaches the service, as before
+    mockMvc.perform(post("/api/create").contentType(MediaType.APPLICATION_JSON).content(body))
+            .andExpect(status().isBadRequest());
+    // The same key with another API key is another request
+    mockMvc.perform(create(body, "create-1").header("X-API-Key", "other-client"))
+            .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void sameKeyWithAnotherRequestIsRejected() throws Exception {
+    mockMvc.perform(create(customerJson("5561000002"), "create-2")).andExpect(status().isCreated());
+    mockMvc.perform(create(customerJson("5561000003"), "create-2"))
+            .andExpect(status().isUnprocessableEntity())
+            .andExpect(jsonPath("$.errorCode").value("UNPROCESSABLE_ENTITY"));
+    mockMvc.perform(create(customerJson("5561000003"), " "))
+            .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void concurrentRetriesWaitForTheFirstRequest() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      assertTrue(release.await(30, TimeUnit.SECONDS)); // The first request is slow
+      return invocation.callRealMethod();
+    }).when(iAccountsService).createAccount(argThat(customer -> "5561000004".equals(customer.getMobileNumber())));
+
+    String body = customerJson("5561000004");
+    ExecutorService clients = Executors.newFixedThreadPool(5);
+    try {
+      List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        responses.add(clients.submit(() -> mockMvc.perform(create(body, "create-4")).andReturn().getResponse()));
+      }
+      Thread.sleep(300); // The retries are waiting for the first request
+      release.countDown();
+      int replays = 0;
+      for (Future<MockHttpServletResponse> response : responses) {
+        MockHttpServletResponse completed = response.get(30, TimeUnit.SECONDS);
+        assertEquals(201, completed.getStatus());
+        replays += "true".equals(completed.getHeader("Idempotent-Replayed")) ? 1 : 0;
+      }
+      assertEquals(4, replays);
+    } finally {
+      clients.shutdownNow();
+    }
+    verify(iAccountsService, times(1)).createAccount(argThat(customer -> "5561000004".equals(customer.getMobileNumber())));
+  }
+
+  @Test
+  void retriedUpdateIsNotRunAgain() throws Exception {
+    mockMvc.perform(create(customerJson("5561000005"), null)).andExpect(status().isCreated());
+    CustomerDto customerDto = iAccountsService.fetchAccount("5561000005");
+    customerDto.setName("Updated Once");
+    MockHttpServletRequestBuilder update = put("/api/update").contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(customerDto)).header("Idempotency-Key", "update-5");
+
+    mockMvc.perform(update).andExpect(status().isOk());
+    mockMvc.perform(update).andExpect(status().isOk()).andExpect(header().string("Idempotent-Replayed", "true"));
+    verify(iAccountsService, times(1)).updateAccount(argThat(customer ->
+            "5561000005".equals(customer.getMobileNumber())), any());
+  }
+
+  @Test
+  void jdbcStoreIsSharedAndExpires() throws Exception {
+    IdempotencyProperties properties = new IdempotencyProperties(true, "Idempotency-Key", "X-API-Key",
+            Duration.ofMillis(500), 100, IdempotencyProperties.Store.JDBC, DataSize.ofMegabytes(1));
+    JdbcIdempotencyStore instanceA = new JdbcIdempotencyStore(jdbcTemplate, objectMapper, properties);
+    JdbcIdempotencyStore instanceB = new JdbcIdempotencyStore(jdbcTemplate, objectMapper, properties);
+    StoredResponse response = new StoredResponse("fingerprint-a", 201, MediaType.APPLICATION_JSON_VALUE,
+            Map.of("ETag", List.of("\"1.0.0\"")), "{\"statusCode\":\"201\"}".getBytes());
+
+    instanceA.save("jdbc-1", response);
+    instanceB.save("jdbc-1", new StoredResponse("fingerprint-b", 400, null, Map.of(), new byte[0])); // Too late
+    StoredResponse found = instanceB.find("jdbc-1");
+    assertEquals("fingerprint-a", found.fingerprint());
+    assertEquals(201, found.status());
+    assertEquals(response.headers(), found.headers());
+    assertArrayEquals(response.body(), found.body());
+
+    Thread.sleep(600);
+    assertNull(instanceB.find("jdbc-1"));
+  }
+
+  @Test
+  void responseIsReturnedWhenTheStoreFails() throws Exception {
+    IdempotencyProperties properties = new IdempotencyProperties(true, "Idempotency-Key", "X-API-Key",
+            Duration.ofHours(1), 100, IdempotencyProperties.Store.JDBC, DataSize.ofMegabytes(1));
+    IdempotencyStore failingStore = new IdempotencyStore() {
+      @Override
+      public StoredResponse find(String key) {
+        return null;
+      }
+
+      @Override
+      public void save(String key, StoredResponse response) {
+        throw new DataAccessResourceFailureException("The store is down");
+      }
+    };
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    IdempotencyFilter filter = new IdempotencyFilter(properties, failingStore, objectMapper, meterRegistry);
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/create");
+    request.addHeader("Idempotency-Key", "store-down-1");
+    request.setContent("{}".getBytes());
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    // The controller committed the change and answered 201, the client must get it
+    filter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+      @Override
+      protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(201);
+        response.getWriter().write("created");
+      }
+    }));
+    assertEquals(201, response.getStatus());
+    assertEquals("created", response.getContentAsString());
+    assertEquals(1, meterRegistry.get("accounts.idempotency.store.failures").counter().count());
+  }
+
+  private MockHttpServletRequestBuilder create(String body, String idempotencyKey) {
+    MockHttpServletRequestBuilder request = post("/api/create").contentType(MediaType.APPLICATION_JSON).content(body);
+    return idempotencyKey == null ? request : request.header("Idempotency-Key", idempotencyKey);
+  }
+
+  private String customerJson(String mobileNumber) throws Exception {
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("Idempotent Customer");
+    customerDto.setEmail("idempotent@email.com");
+    customerDto.setMobileNumber(mobileNumber);
+    return objectMapper.writeValueAsString(customerDto);
+  }
+
+}
@@ -0,0 +1,75 @@
+package com.jgmedellin.accounts.index;
+
+import org.junit.jupiter.api.Test;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapLongLongMapTests {
+
+  private static final int FOOTPRINT_ENTRIES = 1_000_000;
+
+  @Test
+  void behavesLikeAHashMap() {
+    OffHeapLongLongMap map = new OffHeapLongLongMap(4); // Tiny, so it has to grow many times
+    Map<Long, Long> expected = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 200_000; i++) {
+      long key = random.nextInt(50_000) * 1_000_003L; // Clustered keys, like real mobile numbers
+      switch (random.nextInt(3)) {
+        case 0, 1 -> {
+          map.put(key, i);
+          expected.put(key, (long) i);
+        }
+        default -> assertEquals(expected.containsKey(key) ? expected.remove(key) : OffHeapLongLongMap.NO_VALUE,
+                map.remove(key));
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+    assertEquals(OffHeapLongLongMap.NO_VALUE, map.get(7L));
+  }
+
+  @Test
+  void footprintReportAgainstHashMap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    long heapBefore = usedHeap(memory);
+    OffHeapLongLongMap offHeap = new OffHeapLongLongMap(FOOTPRINT_ENTRIES);
+    for (int i = 0; i < FOOTPRINT_ENTRIES; i++) {
+      offHeap.put(5_000_000_000L + i, i);
+    }
+    long offHeapMapHeap = usedHeap(memory) - heapBefore;
+
+    heapBefore = usedHeap(memory);
+    Map<String, Long> onHeap = new HashMap<>();
+    for (int i = 0; i < FOOTPRINT_ENTRIES; i++) {
+      onHeap.put(Long.toString(5_000_000_000L + i), (long) i);
+    }
+    long hashMapHeap = usedHeap(memory) - heapBefore;
+
+    String footprint = String.format(Locale.ROOT, "Footprint for %d entries: OffHeapLongLongMap %,d bytes " +
+                    "off-heap (%.1f bytes/entry) and %,d bytes of heap, HashMap<String,Long> %,d bytes of heap " +
+                    "(%.1f bytes/entry)",
+            FOOTPRINT_ENTRIES, offHeap.offHeapBytes(), offHeap.offHeapBytes() / (double) FOOTPRINT_ENTRIES,
+            Math.max(offHeapMapHeap, 0), hashMapHeap, hashMapHeap / (double) FOOTPRINT_ENTRIES);
+
+    assertEquals(FOOTPRINT_ENTRIES, offHeap.size());
+    assertEquals(FOOTPRINT_ENTRIES, onHeap.size());
+    assertTrue(offHeapMapHeap < 1_000_000, "The off-heap map should barely use the heap. " + footprint);
+    assertTrue(offHeap.offHeapBytes() < hashMapHeap,
+            "The off-heap map should be smaller than the HashMap. " + footprint);
+  }
+
+  private static long usedHeap(MemoryMXBean memory) {
+    System.gc();
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+}
@@ -0,0 +1,276 @@
+package com.jgmedellin.accounts.limiter;
+
+import com.jgmedellin.accounts.dto.AccountsDto;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.service.IAccountsService;
+import com.jgmedellin.accounts.support.SlowTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * The AIMD limit on its own, the goodput of the API when the clients ask for several times what the DB can serve, the
+ * slot of a streamed export and the change stream subscribers, which stay out of the limit.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "accounts.rate-limit.enabled=false", // All the clients share the IP of the test
+        "accounts.concurrency-limit.read.initial-limit=20",
+        "accounts.concurrency-limit.read.min-limit=2",
+        "accounts.concurrency-limit.read.latency-threshold=300ms",
+        "accounts.changes.stream-timeout=1s"
+})
+class ConcurrencyLimitTests {
+
+  private static final int DB_CONNECTIONS = 2;
+
+  private static final long DB_QUERY_MILLIS = 100;
+
+  // The simulated DB serves 2 queries every 100 ms
+  private static final double DB_CAPACITY_PER_SECOND = DB_CONNECTIONS * 1000.0 / DB_QUERY_MILLIS;
+
+  private static final int CLIENTS = 30;
+
+  // A response slower than this is useless to the client even if it is a 200
+  private static final Duration SLO = Duration.ofMillis(600);
+
+  @LocalServerPort
+  private int port;
+
+  @MockitoBean
+  private IAccountsService iAccountsService;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Test
+  void limitGrowsWhileFastAndBacksOffWhenSlow() {
+    AimdLimit limit = new AimdLimit(new ConcurrencyLimitProperties.Limit(4, 2, 6, Duration.ofMillis(100), 0.5));
+    long fast = Duration.ofMillis(10).toNanos();
+    long slow = Duration.ofMillis(200).toNanos();
+
+    List<Integer> slots = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      slots.add(limit.tryAcquire());
+    }
+    assertEquals(List.of(1, 2, 3, 4), slots);
+    assertEquals(0, limit.tryAcquire(), "Over the limit");
+
+    // Fast requests while the limit is in use, +1/limit each
+    for (int i = 0; i < 100; i++) {
+      limit.release(4, fast, false);
+      limit.tryAcquire();
+    }
+    assertEquals(6, limit.getLimit(), "Capped at maxLimit");
+
+    limit.release(4, slow, false);
+    assertEquals(3, limit.getLimit());
+    limit.release(3, fast, true);
+    limit.release(2, slow, false);
+    assertEquals(2, limit.getLimit(), "Floored at minLimit");
+    assertEquals(1, limit.getInFlight());
+
+    // An idle service doesn't grow its limit
+    limit.releaseIgnored();
+    for (int i = 0; i < 100; i++) {
+      limit.release(limit.tryAcquire(), fast, false);
+    }
+    assertTrue(limit.getLimit() < 4, () -> "Limit grew to " + limit.getLimit() + " with 1 request in flight");
+  }
+
+  @Test
+  @SlowTest
+  void goodputHoldsUnderOverload() throws Exception {
+    Semaphore dbConnections = new Semaphore(DB_CONNECTIONS, true);
+    doAnswer(invocation -> {
+      dbConnections.acquire();
+      try {
+        Thread.sleep(DB_QUERY_MILLIS);
+      } finally {
+        dbConnections.release();
+      }
+      return customer(invocation.getArgument(0));
+    }).when(iAccountsService).fetchAccount(anyString());
+
+    HttpClient client = HttpClient.newHttpClient();
+    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port +
+            "/api/fetch?mobileNumber=5554000001")).build();
+    AtomicLong goodResponses = new AtomicLong();
+    AtomicLong lateResponses = new AtomicLong();
+    AtomicLong rejections = new AtomicLong();
+    Queue<Long> rejectionNanos = new ConcurrentLinkedQueue<>();
+    AtomicLong failures = new AtomicLong();
+    long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+    long end = warmupEnd + TimeUnit.SECONDS.toNanos(3);
+
+    List<Thread> clients = new ArrayList<>();
+    for (int i = 0; i < CLIENTS; i++) {
+      clients.add(new Thread(() -> {
+        while (System.nanoTime() < end) {
+          long start = System.nanoTime();
+          int status;
+          try {
+            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+          } catch (Exception e) {
+            failures.incrementAndGet();
+            continue;
+          }
+          long latency = System.nanoTime() - start;
+          if (start < warmupEnd) {
+            continue; // The limit is still converging
+          }
+          if (status == 200) {
+            (latency <= SLO.toNanos() ? goodResponses : lateResponses).incrementAndGet();
+          } else if (status == 503) {
+            rejections.incrementAndGet();
+            rejectionNanos.add(latency);
+            // Impatient clients retry after 100 ms instead of honoring Retry-After, close to the worst case for the service
+            sleep(100);
+          } else {
+            failures.incrementAndGet();
+          }
+        }
+      }));
+    }
+    clients.forEach(Thread::start);
+    for (Thread thread : clients) {
+      thread.join();
+    }
+
+    // Without the limit the 30 clients queue in front of the DB and every response takes ~1.5 s: no goodput at all.
+    // With it most of the DB capacity is still served within the SLO (not all, the clients share the CPU with Tomcat)
+    double goodput = goodResponses.get() / 3.0;
+    String summary = "good=" + goodResponses + " late=" + lateResponses + " rejected=" + rejections +
+            " failed=" + failures + " goodput=" + goodput + "/s limit=" +
+            meterRegistry.get("accounts.concurrency.limit").tag("limiter", "read").gauge().value();
+    assertEquals(0, failures.get(), summary);
+    assertTrue(rejections.get() > 0, () -> "No request was shed: " + summary);
+    assertTrue(goodput >= DB_CAPACITY_PER_SECOND * 0.4, () -> "Goodput collapsed: " + summary);
+    assertTrue(lateResponses.get() < goodResponses.get() / 10, () -> "Too many responses over the SLO: " + summary);
+    // Rejections skip the service, they are fast (the p90 allows for GC pauses and the clients sharing the CPU)
+    long p90RejectionMillis = rejectionNanos.stream().sorted().skip(rejectionNanos.size() * 9L / 10).findFirst()
+            .orElseThrow() / 1_000_000;
+    assertTrue(p90RejectionMillis < DB_QUERY_MILLIS,
+            () -> "p90 of the rejections " + p90RejectionMillis + " ms: " + summary);
+
+    double rejected = meterRegistry.get("accounts.concurrency.requests").tag("limiter", "read")
+            .tag("outcome", "rejected").counter().count();
+    assertTrue(rejected >= rejections.get(), summary);
+    double currentLimit = meterRegistry.get("accounts.concurrency.limit").tag("limiter", "read").gauge().value();
+    assertTrue(currentLimit < 20, () -> "Limit didn't adapt to the DB: " + currentLimit);
+  }
+
+  @Test
+  void exportKeepsItsSlotUntilTheBodyIsWritten() throws Exception {
+    CountDownLatch exporting = new CountDownLatch(1);
+    CountDownLatch finishExport = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      exporting.countDown();
+      assertTrue(finishExport.await(30, TimeUnit.SECONDS));
+      return null;
+    }).when(iAccountsService).exportAccounts(any());
+    double inFlightBefore = readInFlight();
+
+    CompletableFuture<HttpResponse<Void>> export = HttpClient.newHttpClient().sendAsync(HttpRequest.newBuilder(
+            URI.create("http://localhost:" + port + "/api/export")).build(), HttpResponse.BodyHandlers.discarding());
+    assertTrue(exporting.await(30, TimeUnit.SECONDS));
+    sleep(200); // The request thread has left the filter, the body is written by the async thread
+    assertEquals(inFlightBefore + 1, readInFlight(), "Slot released before the body was written");
+
+    finishExport.countDown();
+    assertEquals(200, export.get(30, TimeUnit.SECONDS).statusCode());
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (readInFlight() > inFlightBefore && System.nanoTime() < deadline) {
+      sleep(10); // Released by the async listener right after the response is complete
+    }
+    assertEquals(inFlightBefore, readInFlight(), "Slot not released when the export completed");
+  }
+
+  @Test
+  void changeStreamSubscribersDontTakeReadSlots() throws Exception {
+    doAnswer(invocation -> customer(invocation.getArgument(0))).when(iAccountsService).fetchAccount(anyString());
+    HttpClient client = HttpClient.newHttpClient();
+    HttpRequest fetch = HttpRequest.newBuilder(URI.create("http://localhost:" + port +
+            "/api/fetch?mobileNumber=5554000001")).build();
+    client.send(fetch, HttpResponse.BodyHandlers.discarding()); // The first fetch of the context is over the threshold
+    double limitBefore = readLimit();
+    double inFlightBefore = readInFlight();
+
+    // More subscribers than the read limit (20), the loans and cards services stay connected
+    List<CompletableFuture<HttpResponse<Void>>> streams = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      streams.add(client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + port +
+                      "/api/changes/stream")).header("Accept", "text/event-stream").build(),
+              HttpResponse.BodyHandlers.discarding()));
+    }
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (subscribers() < 25 && System.nanoTime() < deadline) {
+      sleep(10);
+    }
+    assertEquals(25, subscribers(), "Subscribers rejected");
+    assertEquals(inFlightBefore, readInFlight(), "Subscribers hold read slots");
+    assertEquals(200, client.send(fetch, HttpResponse.BodyHandlers.discarding()).statusCode());
+
+    // The streams time out after 1 s (4 times the latency threshold), their latency doesn't reach the limit
+    for (CompletableFuture<HttpResponse<Void>> stream : streams) {
+      stream.get(30, TimeUnit.SECONDS);
+    }
+    assertEquals(limitBefore, readLimit(), "Read limit changed by the subscribers");
+  }
+
+  private static CustomerDto customer(String mobileNumber) {
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("Overload Customer");
+    customerDto.setEmail("overload@email.com");
+    customerDto.setMobileNumber(mobileNumber);
+    customerDto.setVersion(0L);
+    AccountsDto accountsDto = new AccountsDto();
+    accountsDto.setAccountNumber(5554000001L);
+    accountsDto.setVersion(0L);
+    customerDto.setAccountsDto(accountsDto);
+    return customerDto;
+  }
+
+  private double readLimit() {
+    return meterRegistry.get("accounts.concurrency.limit").tag("limiter", "read").gauge().value();
+  }
+
+  private double subscribers() {
+    return meterRegistry.get("accounts.changes.subscribers").gauge().value();
+  }
+
+  private double readInFlight() {
+    return meterRegistry.get("accounts.concurrency.inflight").tag("limiter", "read").gauge().value();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.jgmedellin.accounts.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks that the hot-path meters are published in the Prometheus endpoint after a create and a fetch.
+ */
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "spring.cache.type=none"})
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false) // The tests use a SimpleMeterRegistry and no Prometheus otherwise
+class MetricsTests {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Test
+  void hotPathMetersArePublished() throws Exception {
+    mockMvc.perform(post("/api/create").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"name\": \"Metrics Customer\", \"email\": \"metrics@email.com\", " +
+                            "\"mobileNumber\": \"5552000001\"}"))
+            .andExpect(status().isCreated());
+    mockMvc.perform(get("/api/fetch").param("mobileNumber", "5552000001")).andExpect(status().isOk());
+
+    String metrics = mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+
+    // Service methods and repository calls, with histogram buckets
+    assertContains(metrics, "accounts_service_seconds_bucket{application=\"accounts\",class=\"com.jgmedellin.accounts" +
+            ".service.impl.AccountsServiceImpl\",exception=\"none\",method=\"fetchAccount\"");
+    assertContains(metrics, "spring_data_repository_invocations_seconds_bucket{");
+    assertContains(metrics, "method=\"findWithAccountByMobileNumber\"");
+    // Statements and rows per request
+    assertContains(metrics, "accounts_db_statements_count{application=\"accounts\",method=\"GET\",uri=\"/api/fetch\"} 1");
+    assertContains(metrics, "accounts_db_statements_sum{application=\"accounts\",method=\"GET\",uri=\"/api/fetch\"} 1.0");
+    assertContains(metrics, "accounts_db_rows_sum{application=\"accounts\",method=\"GET\",uri=\"/api/fetch\"} 1.0");
+    // Hibernate statistics
+    assertContains(metrics, "hibernate_flushes_total{");
+    assertContains(metrics, "hibernate_entities_inserts_total{");
+  }
+
+  private static void assertContains(String metrics, String expected) {
+    assertTrue(metrics.contains(expected), () -> "No " + expected + " in:\n" + metrics);
+  }
+}
@@ -0,0 +1,44 @@
+package com.jgmedellin.accounts.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Clients behind a gateway: the requests of the test come from the loopback address (a trusted proxy) with the IP of
+ * the client in X-Forwarded-For, and each client gets its own bucket. Needs Tomcat, MockMvc doesn't apply the headers.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "accounts.rate-limit.routes.fetch.requests-per-second=0.5",
+        "accounts.rate-limit.routes.fetch.burst=3"
+})
+class ForwardedClientTests {
+
+  @LocalServerPort
+  private int port;
+
+  private final HttpClient httpClient = HttpClient.newHttpClient();
+
+  @Test
+  void clientsBehindTheGatewayHaveTheirOwnBuckets() throws Exception {
+    // Not found: the request passed the rate limit and reached the service
+    for (int i = 0; i < 3; i++) {
+      assertEquals(404, fetchFrom("203.0.113.10"));
+    }
+    assertEquals(429, fetchFrom("203.0.113.10"));
+    assertEquals(404, fetchFrom("203.0.113.11"), "Another client behind the same gateway");
+  }
+
+  private int fetchFrom(String clientIp) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port +
+            "/api/fetch?mobileNumber=5556000002")).header("X-Forwarded-For", clientIp).build();
+    return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+  }
+}
@@ -0,0 +1,158 @@
+package com.jgmedellin.accounts.ratelimit;
+
+import com.jgmedellin.accounts.service.IAccountsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The token buckets on their own (with a fake clock), the 429 of the fetch route and the token of an export.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "accounts.rate-limit.routes.fetch.requests-per-second=0.5",
+        "accounts.rate-limit.routes.fetch.burst=3"
+})
+@AutoConfigureMockMvc
+class RateLimitTests {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockitoSpyBean
+  private IAccountsService iAccountsService;
+
+  @Test
+  void bucketAllowsTheBurstThenTheRate() {
+    TokenBucketTable table = new TokenBucketTable(new RateLimitProperties.Limit(10, 5), 16);
+    long now = 1_000 * SECOND;
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals(0, table.tryAcquire("a", now), "Burst request " + i);
+    }
+    assertEquals(SECOND / 10, table.tryAcquire("a", now), "Wait for the next token");
+    assertEquals(0, table.tryAcquire("b", now), "Other clients have their own bucket");
+
+    assertEquals(0, table.tryAcquire("a", now + SECOND / 10));
+    assertTrue(table.tryAcquire("a", now + SECOND / 10) > 0, "One token every 100 ms");
+    // Idle for a while, the bucket is full again but not over the burst
+    long later = now + 10 * SECOND;
+    for (int i = 0; i < 5; i++) {
+      assertEquals(0, table.tryAcquire("a", later));
+    }
+    assertTrue(table.tryAcquire("a", later) > 0);
+  }
+
+  @Test
+  void tableIsBoundedAndEvictsTheIdleClients() {
+    TokenBucketTable table = new TokenBucketTable(new RateLimitProperties.Limit(1, 1), 64);
+    long now = 1_000 * SECOND;
+    for (int i = 0; i < 10_000; i++) {
+      assertEquals(0, table.tryAcquire("client-" + i, now), "Client " + i);
+    }
+    assertEquals(64, table.capacity(), "The table never grows");
+
+    // A single stripe of 8 buckets: 7 clients that are idle now and one in debt
+    TokenBucketTable stripe = new TokenBucketTable(new RateLimitProperties.Limit(1, 1), 8);
+    for (int i = 0; i < 7; i++) {
+      stripe.tryAcquire("idle-" + i, now);
+    }
+    long later = now + 10 * SECOND;
+    assertEquals(0, stripe.tryAcquire("heavy", later));
+    // New clients take the buckets of the idle ones, the client in debt keeps its own
+    for (int i = 0; i < 7; i++) {
+      assertEquals(0, stripe.tryAcquire("new-" + i, later));
+    }
+    assertTrue(stripe.tryAcquire("heavy", later) > 0, "The client in debt was evicted");
+  }
+
+  @Test
+  void concurrentRequestsNeverTakeMoreThanTheBurst() throws Exception {
+    TokenBucketTable table = new TokenBucketTable(new RateLimitProperties.Limit(1, 100), 1024);
+    long now = 1_000 * SECOND; // Frozen clock: exactly the burst is available
+    AtomicInteger allowed = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      threads.add(new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < 10_000; i++) {
+          if (table.tryAcquire("shared", now) == 0) {
+            allowed.incrementAndGet();
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(100, allowed.get());
+  }
+
+  @Test
+  void clientOverTheLimitGets429() throws Exception {
+    // Not found: the request passed the rate limit and reached the service
+    for (int i = 0; i < 3; i++) {
+      mockMvc.perform(fetch().header("X-API-Key", "partner-1")).andExpect(status().isNotFound());
+    }
+    mockMvc.perform(fetch().header("X-API-Key", "partner-1"))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string("Retry-After", "2"))
+            .andExpect(jsonPath("$.apiPath").value("uri=/api/fetch"))
+            .andExpect(jsonPath("$.errorCode").value("TOO_MANY_REQUESTS"))
+            .andExpect(jsonPath("$.errorMessage").value("Rate limit of fetch exceeded, retry in 2 seconds"));
+
+    // The other clients are not affected
+    mockMvc.perform(fetch().header("X-API-Key", "partner-2")).andExpect(status().isNotFound());
+    mockMvc.perform(fetch().with(request -> {
+      request.setRemoteAddr("10.0.0.7");
+      return request;
+    })).andExpect(status().isNotFound());
+  }
+
+  @Test
+  void exportTakesOneToken() throws Exception {
+    doNothing().when(iAccountsService).exportAccounts(any());
+    // The burst of the export route is 2, the async dispatch writing the body must not take a second token
+    for (int i = 0; i < 2; i++) {
+      MvcResult started = mockMvc.perform(get("/api/export").header("X-API-Key", "exporter"))
+              .andExpect(request().asyncStarted())
+              .andReturn();
+      mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+    }
+    mockMvc.perform(get("/api/export").header("X-API-Key", "exporter")).andExpect(status().isTooManyRequests());
+  }
+
+  private static MockHttpServletRequestBuilder fetch() {
+    return get("/api/fetch").param("mobileNumber", "5556000001");
+  }
+}
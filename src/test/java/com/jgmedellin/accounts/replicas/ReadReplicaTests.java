@@ -0,0 +1,174 @@
+package com.jgmedellin.accounts.replicas;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Read replicas with a primary H2 and two replica H2 databases that only get the rows this test copies to them, i.e.
+ * replicas that are behind until the test "replicates": the reads of the other clients show where they went.
+ */
+@DirtiesContext // Closes the replica pools, the other tests share the JVM
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.jpa.open-in-view=false",
+        "accounts.replicas.enabled=true",
+        "accounts.replicas.urls[0]=" + ReadReplicaTests.REPLICA_0,
+        "accounts.replicas.urls[1]=" + ReadReplicaTests.REPLICA_1,
+        "accounts.replicas.read-your-writes-window=1s"
+})
+@AutoConfigureMockMvc
+class ReadReplicaTests {
+
+  // Empty databases with the tables of schema.sql
+  static final String REPLICA_0 = "jdbc:h2:mem:replica-test-0;DB_CLOSE_DELAY=-1;"
+          + "INIT=RUNSCRIPT FROM 'classpath:schema.sql'";
+
+  static final String REPLICA_1 = "jdbc:h2:mem:replica-test-1;DB_CLOSE_DELAY=-1;"
+          + "INIT=RUNSCRIPT FROM 'classpath:schema.sql'";
+
+  private static final long WINDOW_MILLIS = 1000;
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate; // The primary, there is no read-only transaction
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private CacheManager cacheManager;
+
+  private final List<JdbcTemplate> replicas = List.of(replica(REPLICA_0), replica(REPLICA_1));
+
+  @Test
+  void replicasCantBeCombinedWithSharding() {
+    ReplicaProperties properties = new ReplicaProperties(true, List.of(REPLICA_0), Duration.ofSeconds(1), "X-API-Key",
+            16);
+    IllegalStateException exception = assertThrows(IllegalStateException.class, () -> new ReplicaConfig()
+            .replicaDataSources(properties, new DataSourceProperties(), meterRegistry, false, true));
+    assertEquals("accounts.replicas.enabled can't be combined with accounts.sharding.enabled", exception.getMessage());
+  }
+
+  @Test
+  void readsGoToTheReplicasExceptForRecentWriters() throws Exception {
+    String mobileNumber = "5565000001";
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("Replicated Customer");
+    customerDto.setEmail("replicated@email.com");
+    customerDto.setMobileNumber(mobileNumber);
+    mockMvc.perform(post("/api/create").header("X-API-Key", "writer").contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(customerDto))).andExpect(status().isCreated());
+
+    // The writer reads its own change from the primary, the others read the replicas that don't have it yet
+    double pinned = pinnedRequests();
+    fetch("writer", mobileNumber).andExpect(status().isOk());
+    assertEquals(pinned + 1, pinnedRequests());
+    fetch("reader", mobileNumber).andExpect(status().isNotFound());
+
+    // Once replicated, the reads are balanced over both replicas and the primary pool is not used
+    replicate(mobileNumber);
+    Map<String, Long> usagesBefore = poolUsages();
+    for (int i = 0; i < 4; i++) {
+      cacheManager.getCache(AccountsConstants.ACCOUNTS_CACHE).clear(); // Every fetch loads the customer
+      fetch("reader-" + i, mobileNumber).andExpect(status().isOk());
+    }
+    Map<String, Long> usages = poolUsages();
+    assertEquals(usagesBefore.get("accounts-primary"), usages.get("accounts-primary"), usages.toString());
+    for (String replica : List.of("accounts-replica-0", "accounts-replica-1")) {
+      assertTrue(usages.get(replica) > usagesBefore.getOrDefault(replica, 0L), usages.toString());
+    }
+
+    // An update: the writer sees it at once, the readers get the old data (and cache it) until it is replicated
+    CustomerDto cached = objectMapper.readValue(fetch("reader", mobileNumber).andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString(), CustomerDto.class);
+    cached.setName("Renamed Customer");
+    mockMvc.perform(put("/api/update").header("X-API-Key", "writer").contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(cached))).andExpect(status().isOk());
+    fetch("writer", mobileNumber).andExpect(jsonPath("$.name").value("Renamed Customer"));
+    fetch("reader", mobileNumber).andExpect(jsonPath("$.name").value("Replicated Customer"));
+    replicate(mobileNumber);
+
+    // After the window the stale cache entry is gone and the writer is back on the replicas
+    Thread.sleep(WINDOW_MILLIS + 500);
+    fetch("reader", mobileNumber).andExpect(jsonPath("$.name").value("Renamed Customer"));
+    pinned = pinnedRequests();
+    fetch("writer", mobileNumber).andExpect(status().isOk());
+    assertEquals(pinned, pinnedRequests());
+  }
+
+  private ResultActions fetch(String apiKey, String mobileNumber) throws Exception {
+    return mockMvc.perform(get("/api/fetch?mobileNumber=" + mobileNumber).header("X-API-Key", apiKey));
+  }
+
+  private double pinnedRequests() {
+    return meterRegistry.get("accounts.replicas.pinned").counter().count();
+  }
+
+  /**
+   * @return the connections handed out by each pool so far, by pool name (a pool not used yet has no timer)
+   */
+  private Map<String, Long> poolUsages() {
+    return meterRegistry.get("hikaricp.connections.usage").timers().stream()
+            .collect(Collectors.toMap(timer -> timer.getId().getTag("pool"), timer -> timer.count()));
+  }
+
+  /**
+   * Utility method to copy the current rows of a customer and its account from the primary to the replicas
+   * @param mobileNumber Mobile number of the customer
+   */
+  private void replicate(String mobileNumber) {
+    Map<String, Object> customer = jdbcTemplate.queryForMap("SELECT * FROM customer WHERE mobile_number = ?",
+            mobileNumber);
+    Map<String, Object> account = jdbcTemplate.queryForMap("SELECT * FROM accounts WHERE customer_id = ?",
+            customer.get("customer_id"));
+    for (JdbcTemplate replica : replicas) {
+      replica.update("DELETE FROM accounts WHERE customer_id = ?", customer.get("customer_id"));
+      replica.update("DELETE FROM customer WHERE customer_id = ?", customer.get("customer_id"));
+      insert(replica, "customer", customer);
+      insert(replica, "accounts", account);
+    }
+  }
+
+  private static void insert(JdbcTemplate replica, String table, Map<String, Object> row) {
+    String columns = String.join(", ", row.keySet());
+    String values = row.keySet().stream().map(column -> "?").collect(Collectors.joining(", "));
+    replica.update("INSERT INTO " + table + " (" + columns + ") VALUES (" + values + ")", row.values().toArray());
+  }
+
+  private static JdbcTemplate replica(String url) {
+    return new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+  }
+
+}
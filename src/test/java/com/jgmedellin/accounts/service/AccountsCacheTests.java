@@ -0,0 +1,134 @@
+package com.jgmedellin.accounts.service;
+
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.exception.ResourceNotFoundException;
+import com.jgmedellin.accounts.repository.CustomerRepository;
+import com.jgmedellin.accounts.repository.projection.CustomerWithAccount;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.reset;
+
+/**
+ * Accounts cache: the changes evict the cached customers, and a fetch that read a customer before a change committed
+ * doesn't put the old data back.
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+class AccountsCacheTests {
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @Autowired
+  private CacheManager cacheManager;
+
+  @MockitoSpyBean
+  private CustomerRepository customerRepository;
+
+  @Test
+  void updateEvictsTheCustomer() {
+    CustomerDto customerDto = createAndFetch("5566000001");
+    customerDto.setName("Updated Customer");
+    iAccountsService.updateAccount(customerDto, null);
+
+    assertNull(cache().get("5566000001"));
+    assertEquals("Updated Customer", iAccountsService.fetchAccount("5566000001").getName());
+  }
+
+  @Test
+  void updateOfTheMobileNumberEvictsBothNumbers() {
+    CustomerDto customerDto = createAndFetch("5566000002");
+    customerDto.setMobileNumber("5566000012");
+    iAccountsService.updateAccount(customerDto, null);
+
+    assertNull(cache().get("5566000002"));
+    assertNull(cache().get("5566000012"));
+    assertThrows(ResourceNotFoundException.class, () -> iAccountsService.fetchAccount("5566000002"));
+    assertEquals("5566000012", iAccountsService.fetchAccount("5566000012").getMobileNumber());
+  }
+
+  @Test
+  void deleteEvictsTheCustomer() {
+    createAndFetch("5566000003");
+    iAccountsService.deleteAccount("5566000003");
+
+    assertNull(cache().get("5566000003"));
+    assertThrows(ResourceNotFoundException.class, () -> iAccountsService.fetchAccount("5566000003"));
+  }
+
+  @Test
+  void changingAFetchedCustomerDoesNotChangeTheCachedOne() {
+    CustomerDto customerDto = createAndFetch("5566000005");
+    customerDto.setName("Changed By The Caller");
+    customerDto.getAccountsDto().setAccountType("Changed");
+
+    CustomerDto fetched = iAccountsService.fetchAccount("5566000005");
+    assertEquals("Cached Customer", fetched.getName());
+    assertEquals(AccountsConstants.SAVINGS, fetched.getAccountsDto().getAccountType());
+  }
+
+  @Test
+  void fetchThatReadTheOldRowDoesNotCacheIt() throws Exception {
+    CustomerDto customerDto = createAndFetch("5566000004");
+    cache().evict("5566000004");
+
+    // The next load reads the row, then waits until the update has committed before returning it
+    Optional<CustomerWithAccount> oldRow = customerRepository.findWithAccountByMobileNumber("5566000004");
+    CountDownLatch loaded = new CountDownLatch(1);
+    CountDownLatch updated = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      loaded.countDown();
+      assertTrue(updated.await(30, TimeUnit.SECONDS));
+      return oldRow;
+    }).when(customerRepository).findWithAccountByMobileNumber(anyString());
+    FutureTask<CustomerDto> fetch = new FutureTask<>(() -> iAccountsService.fetchAccount("5566000004"));
+    new Thread(fetch).start();
+    assertTrue(loaded.await(30, TimeUnit.SECONDS));
+
+    customerDto.setName("Renamed During The Fetch");
+    iAccountsService.updateAccount(customerDto, null);
+    updated.countDown();
+
+    assertEquals("Cached Customer", fetch.get(30, TimeUnit.SECONDS).getName()); // Read before the commit
+    assertNull(cache().get("5566000004"));
+    reset(customerRepository);
+    assertEquals("Renamed During The Fetch", iAccountsService.fetchAccount("5566000004").getName());
+  }
+
+  /**
+   * Utility method to create a customer and fetch it once, so it is in the cache
+   * @param mobileNumber Mobile number of the customer
+   * @return the fetched customer
+   */
+  private CustomerDto createAndFetch(String mobileNumber) {
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("Cached Customer");
+    customerDto.setEmail("cached@email.com");
+    customerDto.setMobileNumber(mobileNumber);
+    iAccountsService.createAccount(customerDto);
+    CustomerDto fetched = iAccountsService.fetchAccount(mobileNumber);
+    assertNotNull(cache().get(mobileNumber));
+    return fetched;
+  }
+
+  private Cache cache() {
+    return cacheManager.getCache(AccountsConstants.ACCOUNTS_CACHE);
+  }
+
+}
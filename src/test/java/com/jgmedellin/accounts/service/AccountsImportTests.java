@@ -0,0 +1,157 @@
+package com.jgmedellin.accounts.service;
+
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.ImportResultDto;
+import com.jgmedellin.accounts.dto.ImportRowErrorDto;
+import com.jgmedellin.accounts.importer.ImportFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Imports generated files that are streamed row by row, never held in memory as a whole.
+ */
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "accounts.import.chunk-size=500",
+        "accounts.import.max-errors=5"})
+class AccountsImportTests {
+
+  private static final int ROWS = 20_000;
+
+  @Autowired
+  private IAccountsImportService iAccountsImportService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void importReportsTheRowsThatFail() {
+    // Every 1000th row has an invalid email and the last row repeats the first mobile number
+    ImportResultDto result = iAccountsImportService.importCustomers(new CsvRows("41", ROWS, 1000, -1),
+            ImportFormat.CSV, 0);
+
+    assertTrue(result.isCompleted());
+    assertEquals(ROWS + 1, result.getRowsRead());
+    assertEquals(ROWS - 20, result.getCreatedCount());
+    assertEquals(21, result.getFailedCount());
+    assertEquals(ROWS + 1, result.getLastCommittedRow());
+    assertTrue(result.isErrorsTruncated());
+    assertEquals(5, result.getErrors().size());
+    ImportRowErrorDto first = result.getErrors().get(0);
+    assertEquals(1000, first.getRow());
+    assertEquals("Email should be valid", first.getMessage());
+    assertEquals(ROWS - 20, countCustomers("41"));
+  }
+
+  @Test
+  void stoppedImportResumesAfterTheLastCommittedRow() {
+    // The connection drops in the middle of the file
+    ImportResultDto stopped = iAccountsImportService.importCustomers(new CsvRows("42", ROWS, 0, 7_777),
+            ImportFormat.CSV, 0);
+    assertFalse(stopped.isCompleted());
+    assertEquals(7_500, stopped.getLastCommittedRow());
+    assertEquals(7_500, countCustomers("42"));
+
+    ImportResultDto resumed = iAccountsImportService.importCustomers(new CsvRows("42", ROWS, 0, -1),
+            ImportFormat.CSV, stopped.getLastCommittedRow());
+    assertTrue(resumed.isCompleted());
+    assertEquals(ROWS - 7_500, resumed.getCreatedCount());
+    assertEquals(0, resumed.getFailedCount());
+    assertEquals(ROWS, countCustomers("42"));
+  }
+
+  @Test
+  void importNdjson() {
+    String ndjson = """
+            {"name":"Json Customer","email":"json@email.com","mobileNumber":"4300000001"}
+            {"name":"Json Customer","email":"json@email.com","mobileNumber":"4300000002"}
+
+            {"name":"Json Customer","email":"json@email.com"
+            {"name":"Json Customer","email":"json@email.com","mobileNumber":"43"}
+            """;
+    ImportResultDto result = iAccountsImportService.importCustomers(
+            new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), ImportFormat.NDJSON, 0);
+
+    assertTrue(result.isCompleted());
+    assertEquals(2, result.getCreatedCount());
+    List<Long> failedRows = result.getErrors().stream().map(ImportRowErrorDto::getRow).toList();
+    assertEquals(List.of(4L, 5L), failedRows);
+    assertEquals(2, countCustomers("43"));
+  }
+
+  private int countCustomers(String prefix) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customer c JOIN accounts a ON a.customer_id = " +
+            "c.customer_id WHERE c.mobile_number LIKE ?", Integer.class, prefix + "%");
+  }
+
+  /**
+   * CSV file generated row by row while it is read.
+   */
+  private static class CsvRows extends InputStream {
+
+    private final String prefix;
+
+    private final int rows;
+
+    private final int invalidEvery;
+
+    private final int failAtRow;
+
+    private int row = -1; // The header
+
+    private byte[] current = new byte[0];
+
+    private int position;
+
+    /**
+     * @param prefix First digits of the mobile numbers
+     * @param rows Number of rows, a last one repeating the first mobile number is added if invalidEvery > 0
+     * @param invalidEvery Every invalidEvery rows one has an invalid email, 0 for none
+     * @param failAtRow Row where the stream throws an IOException, -1 for none
+     */
+    CsvRows(String prefix, int rows, int invalidEvery, int failAtRow) {
+      this.prefix = prefix;
+      this.rows = rows;
+      this.invalidEvery = invalidEvery;
+      this.failAtRow = failAtRow;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (position == current.length && !nextRow()) {
+        return -1;
+      }
+      return current[position++];
+    }
+
+    private boolean nextRow() throws IOException {
+      if (failAtRow >= 0 && row + 1 >= failAtRow) { // Keeps failing, like a closed connection
+        throw new IOException("Connection reset");
+      }
+      row++;
+      String line;
+      if (row == 0) {
+        line = "name,email,mobileNumber\r\n";
+      } else if (row <= rows) {
+        String email = invalidEvery > 0 && row % invalidEvery == 0 ? "not an email" : "\"import" + row + "@email.com\"";
+        line = "Imported Customer," + email + "," + prefix + String.format("%08d", row) + "\r\n";
+      } else if (row == rows + 1 && invalidEvery > 0) {
+        line = "Imported Customer,import@email.com," + prefix + String.format("%08d", 1) + "\r\n";
+      } else {
+        return false;
+      }
+      current = line.getBytes(StandardCharsets.UTF_8);
+      position = 0;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.jgmedellin.accounts.service;
+
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.CreateAccountResultDto;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.metrics.StatementCounter;
+import com.jgmedellin.accounts.metrics.StatementCounts;
+import com.jgmedellin.accounts.repository.CustomerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.reset;
+
+/**
+ * Batch create compared with one createAccount() per item, and a batch that races with another create of one of its
+ * mobile numbers.
+ */
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+class CreateAccountsBatchTests {
+
+  private static final int ITEMS = 200;
+
+  private static final int JDBC_BATCH_SIZE = 50; // hibernate.jdbc.batch_size of application.yaml
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @MockitoSpyBean
+  private CustomerRepository customerRepository;
+
+  @Test
+  void batchNeedsFewerStatementsAndLessTimeThanOneCreatePerItem() {
+    createOneByOne(customers(5568000000L, ITEMS)); // Warm up both paths
+    iAccountsService.createAccounts(customers(5568100000L, ITEMS));
+
+    StatementCounts before = StatementCounter.snapshot();
+    long start = System.nanoTime();
+    createOneByOne(customers(5568200000L, ITEMS));
+    long perItemNanos = System.nanoTime() - start;
+    StatementCounts perItem = StatementCounter.snapshot().minus(before);
+
+    before = StatementCounter.snapshot();
+    start = System.nanoTime();
+    List<CreateAccountResultDto> results = iAccountsService.createAccounts(customers(5568300000L, ITEMS));
+    long batchNanos = System.nanoTime() - start;
+    StatementCounts batch = StatementCounter.snapshot().minus(before);
+
+    assertTrue(results.stream().allMatch(result -> result.getAccountNumber() != null));
+    String report = String.format("%d items: per item %d statements in %d ms, batch %d statements in %d ms", ITEMS,
+            perItem.statements(), perItemNanos / 1_000_000, batch.statements(), batchNanos / 1_000_000);
+    // A duplicate check and an INSERT per table for each item, against one IN query and JDBC batches of 50 rows
+    assertEquals(3L * ITEMS, perItem.selects() + perItem.inserts(), report);
+    assertEquals(1, batch.selects(), report);
+    assertEquals(2 * ITEMS / JDBC_BATCH_SIZE, batch.inserts(), report);
+    assertTrue(batchNanos < perItemNanos, report);
+  }
+
+  @Test
+  void mobileNumberCreatedAfterTheDuplicateCheckFailsOnlyThatItem() {
+    // Another request created the customer after this batch looked for duplicates (the first check misses it)
+    iAccountsService.createAccount(customers(5567000001L, 1).get(0));
+    doReturn(List.of()).doReturn(List.of("5567000001"))
+            .when(customerRepository).findExistingMobileNumbers(anyCollection());
+    try {
+      List<CreateAccountResultDto> results = iAccountsService.createAccounts(customers(5567000001L, 2));
+
+      assertEquals(AccountsConstants.STATUS_400, results.get(0).getStatusCode());
+      assertEquals(AccountsConstants.MESSAGE_400_DUPLICATE, results.get(0).getStatusMsg());
+      assertEquals(AccountsConstants.STATUS_201, results.get(1).getStatusCode());
+      assertNotNull(iAccountsService.fetchAccount("5567000002"));
+    } finally {
+      reset(customerRepository);
+    }
+  }
+
+  private void createOneByOne(List<CustomerDto> customerDtos) {
+    customerDtos.forEach(iAccountsService::createAccount);
+  }
+
+  private static List<CustomerDto> customers(long firstMobileNumber, int count) {
+    List<CustomerDto> customerDtos = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      CustomerDto customerDto = new CustomerDto();
+      customerDto.setName("Batch Customer");
+      customerDto.setEmail("batch@email.com");
+      customerDto.setMobileNumber(String.valueOf(firstMobileNumber + i));
+      customerDtos.add(customerDto);
+    }
+    return customerDtos;
+  }
+
+}
@@ -0,0 +1,134 @@
+package com.jgmedellin.accounts.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.dto.DeleteAccountsResultDto;
+import com.jgmedellin.accounts.metrics.StatementCounter;
+import com.jgmedellin.accounts.metrics.StatementCounts;
+import com.jgmedellin.accounts.support.SlowTest;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The batch delete endpoint, and the set-based batch delete compared with deleting the same customers one by one
+ * (2 x 2,500 customers, it only runs with the slow tests).
+ */
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "spring.jpa.properties.hibernate.generate_statistics=true"})
+@AutoConfigureMockMvc
+class DeleteAccountsTests {
+
+  private static final int CUSTOMERS = 2_500;
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void batchDeleteReportsTheMissingNumbersAndRemovesTheAccounts() throws Exception {
+    // More than one IN clause of mobile numbers, a few of them never created and one repeated
+    int created = AccountsConstants.IN_CLAUSE_MAX_SIZE + 200;
+    List<String> mobileNumbers = new ArrayList<>(createCustomers("5580", created));
+    List<String> missing = List.of("5580999997", "5580999998", "5580999999");
+    mobileNumbers.add(500, missing.get(0));
+    mobileNumbers.addAll(missing.subList(1, 3));
+    mobileNumbers.add(mobileNumbers.get(0));
+    List<Long> customerIds = jdbcTemplate.queryForList("SELECT customer_id FROM customer WHERE mobile_number " +
+            "LIKE '5580%'", Long.class);
+    assertEquals(created, customerIds.size());
+
+    StatementCounts before = StatementCounter.snapshot();
+    String body = mockMvc.perform(delete("/api/delete/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(mobileNumbers)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+    StatementCounts statements = StatementCounter.snapshot().minus(before);
+
+    DeleteAccountsResultDto result = objectMapper.readValue(body, DeleteAccountsResultDto.class);
+    assertEquals(created, result.getDeletedCount());
+    assertEquals(missing.size(), result.getNotFoundCount());
+    assertEquals(missing, result.getNotFound());
+    // 2 chunks, each one SELECT and one DELETE per table
+    assertEquals(2, statements.selects(), body);
+    assertEquals(4, statements.deletes(), body);
+    assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customer WHERE mobile_number LIKE '5580%'",
+            Integer.class));
+    assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accounts WHERE customer_id BETWEEN ? AND ?",
+            Integer.class, customerIds.stream().min(Long::compare).orElseThrow(),
+            customerIds.stream().max(Long::compare).orElseThrow()));
+  }
+
+  @Test
+  @SlowTest
+  void batchDeleteAgainstPerRowDelete() {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    List<String> perRowNumbers = createCustomers("61", CUSTOMERS);
+    statistics.clear();
+    long start = System.nanoTime();
+    perRowNumbers.forEach(iAccountsService::deleteAccount);
+    long perRowNanos = System.nanoTime() - start;
+    long perRowStatements = statistics.getPrepareStatementCount();
+
+    List<String> batchNumbers = new ArrayList<>(createCustomers("62", CUSTOMERS));
+    batchNumbers.add("6299999999"); // Never created
+    statistics.clear();
+    start = System.nanoTime();
+    DeleteAccountsResultDto result = iAccountsService.deleteAccounts(batchNumbers);
+    long batchNanos = System.nanoTime() - start;
+    long batchStatements = statistics.getPrepareStatementCount();
+
+    String report = String.format(Locale.ROOT, "Deleting %d customers: per row = %d ms / %d statements, " +
+            "batch = %d ms / %d statements", CUSTOMERS, perRowNanos / 1_000_000, perRowStatements,
+            batchNanos / 1_000_000, batchStatements);
+
+    assertEquals(CUSTOMERS, result.getDeletedCount());
+    assertEquals(List.of("6299999999"), result.getNotFound());
+    assertEquals(0, iAccountsService.fetchAccounts(batchNumbers).getCustomers().size());
+    // 3 chunks of 1000 mobile numbers, each one SELECT and two DELETE statements
+    assertEquals(9, batchStatements, report);
+    assertTrue(batchStatements * 100 < perRowStatements, report);
+  }
+
+  private List<String> createCustomers(String prefix, int count) {
+    List<CustomerDto> customerDtos = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      CustomerDto customerDto = new CustomerDto();
+      customerDto.setName("Closing Customer");
+      customerDto.setEmail("closing@email.com");
+      customerDto.setMobileNumber(prefix + String.format("%0" + (10 - prefix.length()) + "d", i));
+      customerDtos.add(customerDto);
+    }
+    iAccountsService.createAccounts(customerDtos);
+    return customerDtos.stream().map(CustomerDto::getMobileNumber).toList();
+  }
+
+}
@@ -0,0 +1,168 @@
+package com.jgmedellin.accounts.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.support.SlowTest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Checks the NDJSON of the export endpoint, and that the export keeps the heap flat: the persistence context is cleared
+ * after every page and the used heap at the end of the export is about the same as after the first page, whatever the
+ * number of rows. Exporting 100k customers with a GC per measure takes a while, so that one only runs with the slow
+ * tests.
+ */
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "spring.cache.type=none"})
+@AutoConfigureMockMvc
+class ExportAccountsTests {
+
+  private static final long FIRST_ID = 80_000_000L; // Far from the ids handed out by the sequences
+
+  private static final int CUSTOMERS = 100_000;
+
+  private static final long NDJSON_FIRST_ID = 81_000_000L;
+
+  // Two full pages and a partial one
+  private static final int NDJSON_CUSTOMERS = 2 * AccountsConstants.EXPORT_PAGE_SIZE + 37;
+
+  private static final long MAX_HEAP_GROWTH = 16L * 1024 * 1024; // Keeping 100k customers and accounts is ~80MB
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Test
+  void exportWritesEveryAccountOncePerLine() throws Exception {
+    seed(NDJSON_FIRST_ID, "81", NDJSON_CUSTOMERS);
+    Integer expected = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM customer c JOIN accounts a ON a.customer_id = c.customer_id", Integer.class);
+
+    MvcResult started = mockMvc.perform(get("/api/export")).andExpect(request().asyncStarted()).andReturn();
+    MvcResult result = mockMvc.perform(asyncDispatch(started))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(AccountsConstants.NDJSON_VALUE))
+            .andReturn();
+
+    String body = result.getResponse().getContentAsString();
+    assertTrue(body.endsWith("\n"), "The last line has no line break");
+    Set<Long> accountNumbers = new HashSet<>();
+    Set<String> seededMobileNumbers = new HashSet<>();
+    String[] lines = body.split("\n");
+    for (String line : lines) {
+      CustomerDto customerDto = objectMapper.readValue(line, CustomerDto.class); // One whole JSON per line
+      assertTrue(accountNumbers.add(customerDto.getAccountsDto().getAccountNumber()), "Repeated row: " + line);
+      if (customerDto.getMobileNumber().startsWith("81")) {
+        seededMobileNumbers.add(customerDto.getMobileNumber());
+      }
+    }
+    assertEquals(expected, lines.length);
+    assertEquals(NDJSON_CUSTOMERS, seededMobileNumbers.size());
+  }
+
+  @Test
+  @SlowTest
+  void exportKeepsTheHeapFlat() {
+    seed(FIRST_ID, "8", CUSTOMERS);
+    Integer expected = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM customer c JOIN accounts a ON a.customer_id = c.customer_id", Integer.class);
+
+    // Bind a persistence context to the thread the same way open-in-view does for a web request
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    AtomicInteger exported = new AtomicInteger();
+    AtomicInteger pages = new AtomicInteger();
+    AtomicInteger maxManagedEntities = new AtomicInteger();
+    AtomicLong firstPageHeap = new AtomicLong();
+    AtomicLong lastPageHeap = new AtomicLong();
+    try {
+      iAccountsService.exportAccounts(page -> {
+        exported.addAndGet(page.size());
+        int managedEntities = entityManager.unwrap(Session.class).getStatistics().getEntityCount();
+        maxManagedEntities.accumulateAndGet(managedEntities, Math::max);
+        if (pages.getAndIncrement() == 0) {
+          firstPageHeap.set(usedHeapAfterGc(memory));
+        }
+        lastPageHeap.set(exported.get() == expected ? usedHeapAfterGc(memory) : lastPageHeap.get());
+      });
+    } finally {
+      TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+      entityManager.close();
+    }
+
+    long growth = lastPageHeap.get() - firstPageHeap.get();
+    assertEquals(expected, exported.get());
+    assertEquals(0, maxManagedEntities.get(), "The persistence context kept the exported entities");
+    assertTrue(growth < MAX_HEAP_GROWTH, String.format(Locale.ROOT, "The heap grew by %d KB while exporting %d " +
+            "customers in %d pages", growth / 1024, exported.get(), pages.get()));
+  }
+
+  /**
+   * Utility method to insert the customers and accounts with plain JDBC batches
+   * @param firstId Customer id of the first customer, the account numbers follow it
+   * @param mobilePrefix First digits of the mobile numbers
+   * @param count Customers to insert
+   */
+  private void seed(long firstId, String mobilePrefix, int count) {
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    List<Object[]> customers = new ArrayList<>();
+    List<Object[]> accounts = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      long customerId = firstId + i;
+      customers.add(new Object[]{customerId, "Customer " + i, "c" + i + "@email.com",
+              mobilePrefix + String.format("%0" + (10 - mobilePrefix.length()) + "d", i), now, "test"});
+      accounts.add(new Object[]{customerId, 100 * customerId, "Savings", "Test branch", now, "test"});
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO customer (customer_id, name, email, mobile_number, created_at, created_by) " +
+            "VALUES (?, ?, ?, ?, ?, ?)", customers);
+    jdbcTemplate.batchUpdate("INSERT INTO accounts (customer_id, account_number, account_type, branch_address, " +
+            "created_at, created_by) VALUES (?, ?, ?, ?, ?, ?)", accounts);
+  }
+
+  private static long usedHeapAfterGc(MemoryMXBean memory) {
+    System.gc();
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+}
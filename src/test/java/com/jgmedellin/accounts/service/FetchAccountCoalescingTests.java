@@ -0,0 +1,153 @@
+package com.jgmedellin.accounts.service;
+
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.entity.Accounts;
+import com.jgmedellin.accounts.entity.Customer;
+import com.jgmedellin.accounts.exception.ResourceNotFoundException;
+import com.jgmedellin.accounts.repository.CustomerRepository;
+import com.jgmedellin.accounts.repository.projection.CustomerWithAccount;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+// The cache is disabled, otherwise it would hide the concurrent loads
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "spring.cache.type=none"})
+class FetchAccountCoalescingTests {
+
+  private static final int CALLERS = 32;
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @MockitoSpyBean
+  private CustomerRepository customerRepository;
+
+  @Test
+  void concurrentFetchesOfTheSameCustomerShareOneLoad() throws Exception {
+    Customer customer = new Customer(1L, "Hot Customer", "hot@email.com", "5550000001");
+    Accounts account = new Accounts();
+    account.setCustomerId(1L);
+    account.setAccountNumber(1000000001L);
+    account.setAccountType("Savings");
+    account.setBranchAddress("Test branch");
+
+    AtomicInteger loads = new AtomicInteger();
+    List<FutureTask<CustomerDto>> callers = concurrentFetches("5550000001", loads,
+            Optional.of(new CustomerWithAccount(customer, account)));
+
+    assertEquals(1, loads.get());
+    CustomerDto first = callers.get(0).get();
+    assertEquals("5550000001", first.getMobileNumber());
+    for (FutureTask<CustomerDto> caller : callers.subList(1, CALLERS)) {
+      assertEquals(first, caller.get());
+      assertNotSame(first, caller.get()); // Each caller can change its own copy
+    }
+  }
+
+  @Test
+  void concurrentFetchesOfAMissingCustomerShareTheException() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    List<FutureTask<CustomerDto>> callers = concurrentFetches("5550000002", loads, Optional.empty());
+
+    assertEquals(1, loads.get());
+    for (FutureTask<CustomerDto> caller : callers) {
+      ExecutionException exception = assertThrows(ExecutionException.class, caller::get);
+      assertInstanceOf(ResourceNotFoundException.class, exception.getCause());
+    }
+  }
+
+  @Test
+  void fetchAfterAnUpdateDoesNotJoinALoadThatStartedBefore() throws Exception {
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("Before Update");
+    customerDto.setEmail("update@email.com");
+    customerDto.setMobileNumber("5550000003");
+    iAccountsService.createAccount(customerDto);
+    CustomerDto updated = iAccountsService.fetchAccount("5550000003");
+
+    // The first load returns the row as read before the update and stays in flight until the update has committed,
+    // the next loads read it again (by customer id, the spy can't call the query it replaces)
+    Optional<CustomerWithAccount> beforeUpdate = customerRepository.findWithAccountByMobileNumber("5550000003");
+    Long customerId = beforeUpdate.orElseThrow().customer().getCustomerId();
+    AtomicBoolean slowLoadStarted = new AtomicBoolean();
+    CountDownLatch loaded = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      if (slowLoadStarted.compareAndSet(false, true)) {
+        loaded.countDown();
+        assertTrue(release.await(30, TimeUnit.SECONDS));
+        return beforeUpdate;
+      }
+      return customerRepository.findWithAccountByCustomerId(customerId);
+    }).when(customerRepository).findWithAccountByMobileNumber(anyString());
+    FutureTask<CustomerDto> slowFetch = new FutureTask<>(() -> iAccountsService.fetchAccount("5550000003"));
+    new Thread(slowFetch).start();
+    assertTrue(loaded.await(30, TimeUnit.SECONDS));
+
+    try {
+      updated.setName("After Update");
+      assertTrue(iAccountsService.updateAccount(updated, null));
+      FutureTask<CustomerDto> fetch = new FutureTask<>(() -> iAccountsService.fetchAccount("5550000003"));
+      new Thread(fetch).start();
+      assertEquals("After Update", fetch.get(10, TimeUnit.SECONDS).getName(), "Joined the load of the old row");
+    } finally {
+      release.countDown();
+    }
+    assertEquals("Before Update", slowFetch.get(30, TimeUnit.SECONDS).getName()); // It arrived before the update
+  }
+
+  /**
+   * Utility method to fetch the same customer from many threads while the first DB load is held open, the load is
+   * only released (with the given result) once every caller is waiting
+   */
+  private List<FutureTask<CustomerDto>> concurrentFetches(String mobileNumber, AtomicInteger loads,
+                                                          Optional<CustomerWithAccount> result) throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      loads.incrementAndGet();
+      assertTrue(release.await(30, TimeUnit.SECONDS));
+      return result;
+    }).when(customerRepository).findWithAccountByMobileNumber(anyString());
+
+    List<FutureTask<CustomerDto>> callers = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      FutureTask<CustomerDto> caller = new FutureTask<>(() -> iAccountsService.fetchAccount(mobileNumber));
+      callers.add(caller);
+      threads.add(new Thread(caller));
+    }
+    threads.forEach(Thread::start);
+
+    // Wait until every thread is parked, either in the held DB load or waiting for it
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (!threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING
+            || thread.getState() == Thread.State.TIMED_WAITING)) {
+      assertTrue(System.nanoTime() < deadline, "Callers did not start in time");
+      Thread.sleep(10);
+    }
+    release.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return callers;
+  }
+
+}
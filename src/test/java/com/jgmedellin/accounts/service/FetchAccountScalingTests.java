@@ -0,0 +1,100 @@
+package com.jgmedellin.accounts.service;
+
+import com.jgmedellin.accounts.support.SlowTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that fetching an account doesn't get slower as the tables grow, i.e. the lookups use the indexes.
+ * 10M rows don't fit in the test heap, so the dataset grows 20x (10k to 200k rows), a table scan would be ~20x slower.
+ */
+// The cache is disabled, this test measures the DB lookups
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "spring.cache.type=none"})
+class FetchAccountScalingTests {
+
+  private static final long FIRST_ID = 50_000_000L; // Far from the ids handed out by the sequences
+
+  private static final int SMALL_DATASET = 10_000;
+
+  private static final int LARGE_DATASET = 200_000;
+
+  private static final int FETCHES = 2_000;
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  @SlowTest // Seeds 200k customers and measures 8k fetches
+  void fetchLatencyStaysFlatAsTheDatasetGrows() {
+    seed(0, SMALL_DATASET);
+    double smallNanos = averageFetchNanos(SMALL_DATASET);
+
+    seed(SMALL_DATASET, LARGE_DATASET);
+    double largeNanos = averageFetchNanos(LARGE_DATASET);
+
+    assertTrue(largeNanos < smallNanos * 3, String.format(Locale.ROOT, "fetchAccount latency grew with the dataset " +
+            "size: %d rows = %.1f us, %d rows = %.1f us", SMALL_DATASET, smallNanos / 1000, LARGE_DATASET,
+            largeNanos / 1000));
+  }
+
+  @Test
+  void fetchQueryUsesTheIndexes() {
+    String plan = String.join("\n", jdbcTemplate.queryForList(
+            "EXPLAIN SELECT c.*, a.* FROM customer c LEFT JOIN accounts a ON a.customer_id = c.customer_id " +
+                    "WHERE c.mobile_number = '0000000001'", String.class)).toUpperCase(Locale.ROOT);
+    assertTrue(plan.contains("IDX_CUSTOMER_MOBILE_NUMBER"), plan);
+    assertTrue(plan.contains("IDX_ACCOUNTS_CUSTOMER_ID"), plan);
+  }
+
+  /**
+   * Utility method to insert customers and accounts [from, to) with plain JDBC batches
+   */
+  private void seed(int from, int to) {
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    List<Object[]> customers = new ArrayList<>();
+    List<Object[]> accounts = new ArrayList<>();
+    for (int i = from; i < to; i++) {
+      long customerId = FIRST_ID + i;
+      customers.add(new Object[]{customerId, "Customer " + i, "c" + i + "@email.com", mobileNumber(i), now, "test"});
+      accounts.add(new Object[]{customerId, 9_000_000_000L + i, "Savings", "Test branch", now, "test"});
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO customer (customer_id, name, email, mobile_number, created_at, created_by) " +
+            "VALUES (?, ?, ?, ?, ?, ?)", customers);
+    jdbcTemplate.batchUpdate("INSERT INTO accounts (customer_id, account_number, account_type, branch_address, " +
+            "created_at, created_by) VALUES (?, ?, ?, ?, ?, ?)", accounts);
+  }
+
+  /**
+   * Utility method to measure the average fetchAccount latency over random customers of the dataset
+   */
+  private double averageFetchNanos(int datasetSize) {
+    // Warm up the JIT and the connection pool before measuring
+    for (int i = 0; i < FETCHES; i++) {
+      iAccountsService.fetchAccount(mobileNumber((i * 7919) % datasetSize));
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < FETCHES; i++) {
+      int customer = (int) ((i * 104_729L) % datasetSize);
+      assertEquals(mobileNumber(customer), iAccountsService.fetchAccount(mobileNumber(customer)).getMobileNumber());
+    }
+    return (System.nanoTime() - start) / (double) FETCHES;
+  }
+
+  private static String mobileNumber(int i) {
+    return String.format("7%09d", i);
+  }
+
+}
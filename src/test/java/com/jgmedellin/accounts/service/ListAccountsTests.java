@@ -0,0 +1,187 @@
+package com.jgmedellin.accounts.service;
+
+import com.jgmedellin.accounts.dto.AccountsPageDto;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.pagination.AccountsPageToken;
+import com.jgmedellin.accounts.support.SlowTest;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the keyset pagination of the accounts listing: the pages have no gaps or repeated rows, and a page costs the
+ * same at any depth, also when filtered by account type. Page 100,000 of 2 rows is 200k rows deep, an OFFSET query has
+ * to read all of them. Seeding and measuring takes minutes, so the latency tests only run with the slow tests and the
+ * others use the first customers of the dataset.
+ */
+@SpringBootTest(properties = {"spring.jpa.show-sql=false"})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ListAccountsTests {
+
+  private static final long FIRST_ID = 90_000_000L; // Far from the ids handed out by the sequences
+
+  private static final int CUSTOMERS = 200_000;
+
+  private static final int FUNCTIONAL_CUSTOMERS = 3_000;
+
+  private static final int DEEP_PAGE_SIZE = 2;
+
+  private static final int PAGES_MEASURED = 2_000;
+
+  private static final LocalDate FIRST_DAY = LocalDate.of(2001, 1, 1); // No other test creates accounts back then
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private int seeded;
+
+  @BeforeAll
+  void seedFunctionalDataset() {
+    seed(FUNCTIONAL_CUSTOMERS);
+  }
+
+  /**
+   * Utility method to grow the dataset up to the given number of customers
+   * @param count Customers of the dataset
+   */
+  private void seed(int count) {
+    List<Object[]> customers = new ArrayList<>();
+    List<Object[]> accounts = new ArrayList<>();
+    for (int i = seeded; i < count; i++) {
+      long customerId = FIRST_ID + i;
+      Date createdAt = Date.valueOf(FIRST_DAY.plusDays(i % 30));
+      customers.add(new Object[]{customerId, "Customer " + i, "c" + i + "@email.com", String.format("9%09d", i),
+              createdAt, "test"});
+      accounts.add(new Object[]{customerId, 6_000_000_000L + 2L * i, i % 2 == 0 ? "Savings" : "Current", "Branch",
+              createdAt, "test"});
+      if (i % 1000 == 0) { // A few customers have a second account
+        accounts.add(new Object[]{customerId, 6_000_000_000L + 2L * i + 1, "Savings", "Branch", createdAt, "test"});
+      }
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO customer (customer_id, name, email, mobile_number, created_at, created_by) " +
+            "VALUES (?, ?, ?, ?, ?, ?)", customers);
+    jdbcTemplate.batchUpdate("INSERT INTO accounts (customer_id, account_number, account_type, branch_address, " +
+            "created_at, created_by) VALUES (?, ?, ?, ?, ?, ?)", accounts);
+    seeded = Math.max(seeded, count);
+  }
+
+  @Test
+  void pagesHaveNoGapsOrRepeatedRows() {
+    LocalDate from = FIRST_DAY.plusDays(10);
+    LocalDate to = FIRST_DAY.plusDays(12);
+    Integer expected = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accounts WHERE account_type = 'Savings' " +
+            "AND created_at BETWEEN ? AND ?", Integer.class, Date.valueOf(from), Date.valueOf(to));
+
+    Set<Long> accountNumbers = new HashSet<>();
+    long previous = 0;
+    String pageToken = null;
+    do {
+      AccountsPageDto page = iAccountsService.listAccounts("Savings", from, to, pageToken, 97);
+      for (CustomerDto customerDto : page.getAccounts()) {
+        long accountNumber = customerDto.getAccountsDto().getAccountNumber();
+        assertTrue(accountNumbers.add(accountNumber), "Repeated account " + accountNumber);
+        assertTrue(accountNumber > previous, "Accounts out of order"); // Same order as customer id in this dataset
+        assertEquals("Savings", customerDto.getAccountsDto().getAccountType());
+        previous = accountNumber;
+      }
+      pageToken = page.getNextPageToken();
+    } while (pageToken != null);
+    assertEquals(expected, accountNumbers.size());
+  }
+
+  @Test
+  void lastPageHasNoNextPageToken() {
+    Integer expected = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM accounts WHERE created_at = ?", Integer.class,
+            Date.valueOf(FIRST_DAY));
+    AccountsPageDto page = iAccountsService.listAccounts(null, FIRST_DAY, FIRST_DAY, null, expected);
+    assertEquals(expected, page.getAccounts().size());
+    assertNull(page.getNextPageToken());
+  }
+
+  @Test
+  @SlowTest
+  void pageLatencyIsTheSameAtAnyDepth() {
+    seed(CUSTOMERS);
+    double firstPageNanos = averagePageNanos(null, 0);
+    double deepPageNanos = averagePageNanos(null, 100_000L * DEEP_PAGE_SIZE - DEEP_PAGE_SIZE);
+    long start = System.nanoTime();
+    jdbcTemplate.queryForList("SELECT * FROM accounts a JOIN customer c ON c.customer_id = a.customer_id " +
+            "ORDER BY a.customer_id, a.account_number LIMIT 2 OFFSET 199998");
+    long offsetNanos = System.nanoTime() - start;
+
+    assertTrue(deepPageNanos < firstPageNanos * 3, String.format(Locale.ROOT, "Deep pages are slower than the first " +
+            "one: page 1 = %.1f us, page 100,000 = %.1f us, OFFSET page 100,000 = %d us", firstPageNanos / 1000,
+            deepPageNanos / 1000, offsetNanos / 1000));
+  }
+
+  @Test
+  @SlowTest
+  void filteredPageLatencyIsTheSameAtAnyDepth() {
+    seed(CUSTOMERS);
+    // Every other customer has a Current account, the last page starts near the end of the dataset
+    double firstPageNanos = averagePageNanos("Current", 0);
+    double deepPageNanos = averagePageNanos("Current", CUSTOMERS - 2 * DEEP_PAGE_SIZE - 1);
+
+    assertTrue(deepPageNanos < firstPageNanos * 3, String.format(Locale.ROOT, "Deep filtered pages are slower than " +
+            "the first one: page 1 = %.1f us, last page = %.1f us", firstPageNanos / 1000, deepPageNanos / 1000));
+  }
+
+  @Test
+  void listQueryUsesTheIndex() {
+    String plan = String.join("\n", jdbcTemplate.queryForList(
+            "EXPLAIN SELECT a.*, c.* FROM accounts a JOIN customer c ON c.customer_id = a.customer_id " +
+                    "WHERE a.customer_id >= 90001000 AND (a.customer_id > 90001000 OR a.account_number > 0) " +
+                    "ORDER BY a.customer_id, a.account_number LIMIT 51", String.class)).toUpperCase(Locale.ROOT);
+    assertTrue(plan.contains("IDX_ACCOUNTS_CUSTOMER_ID_ACCOUNT_NUMBER"), plan);
+  }
+
+  @Test
+  void filteredListQueryUsesTheTypeIndex() {
+    String plan = String.join("\n", jdbcTemplate.queryForList(
+            "EXPLAIN SELECT a.*, c.* FROM accounts a JOIN customer c ON c.customer_id = a.customer_id " +
+                    "WHERE a.account_type = 'Current' AND a.customer_id >= 90001000 " +
+                    "AND (a.customer_id > 90001000 OR a.account_number > 0) " +
+                    "ORDER BY a.account_type, a.customer_id, a.account_number LIMIT 51", String.class))
+            .toUpperCase(Locale.ROOT);
+    assertTrue(plan.contains("IDX_ACCOUNTS_ACCOUNT_TYPE_CUSTOMER_ID_ACCOUNT_NUMBER"), plan);
+    assertTrue(plan.contains("INDEX SORTED"), plan); // Read in the listing order, no sort of the matching rows
+  }
+
+  /**
+   * Utility method to measure the average latency of the page that starts at the given customer of the dataset
+   * @param accountType Account type filter, null for all the accounts
+   * @param firstCustomer Position in the dataset of the customer the page starts at
+   * @return the average nanoseconds per page
+   */
+  private double averagePageNanos(String accountType, long firstCustomer) {
+    // The token of the previous page points to the last account of the previous customer
+    String pageToken = firstCustomer == 0 ? null : new AccountsPageToken(FIRST_ID + firstCustomer - 1,
+            6_000_000_000L + 2 * firstCustomer - 1).encode();
+    for (int i = 0; i < PAGES_MEASURED; i++) { // Warm up
+      iAccountsService.listAccounts(accountType, null, null, pageToken, DEEP_PAGE_SIZE);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < PAGES_MEASURED; i++) {
+      assertEquals(DEEP_PAGE_SIZE, iAccountsService.listAccounts(accountType, null, null, pageToken, DEEP_PAGE_SIZE)
+              .getAccounts().size());
+    }
+    return (System.nanoTime() - start) / (double) PAGES_MEASURED;
+  }
+}
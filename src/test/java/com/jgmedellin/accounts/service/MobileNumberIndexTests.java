@@ -0,0 +1,115 @@
+package com.jgmedellin.accounts.service;
+
+import com.jgmedellin.accounts.constants.AccountsConstants;
+import com.jgmedellin.accounts.dto.CreateAccountResultDto;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.exception.CustomerAlreadyExistsException;
+import com.jgmedellin.accounts.exception.ResourceNotFoundException;
+import com.jgmedellin.accounts.index.MobileNumberIndex;
+import com.jgmedellin.accounts.metrics.StatementCounter;
+import com.jgmedellin.accounts.metrics.StatementCounts;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The service with the mobile number index enabled: the duplicate checks, the unknown numbers and the lookups of the
+ * customer id are answered from memory. The cache is disabled so the fetches always reach the service.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "spring.cache.type=none",
+        "accounts.mobile-index.enabled=true"
+})
+class MobileNumberIndexTests {
+
+  @Autowired
+  private IAccountsService iAccountsService;
+
+  @Autowired
+  private MobileNumberIndex mobileNumberIndex;
+
+  @Test
+  void duplicateChecksUseTheIndex() {
+    create("5575000001");
+    assertTrue(mobileNumberIndex.lookup("5575000001") > 0, "Added to the index after the commit");
+
+    StatementCounts before = StatementCounter.snapshot();
+    assertThrows(CustomerAlreadyExistsException.class, () -> create("5575000001"));
+    assertEquals(0, StatementCounter.snapshot().minus(before).statements(), "Duplicate found without a query");
+
+    before = StatementCounter.snapshot();
+    List<CreateAccountResultDto> results = iAccountsService.createAccounts(List.of(customer("5575000001"),
+            customer("5575000002")));
+    StatementCounts batch = StatementCounter.snapshot().minus(before);
+    assertEquals(AccountsConstants.MESSAGE_400_DUPLICATE, results.get(0).getStatusMsg());
+    assertEquals(AccountsConstants.STATUS_201, results.get(1).getStatusCode());
+    assertEquals(0, batch.selects(), "Only the inserts of the new customer");
+  }
+
+  @Test
+  void fetchUsesTheIndex() {
+    create("5575000003");
+
+    StatementCounts before = StatementCounter.snapshot();
+    assertThrows(ResourceNotFoundException.class, () -> iAccountsService.fetchAccount("5575000099"));
+    assertEquals(0, StatementCounter.snapshot().minus(before).statements(), "Unknown number rejected without a query");
+
+    before = StatementCounter.snapshot();
+    CustomerDto customerDto = iAccountsService.fetchAccount("5575000003");
+    assertEquals("5575000003", customerDto.getMobileNumber());
+    assertEquals(1, StatementCounter.snapshot().minus(before).selects(), "One join by customer id");
+  }
+
+  @Test
+  void deleteUsesTheIndex() {
+    create("5575000004");
+
+    StatementCounts before = StatementCounter.snapshot();
+    assertThrows(ResourceNotFoundException.class, () -> iAccountsService.deleteAccount("5575000098"));
+    assertEquals(0, StatementCounter.snapshot().minus(before).statements(), "Unknown number rejected without a query");
+
+    before = StatementCounter.snapshot();
+    assertTrue(iAccountsService.deleteAccount("5575000004"));
+    StatementCounts delete = StatementCounter.snapshot().minus(before);
+    assertEquals(0, delete.selects(), "Customer id from the index");
+    assertEquals(2, delete.deletes());
+    assertEquals(MobileNumberIndex.NOT_FOUND, mobileNumberIndex.lookup("5575000004"));
+    assertThrows(ResourceNotFoundException.class, () -> iAccountsService.fetchAccount("5575000004"));
+  }
+
+  @Test
+  void updateOfTheMobileNumberMovesTheIndexEntry() {
+    CustomerDto customerDto = create("5575000005");
+    long customerId = mobileNumberIndex.lookup("5575000005");
+    customerDto.setMobileNumber("5575000006");
+    iAccountsService.updateAccount(customerDto, null);
+
+    assertEquals(MobileNumberIndex.NOT_FOUND, mobileNumberIndex.lookup("5575000005"));
+    assertEquals(customerId, mobileNumberIndex.lookup("5575000006"));
+    assertThrows(CustomerAlreadyExistsException.class, () -> create("5575000006"));
+  }
+
+  /**
+   * Utility method to create a customer with its account
+   * @param mobileNumber Mobile number of the customer
+   * @return the created customer, as fetched
+   */
+  private CustomerDto create(String mobileNumber) {
+    iAccountsService.createAccount(customer(mobileNumber));
+    return iAccountsService.fetchAccount(mobileNumber);
+  }
+
+  private static CustomerDto customer(String mobileNumber) {
+    CustomerDto customerDto = new CustomerDto();
+    customerDto.setName("Indexed Customer");
+    customerDto.setEmail("indexed@email.com");
+    customerDto.setMobileNumber(mobileNumber);
+    return customerDto;
+  }
+}
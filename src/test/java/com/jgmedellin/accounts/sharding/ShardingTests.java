@@ -0,0 +1,330 @@
+package com.jgmedellin.accounts.sharding;
+
+import com.jgmedellin.accounts.dto.AccountsPageDto;
+import com.jgmedellin.accounts.dto.AccountsPatchDto;
+import com.jgmedellin.accounts.dto.CreateAccountResultDto;
+import com.jgmedellin.accounts.dto.CustomerDto;
+import com.jgmedellin.accounts.dto.DeleteAccountsResultDto;
+import com.jgmedellin.accounts.dto.FetchAccountsResultDto;
+import com.jgmedellin.accounts.exception.MobileNumberChangeException;
+import com.jgmedellin.accounts.generator.HiLoAccountNumberGenerator;
+import com.jgmedellin.accounts.index.MobileNumberIndex;
+import com.jgmedellin.accounts.service.IAccountsService;
+import com.jgmedellin.accounts.support.SlowTest;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hash ring and account number scheme, the sharded persistence mode on 4 embedded H2 databases, and a throughput
+ * benchmark of the same workload on 1, 2 and 4 shards (logged, it only runs with the slow tests).
+ */
+@Slf4j
+class ShardingTests {
+
+  private static final String SHARDED = "accounts.sharding.enabled=true";
+
+  private static final String NO_OPEN_IN_VIEW = "spring.jpa.open-in-view=false";
+
+  private static final String NO_CACHE = "spring.cache.type=none"; // Every fetch reaches a shard
+
+  @Test
+  void addingAShardOnlyMovesItsShareOfTheKeys() {
+    ConsistentHashRing fourShards = new ConsistentHashRing(4, 128);
+    ConsistentHashRing fiveShards = new ConsistentHashRing(5, 128);
+    int keys = 100_000;
+    int[] counts = new int[4];
+    int moved = 0;
+    for (int i = 0; i < keys; i++) {
+      String mobileNumber = String.format("55%08d", i);
+      int before = fourShards.shardOf(mobileNumber);
+      int after = fiveShards.shardOf(mobileNumber);
+      counts[before]++;
+      if (before != after) {
+        moved++;
+        assertEquals(4, after, "A key can only move to the new shard");
+      }
+    }
+    for (int count : counts) {
+      assertTrue(Math.abs(count - keys / 4) < keys / 4 / 5, "Uneven shards: " + count);
+    }
+    // A fifth of the keys go to the new shard, a hash modulo the shard count would move 80% of them
+    assertTrue(moved > keys / 8 && moved < keys * 3 / 10, "Moved keys: " + moved);
+  }
+
+  @Test
+  void accountNumbersEncodeTheirShard() {
+    for (int shard = 0; shard < Shards.MAX_SHARDS; shard++) {
+      long accountNumber = ShardedAccountNumberGenerator.encode(HiLoAccountNumberGenerator.FIRST_ACCOUNT_NUMBER + 12345,
+              shard);
+      assertEquals(10, Long.toString(accountNumber).length());
+      assertEquals(shard, ShardedAccountNumberGenerator.shardOf(accountNumber));
+    }
+    assertThrows(IllegalStateException.class,
+            () -> ShardedAccountNumberGenerator.encode(HiLoAccountNumberGenerator.LAST_ACCOUNT_NUMBER, 0));
+  }
+
+  @Nested
+  @DirtiesContext // Closes the shard pools, the other tests share the JVM
+  @SpringBootTest(properties = {"spring.jpa.show-sql=false", SHARDED, NO_OPEN_IN_VIEW, NO_CACHE,
+          "accounts.mobile-index.enabled=true",
+          "accounts.sharding.urls=jdbc:h2:mem:sharding4-0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:sharding4-1;DB_CLOSE_DELAY=-1," +
+                  "jdbc:h2:mem:sharding4-2;DB_CLOSE_DELAY=-1,jdbc:h2:mem:sharding4-3;DB_CLOSE_DELAY=-1"})
+  class FourShards {
+
+    @Autowired
+    private IAccountsService iAccountsService;
+
+    @Autowired
+    private Shards shards;
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Autowired
+    private MobileNumberIndex mobileNumberIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void customersAreSpreadOverTheShardsAndFoundByEveryKey() {
+      List<String> mobileNumbers = createCustomers(iAccountsService, "5562", 400);
+      assertEquals(4, shards.count());
+
+      // Every shard has some of the customers, with account numbers that encode it and ids unique across the shards
+      int total = 0;
+      Set<Long> customerIds = new HashSet<>();
+      for (int shard = 0; shard < shards.count(); shard++) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(shardDataSources.pools().get(shard));
+        List<long[]> rows = jdbcTemplate.query("select c.customer_id, a.account_number, c.mobile_number " +
+                "from customer c join accounts a on a.customer_id = c.customer_id where c.mobile_number like '5562%'",
+                (resultSet, rowNumber) -> new long[]{resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3)});
+        assertTrue(rows.size() > 50, "Shard " + shard + " has " + rows.size() + " customers");
+        for (long[] row : rows) {
+          assertTrue(row[0] > 0 && customerIds.add(row[0]), "Repeated customer id " + row[0]);
+          assertEquals(shard, shards.shardOfAccount(row[1]));
+          assertEquals(shard, shards.shardOf(Long.toString(row[2])));
+        }
+        total += rows.size();
+      }
+      assertEquals(400, total);
+
+      // By mobile number, one by one and in batch, and through the mobile number index built from every shard
+      assertEquals("5562000007", iAccountsService.fetchAccount("5562000007").getMobileNumber());
+      List<String> requested = new ArrayList<>(mobileNumbers);
+      requested.add("5562999999");
+      FetchAccountsResultDto fetched = iAccountsService.fetchAccounts(requested);
+      assertEquals(400, fetched.getCustomers().size());
+      assertEquals(List.of("5562999999"), fetched.getNotFound());
+      mobileNumberIndex.rebuild();
+      for (String mobileNumber : mobileNumbers) {
+        assertEquals(fetched.getCustomers().get(mobileNumber).getAccountsDto().getAccountNumber(),
+                iAccountsService.fetchAccount(mobileNumber).getAccountsDto().getAccountNumber());
+      }
+
+      // The listing goes through the shards in customer id order, the export too
+      List<Long> listedCustomerIds = new ArrayList<>();
+      Set<String> listed = new HashSet<>();
+      String pageToken = null;
+      do {
+        AccountsPageDto page = iAccountsService.listAccounts(null, null, null, pageToken, 37);
+        for (CustomerDto customerDto : page.getAccounts()) {
+          if (customerDto.getMobileNumber().startsWith("5562")) {
+            listed.add(customerDto.getMobileNumber());
+            listedCustomerIds.add(customerIdOf(customerDto.getMobileNumber()));
+          }
+        }
+        pageToken = page.getNextPageToken();
+      } while (pageToken != null);
+      assertEquals(new HashSet<>(mobileNumbers), listed);
+      List<Long> sorted = new ArrayList<>(listedCustomerIds);
+      sorted.sort(null);
+      assertEquals(sorted, listedCustomerIds);
+      List<String> exported = new ArrayList<>();
+      iAccountsService.exportAccounts(page -> page.stream().map(CustomerDto::getMobileNumber)
+              .filter(mobileNumber -> mobileNumber.startsWith("5562")).forEach(exported::add));
+      assertEquals(400, exported.size());
+
+      // One pool and its meters per shard
+      assertNotNull(meterRegistry.find("hikaricp.connections").tag("pool", "accounts-shard-3").gauge());
+    }
+
+    @Test
+    void changesAreRoutedByAccountNumber() {
+      List<String> mobileNumbers = createCustomers(iAccountsService, "5563", 40);
+      String mobileNumber = mobileNumbers.get(0);
+      CustomerDto customerDto = iAccountsService.fetchAccount(mobileNumber);
+      customerDto.setName("Updated In Its Shard");
+      assertTrue(iAccountsService.updateAccount(customerDto, null));
+      assertEquals("Updated In Its Shard", iAccountsService.fetchAccount(mobileNumber).getName());
+
+      // A new mobile number of the same shard is accepted, one of another shard would need to move the customer
+      Long accountNumber = customerDto.getAccountsDto().getAccountNumber();
+      int shard = shards.shardOf(mobileNumber);
+      String sameShard = mobileNumbers.stream().skip(1).map(number -> "5564" + number.substring(4))
+              .filter(number -> shards.shardOf(number) == shard).findFirst().orElseThrow();
+      String otherShard = mobileNumbers.stream().skip(1).map(number -> "5564" + number.substring(4))
+              .filter(number -> shards.shardOf(number) != shard).findFirst().orElseThrow();
+      AccountsPatchDto patch = new AccountsPatchDto();
+      patch.setMobileNumber(otherShard);
+      assertThrows(MobileNumberChangeException.class, () -> iAccountsService.patchAccount(accountNumber, patch, null));
+      patch.setMobileNumber(sameShard);
+      iAccountsService.patchAccount(accountNumber, patch, null);
+      assertEquals(accountNumber, iAccountsService.fetchAccount(sameShard).getAccountsDto().getAccountNumber());
+
+      // The batch delete runs one transaction per shard and chunk
+      List<String> toDelete = new ArrayList<>(mobileNumbers.subList(1, 40));
+      toDelete.add("5563999999");
+      DeleteAccountsResultDto deleted = iAccountsService.deleteAccounts(toDelete);
+      assertEquals(39, deleted.getDeletedCount());
+      assertEquals(List.of("5563999999"), deleted.getNotFound());
+      assertTrue(iAccountsService.deleteAccount(sameShard));
+      assertEquals(0, iAccountsService.fetchAccounts(mobileNumbers).getCustomers().size());
+    }
+
+    @Test
+    @SlowTest
+    void throughput() throws Exception {
+      benchmark(iAccountsService, shards.count());
+    }
+
+    private long customerIdOf(String mobileNumber) {
+      long customerId = mobileNumberIndex.lookup(mobileNumber);
+      assertTrue(customerId > 0);
+      return customerId;
+    }
+  }
+
+  @Nested
+  @DirtiesContext // Closes the shard pools, the other tests share the JVM
+  @SpringBootTest(properties = {"spring.jpa.show-sql=false", SHARDED, NO_OPEN_IN_VIEW, NO_CACHE,
+          "accounts.sharding.urls=jdbc:h2:mem:sharding2-0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:sharding2-1;DB_CLOSE_DELAY=-1"})
+  class TwoShards {
+
+    @Autowired
+    private IAccountsService iAccountsService;
+
+    @Test
+    @SlowTest
+    void throughput() throws Exception {
+      benchmark(iAccountsService, 2);
+    }
+  }
+
+  @Nested
+  @DirtiesContext // Closes the shard pools, the other tests share the JVM
+  @SpringBootTest(properties = {"spring.jpa.show-sql=false", SHARDED, NO_OPEN_IN_VIEW, NO_CACHE,
+          "accounts.sharding.urls=jdbc:h2:mem:sharding1-0;DB_CLOSE_DELAY=-1"})
+  class OneShard {
+
+    @Autowired
+    private IAccountsService iAccountsService;
+
+    @Test
+    @SlowTest
+    void throughput() throws Exception {
+      benchmark(iAccountsService, 1);
+    }
+  }
+
+  /**
+   * Utility method to run the same workload on any number of shards: 4 clients creating customers in batches, then
+   * fetching them one by one. A smaller round first warms up the JIT and the pools
+   * @param iAccountsService Service of the context under test
+   * @param shardCount Number of shards of the context
+   */
+  private static void benchmark(IAccountsService iAccountsService, int shardCount) throws Exception {
+    int clients = 4;
+    int batchSize = 400;
+    ExecutorService executor = Executors.newFixedThreadPool(clients);
+    try {
+      runWorkload(iAccountsService, executor, "558", clients, 1, batchSize);
+      long[] nanos = runWorkload(iAccountsService, executor, "557", clients, 5, batchSize);
+      int customers = clients * 5 * batchSize;
+      log.info(String.format(Locale.ROOT, "%d shard(s), %d clients: create %.0f customers/s, fetch %.0f customers/s",
+              shardCount, clients, customers * 1e9 / nanos[0], customers * 1e9 / nanos[1]));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * @return the time spent creating and the time spent fetching the customers
+   */
+  private static long[] runWorkload(IAccountsService iAccountsService, ExecutorService executor, String prefix,
+                                    int clients, int batchesPerClient, int batchSize) throws Exception {
+    List<Future<List<String>>> created = new ArrayList<>();
+    long start = System.nanoTime();
+    for (int client = 0; client < clients; client++) {
+      String clientPrefix = prefix + client;
+      created.add(executor.submit(() -> {
+        List<String> mobileNumbers = new ArrayList<>();
+        for (int batch = 0; batch < batchesPerClient; batch++) {
+          mobileNumbers.addAll(createCustomers(iAccountsService, clientPrefix + batch, batchSize));
+        }
+        return mobileNumbers;
+      }));
+    }
+    List<String> mobileNumbers = new ArrayList<>();
+    for (Future<List<String>> client : created) {
+      mobileNumbers.addAll(client.get(5, TimeUnit.MINUTES));
+    }
+    long createNanos = System.nanoTime() - start;
+
+    List<Future<Integer>> fetched = new ArrayList<>();
+    start = System.nanoTime();
+    for (int client = 0; client < clients; client++) {
+      int first = client;
+      fetched.add(executor.submit(() -> {
+        int found = 0;
+        for (int i = first; i < mobileNumbers.size(); i += clients) {
+          found += iAccountsService.fetchAccount(mobileNumbers.get(i)) != null ? 1 : 0;
+        }
+        return found;
+      }));
+    }
+    int found = 0;
+    for (Future<Integer> client : fetched) {
+      found += client.get(5, TimeUnit.MINUTES);
+    }
+    long fetchNanos = System.nanoTime() - start;
+    assertEquals(clients * batchesPerClient * batchSize, found);
+    return new long[]{createNanos, fetchNanos};
+  }
+
+  private static List<String> createCustomers(IAccountsService iAccountsService, String prefix, int count) {
+    List<CustomerDto> customerDtos = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      CustomerDto customerDto = new CustomerDto();
+      customerDto.setName("Sharded Customer");
+      customerDto.setEmail("sharded@email.com");
+      customerDto.setMobileNumber(prefix + String.format("%0" + (10 - prefix.length()) + "d", i));
+      customerDtos.add(customerDto);
+    }
+    List<CreateAccountResultDto> results = iAccountsService.createAccounts(customerDtos);
+    assertTrue(results.stream().allMatch(result -> "201".equals(result.getStatusCode())), "Not created: " + results);
+    return customerDtos.stream().map(CustomerDto::getMobileNumber).toList();
+  }
+
+}
@@ -0,0 +1,69 @@
+package com.jgmedellin.accounts.startup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.test.web.servlet.MockMvc;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The self time of the startup report, and the lazy springdoc beans of the prod profile.
+ */
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "accounts.startup.lazy-bean-packages=org.springdoc"})
+@AutoConfigureMockMvc
+class StartupTests {
+
+  @Autowired
+  private ConfigurableListableBeanFactory beanFactory;
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Test
+  void selfTimeExcludesTheChildSteps() throws Exception {
+    BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(10);
+    StartupStep parent = applicationStartup.start("parent");
+    Thread.sleep(20);
+    StartupStep child = applicationStartup.start("child").tag("beanName", "childBean");
+    Thread.sleep(30);
+    child.end();
+    parent.end();
+
+    Map<String, StartupReport.StepTime> steps = StartupReport.selfTimes(
+                    applicationStartup.getBufferedTimeline().getEvents()).stream()
+            .collect(Collectors.toMap(StartupReport.StepTime::name, step -> step));
+    StartupReport.StepTime parentTime = steps.get("parent");
+    StartupReport.StepTime childTime = steps.get("child");
+    assertEquals(childTime.total(), childTime.self());
+    assertEquals(parentTime.total().minus(childTime.total()), parentTime.self());
+    assertTrue(parentTime.self().compareTo(Duration.ofMillis(20)) >= 0);
+    assertEquals("[beanName=childBean]", childTime.tags());
+  }
+
+  @Test
+  void springdocBeansAreCreatedOnFirstUse() throws Exception {
+    List<String> springdocBeans = Arrays.stream(beanFactory.getBeanDefinitionNames())
+            .filter(name -> beanFactory.getBeanDefinition(name).isLazyInit())
+            .filter(name -> name.toLowerCase().contains("springdoc") || name.toLowerCase().contains("openapi"))
+            .toList();
+    assertFalse(springdocBeans.isEmpty(), "No lazy springdoc bean");
+    assertFalse(beanFactory.containsSingleton("openApiResource"), "The OpenAPI resource was created at startup");
+
+    mockMvc.perform(get("/v3/api-docs")).andExpect(status().isOk());
+    assertTrue(beanFactory.containsSingleton("openApiResource"));
+  }
+}
@@ -0,0 +1,33 @@
+package com.jgmedellin.accounts.support;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Pins the SQL statements a test method executes on its own thread (a JDBC batch counts as one statement).
+ * Only the test method body is measured, the @BeforeEach methods can prepare data freely.
+ * Every type is exact: one statement more or less fails the test, so an N+1 or an extra round trip shows up in the
+ * build instead of as latency in production. Needs the CountingDataSource of the application context.
+ * Sequence calls and other statements are not pinned unless others is set, they are amortized by the id blocks.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(QueryBudgetExtension.class)
+public @interface QueryBudget {
+
+  /** Value of others that skips the check. */
+  int UNCHECKED = -1;
+
+  int selects() default 0;
+
+  int inserts() default 0;
+
+  int updates() default 0;
+
+  int deletes() default 0;
+
+  int others() default UNCHECKED;
+}
@@ -0,0 +1,49 @@
+package com.jgmedellin.accounts.support;
+
+import com.jgmedellin.accounts.metrics.StatementCounter;
+import com.jgmedellin.accounts.metrics.StatementCounts;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.opentest4j.AssertionFailedError;
+
+/**
+ * Checks the @QueryBudget of the test methods, see QueryBudget.
+ */
+public class QueryBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+  private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(QueryBudget.class);
+
+  @Override
+  public void beforeTestExecution(ExtensionContext context) {
+    context.getStore(NAMESPACE).put(context.getUniqueId(), StatementCounter.snapshot());
+  }
+
+  @Override
+  public void afterTestExecution(ExtensionContext context) {
+    StatementCounts before = context.getStore(NAMESPACE).remove(context.getUniqueId(), StatementCounts.class);
+    QueryBudget budget = context.getRequiredTestMethod().getAnnotation(QueryBudget.class);
+    if (before == null || budget == null || context.getExecutionException().isPresent()) {
+      return; // A failed test already reports its own error
+    }
+    assertBudget(budget, StatementCounter.snapshot().minus(before));
+  }
+
+  /**
+   * Fails if the statements don't match the budget exactly.
+   * @param budget Expected statements
+   * @param used Statements executed
+   */
+  public static void assertBudget(QueryBudget budget, StatementCounts used) {
+    boolean matches = budget.selects() == used.selects() && budget.inserts() == used.inserts()
+            && budget.updates() == used.updates() && budget.deletes() == used.deletes()
+            && (budget.others() == QueryBudget.UNCHECKED || budget.others() == used.others());
+    if (!matches) {
+      throw new AssertionFailedError(String.format("Query budget not met: expected selects=%d, inserts=%d, " +
+                      "updates=%d, deletes=%d%s but executed selects=%d, inserts=%d, updates=%d, deletes=%d, others=%d",
+              budget.selects(), budget.inserts(), budget.updates(), budget.deletes(),
+              budget.others() == QueryBudget.UNCHECKED ? "" : ", others=" + budget.others(),
+              used.selects(), used.inserts(), used.updates(), used.deletes(), used.others()));
+    }
+  }
+}
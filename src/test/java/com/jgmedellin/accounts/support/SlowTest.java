@@ -0,0 +1,19 @@
+package com.jgmedellin.accounts.support;
+
+import org.junit.jupiter.api.Tag;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a test class or method that takes many seconds (big datasets, benchmarks). The default build skips them, run
+ * them with the slow-tests Maven profile (see pom.xml).
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Tag(SlowTest.TAG)
+public @interface SlowTest {
+
+  String TAG = "slow";
+}